@@ -81,15 +81,18 @@
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.eclipse.jgit.transport.http.HttpConnection;
 import org.eclipse.jgit.transport.http.apache.internal.HttpApacheText;
 import org.eclipse.jgit.util.TemporaryBuffer;
@@ -102,6 +105,12 @@
  * @since 3.3
  */
 public class HttpClientConnection implements HttpConnection {
+	/**
+	 * Time in milliseconds to wait for a connection of a shared client's pool
+	 * if no connect timeout is set.
+	 */
+	private static final int POOL_TIMEOUT = 60 * 1000;
+
 	HttpClient client;
 
 	URL url;
@@ -128,25 +137,24 @@ public class HttpClientConnection implements HttpConnection {
 
 	SSLContext ctx;
 
+	/**
+	 * Whether {@link #client} is shared with other connections. A shared
+	 * client gets this connection's settings through the request's config.
+	 */
+	private boolean shared;
+
 	private HttpClient getClient() {
+		if (shared && (hostnameverifier != null || ctx != null)) {
+			// Custom SSL settings need a client of their own.
+			client = null;
+			shared = false;
+		}
 		if (client == null) {
 			HttpClientBuilder clientBuilder = HttpClients.custom();
-			RequestConfig.Builder configBuilder = RequestConfig.custom();
-			if (proxy != null && !Proxy.NO_PROXY.equals(proxy)) {
-				isUsingProxy = true;
-				InetSocketAddress adr = (InetSocketAddress) proxy.address();
-				clientBuilder.setProxy(
-						new HttpHost(adr.getHostName(), adr.getPort()));
-			}
-			if (timeout != null) {
-				configBuilder.setConnectTimeout(timeout.intValue());
-			}
-			if (readTimeout != null) {
-				configBuilder.setSocketTimeout(readTimeout.intValue());
-			}
-			if (followRedirects != null) {
-				configBuilder
-						.setRedirectsEnabled(followRedirects.booleanValue());
+			RequestConfig.Builder configBuilder = newRequestConfig();
+			HttpHost proxyHost = getProxyHost();
+			if (proxyHost != null) {
+				clientBuilder.setProxy(proxyHost);
 			}
 			if (hostnameverifier != null) {
 				SSLConnectionSocketFactory sslConnectionFactory = new SSLConnectionSocketFactory(
@@ -167,6 +175,29 @@ private HttpClient getClient() {
 		return client;
 	}
 
+	private RequestConfig.Builder newRequestConfig() {
+		RequestConfig.Builder configBuilder = RequestConfig.custom();
+		if (timeout != null) {
+			configBuilder.setConnectTimeout(timeout.intValue());
+		}
+		if (readTimeout != null) {
+			configBuilder.setSocketTimeout(readTimeout.intValue());
+		}
+		if (followRedirects != null) {
+			configBuilder.setRedirectsEnabled(followRedirects.booleanValue());
+		}
+		return configBuilder;
+	}
+
+	private HttpHost getProxyHost() {
+		if (proxy == null || Proxy.NO_PROXY.equals(proxy)) {
+			return null;
+		}
+		isUsingProxy = true;
+		InetSocketAddress adr = (InetSocketAddress) proxy.address();
+		return new HttpHost(adr.getHostName(), adr.getPort());
+	}
+
 	private SSLContext getSSLContext() {
 		if (ctx == null) {
 			try {
@@ -225,6 +256,23 @@ public HttpClientConnection(String urlStr, Proxy proxy, HttpClient cl)
 		this.proxy = proxy;
 	}
 
+	/**
+	 * Constructor for a connection sharing a pooled client.
+	 *
+	 * @param url
+	 *            the URL to connect to.
+	 * @param proxy
+	 *            the proxy to use, or {@code null}.
+	 * @param pool
+	 *            client shared by all connections of a factory.
+	 */
+	HttpClientConnection(URL url, Proxy proxy, HttpClient pool) {
+		this.client = pool;
+		this.url = url;
+		this.proxy = proxy;
+		this.shared = true;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public int getResponseCode() throws IOException {
@@ -250,20 +298,51 @@ private void execute() throws IOException, ClientProtocolException {
 			return;
 		}
 
+		HttpClient c = getClient();
+		if (shared && req instanceof HttpRequestBase) {
+			RequestConfig.Builder configBuilder = newRequestConfig();
+			configBuilder.setProxy(getProxyHost());
+			configBuilder.setConnectionRequestTimeout(
+					timeout != null ? timeout.intValue() : POOL_TIMEOUT);
+			((HttpRequestBase) req).setConfig(configBuilder.build());
+		}
+
 		if (entity == null) {
-			resp = getClient().execute(req);
-			return;
+			resp = c.execute(req);
+		} else {
+			try {
+				if (req instanceof HttpEntityEnclosingRequest) {
+					HttpEntityEnclosingRequest eReq = (HttpEntityEnclosingRequest) req;
+					eReq.setEntity(entity);
+				}
+				resp = c.execute(req);
+			} finally {
+				entity.close();
+				entity = null;
+			}
 		}
+		releaseUnlessOk();
+	}
 
+	/**
+	 * Release the connection of a redirect, authentication challenge or error.
+	 * <p>
+	 * Callers only read the body of successful responses, and a connection is
+	 * returned to its client's pool only once the body was read. The body of
+	 * any other response is buffered, so that it can still be read.
+	 *
+	 * @throws IOException
+	 *             the body could not be read.
+	 */
+	private void releaseUnlessOk() throws IOException {
+		HttpEntity body = resp.getEntity();
+		if (body == null || resp.getStatusLine().getStatusCode() < 300) {
+			return;
+		}
 		try {
-			if (req instanceof HttpEntityEnclosingRequest) {
-				HttpEntityEnclosingRequest eReq = (HttpEntityEnclosingRequest) req;
-				eReq.setEntity(entity);
-			}
-			resp = getClient().execute(req);
+			resp.setEntity(new BufferedHttpEntity(body));
 		} finally {
-			entity.close();
-			entity = null;
+			EntityUtils.consumeQuietly(body);
 		}
 	}
 
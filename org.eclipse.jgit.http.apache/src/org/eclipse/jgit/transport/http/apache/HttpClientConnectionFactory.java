@@ -46,6 +46,9 @@
 import java.net.Proxy;
 import java.net.URL;
 
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.eclipse.jgit.transport.http.HttpConnection;
 import org.eclipse.jgit.transport.http.HttpConnectionFactory;
 
@@ -56,16 +59,53 @@
  * @since 3.3
  */
 public class HttpClientConnectionFactory implements HttpConnectionFactory {
+	private final HttpClient pool;
+
+	/**
+	 * Create a factory giving every connection a client of its own.
+	 */
+	public HttpClientConnectionFactory() {
+		pool = null;
+	}
+
+	/**
+	 * Create a factory whose connections share a pool of persistent
+	 * connections.
+	 * <p>
+	 * The HTTP connections stay open between requests. They are reused by
+	 * later requests to the same host, both within one
+	 * {@link org.eclipse.jgit.transport.Transport} and across transports
+	 * created with this factory. This avoids a new TCP connection and TLS
+	 * handshake for every round of the protocol. Connections needing their
+	 * own SSL settings, for example because {@code http.sslVerify} is false,
+	 * do not use the pool.
+	 *
+	 * @param maxTotal
+	 *            maximum number of connections in the pool.
+	 * @param maxPerRoute
+	 *            maximum number of connections to any one host.
+	 * @since 5.1
+	 */
+	public HttpClientConnectionFactory(int maxTotal, int maxPerRoute) {
+		PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+		cm.setMaxTotal(maxTotal);
+		cm.setDefaultMaxPerRoute(maxPerRoute);
+		pool = HttpClients.custom().setConnectionManager(cm).build();
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public HttpConnection create(URL url) throws IOException {
-		return new HttpClientConnection(url.toString());
+		return create(url, null);
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public HttpConnection create(URL url, Proxy proxy)
 			throws IOException {
+		if (pool != null) {
+			return new HttpClientConnection(url, proxy, pool);
+		}
 		return new HttpClientConnection(url.toString(), proxy);
 	}
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.http.server;
+
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Runs smart service requests on an executor, off the container thread.
+ * <p>
+ * The request is put into asynchronous mode, letting the container return its
+ * thread to the pool while the service runs on the executor. Requests the
+ * executor rejects, or that would exceed the limit of concurrent requests for
+ * one repository, are answered with {@code 503 Service Unavailable} so the
+ * client can retry later. A request counts against the limit while its
+ * service runs, not while the container sends output the service left
+ * behind.
+ */
+class AsyncService {
+	/** A smart service run by {@link AsyncService}. */
+	interface Service {
+		/**
+		 * Run the service; it must handle its own errors.
+		 *
+		 * @return {@code true} if the response is still being sent after
+		 *         the service returned, and whoever sends it completes the
+		 *         request.
+		 */
+		boolean run();
+	}
+
+	private final Executor executor;
+
+	private final int maxPerRepository;
+
+	/** Number of requests queued or running, by repository. */
+	private final Map<String, Integer> active = new HashMap<>();
+
+	AsyncService(Executor executor, int maxPerRepository) {
+		this.executor = executor;
+		this.maxPerRepository = maxPerRepository;
+	}
+
+	/**
+	 * Run a service, asynchronously if the container supports it.
+	 *
+	 * @param req
+	 *            current request.
+	 * @param rsp
+	 *            current response.
+	 * @param db
+	 *            repository the request operates on.
+	 * @param service
+	 *            the service.
+	 * @throws IOException
+	 *             the request could not be rejected.
+	 */
+	void execute(HttpServletRequest req, HttpServletResponse rsp,
+			Repository db, Service service) throws IOException {
+		if (!req.isAsyncSupported()) {
+			service.run();
+			return;
+		}
+
+		String name = ServletUtils.identify(db);
+		if (!acquire(name)) {
+			rsp.sendError(SC_SERVICE_UNAVAILABLE);
+			return;
+		}
+
+		AsyncContext ctx = req.startAsync(req, rsp);
+		// The service enforces its own timeout, if any.
+		ctx.setTimeout(0);
+
+		// The RepositoryFilter closes the repository once this thread
+		// leaves the filter chain, keep it open for the service.
+		db.incrementOpen();
+		try {
+			executor.execute(() -> {
+				boolean pending = false;
+				try {
+					pending = service.run();
+				} finally {
+					db.close();
+					release(name);
+					if (!pending) {
+						ctx.complete();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			db.close();
+			release(name);
+			try {
+				rsp.sendError(SC_SERVICE_UNAVAILABLE);
+			} finally {
+				ctx.complete();
+			}
+		}
+	}
+
+	private synchronized boolean acquire(String name) {
+		if (maxPerRepository <= 0) {
+			return true;
+		}
+		Integer n = active.get(name);
+		int cnt = n != null ? n.intValue() : 0;
+		if (maxPerRepository <= cnt) {
+			return false;
+		}
+		active.put(name, Integer.valueOf(cnt + 1));
+		return true;
+	}
+
+	private synchronized void release(String name) {
+		Integer n = active.get(name);
+		if (n == null) {
+			return;
+		} else if (n.intValue() == 1) {
+			active.remove(name);
+		} else {
+			active.put(name, Integer.valueOf(n.intValue() - 1));
+		}
+	}
+}
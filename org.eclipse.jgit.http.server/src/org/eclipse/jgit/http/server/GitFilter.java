@@ -47,6 +47,7 @@
 import java.text.MessageFormat;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterConfig;
@@ -98,6 +99,8 @@ public class GitFilter extends MetaFilter {
 
 	private final List<Filter> receivePackFilters = new LinkedList<>();
 
+	private AsyncService asyncService;
+
 	/**
 	 * New servlet that will load its base directory from {@code web.xml}.
 	 * <p>
@@ -189,6 +192,49 @@ public void addReceivePackFilter(Filter filter) {
 		receivePackFilters.add(filter);
 	}
 
+	/**
+	 * Run upload-pack and receive-pack requests on an executor.
+	 * <p>
+	 * By default the protocol runs on the container's request thread. With an
+	 * executor set, and a container supporting asynchronous requests (Servlet
+	 * 3.0 or later, with async support enabled for this filter), the request
+	 * is put into asynchronous mode and its container thread is returned to
+	 * the pool while the executor runs the protocol. Slow clients then tie up
+	 * executor threads instead of container threads.
+	 * <p>
+	 * A request the executor rejects, or one for a repository that already
+	 * has {@code maxPerRepository} requests queued or running, is answered
+	 * with {@code 503 Service Unavailable}. A bounded executor, such as a
+	 * {@link java.util.concurrent.ThreadPoolExecutor} with a bounded queue,
+	 * therefore limits the total number of requests served at once.
+	 * <p>
+	 * In this mode the filter chain returns before the protocol runs. Filters
+	 * added with {@link #addUploadPackFilter(Filter)} or
+	 * {@link #addReceivePackFilter(Filter)}, and any filter wrapping this
+	 * one, run their code after {@code chain.doFilter()} (including
+	 * {@code finally} blocks, e.g. timing, logging or releasing resources)
+	 * while the request is still being served. The protocol runs on an
+	 * executor thread, so values such filters keep in a
+	 * {@link java.lang.ThreadLocal} are not visible to it, nor to the
+	 * UploadPack or ReceivePack hooks. Use request attributes instead, or
+	 * an {@link javax.servlet.AsyncListener} to act once the request
+	 * completes.
+	 *
+	 * @param executor
+	 *            executor to run requests on. If {@code null} requests run on
+	 *            the container's thread.
+	 * @param maxPerRepository
+	 *            maximum number of requests queued or running for any one
+	 *            repository, or 0 for no limit.
+	 * @since 5.1
+	 */
+	public void setServiceExecutor(Executor executor, int maxPerRepository) {
+		assertNotInitialized();
+		this.asyncService = executor != null
+				? new AsyncService(executor, maxPerRepository)
+				: null;
+	}
+
 	private void assertNotInitialized() {
 		if (initialized)
 			throw new IllegalStateException(HttpServerText.get().alreadyInitializedByContainer);
@@ -212,7 +258,7 @@ public void init(FilterConfig filterConfig) throws ServletException {
 			b = b.through(new UploadPackServlet.Factory(uploadPackFactory));
 			for (Filter f : uploadPackFilters)
 				b = b.through(f);
-			b.with(new UploadPackServlet());
+			b.with(new UploadPackServlet(asyncService));
 		}
 
 		if (receivePackFactory != ReceivePackFactory.DISABLED) {
@@ -220,7 +266,7 @@ public void init(FilterConfig filterConfig) throws ServletException {
 			b = b.through(new ReceivePackServlet.Factory(receivePackFactory));
 			for (Filter f : receivePackFilters)
 				b = b.through(f);
-			b.with(new ReceivePackServlet());
+			b.with(new ReceivePackServlet(asyncService));
 		}
 
 		ServletBinder refs = serve("*/" + Constants.INFO_REFS);
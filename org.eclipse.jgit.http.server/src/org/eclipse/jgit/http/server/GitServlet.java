@@ -44,6 +44,7 @@
 package org.eclipse.jgit.http.server;
 
 import java.util.Enumeration;
+import java.util.concurrent.Executor;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterConfig;
@@ -181,6 +182,25 @@ public void addReceivePackFilter(Filter filter) {
 		gitFilter.addReceivePackFilter(filter);
 	}
 
+	/**
+	 * Run upload-pack and receive-pack requests on an executor.
+	 * <p>
+	 * See {@link GitFilter#setServiceExecutor(Executor, int)}. The servlet
+	 * must be registered with async support enabled for requests to leave
+	 * the container's thread.
+	 *
+	 * @param executor
+	 *            executor to run requests on. If {@code null} requests run on
+	 *            the container's thread.
+	 * @param maxPerRepository
+	 *            maximum number of requests queued or running for any one
+	 *            repository, or 0 for no limit.
+	 * @since 5.1
+	 */
+	public void setServiceExecutor(Executor executor, int maxPerRepository) {
+		gitFilter.setServiceExecutor(executor, maxPerRepository);
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void init(ServletConfig config) throws ServletException {
@@ -90,6 +90,8 @@
 class ReceivePackServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 
+	private final transient AsyncService async;
+
 	static class InfoRefs extends SmartServiceInfoRefs {
 		private final ReceivePackFactory<HttpServletRequest> receivePackFactory;
 
@@ -165,6 +167,10 @@ public void destroy() {
 		}
 	}
 
+	ReceivePackServlet(AsyncService async) {
+		this.async = async;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void doPost(final HttpServletRequest req,
@@ -181,6 +187,23 @@ public void doPost(final HttpServletRequest req,
 			return;
 		}
 
+		ReceivePack rp = (ReceivePack) req.getAttribute(ATTRIBUTE_HANDLER);
+		if (async != null) {
+			async.execute(req, rsp, rp.getRepository(), () -> {
+				try {
+					receive(req, rsp, rp, version);
+				} catch (IOException e) {
+					log(rp.getRepository(), e);
+				}
+				return false;
+			});
+		} else {
+			receive(req, rsp, rp, version);
+		}
+	}
+
+	private void receive(HttpServletRequest req, HttpServletResponse rsp,
+			ReceivePack rp, int[] version) throws IOException {
 		SmartOutputStream out = new SmartOutputStream(req, rsp, false) {
 			@Override
 			public void flush() throws IOException {
@@ -188,7 +211,6 @@ public void flush() throws IOException {
 			}
 		};
 
-		ReceivePack rp = (ReceivePack) req.getAttribute(ATTRIBUTE_HANDLER);
 		try {
 			rp.setBiDirectionalPipe(false);
 			rp.setEchoCommandFailures(hasPushStatusBug(version));
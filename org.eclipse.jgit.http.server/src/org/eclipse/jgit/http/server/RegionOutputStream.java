@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.http.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jgit.util.io.FileRegionWriter;
+
+/**
+ * Response stream deferring file regions to non-blocking servlet output.
+ * <p>
+ * Bytes are written with blocking I/O until the first file region arrives.
+ * From then on regions and bytes are queued in order. When the stream is
+ * closed, the queue is handed to a {@link WriteListener}, which sends it
+ * whenever the client can accept more data; the request thread is free to
+ * return while a slow client reads the regions, usually the bulk of a clone.
+ * <p>
+ * Only bytes count against the memory held by the queue: a region is read
+ * in chunks of {@link #CHUNK} bytes as it is sent. If more than
+ * {@link #LIMIT} bytes are queued, the queue is sent with blocking I/O.
+ * <p>
+ * Requires a Servlet 3.1 container.
+ */
+class RegionOutputStream extends OutputStream
+		implements FileRegionWriter, WriteListener {
+	private static final int LIMIT = 1024 * 1024;
+
+	private static final int CHUNK = 64 * 1024;
+
+	private final HttpServletRequest req;
+
+	private final ServletOutputStream out;
+
+	private final Deque<Object> queue = new ArrayDeque<>();
+
+	private final Set<FileChannel> files = Collections
+			.newSetFromMap(new IdentityHashMap<>());
+
+	private byte[] buf;
+
+	private long queued;
+
+	private AsyncContext ctx;
+
+	private boolean async;
+
+	private boolean closed;
+
+	RegionOutputStream(HttpServletRequest req, HttpServletResponse rsp)
+			throws IOException {
+		this.req = req;
+		this.out = rsp.getOutputStream();
+	}
+
+	@Override
+	public boolean canWriteRegion() {
+		return true;
+	}
+
+	@Override
+	public synchronized void writeRegion(FileChannel file, long position,
+			long count) throws IOException {
+		files.add(file);
+		if (closed) {
+			throw new EOFException();
+		}
+		queue.add(new Region(file, position, count));
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len)
+			throws IOException {
+		if (closed) {
+			throw new EOFException();
+		}
+		if (queue.isEmpty()) {
+			out.write(b, off, len);
+			return;
+		}
+		queue.add(Arrays.copyOfRange(b, off, off + len));
+		queued += len;
+		if (LIMIT < queued) {
+			drain();
+		}
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		if (!closed && queue.isEmpty()) {
+			out.flush();
+		}
+	}
+
+	/**
+	 * Close the stream.
+	 * <p>
+	 * If regions are still queued, the request is put into asynchronous mode
+	 * and the queue is sent by this stream's {@link WriteListener}, which
+	 * completes the request once done; see {@link #isAsync()}.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (queue.isEmpty()) {
+			closeFiles();
+			out.close();
+			return;
+		}
+		try {
+			ctx = req.isAsyncStarted() ? req.getAsyncContext()
+					: req.startAsync();
+			ctx.setTimeout(0);
+			out.setWriteListener(this);
+			async = true;
+		} catch (RuntimeException e) {
+			ctx = null;
+			abort();
+			throw e;
+		}
+	}
+
+	/**
+	 * Whether the queue was handed to the {@link WriteListener}.
+	 *
+	 * @return {@code true} if the stream completes the request's
+	 *         {@link AsyncContext}, even if it already did so.
+	 */
+	synchronized boolean isAsync() {
+		return async;
+	}
+
+	/**
+	 * Discard the queue and release the regions' files.
+	 * <p>
+	 * If the queue is being sent asynchronously, the request is completed.
+	 */
+	synchronized void abort() {
+		closed = true;
+		queue.clear();
+		queued = 0;
+		closeFiles();
+		if (ctx != null) {
+			AsyncContext c = ctx;
+			ctx = null;
+			c.complete();
+		}
+	}
+
+	@Override
+	public synchronized void onWritePossible() throws IOException {
+		try {
+			while (ctx != null && out.isReady()) {
+				if (queue.isEmpty()) {
+					// Everything was sent, complete the request.
+					abort();
+					return;
+				}
+				writeNext();
+			}
+		} catch (IOException | RuntimeException e) {
+			abort();
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized void onError(Throwable t) {
+		abort();
+	}
+
+	private void drain() throws IOException {
+		while (!queue.isEmpty()) {
+			writeNext();
+		}
+		queued = 0;
+	}
+
+	private void writeNext() throws IOException {
+		Object head = queue.peek();
+		if (head instanceof byte[]) {
+			byte[] b = (byte[]) head;
+			queue.poll();
+			queued -= b.length;
+			out.write(b);
+			return;
+		}
+
+		Region r = (Region) head;
+		if (buf == null) {
+			buf = new byte[CHUNK];
+		}
+		int n = (int) Math.min(buf.length, r.count);
+		n = r.file.read(ByteBuffer.wrap(buf, 0, n), r.position);
+		if (n <= 0) {
+			throw new EOFException();
+		}
+		r.position += n;
+		r.count -= n;
+		if (r.count == 0) {
+			queue.poll();
+		}
+		out.write(buf, 0, n);
+	}
+
+	private void closeFiles() {
+		for (FileChannel f : files) {
+			try {
+				f.close();
+			} catch (IOException e) {
+				// Ignore close failures of read-only files.
+			}
+		}
+		files.clear();
+	}
+
+	private static class Region {
+		final FileChannel file;
+
+		long position;
+
+		long count;
+
+		Region(FileChannel file, long position, long count) {
+			this.file = file;
+			this.position = position;
+			this.count = count;
+		}
+	}
+}
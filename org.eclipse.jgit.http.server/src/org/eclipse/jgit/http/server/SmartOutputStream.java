@@ -49,12 +49,14 @@
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jgit.util.TemporaryBuffer;
+import org.eclipse.jgit.util.io.FileRegionWriter;
 
 /**
  * Buffers a response, trying to gzip it if the user agent supports that.
@@ -65,22 +67,35 @@
  * smaller payloads are primarily pure text that compresses well, while much
  * larger payloads are heavily compressed binary data. {@link UploadPackServlet}
  * is one such servlet.
+ * <p>
+ * If file regions are allowed, a response overflowing the buffer is written
+ * to a {@link RegionOutputStream}, which sends the regions handed to
+ * {@link #writeRegion(FileChannel, long, long)} after the servlet returned.
  */
-class SmartOutputStream extends TemporaryBuffer {
+class SmartOutputStream extends TemporaryBuffer implements FileRegionWriter {
 	private static final int LIMIT = 32 * 1024;
 
 	private final HttpServletRequest req;
 	private final HttpServletResponse rsp;
 	private boolean compressStream;
+	private final boolean allowRegions;
 	private boolean startedOutput;
+	private RegionOutputStream regionOut;
 
 	SmartOutputStream(final HttpServletRequest req,
 			final HttpServletResponse rsp,
 			boolean compressStream) {
+		this(req, rsp, compressStream, false);
+	}
+
+	SmartOutputStream(final HttpServletRequest req,
+			final HttpServletResponse rsp,
+			boolean compressStream, boolean allowRegions) {
 		super(LIMIT);
 		this.req = req;
 		this.rsp = rsp;
 		this.compressStream = compressStream;
+		this.allowRegions = allowRegions;
 	}
 
 	/** {@inheritDoc} */
@@ -88,6 +103,11 @@ class SmartOutputStream extends TemporaryBuffer {
 	protected OutputStream overflow() throws IOException {
 		startedOutput = true;
 
+		if (canWriteRegion()) {
+			regionOut = new RegionOutputStream(req, rsp);
+			return regionOut;
+		}
+
 		OutputStream out = rsp.getOutputStream();
 		if (compressStream && acceptsGzipEncoding(req)) {
 			rsp.setHeader(HDR_CONTENT_ENCODING, ENCODING_GZIP);
@@ -96,6 +116,46 @@ protected OutputStream overflow() throws IOException {
 		return out;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public boolean canWriteRegion() {
+		return allowRegions && !compressStream;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void writeRegion(FileChannel file, long position, long count)
+			throws IOException {
+		try {
+			// Start the output and send everything buffered before the
+			// region, it must be sent first.
+			doFlush();
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+		regionOut.writeRegion(file, position, count);
+	}
+
+	/**
+	 * Whether the response is still being sent after {@link #close()}.
+	 *
+	 * @return {@code true} if regions are sent asynchronously; the request
+	 *         is completed once they were sent.
+	 */
+	boolean isAsync() {
+		return regionOut != null && regionOut.isAsync();
+	}
+
+	/**
+	 * Discard file regions not yet sent, after a failure.
+	 */
+	void abort() {
+		if (regionOut != null) {
+			regionOut.abort();
+		}
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void close() throws IOException {
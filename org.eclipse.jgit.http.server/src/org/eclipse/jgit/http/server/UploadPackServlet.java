@@ -67,6 +67,7 @@
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -89,6 +90,8 @@
 class UploadPackServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 
+	private final transient AsyncService async;
+
 	static class InfoRefs extends SmartServiceInfoRefs {
 		private final UploadPackFactory<HttpServletRequest> uploadPackFactory;
 
@@ -184,6 +187,10 @@ public void destroy() {
 		}
 	}
 
+	UploadPackServlet(AsyncService async) {
+		this.async = async;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void doPost(final HttpServletRequest req,
@@ -200,14 +207,47 @@ public void doPost(final HttpServletRequest req,
 			return;
 		}
 
-		SmartOutputStream out = new SmartOutputStream(req, rsp, false) {
+		UploadPack up = (UploadPack) req.getAttribute(ATTRIBUTE_HANDLER);
+		if (async != null) {
+			async.execute(req, rsp, up.getRepository(), () -> {
+				try {
+					return upload(req, rsp, up);
+				} catch (IOException e) {
+					log(up.getRepository(), e);
+					return false;
+				}
+			});
+		} else {
+			upload(req, rsp, up);
+		}
+	}
+
+	/**
+	 * Run upload-pack for the request.
+	 *
+	 * @param req
+	 *            current request.
+	 * @param rsp
+	 *            current response.
+	 * @param up
+	 *            the request's UploadPack.
+	 * @return true if the response is still being sent by the container,
+	 *         which completes the request when done.
+	 * @throws IOException
+	 *             the error could not be sent to the client.
+	 */
+	private boolean upload(HttpServletRequest req, HttpServletResponse rsp,
+			UploadPack up) throws IOException {
+		// Cached packs are sent by the container after this method returned,
+		// if it supports non-blocking output.
+		SmartOutputStream out = new SmartOutputStream(req, rsp, false,
+				isNonBlockingOutputSupported() && req.isAsyncSupported()) {
 			@Override
 			public void flush() throws IOException {
 				doFlush();
 			}
 		};
 
-		UploadPack up = (UploadPack) req.getAttribute(ATTRIBUTE_HANDLER);
 		try {
 			up.setBiDirectionalPipe(false);
 			rsp.setContentType(UPLOAD_PACK_RESULT_TYPE);
@@ -219,11 +259,14 @@ public void flush() throws IOException {
 			if (e.isOutput()) {
 				consumeRequestBody(req);
 				out.close();
-			} else if (!rsp.isCommitted()) {
-				rsp.reset();
-				sendError(req, rsp, e.getStatusCode(), e.getMessage());
+			} else {
+				out.abort();
+				if (!rsp.isCommitted()) {
+					rsp.reset();
+					sendError(req, rsp, e.getStatusCode(), e.getMessage());
+				}
 			}
-			return;
+			return out.isAsync();
 
 		} catch (UploadPackInternalServerErrorException e) {
 			// Special case exception, error message was sent to client.
@@ -233,12 +276,20 @@ public void flush() throws IOException {
 
 		} catch (Throwable e) {
 			log(up.getRepository(), e);
+			out.abort();
 			if (!rsp.isCommitted()) {
 				rsp.reset();
 				sendError(req, rsp, SC_INTERNAL_SERVER_ERROR);
 			}
-			return;
+			return false;
 		}
+		return out.isAsync();
+	}
+
+	private boolean isNonBlockingOutputSupported() {
+		ServletContext ctx = getServletContext();
+		return ctx.getMajorVersion() > 3
+				|| (ctx.getMajorVersion() == 3 && ctx.getMinorVersion() >= 1);
 	}
 
 	private void log(Repository git, Throwable e) {
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.http.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.http.server.GitServlet;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.junit.http.HttpTestCase;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevBlob;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.Transport;
+import org.eclipse.jgit.transport.UploadPack;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.transport.resolver.RepositoryResolver;
+import org.eclipse.jgit.transport.resolver.ServiceNotEnabledException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncServiceTest extends HttpTestCase {
+	private final AtomicInteger tasks = new AtomicInteger();
+
+	private ExecutorService pool;
+
+	private final List<String> events = Collections
+			.synchronizedList(new ArrayList<>());
+
+	private final CountDownLatch filterDone = new CountDownLatch(1);
+
+	private volatile boolean reject;
+
+	private URIish remoteURI;
+
+	private RevBlob A_txt;
+
+	private RevCommit A;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+
+		final TestRepository<Repository> src = createTestRepository();
+		final String srcName = src.getRepository().getDirectory().getName();
+
+		pool = Executors.newFixedThreadPool(2);
+		ServletContextHandler app = server.addContext("/git");
+		GitServlet gs = new GitServlet();
+		gs.setRepositoryResolver(new RepositoryResolver<HttpServletRequest>() {
+			@Override
+			public Repository open(HttpServletRequest req, String name)
+					throws RepositoryNotFoundException,
+					ServiceNotEnabledException {
+				if (!name.equals(srcName))
+					throw new RepositoryNotFoundException(name);
+
+				final Repository db = src.getRepository();
+				db.incrementOpen();
+				return db;
+			}
+		});
+		gs.setServiceExecutor(r -> {
+			if (reject) {
+				throw new RejectedExecutionException();
+			}
+			tasks.incrementAndGet();
+			pool.execute(r);
+		}, 1);
+		gs.setUploadPackFactory((req, db) -> {
+			UploadPack up = new UploadPack(db);
+			up.setPostUploadHook(stats -> {
+				try {
+					filterDone.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				events.add("service");
+			});
+			return up;
+		});
+		ServletHolder holder = new ServletHolder(gs);
+		holder.setAsyncSupported(true);
+		app.addServlet(holder, "/*");
+
+		FilterHolder wrapper = new FilterHolder(new Filter() {
+			@Override
+			public void init(FilterConfig filterConfig) {
+				// empty
+			}
+
+			@Override
+			public void doFilter(ServletRequest request,
+					ServletResponse response, FilterChain chain)
+					throws IOException, ServletException {
+				try {
+					chain.doFilter(request, response);
+				} finally {
+					String uri = ((HttpServletRequest) request)
+							.getRequestURI();
+					if (uri.endsWith("/git-upload-pack")) {
+						events.add("filter");
+						filterDone.countDown();
+					}
+				}
+			}
+
+			@Override
+			public void destroy() {
+				// empty
+			}
+		});
+		wrapper.setAsyncSupported(true);
+		app.addFilter(wrapper, "/*", EnumSet.of(DispatcherType.REQUEST));
+
+		server.setUp();
+
+		remoteURI = toURIish(app, srcName);
+
+		A_txt = src.blob("A");
+		A = src.commit().add("A_txt", A_txt).create();
+		src.update(master, A);
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		pool.shutdown();
+		pool.awaitTermination(10, TimeUnit.SECONDS);
+		super.tearDown();
+	}
+
+	@Test
+	public void testFetchOnExecutor() throws Exception {
+		Repository dst = createBareRepository();
+		try (Transport t = Transport.open(dst, remoteURI)) {
+			t.fetch(NullProgressMonitor.INSTANCE, mirror(master));
+		}
+		assertTrue(dst.hasObject(A_txt));
+		assertEquals(A, dst.exactRef(master).getObjectId());
+		assertEquals(1, tasks.get());
+	}
+
+	@Test
+	public void testFilterReturnsBeforeService() throws Exception {
+		Repository dst = createBareRepository();
+		try (Transport t = Transport.open(dst, remoteURI)) {
+			t.fetch(NullProgressMonitor.INSTANCE, mirror(master));
+		}
+		assertEquals(A, dst.exactRef(master).getObjectId());
+
+		// The wrapping filter's post-processing ran while the service was
+		// still running on the executor.
+		assertEquals(Arrays.asList("filter", "service"), events);
+	}
+
+	@Test
+	public void testRejectedFetch() throws Exception {
+		reject = true;
+		Repository dst = createBareRepository();
+		try (Transport t = Transport.open(dst, remoteURI)) {
+			t.fetch(NullProgressMonitor.INSTANCE, mirror(master));
+			fail("fetch should have been rejected");
+		} catch (TransportException e) {
+			// Expected, the server answered 503 Service Unavailable.
+		}
+		assertFalse(dst.hasObject(A_txt));
+		assertEquals(0, tasks.get());
+	}
+}
@@ -154,10 +154,11 @@ public boolean get(URIish uri, CredentialItem... items)
 
 	@Parameters
 	public static Collection<Object[]> data() {
-		// run all tests with both connection factories we have
+		// run all tests with all connection factories we have
 		return Arrays.asList(new Object[][] {
 				{ new JDKHttpConnectionFactory() },
-				{ new HttpClientConnectionFactory() } });
+				{ new HttpClientConnectionFactory() },
+				{ new HttpClientConnectionFactory(8, 4) } });
 	}
 
 	public SmartClientSmartServerSslTest(HttpConnectionFactory cf) {
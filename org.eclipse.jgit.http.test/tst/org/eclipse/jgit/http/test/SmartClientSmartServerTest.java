@@ -152,10 +152,11 @@ public class SmartClientSmartServerTest extends HttpTestCase {
 
 	@Parameters
 	public static Collection<Object[]> data() {
-		// run all tests with both connection factories we have
+		// run all tests with all connection factories we have
 		return Arrays.asList(new Object[][] {
 				{ new JDKHttpConnectionFactory() },
-				{ new HttpClientConnectionFactory() } });
+				{ new HttpClientConnectionFactory() },
+				{ new HttpClientConnectionFactory(8, 4) } });
 	}
 
 	public SmartClientSmartServerTest(HttpConnectionFactory cf) {
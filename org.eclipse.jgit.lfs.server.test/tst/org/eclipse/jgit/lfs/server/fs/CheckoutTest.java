@@ -42,17 +42,23 @@
  */
 package org.eclipse.jgit.lfs.server.fs;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.JGitInternalException;
 import org.eclipse.jgit.junit.JGitTestUtil;
 import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.lfs.BuiltinLFS;
+import org.eclipse.jgit.lfs.Lfs;
+import org.eclipse.jgit.lfs.SmudgeFilter;
 import org.eclipse.jgit.lfs.lib.LongObjectId;
 import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Repository;
@@ -158,4 +164,69 @@ public void testKnownContent() throws Exception {
 		assertEquals(3, server.getRequests().size());
 	}
 
+	@Test
+	public void testResumePartialDownload() throws Exception {
+		LongObjectId id = LongObjectId.fromString(
+				"8bb0cf6eb9b17d0f7d22b456f121257dc1254e1f01665370476383ea776df414");
+		putContent(id, "1234567");
+		Path partial = partialFile(id);
+		Files.write(partial, "123".getBytes(UTF_8));
+
+		// only the missing part is downloaded
+		git.checkout().setName("test").call();
+		assertEquals("1234567",
+				JGitTestUtil.read(git.getRepository(), "a.bin"));
+		assertFalse(Files.exists(partial));
+		assertEquals(
+				"[PUT /lfs/objects/" + id.name() + " 200"
+						+ ", POST /lfs/objects/batch 200"
+						+ ", GET /lfs/objects/" + id.name() + " 206]",
+				server.getRequests().toString());
+	}
+
+	@Test
+	public void testStalePartialDownload() throws Exception {
+		LongObjectId id = LongObjectId.fromString(
+				"8bb0cf6eb9b17d0f7d22b456f121257dc1254e1f01665370476383ea776df414");
+		putContent(id, "1234567");
+		Path partial = partialFile(id);
+		Files.write(partial, "xyz".getBytes(UTF_8));
+
+		// the resumed content is corrupt, the download starts over
+		git.checkout().setName("test").call();
+		assertEquals("1234567",
+				JGitTestUtil.read(git.getRepository(), "a.bin"));
+		assertFalse(Files.exists(partial));
+		assertEquals(
+				"[PUT /lfs/objects/" + id.name() + " 200"
+						+ ", POST /lfs/objects/batch 200"
+						+ ", GET /lfs/objects/" + id.name() + " 206"
+						+ ", GET /lfs/objects/" + id.name() + " 200]",
+				server.getRequests().toString());
+	}
+
+	@Test
+	public void testDownloadLfsResources() throws Exception {
+		LongObjectId id = LongObjectId.fromString(
+				"8bb0cf6eb9b17d0f7d22b456f121257dc1254e1f01665370476383ea776df414");
+		putContent(id, "1234567");
+		Repository db = tdb.getRepository();
+		Collection<Path> paths = SmudgeFilter.downloadLfsResources(db,
+				db.resolve("test"));
+		Path media = new Lfs(db).getMediaFile(id);
+		assertEquals(Collections.singletonList(media), paths);
+		assertTrue(SmudgeFilter.downloadLfsResources(db, db.resolve("test"))
+				.isEmpty());
+
+		git.checkout().setName("test").call();
+		assertEquals("1234567", JGitTestUtil.read(db, "a.bin"));
+		assertEquals(3, server.getRequests().size());
+	}
+
+	private Path partialFile(LongObjectId id) throws Exception {
+		Lfs lfs = new Lfs(tdb.getRepository());
+		Path partial = lfs.getLfsTmpDir().resolve(id.name() + ".part");
+		Files.createDirectories(partial.getParent());
+		return partial;
+	}
 }
@@ -43,7 +43,11 @@
 package org.eclipse.jgit.lfs.server.fs;
 
 import static org.apache.http.HttpStatus.SC_NOT_FOUND;
+import static org.apache.http.HttpStatus.SC_PARTIAL_CONTENT;
+import static org.apache.http.HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
 import static org.apache.http.HttpStatus.SC_UNPROCESSABLE_ENTITY;
+import static org.eclipse.jgit.util.HttpSupport.HDR_CONTENT_RANGE;
+import static org.eclipse.jgit.util.HttpSupport.HDR_RANGE;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
@@ -51,7 +55,12 @@
 import java.nio.file.Paths;
 import java.text.MessageFormat;
 
+import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
 import org.eclipse.jgit.lfs.lib.AnyLongObjectId;
 import org.eclipse.jgit.lfs.test.LongObjectIdTestUtils;
 import org.eclipse.jgit.util.FileUtils;
@@ -130,6 +139,46 @@ public void testLargeFileDownload() throws Exception {
 
 	}
 
+	@Test
+	public void testRangeDownload() throws Exception {
+		AnyLongObjectId id = putContent("0123456789");
+		try (CloseableHttpClient client = HttpClientBuilder.create().build()) {
+			HttpGet request = new HttpGet(
+					server.getURI() + "/lfs/objects/" + id.name());
+			request.setHeader(HDR_RANGE, "bytes=4-");
+			HttpResponse response = client.execute(request);
+			assertEquals(SC_PARTIAL_CONTENT,
+					response.getStatusLine().getStatusCode());
+			assertEquals("bytes 4-9/10",
+					response.getFirstHeader(HDR_CONTENT_RANGE).getValue());
+			assertEquals("456789", EntityUtils.toString(response.getEntity()));
+		}
+		// Statistics are recorded once the container completed the request,
+		// which may happen after the client read the response.
+		for (int i = 0; i < 100 && servlet.getActiveTransfers() > 0; i++) {
+			Thread.sleep(50);
+		}
+		TransferStatistics stats = servlet.getStatistics();
+		assertEquals(1, stats.getDownloads());
+		assertEquals(6, stats.getDownloadedBytes());
+		assertEquals(0, servlet.getActiveTransfers());
+	}
+
+	@Test
+	public void testRangeNotSatisfiable() throws Exception {
+		AnyLongObjectId id = putContent("0123456789");
+		try (CloseableHttpClient client = HttpClientBuilder.create().build()) {
+			HttpGet request = new HttpGet(
+					server.getURI() + "/lfs/objects/" + id.name());
+			request.setHeader(HDR_RANGE, "bytes=10-");
+			HttpResponse response = client.execute(request);
+			assertEquals(SC_REQUESTED_RANGE_NOT_SATISFIABLE,
+					response.getStatusLine().getStatusCode());
+			assertEquals("bytes */10",
+					response.getFirstHeader(HDR_CONTENT_RANGE).getValue());
+		}
+	}
+
 	@SuppressWarnings("boxing")
 	private String formatErrorMessage(int status, String message) {
 		return String.format("Status: %d {\"message\":\"%s\"}", status,
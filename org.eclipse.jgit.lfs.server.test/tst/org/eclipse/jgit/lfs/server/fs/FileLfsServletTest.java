@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.lfs.server.fs;
+
+import static org.eclipse.jgit.lfs.server.fs.FileLfsServlet.parseRange;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class FileLfsServletTest {
+	private static final long[] UNSATISFIABLE = {};
+
+	@Test
+	public void testParseRange() {
+		assertArrayEquals(new long[] { 0, 9 }, parseRange("bytes=0-", 10));
+		assertArrayEquals(new long[] { 4, 9 }, parseRange("bytes=4-", 10));
+		assertArrayEquals(new long[] { 2, 5 }, parseRange("bytes=2-5", 10));
+		assertArrayEquals(new long[] { 2, 9 }, parseRange("bytes=2-50", 10));
+	}
+
+	@Test
+	public void testParseSuffixRange() {
+		assertArrayEquals(new long[] { 7, 9 }, parseRange("bytes=-3", 10));
+		assertArrayEquals(new long[] { 0, 9 }, parseRange("bytes=-30", 10));
+		assertArrayEquals(UNSATISFIABLE, parseRange("bytes=-0", 10));
+		assertArrayEquals(UNSATISFIABLE, parseRange("bytes=-3", 0));
+	}
+
+	@Test
+	public void testParseUnsatisfiableRange() {
+		assertArrayEquals(UNSATISFIABLE, parseRange("bytes=10-", 10));
+		assertArrayEquals(UNSATISFIABLE, parseRange("bytes=10-20", 10));
+		assertArrayEquals(UNSATISFIABLE, parseRange("bytes=0-", 0));
+	}
+
+	@Test
+	public void testIgnoredRange() {
+		assertNull(parseRange("items=0-5", 10));
+		assertNull(parseRange("bytes=0-1,4-5", 10));
+		assertNull(parseRange("bytes=5-2", 10));
+		assertNull(parseRange("bytes=a-", 10));
+		assertNull(parseRange("bytes=-", 10));
+		assertNull(parseRange("bytes=5", 10));
+	}
+}
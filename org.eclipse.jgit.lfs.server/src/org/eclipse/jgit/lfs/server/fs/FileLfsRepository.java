@@ -46,7 +46,6 @@
 
 import java.io.IOException;
 import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -146,7 +145,7 @@ private Response.Action getAction(AnyLongObjectId id) {
 		return a;
 	}
 
-	ReadableByteChannel getReadChannel(AnyLongObjectId id)
+	FileChannel getReadChannel(AnyLongObjectId id)
 			throws IOException {
 		return FileChannel.open(getPath(id), StandardOpenOption.READ);
 	}
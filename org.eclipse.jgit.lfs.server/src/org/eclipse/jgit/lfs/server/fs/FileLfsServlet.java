@@ -42,11 +42,20 @@
  */
 package org.eclipse.jgit.lfs.server.fs;
 
+import static org.eclipse.jgit.util.HttpSupport.HDR_ACCEPT_RANGES;
+import static org.eclipse.jgit.util.HttpSupport.HDR_CONTENT_RANGE;
+import static org.eclipse.jgit.util.HttpSupport.HDR_RANGE;
+
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 
 import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -66,6 +75,9 @@
  * GitHub Large File Storage extension API extending git to allow separate
  * storage of large files
  * (https://github.com/github/git-lfs/tree/master/docs/api).
+ * <p>
+ * Downloads support a single HTTP byte range so that clients can resume
+ * interrupted transfers.
  *
  * @since 4.3
  */
@@ -74,10 +86,18 @@ public class FileLfsServlet extends HttpServlet {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final String BYTES_UNIT = "bytes"; //$NON-NLS-1$
+
 	private final FileLfsRepository repository;
 
 	private final long timeout;
 
+	private final AtomicInteger activeTransfers = new AtomicInteger();
+
+	private final TransferStatistics statistics = new TransferStatistics();
+
+	private int maxConcurrentTransfers;
+
 	/**
 	 * <p>Constructor for FileLfsServlet.</p>
 	 *
@@ -101,17 +121,50 @@ protected void doGet(HttpServletRequest req,
 			HttpServletResponse rsp) throws ServletException, IOException {
 		AnyLongObjectId obj = getObjectToTransfer(req, rsp);
 		if (obj != null) {
-			if (repository.getSize(obj) == -1) {
+			long size = repository.getSize(obj);
+			if (size == -1) {
 				sendError(rsp, HttpStatus.SC_NOT_FOUND, MessageFormat
 						.format(LfsServerText.get().objectNotFound,
 								obj.getName()));
 				return;
 			}
-			AsyncContext context = req.startAsync();
-			context.setTimeout(timeout);
-			rsp.getOutputStream()
-					.setWriteListener(new ObjectDownloadListener(repository,
-							context, rsp, obj));
+			String rangeHeader = req.getHeader(HDR_RANGE);
+			long[] range = rangeHeader != null
+					? parseRange(rangeHeader, size)
+					: null;
+			if (range != null && range.length == 0) {
+				rsp.setHeader(HDR_CONTENT_RANGE, BYTES_UNIT + " */" + size); //$NON-NLS-1$
+				sendError(rsp, HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE,
+						MessageFormat.format(
+								LfsServerText.get().rangeNotSatisfiable,
+								rangeHeader, obj.getName()));
+				return;
+			}
+			if (!beginTransfer(rsp)) {
+				return;
+			}
+			AtomicBoolean released = new AtomicBoolean();
+			try {
+				long offset = 0;
+				long length = size;
+				rsp.setHeader(HDR_ACCEPT_RANGES, BYTES_UNIT);
+				if (range != null) {
+					offset = range[0];
+					length = range[1] - range[0] + 1;
+					rsp.setStatus(HttpStatus.SC_PARTIAL_CONTENT);
+					rsp.setHeader(HDR_CONTENT_RANGE, BYTES_UNIT + ' '
+							+ range[0] + '-' + range[1] + '/' + size);
+				}
+				AsyncContext context = req.startAsync();
+				context.setTimeout(timeout);
+				ObjectDownloadListener listener = new ObjectDownloadListener(
+						repository, context, rsp, obj, offset, length);
+				track(context, listener::getTransferred, false, released);
+				rsp.getOutputStream().setWriteListener(listener);
+			} catch (IOException | RuntimeException e) {
+				endTransfer(released);
+				throw e;
+			}
 		}
 	}
 
@@ -154,11 +207,164 @@ protected AnyLongObjectId getObjectToTransfer(HttpServletRequest req,
 	protected void doPut(HttpServletRequest req,
 			HttpServletResponse rsp) throws ServletException, IOException {
 		AnyLongObjectId id = getObjectToTransfer(req, rsp);
-		if (id != null) {
-			AsyncContext context = req.startAsync();
-			context.setTimeout(timeout);
-			req.getInputStream().setReadListener(new ObjectUploadListener(
-					repository, context, req, rsp, id));
+		if (id != null && beginTransfer(rsp)) {
+			AtomicBoolean released = new AtomicBoolean();
+			try {
+				AsyncContext context = req.startAsync();
+				context.setTimeout(timeout);
+				ObjectUploadListener listener = new ObjectUploadListener(
+						repository, context, req, rsp, id);
+				track(context, listener::getTransferred, true, released);
+				req.getInputStream().setReadListener(listener);
+			} catch (IOException | RuntimeException e) {
+				endTransfer(released);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Set the maximum number of uploads and downloads served at once.
+	 * <p>
+	 * Further requests are answered with {@code 503 Service Unavailable}.
+	 *
+	 * @param max
+	 *            maximum number of concurrent transfers; 0 or less for no
+	 *            limit, which is the default.
+	 * @since 5.1
+	 */
+	public void setMaxConcurrentTransfers(int max) {
+		maxConcurrentTransfers = max;
+	}
+
+	/**
+	 * Get the number of uploads and downloads in progress
+	 *
+	 * @return the number of uploads and downloads in progress
+	 * @since 5.1
+	 */
+	public int getActiveTransfers() {
+		return activeTransfers.get();
+	}
+
+	/**
+	 * Get statistics about the transfers completed so far
+	 *
+	 * @return a snapshot of the transfer statistics
+	 * @since 5.1
+	 */
+	public TransferStatistics getStatistics() {
+		return statistics.copy();
+	}
+
+	private boolean beginTransfer(HttpServletResponse rsp)
+			throws IOException {
+		int active = activeTransfers.incrementAndGet();
+		if (0 < maxConcurrentTransfers && maxConcurrentTransfers < active) {
+			activeTransfers.decrementAndGet();
+			statistics.reject();
+			sendError(rsp, HttpStatus.SC_SERVICE_UNAVAILABLE,
+					LfsServerText.get().tooManyTransfers);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Release a transfer's slot taken by {@link #beginTransfer}.
+	 *
+	 * @param released
+	 *            whether the slot was released, so that it is released only
+	 *            once whether the transfer fails or completes.
+	 */
+	private void endTransfer(AtomicBoolean released) {
+		if (released.compareAndSet(false, true)) {
+			activeTransfers.decrementAndGet();
+		}
+	}
+
+	private void track(AsyncContext context, LongSupplier transferred,
+			boolean upload, AtomicBoolean released) {
+		long start = System.nanoTime();
+		context.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				long nanos = System.nanoTime() - start;
+				if (upload) {
+					statistics.upload(transferred.getAsLong(), nanos);
+				} else {
+					statistics.download(transferred.getAsLong(), nanos);
+				}
+				endTransfer(released);
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				// onComplete follows
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				// onComplete follows
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+				// not used
+			}
+		});
+	}
+
+	/**
+	 * Parse the value of a {@code Range} header.
+	 * <p>
+	 * Only a single range of bytes is supported, other ranges are ignored and
+	 * the whole object is sent.
+	 *
+	 * @param range
+	 *            value of the {@code Range} header
+	 * @param size
+	 *            size of the object
+	 * @return first and last position of the requested bytes; {@code null} if
+	 *         the header should be ignored; an empty array if the range cannot
+	 *         be satisfied.
+	 */
+	static long[] parseRange(String range, long size) {
+		String prefix = BYTES_UNIT + '=';
+		if (!range.startsWith(prefix) || range.indexOf(',') >= 0) {
+			return null;
+		}
+		String spec = range.substring(prefix.length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		try {
+			long first;
+			long last = size - 1;
+			if (dash == 0) {
+				// suffix range, the last n bytes
+				long n = Long.parseLong(spec.substring(1));
+				if (n <= 0) {
+					return new long[0];
+				}
+				first = Math.max(size - n, 0);
+			} else {
+				first = Long.parseLong(spec.substring(0, dash));
+				if (dash < spec.length() - 1) {
+					long end = Long.parseLong(spec.substring(dash + 1));
+					if (end < first) {
+						return null;
+					}
+					last = Math.min(end, last);
+				}
+			}
+			if (size <= first) {
+				return new long[0];
+			}
+			return new long[] { first, last };
+		} catch (NumberFormatException e) {
+			return null;
 		}
 	}
 
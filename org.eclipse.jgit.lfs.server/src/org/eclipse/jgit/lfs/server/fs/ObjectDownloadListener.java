@@ -44,9 +44,9 @@
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
+import java.text.MessageFormat;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -58,10 +58,18 @@
 import org.apache.http.HttpStatus;
 import org.eclipse.jgit.lfs.lib.AnyLongObjectId;
 import org.eclipse.jgit.lfs.lib.Constants;
+import org.eclipse.jgit.lfs.server.internal.LfsServerText;
 import org.eclipse.jgit.util.HttpSupport;
 
 /**
  * Handle asynchronous large object download.
+ * <p>
+ * Each time the response is ready, one chunk of file content at the current
+ * position is written to it with a single call, as the container may not
+ * accept another write before it is ready again. If the container's output
+ * stream is a {@link java.nio.channels.WritableByteChannel} the chunk is
+ * transferred by {@link java.nio.channels.FileChannel#transferTo}, letting the
+ * kernel copy it; otherwise it is read into a buffer and written.
  *
  * @since 4.7
  */
@@ -70,17 +78,26 @@ public class ObjectDownloadListener implements WriteListener {
 	private static Logger LOG = Logger
 			.getLogger(ObjectDownloadListener.class.getName());
 
+	/** Max number of bytes written while the response is ready. */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
 	private final AsyncContext context;
 
 	private final HttpServletResponse response;
 
 	private final ServletOutputStream out;
 
-	private final ReadableByteChannel in;
+	private final FileChannel in;
+
+	private final WritableByteChannel channel;
+
+	private final byte[] buffer;
 
-	private final WritableByteChannel outChannel;
+	private final long end;
 
-	private final ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+	private long position;
+
+	private volatile long transferred;
 
 	/**
 	 * <p>Constructor for ObjectDownloadListener.</p>
@@ -98,14 +115,46 @@ public class ObjectDownloadListener implements WriteListener {
 	public ObjectDownloadListener(FileLfsRepository repository,
 			AsyncContext context, HttpServletResponse response,
 			AnyLongObjectId id) throws IOException {
+		this(repository, context, response, id, 0, repository.getSize(id));
+	}
+
+	/**
+	 * Download a range of the object.
+	 *
+	 * @param repository
+	 *            the repository storing large objects
+	 * @param context
+	 *            the servlet asynchronous context
+	 * @param response
+	 *            the servlet response
+	 * @param id
+	 *            id of the object to be downloaded
+	 * @param offset
+	 *            position of the first byte to send
+	 * @param length
+	 *            number of bytes to send
+	 * @throws java.io.IOException
+	 */
+	ObjectDownloadListener(FileLfsRepository repository,
+			AsyncContext context, HttpServletResponse response,
+			AnyLongObjectId id, long offset, long length) throws IOException {
 		this.context = context;
 		this.response = response;
-		this.in = repository.getReadChannel(id);
 		this.out = response.getOutputStream();
-		this.outChannel = Channels.newChannel(out);
+		this.in = repository.getReadChannel(id);
+		if (out instanceof WritableByteChannel) {
+			this.channel = (WritableByteChannel) out;
+			this.buffer = null;
+		} else {
+			this.channel = null;
+			this.buffer = new byte[(int) Math
+					.min(CHUNK_SIZE, Math.max(length, 1))];
+		}
+		this.position = offset;
+		this.end = offset + length;
 
 		response.addHeader(HttpSupport.HDR_CONTENT_LENGTH,
-				String.valueOf(repository.getSize(id)));
+				String.valueOf(length));
 		response.setContentType(Constants.HDR_APPLICATION_OCTET_STREAM);
 	}
 
@@ -117,24 +166,53 @@ public ObjectDownloadListener(FileLfsRepository repository,
 	@Override
 	public void onWritePossible() throws IOException {
 		while (out.isReady()) {
-			if (in.read(buffer) != -1) {
-				buffer.flip();
-				outChannel.write(buffer);
-				buffer.compact();
+			if (position < end) {
+				long n = channel != null ? transferChunk() : writeChunk();
+				position += n;
+				transferred += n;
 			} else {
 				in.close();
-				buffer.flip();
-				while (out.isReady()) {
-					if (buffer.hasRemaining()) {
-						outChannel.write(buffer);
-					} else {
-						context.complete();
-					}
-				}
+				context.complete();
+				return;
 			}
 		}
 	}
 
+	private long transferChunk() throws IOException {
+		long n = in.transferTo(position, Math.min(end - position, CHUNK_SIZE),
+				channel);
+		if (n <= 0 && in.size() <= position) {
+			throw truncated();
+		}
+		return n;
+	}
+
+	private long writeChunk() throws IOException {
+		int n = in.read(ByteBuffer.wrap(buffer, 0,
+				(int) Math.min(end - position, buffer.length)), position);
+		if (n <= 0) {
+			throw truncated();
+		}
+		out.write(buffer, 0, n);
+		return n;
+	}
+
+	private IOException truncated() {
+		// The file was truncated while sending it.
+		return new IOException(MessageFormat.format(
+				LfsServerText.get().unexpectedEndOfObject,
+				Long.valueOf(position)));
+	}
+
+	/**
+	 * Get number of bytes written to the response so far
+	 *
+	 * @return number of bytes written to the response so far
+	 */
+	long getTransferred() {
+		return transferred;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
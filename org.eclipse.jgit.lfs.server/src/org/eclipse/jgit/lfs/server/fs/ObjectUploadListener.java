@@ -65,6 +65,9 @@
 
 /**
  * Handle asynchronous object upload.
+ * <p>
+ * The content's SHA-256 is computed while it is written to a temporary file,
+ * which only replaces the object if the hash matches its id.
  *
  * @since 4.6
  */
@@ -87,6 +90,8 @@ public class ObjectUploadListener implements ReadListener {
 
 	private final ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
 
+	private volatile long transferred;
+
 	/**
 	 * Constructor for ObjectUploadListener.
 	 *
@@ -126,12 +131,12 @@ public void onDataAvailable() throws IOException {
 		while (in.isReady()) {
 			if (inChannel.read(buffer) > 0) {
 				buffer.flip();
-				channel.write(buffer);
+				transferred += channel.write(buffer);
 				buffer.compact();
 			} else {
 				buffer.flip();
 				while (buffer.hasRemaining()) {
-					channel.write(buffer);
+					transferred += channel.write(buffer);
 				}
 				close();
 				return;
@@ -139,6 +144,15 @@ public void onDataAvailable() throws IOException {
 		}
 	}
 
+	/**
+	 * Get number of bytes written to the object so far
+	 *
+	 * @return number of bytes written to the object so far
+	 */
+	long getTransferred() {
+		return transferred;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void onAllDataRead() throws IOException {
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.lfs.server.fs;
+
+/**
+ * Statistics about the object transfers served by a
+ * {@link org.eclipse.jgit.lfs.server.fs.FileLfsServlet}.
+ *
+ * @since 5.1
+ */
+public class TransferStatistics {
+	private long downloads;
+
+	private long downloadedBytes;
+
+	private long downloadNanos;
+
+	private long uploads;
+
+	private long uploadedBytes;
+
+	private long uploadNanos;
+
+	private long rejected;
+
+	TransferStatistics() {
+	}
+
+	synchronized void download(long bytes, long nanos) {
+		downloads++;
+		downloadedBytes += bytes;
+		downloadNanos += nanos;
+	}
+
+	synchronized void upload(long bytes, long nanos) {
+		uploads++;
+		uploadedBytes += bytes;
+		uploadNanos += nanos;
+	}
+
+	synchronized void reject() {
+		rejected++;
+	}
+
+	synchronized TransferStatistics copy() {
+		TransferStatistics s = new TransferStatistics();
+		s.downloads = downloads;
+		s.downloadedBytes = downloadedBytes;
+		s.downloadNanos = downloadNanos;
+		s.uploads = uploads;
+		s.uploadedBytes = uploadedBytes;
+		s.uploadNanos = uploadNanos;
+		s.rejected = rejected;
+		return s;
+	}
+
+	/**
+	 * Get number of completed downloads
+	 *
+	 * @return number of completed downloads
+	 */
+	public long getDownloads() {
+		return downloads;
+	}
+
+	/**
+	 * Get number of bytes sent by completed downloads
+	 *
+	 * @return number of bytes sent by completed downloads
+	 */
+	public long getDownloadedBytes() {
+		return downloadedBytes;
+	}
+
+	/**
+	 * Get average download throughput
+	 *
+	 * @return bytes sent per second spent downloading, 0 if there were no
+	 *         downloads
+	 */
+	public double getDownloadThroughput() {
+		return throughput(downloadedBytes, downloadNanos);
+	}
+
+	/**
+	 * Get number of completed uploads
+	 *
+	 * @return number of completed uploads
+	 */
+	public long getUploads() {
+		return uploads;
+	}
+
+	/**
+	 * Get number of bytes received by completed uploads
+	 *
+	 * @return number of bytes received by completed uploads
+	 */
+	public long getUploadedBytes() {
+		return uploadedBytes;
+	}
+
+	/**
+	 * Get average upload throughput
+	 *
+	 * @return bytes received per second spent uploading, 0 if there were no
+	 *         uploads
+	 */
+	public double getUploadThroughput() {
+		return throughput(uploadedBytes, uploadNanos);
+	}
+
+	/**
+	 * Get number of transfers rejected because too many were in progress
+	 *
+	 * @return number of transfers rejected because too many were in progress
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+
+	private static double throughput(long bytes, long nanos) {
+		if (nanos <= 0) {
+			return 0;
+		}
+		return bytes * 1e9 / nanos;
+	}
+}
@@ -63,11 +63,14 @@ public static LfsServerText get() {
 	/***/ public String failedToCalcSignature;
 	/***/ public String invalidPathInfo;
 	/***/ public String objectNotFound;
+	/***/ public String rangeNotSatisfiable;
+	/***/ public String tooManyTransfers;
 	/***/ public String undefinedS3AccessKey;
 	/***/ public String undefinedS3Bucket;
 	/***/ public String undefinedS3Region;
 	/***/ public String undefinedS3SecretKey;
 	/***/ public String undefinedS3StorageClass;
+	/***/ public String unexpectedEndOfObject;
 	/***/ public String unparsableEndpoint;
 	/***/ public String unsupportedOperation;
 	/***/ public String unsupportedUtf8;
@@ -57,6 +57,7 @@
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -72,6 +73,7 @@
 import org.eclipse.jgit.lfs.errors.CorruptMediaFile;
 import org.eclipse.jgit.lfs.internal.LfsConnectionFactory;
 import org.eclipse.jgit.lfs.internal.LfsText;
+import org.eclipse.jgit.lfs.internal.LfsTransfers;
 import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
@@ -220,6 +222,7 @@ private Map<String, LfsPointer> requestBatchUpload(HttpConnection api,
 
 	private void uploadContents(HttpConnection api,
 			Map<String, LfsPointer> oid2ptr) throws IOException {
+		List<LfsTransfers.Transfer> transfers = new ArrayList<>();
 		try (JsonReader reader = new JsonReader(
 				new InputStreamReader(api.getInputStream()))) {
 			for (Protocol.ObjectInfo o : parseObjects(reader)) {
@@ -242,9 +245,10 @@ private void uploadContents(HttpConnection api,
 					throw new IOException(MessageFormat
 							.format(LfsText.get().missingLocalObject, path));
 				}
-				uploadFile(o, uploadAction, path);
+				transfers.add(() -> uploadFile(o, uploadAction, path));
 			}
 		}
+		LfsTransfers.runAll(getRepository(), transfers);
 	}
 
 	private List<ObjectInfo> parseObjects(JsonReader reader) {
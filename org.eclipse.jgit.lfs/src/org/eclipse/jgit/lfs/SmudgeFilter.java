@@ -42,7 +42,9 @@
  */
 package org.eclipse.jgit.lfs;
 
+import static java.net.HttpURLConnection.HTTP_PARTIAL;
 import static org.eclipse.jgit.lib.Constants.CHARSET;
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -50,22 +52,41 @@
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.eclipse.jgit.attributes.FilterCommand;
 import org.eclipse.jgit.attributes.FilterCommandFactory;
 import org.eclipse.jgit.attributes.FilterCommandRegistry;
+import org.eclipse.jgit.lfs.errors.CorruptLongObjectException;
 import org.eclipse.jgit.lfs.internal.LfsConnectionFactory;
 import org.eclipse.jgit.lfs.internal.LfsText;
+import org.eclipse.jgit.lfs.internal.LfsTransfers;
 import org.eclipse.jgit.lfs.lib.AnyLongObjectId;
 import org.eclipse.jgit.lfs.lib.Constants;
+import org.eclipse.jgit.lfs.lib.LongObjectId;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.http.HttpConnection;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.FileUtils;
 import org.eclipse.jgit.util.HttpSupport;
+import org.eclipse.jgit.util.io.NullOutputStream;
 
 import com.google.gson.Gson;
 import com.google.gson.stream.JsonReader;
@@ -88,6 +109,15 @@ public class SmudgeFilter extends FilterCommand {
 	 */
 	private static final int MAX_COPY_BYTES = 1024 * 1024 * 256;
 
+	/**
+	 * Max number of objects in a single batch API request.
+	 */
+	private static final int BATCH_SIZE = 100;
+
+	private static final String PARTIAL_SUFFIX = ".part"; //$NON-NLS-1$
+
+	private static final String ENCODING_IDENTITY = "identity"; //$NON-NLS-1$
+
 	/**
 	 * The factory is responsible for creating instances of
 	 * {@link org.eclipse.jgit.lfs.SmudgeFilter}
@@ -145,6 +175,15 @@ public SmudgeFilter(Repository db, InputStream in, OutputStream out)
 
 	/**
 	 * Download content which is hosted on a LFS server
+	 * <p>
+	 * The objects are requested in batches of {@value #BATCH_SIZE} and their
+	 * content is downloaded in parallel, see {@code lfs.concurrenttransfers}.
+	 * Content is first written to a partial file in the LFS temporary
+	 * directory and only moved to its media file once its length and hash
+	 * have been verified. If a download is interrupted the partial file is
+	 * kept and the next download resumes it with a range request. If the
+	 * resumed content does not match the object, it is downloaded once more
+	 * from the start.
 	 *
 	 * @param lfs
 	 *            local {@link Lfs} storage.
@@ -158,7 +197,72 @@ public SmudgeFilter(Repository db, InputStream in, OutputStream out)
 	 */
 	public static Collection<Path> downloadLfsResource(Lfs lfs, Repository db,
 			LfsPointer... res) throws IOException {
-		Collection<Path> downloadedPaths = new ArrayList<>();
+		Collection<Path> downloadedPaths = Collections
+				.synchronizedList(new ArrayList<>());
+		List<LfsTransfers.Transfer> transfers = new ArrayList<>();
+		for (int i = 0; i < res.length; i += BATCH_SIZE) {
+			LfsPointer[] batch = Arrays.copyOfRange(res, i,
+					Math.min(i + BATCH_SIZE, res.length));
+			requestBatchDownload(lfs, db, batch, downloadedPaths, transfers);
+		}
+		LfsTransfers.runAll(db, transfers);
+		return downloadedPaths;
+	}
+
+	/**
+	 * Download the content of all LFS pointers in a tree which is not yet
+	 * present in the local LFS storage.
+	 * <p>
+	 * Calling this before checking out the tree fetches all its LFS objects
+	 * in batches and in parallel, instead of one at a time while the smudge
+	 * filter runs for each file.
+	 *
+	 * @param db
+	 *            the repository to work with
+	 * @param tree
+	 *            the tree, or a commit, whose LFS objects should be downloaded
+	 * @return the paths of all mediafiles which have been downloaded
+	 * @throws IOException
+	 * @since 5.1
+	 */
+	public static Collection<Path> downloadLfsResources(Repository db,
+			AnyObjectId tree) throws IOException {
+		Lfs lfs = new Lfs(db);
+		Set<LfsPointer> missing = new TreeSet<>();
+		try (RevWalk rw = new RevWalk(db);
+				TreeWalk walk = new TreeWalk(rw.getObjectReader())) {
+			ObjectReader r = rw.getObjectReader();
+			walk.addTree(rw.parseTree(tree));
+			walk.setRecursive(true);
+			while (walk.next()) {
+				if (walk.getFileMode(0).getObjectType() != OBJ_BLOB) {
+					continue;
+				}
+				ObjectId id = walk.getObjectId(0);
+				if (r.getObjectSize(id,
+						OBJ_BLOB) >= LfsPointer.SIZE_THRESHOLD) {
+					continue;
+				}
+				LfsPointer ptr;
+				try (InputStream is = r.open(id, OBJ_BLOB).openStream()) {
+					ptr = LfsPointer.parseLfsPointer(is);
+				}
+				if (ptr != null
+						&& !Files.exists(lfs.getMediaFile(ptr.getOid()))) {
+					missing.add(ptr);
+				}
+			}
+		}
+		if (missing.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return downloadLfsResource(lfs, db,
+				missing.toArray(new LfsPointer[missing.size()]));
+	}
+
+	private static void requestBatchDownload(Lfs lfs, Repository db,
+			LfsPointer[] res, Collection<Path> downloadedPaths,
+			List<LfsTransfers.Transfer> transfers) throws IOException {
 		Map<String, LfsPointer> oidStr2ptr = new HashMap<>();
 		for (LfsPointer p : res) {
 			oidStr2ptr.put(p.getOid().name(), p);
@@ -208,35 +312,137 @@ public static Collection<Path> downloadLfsResource(Lfs lfs, Repository db,
 				if (downloadAction == null || downloadAction.href == null) {
 					continue;
 				}
+				transfers.add(() -> downloadedPaths
+						.add(download(lfs, db, ptr, downloadAction)));
+			}
+		}
+	}
+
+	private static Path download(Lfs lfs, Repository db, LfsPointer ptr,
+			Protocol.Action downloadAction) throws IOException {
+		Path path = lfs.getMediaFile(ptr.getOid());
+		if (Files.exists(path)) {
+			return path;
+		}
+		Path partial = lfs.getLfsTmpDir()
+				.resolve(ptr.getOid().name() + PARTIAL_SUFFIX);
+		Files.createDirectories(partial.getParent());
+		long offset = Files.exists(partial) ? Files.size(partial) : 0;
+		if (offset >= ptr.getSize()) {
+			// Nothing left to resume, the partial file is stale.
+			Files.delete(partial);
+			offset = 0;
+		}
 
-				HttpConnection contentServerConn = LfsConnectionFactory
-						.getLfsContentConnection(db, downloadAction,
-								HttpSupport.METHOD_GET);
+		try {
+			fetch(db, ptr, downloadAction, partial, offset);
+		} catch (CorruptLongObjectException e) {
+			if (offset == 0) {
+				throw e;
+			}
+			// The partial file did not belong to the object, start over.
+			fetch(db, ptr, downloadAction, partial, 0);
+		}
+		Files.createDirectories(path.getParent());
+		FileUtils.rename(partial.toFile(), path.toFile(),
+				StandardCopyOption.ATOMIC_MOVE);
+		return path;
+	}
 
-				responseCode = contentServerConn.getResponseCode();
-				if (responseCode != HttpConnection.HTTP_OK) {
-					throw new IOException(
-							MessageFormat.format(LfsText.get().serverFailure,
-									contentServerConn.getURL(),
-									Integer.valueOf(responseCode)));
-				}
-				Path path = lfs.getMediaFile(ptr.getOid());
-				path.getParent().toFile().mkdirs();
-				try (InputStream contentIn = contentServerConn
-						.getInputStream()) {
-					long bytesCopied = Files.copy(contentIn, path);
-					if (bytesCopied != o.size) {
-						throw new IOException(MessageFormat.format(
-								LfsText.get().wrongAmoutOfDataReceived,
-								contentServerConn.getURL(),
-								Long.valueOf(bytesCopied),
-								Long.valueOf(o.size)));
-					}
-					downloadedPaths.add(path);
-				}
+	/**
+	 * Download an object into its partial file and verify its content.
+	 *
+	 * @param db
+	 *            the repository
+	 * @param ptr
+	 *            the object to download
+	 * @param downloadAction
+	 *            the download action returned by the LFS server
+	 * @param partial
+	 *            the partial file
+	 * @param offset
+	 *            length of the partial file to resume, 0 to download the
+	 *            whole object
+	 * @throws CorruptLongObjectException
+	 *             the content does not match the object id; the partial file
+	 *             was deleted
+	 * @throws IOException
+	 *             the object could not be downloaded
+	 */
+	private static void fetch(Repository db, LfsPointer ptr,
+			Protocol.Action downloadAction, Path partial, long offset)
+			throws IOException {
+		HttpConnection contentServerConn = LfsConnectionFactory
+				.getLfsContentConnection(db, downloadAction,
+						HttpSupport.METHOD_GET);
+		if (offset > 0) {
+			contentServerConn.setRequestProperty(HttpSupport.HDR_RANGE,
+					"bytes=" + offset + '-'); //$NON-NLS-1$
+			// Ranges apply to the encoded content, keep it unencoded.
+			contentServerConn.setRequestProperty(
+					HttpSupport.HDR_ACCEPT_ENCODING, ENCODING_IDENTITY);
+		}
+		int responseCode = contentServerConn.getResponseCode();
+		if (responseCode == HttpConnection.HTTP_OK) {
+			// The server ignored the range, start over.
+			offset = 0;
+		} else if (responseCode != HTTP_PARTIAL
+				|| !isRangeFrom(contentServerConn, offset)) {
+			throw new IOException(
+					MessageFormat.format(LfsText.get().serverFailure,
+							contentServerConn.getURL(),
+							Integer.valueOf(responseCode)));
+		}
+
+		MessageDigest md = Constants.newMessageDigest();
+		if (offset > 0) {
+			try (InputStream prefix = Files.newInputStream(partial)) {
+				copy(prefix, new DigestOutputStream(
+						NullOutputStream.INSTANCE, md));
 			}
 		}
-		return downloadedPaths;
+		long received = offset;
+		try (InputStream contentIn = contentServerConn.getInputStream();
+				OutputStream out = new DigestOutputStream(offset > 0
+						? Files.newOutputStream(partial,
+								StandardOpenOption.APPEND)
+						: Files.newOutputStream(partial), md)) {
+			received += copy(contentIn, out);
+		}
+		if (received != ptr.getSize()) {
+			if (received > ptr.getSize()) {
+				Files.delete(partial);
+			}
+			throw new IOException(MessageFormat.format(
+					LfsText.get().wrongAmoutOfDataReceived,
+					contentServerConn.getURL(), Long.valueOf(received),
+					Long.valueOf(ptr.getSize())));
+		}
+		AnyLongObjectId contentHash = LongObjectId.fromRaw(md.digest());
+		if (!contentHash.equals(ptr.getOid())) {
+			Files.delete(partial);
+			throw new CorruptLongObjectException(ptr.getOid(), contentHash,
+					MessageFormat.format(LfsText.get().corruptLongObject,
+							contentHash, ptr.getOid()));
+		}
+	}
+
+	private static boolean isRangeFrom(HttpConnection c, long offset) {
+		String range = c.getHeaderField(HttpSupport.HDR_CONTENT_RANGE);
+		return range != null
+				&& range.startsWith("bytes " + offset + '-'); //$NON-NLS-1$
+	}
+
+	private static long copy(InputStream in, OutputStream out)
+			throws IOException {
+		byte[] buf = new byte[8192];
+		long total = 0;
+		int n;
+		while ((n = in.read(buf)) != -1) {
+			out.write(buf, 0, n);
+			total += n;
+		}
+		return total;
 	}
 
 	/** {@inheritDoc} */
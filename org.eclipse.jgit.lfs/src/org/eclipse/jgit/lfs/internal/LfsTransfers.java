@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.lfs.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Runs the object transfers of one LFS batch, several at a time.
+ * <p>
+ * The number of transfers running in parallel is read from
+ * {@code lfs.concurrenttransfers}, the same key used by git-lfs.
+ */
+public class LfsTransfers {
+	/** Number of parallel transfers if not configured. */
+	public static final int DEFAULT_CONCURRENT_TRANSFERS = 3;
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	/** A single object transfer. */
+	@FunctionalInterface
+	public interface Transfer {
+		/**
+		 * Transfer the object.
+		 *
+		 * @throws IOException
+		 *             the transfer failed.
+		 */
+		void run() throws IOException;
+	}
+
+	/**
+	 * Get the number of transfers to run in parallel.
+	 *
+	 * @param db
+	 *            the repository to read the configuration from
+	 * @return number of parallel transfers, at least 1.
+	 */
+	public static int getConcurrentTransfers(Repository db) {
+		int n = db.getConfig().getInt(ConfigConstants.CONFIG_SECTION_LFS,
+				ConfigConstants.CONFIG_KEY_CONCURRENT_TRANSFERS,
+				DEFAULT_CONCURRENT_TRANSFERS);
+		return Math.max(n, 1);
+	}
+
+	/**
+	 * Run all transfers and wait for them to complete.
+	 * <p>
+	 * If a transfer fails the transfers not yet started are cancelled, and
+	 * the first failure is thrown once the running ones have finished.
+	 *
+	 * @param db
+	 *            the repository the transfers are for
+	 * @param transfers
+	 *            the transfers to run
+	 * @throws IOException
+	 *             a transfer failed.
+	 */
+	public static void runAll(Repository db, List<Transfer> transfers)
+			throws IOException {
+		int threads = Math.min(getConcurrentTransfers(db), transfers.size());
+		if (threads <= 1) {
+			for (Transfer t : transfers) {
+				t.run();
+			}
+			return;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads,
+				newThreadFactory());
+		try {
+			List<Future<Void>> running = new ArrayList<>(transfers.size());
+			for (Transfer t : transfers) {
+				running.add(pool.submit(() -> {
+					t.run();
+					return null;
+				}));
+			}
+
+			IOException err = null;
+			for (Future<Void> f : running) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					if (err == null) {
+						err = toIOException(e.getCause());
+						cancel(running);
+					}
+				} catch (CancellationException e) {
+					// Skipped after an earlier failure.
+				}
+			}
+			if (err != null) {
+				throw err;
+			}
+		} catch (InterruptedException e) {
+			InterruptedIOException err = new InterruptedIOException();
+			err.initCause(e);
+			throw err;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static void cancel(List<Future<Void>> running) {
+		for (Future<Void> f : running) {
+			f.cancel(false);
+		}
+	}
+
+	private static IOException toIOException(Throwable cause) {
+		if (cause instanceof IOException) {
+			return (IOException) cause;
+		} else if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		} else if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new IOException(cause);
+	}
+
+	private static ThreadFactory newThreadFactory() {
+		return r -> {
+			Thread t = new Thread(r,
+					"JGit-LFS-Transfer-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	private LfsTransfers() {
+	}
+}
@@ -44,11 +44,22 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.blame.BlameCache;
 import org.eclipse.jgit.blame.BlameGenerator;
 import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.blame.FileBlameCache;
+import org.eclipse.jgit.blame.InMemoryBlameCache;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.RenameDetector;
 import org.eclipse.jgit.junit.RepositoryTestCase;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -197,6 +208,86 @@ public void testLinesAllDeletedShortenedWalk() throws Exception {
 		}
 	}
 
+	@Test
+	public void testBlameCache() throws Exception {
+		try (Git git = new Git(db)) {
+			writeTrashFile("file.txt", join("a", "b", "c"));
+			git.add().addFilepattern("file.txt").call();
+			RevCommit c1 = git.commit().setMessage("create file").call();
+
+			writeTrashFile("file.txt", join("x", "a", "b", "c"));
+			git.add().addFilepattern("file.txt").call();
+			RevCommit c2 = git.commit().setMessage("insert x").call();
+
+			InMemoryBlameCache cache = new InMemoryBlameCache(100);
+			BlameResult r2 = blame(c2, cache);
+			assertEquals(c2, r2.getSourceCommit(0));
+			assertEquals(c1, r2.getSourceCommit(3));
+			List<BlameCache.Entry> cached = cache.get(key(c2));
+			assertEquals(2, cached.size());
+			assertEquals(c2, cached.get(0).getSourceCommit());
+			assertEquals(1, cached.get(0).getLength());
+			assertEquals(c1, cached.get(1).getSourceCommit());
+			assertEquals(1, cached.get(1).getResultStart());
+			assertEquals(0, cached.get(1).getSourceStart());
+
+			writeTrashFile("file.txt", join("x", "a", "B", "c", "d"));
+			git.add().addFilepattern("file.txt").call();
+			RevCommit c3 = git.commit().setMessage("change b").call();
+
+			BlameResult expect = blame(c3, null);
+			BlameResult actual = blame(c3, cache);
+			for (int i = 0; i < 5; i++) {
+				assertEquals(expect.getSourceCommit(i),
+						actual.getSourceCommit(i));
+				assertEquals(expect.getSourceLine(i), actual.getSourceLine(i));
+				assertEquals(expect.getSourcePath(i), actual.getSourcePath(i));
+			}
+			assertEquals(5, cache.get(key(c3)).size());
+
+			// A blame ignoring whitespace is cached separately.
+			try (BlameGenerator generator = new BlameGenerator(db,
+					"file.txt")) {
+				generator.setTextComparator(RawTextComparator.WS_IGNORE_ALL);
+				generator.setBlameCache(cache);
+				generator.push(null, c3);
+				generator.computeBlameResult();
+			}
+			assertEquals(5, cache.get(key(c3)).size());
+			assertNotNull(cache.get(new BlameCache.Key(c3, "file.txt",
+					new HistogramDiff(), RawTextComparator.WS_IGNORE_ALL, renameScore())));
+
+			// History behind a cached commit is not walked again.
+			FileBlameCache files = new FileBlameCache(
+					new File(db.getDirectory(), "blame-cache"));
+			files.put(key(c2), Collections.singletonList(
+					new BlameCache.Entry(0, 4, c2, "old.txt", 10)));
+			BlameResult shortcut = blame(c3, files);
+			assertEquals(c2, shortcut.getSourceCommit(3));
+			assertEquals("old.txt", shortcut.getSourcePath(3));
+			assertEquals(13, shortcut.getSourceLine(3));
+			assertEquals(c3, shortcut.getSourceCommit(4));
+		}
+	}
+
+	private BlameCache.Key key(RevCommit commit) {
+		return new BlameCache.Key(commit, "file.txt", new HistogramDiff(),
+				RawTextComparator.DEFAULT, renameScore());
+	}
+
+	private int renameScore() {
+		return new RenameDetector(db).getRenameScore();
+	}
+
+	private BlameResult blame(RevCommit start, BlameCache cache)
+			throws Exception {
+		try (BlameGenerator generator = new BlameGenerator(db, "file.txt")) {
+			generator.setBlameCache(cache);
+			generator.push(null, start);
+			return generator.computeBlameResult();
+		}
+	}
+
 	private static String join(String... lines) {
 		StringBuilder joined = new StringBuilder();
 		for (String line : lines)
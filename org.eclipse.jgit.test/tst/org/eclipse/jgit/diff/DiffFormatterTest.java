@@ -44,16 +44,23 @@
 package org.eclipse.jgit.diff;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.dircache.DirCacheIterator;
 import org.eclipse.jgit.junit.RepositoryTestCase;
 import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.FileMode;
@@ -408,6 +415,116 @@ public void testDiff() throws Exception {
 		}
 	}
 
+	@Test
+	public void testFormatConcurrently() throws Exception {
+		TestRepository<Repository>.CommitBuilder a = testDb.commit();
+		TestRepository<Repository>.CommitBuilder b = testDb.commit();
+		for (int i = 0; i < 20; i++) {
+			a.add("f" + i, "line 1\nline 2\nfile " + i + "\n");
+			b.add("f" + i, "line 1\nline 2 changed\nfile " + i + "\n");
+		}
+		a.add("binary", "\0binary\n");
+		b.add("binary", "\0changed\n");
+		a.add("deleted", "gone\n");
+		b.add("added", "new\n");
+		RevCommit oldCommit = a.create();
+		RevCommit newCommit = b.create();
+
+		String sequential = formatConcurrently(oldCommit, newCommit, null);
+		assertTrue(sequential.contains("Binary files differ"));
+		ExecutorService pool = Executors.newFixedThreadPool(3);
+		try {
+			assertEquals(sequential,
+					formatConcurrently(oldCommit, newCommit, pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private String formatConcurrently(RevCommit a, RevCommit b,
+			Executor executor) throws Exception {
+		try (ByteArrayOutputStream os = new ByteArrayOutputStream();
+				DiffFormatter dfmt = new DiffFormatter(os)) {
+			dfmt.setRepository(db);
+			dfmt.setExecutor(executor);
+			dfmt.setMaxInFlightBytes(100);
+			dfmt.format(a.getTree(), b.getTree());
+			dfmt.flush();
+			return os.toString("UTF-8");
+		}
+	}
+
+	@Test
+	public void testStreamLargeFiles() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 200; i++)
+			text.append("line " + i + "\n");
+		String oldText = text.toString();
+		String newText = oldText.replace("line 10\n", "line ten\n")
+				.replace("line 150\n", "") + "no newline";
+		DiffEntry ent = DiffEntry.modify("large");
+		ent.oldId = AbbreviatedObjectId.fromObjectId(blob(oldText));
+		ent.newId = AbbreviatedObjectId.fromObjectId(blob(newText));
+		ent.oldMode = FileMode.REGULAR_FILE;
+		ent.newMode = FileMode.REGULAR_FILE;
+		DiffEntry bin = DiffEntry.modify("binary");
+		bin.oldId = AbbreviatedObjectId.fromObjectId(blob("\0" + oldText));
+		bin.newId = AbbreviatedObjectId.fromObjectId(blob("\0" + newText));
+		bin.oldMode = FileMode.REGULAR_FILE;
+		bin.newMode = FileMode.REGULAR_FILE;
+		List<DiffEntry> entries = Arrays.asList(bin, ent);
+
+		String expected = formatLarge(entries, Integer.MAX_VALUE, false);
+		assertTrue(expected.contains("+line ten\n"));
+		assertTrue(formatLarge(entries, 100, false)
+				.endsWith("Binary files differ\n"));
+		assertEquals(expected, formatLarge(entries, 100, true));
+
+		// Only exact line comparison can be streamed.
+		assertTrue(formatLarge(entries, 100, true,
+				RawTextComparator.WS_IGNORE_ALL)
+						.endsWith("Binary files differ\n"));
+	}
+
+	@Test
+	public void testStreamLargeFilesLongLines() throws Exception {
+		StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i < 3000; i++)
+			longLine.append("long " + i);
+		String oldText = "a\n" + longLine + "\nb\n" + longLine + "x\nc\n";
+		String newText = "a\n" + longLine + "\nB\n" + longLine + "y";
+		DiffEntry ent = DiffEntry.modify("long");
+		ent.oldId = AbbreviatedObjectId.fromObjectId(blob(oldText));
+		ent.newId = AbbreviatedObjectId.fromObjectId(blob(newText));
+		ent.oldMode = FileMode.REGULAR_FILE;
+		ent.newMode = FileMode.REGULAR_FILE;
+		List<DiffEntry> entries = Arrays.asList(ent);
+
+		String expected = formatLarge(entries, Integer.MAX_VALUE, false);
+		assertTrue(expected.contains("+" + longLine + "y\n"));
+		assertEquals(expected, formatLarge(entries, 100, true));
+	}
+
+	private String formatLarge(List<DiffEntry> entries, int threshold,
+			boolean stream) throws Exception {
+		return formatLarge(entries, threshold, stream,
+				RawTextComparator.DEFAULT);
+	}
+
+	private String formatLarge(List<DiffEntry> entries, int threshold,
+			boolean stream, RawTextComparator cmp) throws Exception {
+		try (ByteArrayOutputStream os = new ByteArrayOutputStream();
+				DiffFormatter dfmt = new DiffFormatter(os)) {
+			dfmt.setRepository(db);
+			dfmt.setDiffComparator(cmp);
+			dfmt.setBinaryFileThreshold(threshold);
+			dfmt.setStreamLargeFiles(stream);
+			dfmt.format(entries);
+			dfmt.flush();
+			return os.toString("UTF-8");
+		}
+	}
+
 	@Test
 	public void testDiffRootNullToTree() throws Exception {
 		write(new File(db.getDirectory().getParent(), "test.txt"), "test");
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.eclipse.jgit.junit.RepositoryTestCase;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EditListCacheTest extends RepositoryTestCase {
+	private TestRepository<Repository> testDb;
+
+	private ObjectId a;
+
+	private ObjectId b;
+
+	private EditListCache.Key key;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		testDb = new TestRepository<>(db);
+		a = testDb.blob("a\nb\nc\n").copy();
+		b = testDb.blob("a\nB\nc\n").copy();
+		key = new EditListCache.Key(a, b, new HistogramDiff(),
+				RawTextComparator.DEFAULT);
+	}
+
+	@Test
+	public void testInMemoryReturnsCopies() throws Exception {
+		InMemoryEditListCache cache = new InMemoryEditListCache(10);
+		EditList edits = edits(new Edit(1, 2, 1, 2));
+		cache.put(key, edits);
+		edits.clear();
+
+		EditList cached = cache.get(key);
+		assertEquals(edits(new Edit(1, 2, 1, 2)), cached);
+		cached.get(0).extendA();
+		assertEquals(edits(new Edit(1, 2, 1, 2)), cache.get(key));
+	}
+
+	@Test
+	public void testInMemoryEvictsLeastRecentlyUsed() throws Exception {
+		InMemoryEditListCache cache = new InMemoryEditListCache(3);
+		EditListCache.Key other = new EditListCache.Key(b, a,
+				new HistogramDiff(), RawTextComparator.DEFAULT);
+		EditListCache.Key ws = new EditListCache.Key(a, b,
+				new HistogramDiff(), RawTextComparator.WS_IGNORE_ALL);
+		cache.put(key, edits(new Edit(0, 1, 0, 1)));
+		cache.put(other, edits(new Edit(1, 2, 1, 2)));
+		cache.get(key);
+		cache.put(ws, edits(new Edit(0, 1, 0, 1), new Edit(2, 3, 2, 3)));
+
+		assertEquals(edits(new Edit(0, 1, 0, 1)), cache.get(key));
+		assertNull(cache.get(other));
+		assertEquals(2, cache.get(ws).size());
+	}
+
+	@Test
+	public void testFileCache() throws Exception {
+		File dir = new File(db.getDirectory(), "editlists");
+		FileEditListCache cache = new FileEditListCache(dir);
+		assertNull(cache.get(key));
+
+		EditList edits = edits(new Edit(1, 2, 1, 2), new Edit(5, 5, 5, 7));
+		cache.put(key, edits);
+		assertEquals(edits, cache.get(key));
+		assertEquals(edits, new FileEditListCache(dir).get(key));
+		assertNull(cache.get(new EditListCache.Key(a, b, MyersDiff.INSTANCE,
+				RawTextComparator.DEFAULT)));
+	}
+
+	@Test
+	public void testFormatterUsesCache() throws Exception {
+		InMemoryEditListCache cache = new InMemoryEditListCache(10);
+		DiffEntry ent = DiffEntry.modify("f");
+		ent.oldId = AbbreviatedObjectId.fromObjectId(a);
+		ent.newId = AbbreviatedObjectId.fromObjectId(b);
+		ent.oldMode = FileMode.REGULAR_FILE;
+		ent.newMode = FileMode.REGULAR_FILE;
+
+		assertTrue(format(ent, cache).contains("-b\n+B\n"));
+		assertEquals(edits(new Edit(1, 2, 1, 2)), cache.get(key));
+
+		// A cached list is trusted instead of running the algorithm.
+		cache.put(key, edits(new Edit(0, 1, 0, 1)));
+		assertTrue(format(ent, cache).contains("-a\n+a\n"));
+	}
+
+	private String format(DiffEntry ent, EditListCache cache)
+			throws Exception {
+		try (ByteArrayOutputStream os = new ByteArrayOutputStream();
+				DiffFormatter df = new DiffFormatter(os)) {
+			df.setRepository(db);
+			df.setEditListCache(cache);
+			df.format(ent);
+			df.flush();
+			return os.toString("UTF-8");
+		}
+	}
+
+	private static EditList edits(Edit... edits) {
+		EditList r = new EditList();
+		for (Edit e : edits)
+			r.add(e);
+		return r;
+	}
+}
@@ -48,8 +48,12 @@
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.junit.RepositoryTestCase;
@@ -621,6 +625,53 @@ public void testRenameLimit() throws Exception {
 		assertSame(d, entries.get(3));
 	}
 
+	@Test
+	public void testMinHash_FindsSameRenames() throws Exception {
+		List<String> full = minHashRenames(0, null);
+		assertEquals(24, full.size());
+		assertEquals(full, minHashRenames(1, null));
+	}
+
+	@Test
+	public void testMinHash_Executor() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			assertEquals(minHashRenames(0, null), minHashRenames(1, pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private List<String> minHashRenames(int limit, Executor executor)
+			throws Exception {
+		rd.reset();
+		rd.setMinHashLimit(limit);
+		rd.setExecutor(executor);
+		for (int i = 0; i < 20; i++) {
+			StringBuilder content = new StringBuilder();
+			for (int line = 0; line < 10; line++)
+				content.append("file " + i + " line " + line + "\n");
+			rd.add(DiffEntry.delete("old/f" + i, blob(content.toString())));
+			content.append("appended\n");
+			rd.add(DiffEntry.add("new/g" + i, blob(content.toString())));
+		}
+		rd.add(DiffEntry.delete("old/x", blob("unrelated\ncontent\n")));
+		rd.add(DiffEntry.delete("old/y", blob("")));
+		rd.add(DiffEntry.add("new/x", blob("something\nelse\n")));
+		rd.add(DiffEntry.add("new/y", blob("a\nb\nc\n")));
+
+		List<String> r = new ArrayList<>();
+		for (DiffEntry e : rd.compute()) {
+			if (e.getNewPath().startsWith("new/g")) {
+				assertEquals(ChangeType.RENAME, e.getChangeType());
+				assertEquals("old/f" + e.getNewPath().substring(5),
+						e.getOldPath());
+			}
+			r.add(e.toString() + " " + e.getScore());
+		}
+		return r;
+	}
+
 	private ObjectId blob(String content) throws Exception {
 		return testDb.blob(content).copy();
 	}
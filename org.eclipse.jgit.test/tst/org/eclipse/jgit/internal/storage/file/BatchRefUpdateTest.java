@@ -64,6 +64,7 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -852,6 +853,140 @@ public void atomicUpdateRespectsInProcessLock() throws Exception {
 				"refs/heads/branch", B);
 	}
 
+	@Test
+	public void groupCommit() throws Exception {
+		assumeTrue(atomic);
+		setGroupCommitRefs();
+
+		writeLooseRef("refs/heads/master", A);
+		writeLooseRef("refs/heads/stale", B);
+
+		List<ReceiveCommand> cmds1 = Arrays.asList(
+				new ReceiveCommand(A, B, "refs/heads/master", UPDATE),
+				new ReceiveCommand(zeroId(), B, "refs/heads/one", CREATE));
+		List<ReceiveCommand> cmds2 = Arrays.asList(
+				new ReceiveCommand(zeroId(), A, "refs/heads/two", CREATE),
+				new ReceiveCommand(zeroId(), B, "refs/heads/twos", CREATE));
+		List<ReceiveCommand> cmds3 = Arrays.asList(
+				new ReceiveCommand(zeroId(), A, "refs/heads/three", CREATE),
+				new ReceiveCommand(zeroId(), B, "refs/heads/threes", CREATE));
+		List<ReceiveCommand> cmds4 = Arrays.asList(
+				new ReceiveCommand(zeroId(), A, "refs/heads/four", CREATE),
+				new ReceiveCommand(A, B, "refs/heads/stale", UPDATE));
+
+		// The first batch leads alone; the others queue up behind it and are
+		// committed together by the next leader.
+		executeConcurrently(cmds1, cmds2, cmds3, cmds4);
+
+		assertResults(cmds1, OK, OK);
+		assertResults(cmds2, OK, OK);
+		assertResults(cmds3, OK, OK);
+		assertResults(cmds4, TRANSACTION_ABORTED, LOCK_FAILURE);
+		assertRefs(
+				"refs/heads/master", B,
+				"refs/heads/one", B,
+				"refs/heads/stale", B,
+				"refs/heads/three", A,
+				"refs/heads/threes", B,
+				"refs/heads/two", A,
+				"refs/heads/twos", B);
+		assertEquals(3, refsChangedEvents);
+		assertReflogEquals(reflog(zeroId(), A, new PersonIdent(diskRepo),
+				"group"), getLastReflog("refs/heads/two"));
+		assertReflogEquals(reflog(zeroId(), B, new PersonIdent(diskRepo),
+				"group"), getLastReflog("refs/heads/threes"));
+		assertNull(getLastReflog("refs/heads/four"));
+	}
+
+	@Test
+	public void groupCommitConflictingNames() throws Exception {
+		assumeTrue(atomic);
+		setGroupCommitRefs();
+
+		writeLooseRef("refs/heads/master", A);
+
+		List<ReceiveCommand> cmds1 = Arrays.asList(
+				new ReceiveCommand(A, B, "refs/heads/master", UPDATE),
+				new ReceiveCommand(zeroId(), B, "refs/heads/one", CREATE));
+		List<ReceiveCommand> cmds2 = Arrays.asList(
+				new ReceiveCommand(zeroId(), A, "refs/heads/x", CREATE),
+				new ReceiveCommand(zeroId(), B, "refs/heads/y", CREATE));
+		List<ReceiveCommand> cmds3 = Arrays.asList(
+				new ReceiveCommand(zeroId(), A, "refs/heads/x/z", CREATE),
+				new ReceiveCommand(zeroId(), B, "refs/heads/z", CREATE));
+
+		executeConcurrently(cmds1, cmds2, cmds3);
+
+		assertResults(cmds1, OK, OK);
+		assertResults(cmds2, OK, OK);
+		assertResults(cmds3, LOCK_FAILURE, TRANSACTION_ABORTED);
+		assertRefs(
+				"refs/heads/master", B,
+				"refs/heads/one", B,
+				"refs/heads/x", A,
+				"refs/heads/y", B);
+	}
+
+	@SafeVarargs
+	private final void executeConcurrently(List<ReceiveCommand>... batches)
+			throws Exception {
+		long timeoutSecs = 10;
+		List<Thread> threads = new ArrayList<>();
+		List<Exception> errors = Collections
+				.synchronizedList(new ArrayList<>());
+		for (List<ReceiveCommand> cmds : batches) {
+			threads.add(new Thread(() -> {
+				try {
+					execute(newBatchUpdate(cmds).setRefLogMessage("group",
+							false));
+				} catch (Exception e) {
+					errors.add(e);
+				}
+			}));
+		}
+
+		ReentrantLock l = refdir.inProcessPackedRefsLock;
+		l.lock();
+		try {
+			// The first thread becomes leader and waits for the lock.
+			threads.get(0).start();
+			long startNanos = System.nanoTime();
+			while (l.getQueueLength() == 0) {
+				long elapsedNanos = System.nanoTime() - startNanos;
+				assertTrue("timed out waiting for leader",
+						NANOSECONDS.toSeconds(elapsedNanos) < timeoutSecs);
+				Thread.sleep(3);
+			}
+
+			// The others wait for the leader.
+			for (Thread t : threads.subList(1, threads.size())) {
+				t.start();
+				while (t.getState() != Thread.State.WAITING) {
+					long elapsedNanos = System.nanoTime() - startNanos;
+					assertTrue("timed out waiting for follower",
+							NANOSECONDS.toSeconds(elapsedNanos) < timeoutSecs);
+					Thread.sleep(3);
+				}
+			}
+		} finally {
+			l.unlock();
+		}
+
+		for (Thread t : threads) {
+			t.join(SECONDS.toMillis(timeoutSecs));
+			assertFalse(t.isAlive());
+		}
+		assertEquals(Collections.emptyList(), errors);
+	}
+
+	private void setGroupCommitRefs() throws Exception {
+		StoredConfig cfg = diskRepo.getConfig();
+		cfg.load();
+		cfg.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null,
+				ConfigConstants.CONFIG_KEY_GROUP_COMMIT_REFS, true);
+		cfg.save();
+	}
+
 	private void setLogAllRefUpdates(boolean enable) throws Exception {
 		StoredConfig cfg = diskRepo.getConfig();
 		cfg.load();
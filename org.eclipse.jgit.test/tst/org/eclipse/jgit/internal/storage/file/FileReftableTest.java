@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.internal.storage.file;
+
+import static org.eclipse.jgit.lib.Constants.HEAD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefRename;
+import org.eclipse.jgit.lib.RefScanner;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.ReflogEntry;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileReftableTest extends LocalDiskRepositoryTestCase {
+	private FileRepository db;
+
+	private TestRepository<Repository> repo;
+
+	private RevCommit A;
+
+	private RevCommit B;
+
+	private RevTag v1_0;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		db = createWorkRepository();
+		repo = new TestRepository<>(db);
+		A = repo.commit().create();
+		B = repo.commit(repo.getRevWalk().parseCommit(A));
+		v1_0 = repo.tag("v1_0", B);
+		repo.update("refs/heads/master", B);
+		repo.update("refs/heads/side", A);
+		repo.update("refs/tags/v1_0", v1_0);
+	}
+
+	@Test
+	public void testConvertToReftable() throws IOException {
+		int logs = db.getReflogReader("refs/heads/master").getReverseEntries()
+				.size();
+		db.convertToReftable(true, false);
+
+		RefDatabase refdb = db.getRefDatabase();
+		assertTrue(refdb instanceof FileReftableDatabase);
+		assertEquals(ConfigConstants.CONFIG_REF_STORAGE_REFTABLE,
+				db.getConfig().getString(
+						ConfigConstants.CONFIG_EXTENSIONS_SECTION, null,
+						ConfigConstants.CONFIG_KEY_REF_STORAGE));
+		assertFalse(new File(db.getDirectory(), "packed-refs").exists());
+		assertTrue(new File(db.getDirectory(), "reftable/tables.list")
+				.isFile());
+
+		Ref head = refdb.exactRef(HEAD);
+		assertTrue(head.isSymbolic());
+		assertEquals("refs/heads/master", head.getTarget().getName());
+		assertEquals(B, head.getObjectId());
+		assertEquals(A, refdb.exactRef("refs/heads/side").getObjectId());
+		Ref tag = refdb.exactRef("refs/tags/v1_0");
+		assertEquals(v1_0, tag.getObjectId());
+		assertEquals(B, tag.getPeeledObjectId());
+		assertEquals(logs, db.getReflogReader("refs/heads/master")
+				.getReverseEntries().size());
+
+		try (FileRepository reopened = new FileRepository(
+				db.getDirectory())) {
+			assertTrue(reopened
+					.getRefDatabase() instanceof FileReftableDatabase);
+			assertEquals(A, reopened.exactRef("refs/heads/side")
+					.getObjectId());
+		}
+	}
+
+	@Test
+	public void testUpdateWritesReflog() throws Exception {
+		db.convertToReftable(true, false);
+		RevCommit C = repo.commit(B);
+
+		RefUpdate u = db.updateRef(HEAD);
+		u.setNewObjectId(C);
+		u.setRefLogMessage("commit: C", false);
+		assertEquals(RefUpdate.Result.FAST_FORWARD, u.update());
+
+		assertEquals(C, db.exactRef("refs/heads/master").getObjectId());
+		ReflogEntry e = db.getReflogReader("refs/heads/master")
+				.getLastEntry();
+		assertEquals(B, e.getOldId());
+		assertEquals(C, e.getNewId());
+		assertEquals("commit: C", e.getComment());
+		assertEquals(C, db.getReflogReader(HEAD).getLastEntry().getNewId());
+	}
+
+	@Test
+	public void testBatchIsAtomic() throws Exception {
+		db.convertToReftable(false, false);
+		BatchRefUpdate bru = db.getRefDatabase().newBatchUpdate();
+		bru.addCommand(new ReceiveCommand(ObjectId.zeroId(), A,
+				"refs/heads/new"));
+		bru.addCommand(new ReceiveCommand(A, B, "refs/heads/master"));
+		try (RevWalk rw = new RevWalk(db)) {
+			bru.execute(rw, NullProgressMonitor.INSTANCE);
+		}
+
+		assertEquals(ReceiveCommand.Result.LOCK_FAILURE,
+				bru.getCommands().get(1).getResult());
+		assertNull(db.exactRef("refs/heads/new"));
+		assertEquals(B, db.exactRef("refs/heads/master").getObjectId());
+	}
+
+	@Test
+	public void testAutoCompaction() throws Exception {
+		db.convertToReftable(false, false);
+		FileReftableDatabase refdb = (FileReftableDatabase) db
+				.getRefDatabase();
+		for (int i = 0; i < 64; i++) {
+			RefUpdate u = db.updateRef("refs/heads/branch" + i);
+			u.setNewObjectId(i % 2 == 0 ? A : B);
+			assertEquals(RefUpdate.Result.NEW, u.update());
+		}
+		assertTrue(refdb.stack().readers().size() <= 8);
+		assertEquals(66,
+				refdb.getRefsByPrefix("refs/heads/").size());
+
+		RefUpdate d = db.updateRef("refs/heads/branch3");
+		d.setForceUpdate(true);
+		assertEquals(RefUpdate.Result.FORCED, d.delete());
+		assertNull(db.exactRef("refs/heads/branch3"));
+
+		refdb.compactFully();
+		assertEquals(1, refdb.stack().readers().size());
+		assertNull(db.exactRef("refs/heads/branch3"));
+		assertEquals(65, refdb.getRefsByPrefix("refs/heads/").size());
+	}
+
+	@Test
+	public void testRename() throws Exception {
+		db.convertToReftable(false, false);
+		RefRename r = db.renameRef("refs/heads/master", "refs/heads/main");
+		assertEquals(RefUpdate.Result.RENAMED, r.rename());
+
+		assertNull(db.exactRef("refs/heads/master"));
+		assertEquals(B, db.exactRef("refs/heads/main").getObjectId());
+		assertEquals("refs/heads/main",
+				db.exactRef(HEAD).getTarget().getName());
+	}
+
+	@Test
+	public void testScanRefsByPrefix() throws Exception {
+		db.convertToReftable(false, false);
+		RefDatabase refdb = db.getRefDatabase();
+		try (RefScanner s = refdb.scanRefsByPrefix("refs/tags/",
+				"refs/heads/")) {
+			assertTrue(s.next());
+			assertEquals("refs/heads/master", s.getRef().getName());
+
+			// Another writer reloads the stack in the middle of the scan.
+			RefUpdate u = db.updateRef("refs/heads/new");
+			u.setNewObjectId(A);
+			assertEquals(RefUpdate.Result.NEW, u.update());
+
+			assertTrue(s.next());
+			assertEquals("refs/heads/new", s.getRef().getName());
+			assertTrue(s.next());
+			assertEquals("refs/heads/side", s.getRef().getName());
+			assertTrue(s.next());
+			assertEquals("refs/tags/v1_0", s.getRef().getName());
+			assertFalse(s.next());
+		}
+	}
+
+	@Test
+	public void testUpdateFromOtherInstance() throws Exception {
+		db.convertToReftable(false, false);
+		try (FileRepository other = new FileRepository(db.getDirectory())) {
+			RefUpdate u = other.updateRef("refs/heads/other");
+			u.setNewObjectId(A);
+			assertEquals(RefUpdate.Result.NEW, u.update());
+		}
+		assertEquals(A, db.exactRef("refs/heads/other").getObjectId());
+	}
+
+	@Test
+	public void testConvertBackToPackedRefs() throws Exception {
+		db.convertToReftable(true, false);
+		RevCommit C = repo.commit(B);
+		RefUpdate u = db.updateRef("refs/heads/master");
+		u.setNewObjectId(C);
+		u.setRefLogMessage("commit: C", false);
+		assertEquals(RefUpdate.Result.FAST_FORWARD, u.update());
+
+		db.convertToPackedRefs(true, true);
+
+		assertTrue(db.getRefDatabase() instanceof RefDirectory);
+		assertTrue(new File(db.getDirectory(), "reftable.old").isDirectory());
+		assertFalse(new File(db.getDirectory(), "reftable").exists());
+		assertEquals(C, db.exactRef(HEAD).getObjectId());
+		assertEquals(A, db.exactRef("refs/heads/side").getObjectId());
+		List<ReflogEntry> log = db.getReflogReader("refs/heads/master")
+				.getReverseEntries();
+		assertNotNull(log);
+		assertEquals("commit: C", log.get(0).getComment());
+
+		try (FileRepository reopened = new FileRepository(
+				db.getDirectory())) {
+			assertTrue(reopened.getRefDatabase() instanceof RefDirectory);
+			assertEquals(C, reopened.exactRef("refs/heads/master")
+					.getObjectId());
+		}
+	}
+}
@@ -56,6 +56,9 @@
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -68,6 +71,8 @@
 import org.eclipse.jgit.internal.JGitText;
 import org.eclipse.jgit.internal.storage.pack.DeltaEncoder;
 import org.eclipse.jgit.internal.storage.pack.PackExt;
+import org.eclipse.jgit.internal.storage.pack.PackOutputStream;
+import org.eclipse.jgit.internal.storage.pack.PackWriter;
 import org.eclipse.jgit.junit.JGitTestUtil;
 import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
 import org.eclipse.jgit.junit.TestRepository;
@@ -86,6 +91,7 @@
 import org.eclipse.jgit.util.IO;
 import org.eclipse.jgit.util.NB;
 import org.eclipse.jgit.util.TemporaryBuffer;
+import org.eclipse.jgit.util.io.FileRegionWriter;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -328,6 +334,85 @@ public void testConfigurableStreamFileThreshold() throws Exception {
 		}
 	}
 
+	@Test
+	public void testCopyPackAsIs_StreamsLargePack() throws Exception {
+		byte[] data = getRng().nextBytes(200 * 1024);
+		RevBlob id = tr.blob(data);
+		tr.branch("master").commit().add("A", id).create();
+		tr.packAndPrune();
+
+		PackFile pack = repo.getObjectDatabase().getPacks().iterator().next();
+		byte[] raw = IO.readFully(pack.getPackFile());
+		byte[] expect = Arrays.copyOfRange(raw, 12, raw.length - 20);
+
+		wc.setStreamFileThreshold(Integer.MAX_VALUE);
+		assertArrayEquals(expect, copyPackAsIs(pack));
+
+		wc.setStreamFileThreshold(1024);
+		assertArrayEquals(expect, copyPackAsIs(pack));
+	}
+
+	@Test
+	public void testCopyPackAsIs_HandsOffRegion() throws Exception {
+		byte[] data = getRng().nextBytes(200 * 1024);
+		RevBlob id = tr.blob(data);
+		tr.branch("master").commit().add("A", id).create();
+		tr.packAndPrune();
+
+		PackFile pack = repo.getObjectDatabase().getPacks().iterator().next();
+		byte[] raw = IO.readFully(pack.getPackFile());
+		byte[] expect = Arrays.copyOfRange(raw, 12, raw.length - 20);
+
+		wc.setStreamFileThreshold(1024);
+		List<FileChannel> regions = new ArrayList<>();
+		class RegionOutputStream extends OutputStream
+				implements FileRegionWriter {
+			@Override
+			public void write(int b) {
+				fail("unexpected write");
+			}
+
+			@Override
+			public boolean canWriteRegion() {
+				return true;
+			}
+
+			@Override
+			public void writeRegion(FileChannel file, long position,
+					long count) {
+				assertEquals(12, position);
+				assertEquals(expect.length, count);
+				regions.add(file);
+			}
+		}
+		try (PackWriter pw = new PackWriter(repo)) {
+			PackOutputStream out = new PackOutputStream(
+					NullProgressMonitor.INSTANCE, new RegionOutputStream(), pw);
+			pack.copyPackAsIs(out, wc);
+			assertEquals(expect.length, out.length());
+		}
+		pack.close();
+
+		// The region outlives the pack; the stream owns the channel.
+		assertEquals(1, regions.size());
+		try (FileChannel ch = regions.get(0)) {
+			ByteBuffer buf = ByteBuffer.allocate(expect.length);
+			while (buf.hasRemaining()) {
+				assertTrue(ch.read(buf, 12 + buf.position()) > 0);
+			}
+			assertArrayEquals(expect, buf.array());
+		}
+	}
+
+	private byte[] copyPackAsIs(PackFile pack) throws IOException {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		try (PackWriter pw = new PackWriter(repo)) {
+			pack.copyPackAsIs(new PackOutputStream(
+					NullProgressMonitor.INSTANCE, buf, pw), wc);
+		}
+		return buf.toByteArray();
+	}
+
 	private static byte[] clone(int first, byte[] base) {
 		byte[] r = new byte[base.length];
 		System.arraycopy(base, 1, r, 1, r.length - 1);
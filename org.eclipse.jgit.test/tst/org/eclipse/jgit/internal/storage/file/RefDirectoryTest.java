@@ -61,6 +61,7 @@
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -72,9 +73,11 @@
 import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
 import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Ref.Storage;
 import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefScanner;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTag;
@@ -274,6 +277,84 @@ public void testGetRefs_LooseOverridesPacked() throws IOException {
 		assertEquals(B, a.getObjectId());
 	}
 
+	@Test
+	public void testGetRefsByPrefix_PartialName() throws IOException {
+		writePackedRefs("" + //
+				A.name() + " refs/heads/master\n" + //
+				A.name() + " refs/heads/master2\n" + //
+				B.name() + " refs/heads/other\n");
+		writeLooseRef("refs/heads/master", B);
+		writeLooseRef("refs/heads/masterless", A);
+
+		List<Ref> refs = refdir.getRefsByPrefix("refs/heads/master");
+		assertEquals(3, refs.size());
+		assertEquals("refs/heads/master", refs.get(0).getName());
+		assertEquals(B, refs.get(0).getObjectId());
+		assertEquals("refs/heads/master2", refs.get(1).getName());
+		assertEquals(A, refs.get(1).getObjectId());
+		assertEquals("refs/heads/masterless", refs.get(2).getName());
+
+		refs = refdir.getRefsByPrefix("refs/heads/o");
+		assertEquals(1, refs.size());
+		assertEquals("refs/heads/other", refs.get(0).getName());
+
+		assertTrue(refdir.getRefsByPrefix("refs/heads/x").isEmpty());
+	}
+
+	@Test
+	public void testMappedPackedRefs() throws IOException {
+		diskRepo.getConfig().setBoolean(ConfigConstants.CONFIG_CORE_SECTION,
+				null, ConfigConstants.CONFIG_KEY_MMAP_PACKED_REFS, true);
+		writePackedRefs("# pack-refs with: peeled \n" + //
+				A.name() + " refs/heads/master\n" + //
+				B.name() + " refs/heads/other\n" + //
+				v1_0.name() + " refs/tags/v1.0\n" + //
+				"^" + v1_0.getObject().name() + "\n");
+		writeLooseRef("refs/heads/next", B);
+		writeLooseRef(HEAD, "ref: refs/heads/master\n");
+
+		Ref master = refdir.exactRef("refs/heads/master");
+		assertEquals(A, master.getObjectId());
+		assertEquals(Storage.PACKED, master.getStorage());
+		assertTrue(master.isPeeled());
+
+		Ref tag = refdir.exactRef("refs/tags/v1.0");
+		assertEquals(v1_0, tag.getObjectId());
+		assertEquals(v1_0.getObject(), tag.getPeeledObjectId());
+
+		Ref head = refdir.exactRef(HEAD);
+		assertTrue(head.isSymbolic());
+		assertEquals(A, head.getObjectId());
+		assertNull(refdir.exactRef("refs/heads/mast"));
+
+		List<Ref> heads = refdir.getRefsByPrefix("refs/heads/");
+		assertEquals(3, heads.size());
+		assertEquals("refs/heads/master", heads.get(0).getName());
+		assertEquals("refs/heads/next", heads.get(1).getName());
+		assertEquals("refs/heads/other", heads.get(2).getName());
+
+		// A rewritten file must be mapped again.
+		writePackedRefs("# pack-refs with: peeled \n" + //
+				B.name() + " refs/heads/master\n");
+		File packed = new File(diskRepo.getDirectory(), "packed-refs");
+		packed.setLastModified(packed.lastModified() - 3600 * 1000);
+		assertEquals(B, refdir.exactRef("refs/heads/master").getObjectId());
+		assertNull(refdir.exactRef("refs/heads/other"));
+	}
+
+	@Test
+	public void testMappedPackedRefsUnsorted() throws IOException {
+		diskRepo.getConfig().setBoolean(ConfigConstants.CONFIG_CORE_SECTION,
+				null, ConfigConstants.CONFIG_KEY_MMAP_PACKED_REFS, true);
+		writePackedRefs("" + //
+				B.name() + " refs/heads/other\n" + //
+				A.name() + " refs/heads/master\n");
+
+		assertEquals(A, refdir.exactRef("refs/heads/master").getObjectId());
+		assertEquals(B, refdir.exactRef("refs/heads/other").getObjectId());
+		assertEquals(2, refdir.getRefsByPrefix("refs/heads/").size());
+	}
+
 	@Test
 	public void testGetRefs_IgnoresGarbageRef1() throws IOException {
 		Map<String, Ref> heads;
@@ -1304,6 +1385,48 @@ public void testPackedRefsLockFailure() throws Exception {
 		assertEquals(Storage.LOOSE, ref.getStorage());
 	}
 
+	@Test
+	public void testScanRefsByPrefix_MergesPackedAndLoose() throws IOException {
+		writePackedRefs(A.name() + " refs/heads/a-b\n" //
+				+ A.name() + " refs/heads/a/x\n" //
+				+ B.name() + " refs/heads/master\n" //
+				+ A.name() + " refs/tags/v1\n");
+		writeLooseRef("refs/heads/master", A);
+		writeLooseRef("refs/heads/a/y", B);
+		writeLooseRef("refs/heads/b", B);
+
+		assertEquals(
+				Arrays.asList("refs/heads/a-b", "refs/heads/a/x",
+						"refs/heads/a/y", "refs/tags/v1"),
+				scan("refs/tags/", "refs/heads/a"));
+
+		assertEquals(Arrays.asList(HEAD, "refs/heads/a-b", "refs/heads/a/x",
+				"refs/heads/a/y", "refs/heads/b", "refs/heads/master",
+				"refs/tags/v1"), scan());
+
+		try (RefScanner s = refdir.scanRefsByPrefix("refs/heads/master")) {
+			assertTrue(s.next());
+			assertSame(LOOSE, s.getRef().getStorage());
+			assertEquals(A, s.getRef().getObjectId());
+			assertFalse(s.next());
+		}
+		try (RefScanner s = refdir.scanRefsByPrefix(HEAD)) {
+			assertTrue(s.next());
+			assertTrue(s.getRef().isSymbolic());
+			assertEquals(A, s.getRef().getObjectId());
+			assertFalse(s.next());
+		}
+	}
+
+	private List<String> scan(String... prefixes) throws IOException {
+		List<String> names = new ArrayList<>();
+		try (RefScanner s = refdir.scanRefsByPrefix(prefixes)) {
+			while (s.next())
+				names.add(s.getRef().getName());
+		}
+		return names;
+	}
+
 	private void writeLooseRef(String name, AnyObjectId id) throws IOException {
 		writeLooseRef(name, id.name() + "\n");
 	}
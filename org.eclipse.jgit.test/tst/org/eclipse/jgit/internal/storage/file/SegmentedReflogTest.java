@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.internal.storage.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefRename;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.ReflogEntry;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentedReflogTest extends LocalDiskRepositoryTestCase {
+	private Repository repo;
+
+	private RefDirectory refdir;
+
+	private RevCommit A;
+
+	private RevCommit B;
+
+	private RevCommit C;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		repo = createBareRepository();
+		refdir = (RefDirectory) repo.getRefDatabase();
+
+		StoredConfig cfg = repo.getConfig();
+		cfg.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null,
+				ConfigConstants.CONFIG_KEY_LOGALLREFUPDATES, true);
+		cfg.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null,
+				ConfigConstants.CONFIG_KEY_SEGMENTED_REFLOG, true);
+		cfg.save();
+
+		TestRepository<Repository> tr = new TestRepository<>(repo);
+		A = tr.commit().create();
+		B = tr.commit().parent(A).create();
+		C = tr.commit().parent(B).create();
+	}
+
+	@Test
+	public void logsAreAppendedToSegment() throws Exception {
+		update("refs/heads/master", A, "one");
+		update("refs/heads/master", B, "two");
+		update("refs/heads/other", C, "three");
+
+		assertFalse(refdir.logFor("refs/heads/master").exists());
+		assertEquals(1, segments().length);
+
+		List<ReflogEntry> log = reverseEntries("refs/heads/master");
+		assertEquals(2, log.size());
+		assertEntry(log.get(0), A, B, "two");
+		assertEntry(log.get(1), ObjectId.zeroId(), A, "one");
+		assertEntry(repo.getReflogReader("refs/heads/other").getLastEntry(),
+				ObjectId.zeroId(), C, "three");
+		assertEntry(refdir.getReflogReader("refs/heads/master")
+				.getReverseEntry(1), ObjectId.zeroId(), A, "one");
+		assertNull(refdir.getReflogReader("refs/heads/master")
+				.getReverseEntry(2));
+	}
+
+	@Test
+	public void readsAcrossSegments() throws Exception {
+		setSegmentSize(1);
+		update("refs/heads/master", A, "one");
+		update("refs/heads/other", A, "two");
+		update("refs/heads/master", B, "three");
+		update("refs/heads/master", C, "four");
+
+		assertEquals(4, segments().length);
+		assertTrue(new File(segmentDir(), "0000000000000001.idx").isFile());
+
+		List<ReflogEntry> log = reverseEntries("refs/heads/master");
+		assertEquals(3, log.size());
+		assertEntry(log.get(0), B, C, "four");
+		assertEntry(log.get(1), A, B, "three");
+		assertEntry(log.get(2), ObjectId.zeroId(), A, "one");
+		assertEquals(2, refdir.getReflogReader("refs/heads/master")
+				.getReverseEntries(2).size());
+
+		// A new instance reads the written indexes.
+		try (Repository other = new FileRepository(repo.getDirectory())) {
+			assertEquals(3, other.getReflogReader("refs/heads/master")
+					.getReverseEntries().size());
+		}
+	}
+
+	@Test
+	public void deleteHidesOlderEntries() throws Exception {
+		update("refs/heads/master", A, "one");
+		update("refs/heads/gone", A, "two");
+		delete("refs/heads/gone");
+		assertTrue(reverseEntries("refs/heads/gone").isEmpty());
+
+		update("refs/heads/gone", B, "three");
+		List<ReflogEntry> log = reverseEntries("refs/heads/gone");
+		assertEquals(1, log.size());
+		assertEntry(log.get(0), ObjectId.zeroId(), B, "three");
+	}
+
+	@Test
+	public void renameMovesEntries() throws Exception {
+		update("refs/heads/master", A, "one");
+		update("refs/heads/master", B, "two");
+
+		RefRename r = repo.renameRef("refs/heads/master", "refs/heads/main");
+		r.setRefLogMessage("renamed");
+		assertEquals(RefUpdate.Result.RENAMED, r.rename());
+
+		assertTrue(reverseEntries("refs/heads/master").isEmpty());
+		List<ReflogEntry> log = reverseEntries("refs/heads/main");
+		assertEquals(3, log.size());
+		assertEquals("renamed", log.get(0).getComment());
+		assertEntry(log.get(1), A, B, "two");
+		assertEntry(log.get(2), ObjectId.zeroId(), A, "one");
+	}
+
+	@Test
+	public void olderLogFileIsReadAfterSegments() throws Exception {
+		setSegmentedReflog(false);
+		update("refs/heads/master", A, "file");
+		assertTrue(refdir.logFor("refs/heads/master").isFile());
+
+		setSegmentedReflog(true);
+		update("refs/heads/master", B, "segment");
+
+		List<ReflogEntry> log = reverseEntries("refs/heads/master");
+		assertEquals(2, log.size());
+		assertEntry(log.get(0), A, B, "segment");
+		assertEntry(log.get(1), ObjectId.zeroId(), A, "file");
+	}
+
+	@Test
+	public void stashKeepsItsOwnFile() throws Exception {
+		new ReflogWriter(refdir, true).log("refs/stash", ObjectId.zeroId(), A,
+				new PersonIdent(repo), "stash");
+		assertTrue(refdir.logFor("refs/stash").isFile());
+		assertEquals(0, segments().length);
+	}
+
+	@Test
+	public void compactDropsDeletedLogs() throws Exception {
+		setSegmentSize(1);
+		update("refs/heads/master", A, "one");
+		update("refs/heads/gone", A, "two");
+		update("refs/heads/master", B, "three");
+		delete("refs/heads/gone");
+		update("refs/heads/master", C, "four");
+		assertEquals(5, segments().length);
+
+		setSegmentSize(1024 * 1024);
+		refdir.getSegmentedReflog().compact();
+
+		// The sealed segments became one, and a new one is started.
+		assertEquals(2, segments().length);
+		List<ReflogEntry> log = reverseEntries("refs/heads/master");
+		assertEquals(3, log.size());
+		assertEntry(log.get(0), B, C, "four");
+		assertEntry(log.get(1), A, B, "three");
+		assertEntry(log.get(2), ObjectId.zeroId(), A, "one");
+		assertTrue(reverseEntries("refs/heads/gone").isEmpty());
+
+		update("refs/heads/master", A, "five");
+		assertEquals(2, segments().length);
+		assertEquals(4, reverseEntries("refs/heads/master").size());
+	}
+
+	@Test
+	public void compactLeavesFullSegments() throws Exception {
+		setSegmentSize(1);
+		update("refs/heads/master", A, "one");
+		update("refs/heads/master", B, "two");
+		update("refs/heads/master", C, "three");
+		String[] before = segments();
+		Object[] keys = fileKeys(before);
+
+		// Sealed segments are full and hold no deleted logs.
+		refdir.getSegmentedReflog().compact();
+		String[] after = segments();
+		assertEquals(before.length + 1, after.length);
+		assertArrayEquals(keys, fileKeys(before));
+		assertEquals(3, reverseEntries("refs/heads/master").size());
+	}
+
+	@Test
+	public void compactWhileAnotherWriterAppends() throws Exception {
+		setSegmentSize(1);
+		update("refs/heads/master", A, "one");
+		try (Repository other = new FileRepository(repo.getDirectory())) {
+			RefUpdate u = other.updateRef("refs/heads/master");
+			u.setNewObjectId(B);
+			u.setForceUpdate(true);
+			u.setRefLogMessage("two", false);
+			assertEquals(RefUpdate.Result.FORCED, u.update());
+
+			setSegmentSize(1024 * 1024);
+			refdir.getSegmentedReflog().compact();
+
+			// The other writer must not append to the sealed segment.
+			u = other.updateRef("refs/heads/master");
+			u.setNewObjectId(C);
+			u.setForceUpdate(true);
+			u.setRefLogMessage("three", false);
+			assertEquals(RefUpdate.Result.FORCED, u.update());
+		}
+		refdir.getSegmentedReflog().compact();
+
+		List<ReflogEntry> log = reverseEntries("refs/heads/master");
+		assertEquals(3, log.size());
+		assertEntry(log.get(0), B, C, "three");
+		assertEntry(log.get(1), A, B, "two");
+		assertEntry(log.get(2), ObjectId.zeroId(), A, "one");
+	}
+
+	private void update(String name, AnyObjectId id, String msg)
+			throws IOException {
+		RefUpdate u = repo.updateRef(name);
+		u.setNewObjectId(id);
+		u.setForceUpdate(true);
+		u.setRefLogMessage(msg, false);
+		RefUpdate.Result r = u.update();
+		assertTrue(r.name(), r == RefUpdate.Result.NEW
+				|| r == RefUpdate.Result.FORCED);
+	}
+
+	private void delete(String name) throws IOException {
+		RefUpdate u = repo.updateRef(name);
+		u.setForceUpdate(true);
+		assertEquals(RefUpdate.Result.FORCED, u.delete());
+	}
+
+	private List<ReflogEntry> reverseEntries(String name) throws IOException {
+		return refdir.getReflogReader(name).getReverseEntries();
+	}
+
+	private void setSegmentedReflog(boolean enable) throws IOException {
+		StoredConfig cfg = repo.getConfig();
+		cfg.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null,
+				ConfigConstants.CONFIG_KEY_SEGMENTED_REFLOG, enable);
+		cfg.save();
+	}
+
+	private void setSegmentSize(long size) throws IOException {
+		StoredConfig cfg = repo.getConfig();
+		cfg.setLong(ConfigConstants.CONFIG_CORE_SECTION, null,
+				ConfigConstants.CONFIG_KEY_REFLOG_SEGMENT_SIZE, size);
+		cfg.save();
+	}
+
+	private File segmentDir() {
+		return new File(repo.getDirectory(), SegmentedReflog.SEGMENTS);
+	}
+
+	private String[] segments() {
+		String[] names = segmentDir().list((dir, n) -> n.endsWith(".log"));
+		return names != null ? names : new String[0];
+	}
+
+	private Object[] fileKeys(String[] names) throws IOException {
+		Object[] keys = new Object[names.length];
+		for (int i = 0; i < names.length; i++) {
+			keys[i] = Files.readAttributes(
+					new File(segmentDir(), names[i]).toPath(),
+					BasicFileAttributes.class).fileKey();
+		}
+		return keys;
+	}
+
+	private static void assertEntry(ReflogEntry e, AnyObjectId oldId,
+			AnyObjectId newId, String msg) {
+		assertEquals(oldId, e.getOldId());
+		assertEquals(newId, e.getNewId());
+		assertEquals(msg, e.getComment());
+	}
+}
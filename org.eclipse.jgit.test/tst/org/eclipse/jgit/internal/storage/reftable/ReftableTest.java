@@ -460,6 +460,40 @@ public void withReflog() throws IOException {
 		}
 	}
 
+	@Test
+	public void seekLogWithoutIndex() throws IOException {
+		PersonIdent who = new PersonIdent("Log", "Ger", 1500079709, -8 * 60);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ReftableWriter writer = new ReftableWriter()
+				.setMinUpdateIndex(1)
+				.setMaxUpdateIndex(2)
+				.begin(buffer);
+		writer.writeRef(ref(MASTER, 1));
+		writer.writeRef(ref(NEXT, 2));
+		writer.writeLog(MASTER, 2, who, id(1), id(3), "second");
+		writer.writeLog(MASTER, 1, who, ObjectId.zeroId(), id(1), "first");
+		writer.writeLog(NEXT, 1, who, ObjectId.zeroId(), id(2), "next");
+		writer.finish();
+
+		ReftableReader t = read(buffer.toByteArray());
+		try (LogCursor lc = t.seekLog(MASTER)) {
+			assertTrue(lc.next());
+			assertEquals(2, lc.getUpdateIndex());
+			assertEquals("second", lc.getReflogEntry().getComment());
+			assertTrue(lc.next());
+			assertEquals(1, lc.getUpdateIndex());
+			assertFalse(lc.next());
+		}
+		try (LogCursor lc = t.seekLog(NEXT)) {
+			assertTrue(lc.next());
+			assertEquals("next", lc.getReflogEntry().getComment());
+			assertFalse(lc.next());
+		}
+		try (LogCursor lc = t.seekLog("refs/heads/other")) {
+			assertFalse(lc.next());
+		}
+	}
+
 	@Test
 	public void onlyReflog() throws IOException {
 		PersonIdent who = new PersonIdent("Log", "Ger", 1500079709, -8 * 60);
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.merge;
+
+import static org.eclipse.jgit.lib.Constants.CHARSET;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.merge.BatchMerger.Result;
+import org.eclipse.jgit.merge.BatchMerger.Status;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchMergerTest {
+	private InMemoryRepository repo;
+
+	private TestRepository<InMemoryRepository> git;
+
+	private PersonIdent committer;
+
+	@Before
+	public void setUp() throws Exception {
+		repo = new InMemoryRepository(new DfsRepositoryDescription("test"));
+		git = new TestRepository<>(repo);
+		committer = new PersonIdent("Merge Bot", "bot@example.com");
+	}
+
+	@Test
+	public void testMerge() throws Exception {
+		RevCommit base = git.commit().add("a", "1\n2\n3\n").create();
+		RevCommit ours = git.commit().parent(base).add("a", "1o\n2\n3\n")
+				.create();
+		RevCommit theirs = git.commit().parent(base).add("a", "1\n2\n3t\n")
+				.add("b", "b\n").create();
+
+		try (BatchMerger batch = new BatchMerger(repo)) {
+			batch.setCommitter(committer);
+			Result r = batch.merge(ours, theirs, "merge");
+			assertEquals(Status.MERGED, r.getStatus());
+			batch.flush();
+
+			RevCommit merge = git.getRevWalk().parseCommit(r.getCommitId());
+			assertEquals(r.getTreeId(), merge.getTree());
+			assertEquals(Arrays.asList(ours, theirs),
+					Arrays.asList(merge.getParents()));
+			assertEquals(committer, merge.getCommitterIdent());
+			assertEquals("merge", merge.getFullMessage());
+			assertEquals("1o\n2\n3t\n", read(merge, "a"));
+			assertEquals("b\n", read(merge, "b"));
+		}
+	}
+
+	@Test
+	public void testMergeConflict() throws Exception {
+		RevCommit base = git.commit().add("a", "1\n2\n3\n").create();
+		RevCommit ours = git.commit().parent(base).add("a", "1o\n2\n3\n")
+				.create();
+		RevCommit theirs = git.commit().parent(base).add("a", "1t\n2\n3\n")
+				.create();
+
+		try (BatchMerger batch = new BatchMerger(repo)) {
+			Result r = batch.merge(ours, theirs, "merge");
+			assertEquals(Status.CONFLICTING, r.getStatus());
+			assertNull(r.getCommitId());
+			assertNull(r.getTreeId());
+			assertEquals(Collections.singletonList("a"), r.getUnmergedPaths());
+			assertTrue(r.getMergeResults().get("a").containsConflicts());
+		}
+	}
+
+	@Test
+	public void testRebase() throws Exception {
+		RevCommit base = git.commit().add("a", "1\n2\n3\n").create();
+		RevCommit onto = git.commit().parent(base).add("a", "1o\n2\n3\n")
+				.create();
+		RevCommit c1 = git.commit().parent(base).add("a", "1\n2\n3c1\n")
+				.message("c1").create();
+		RevCommit c2 = git.commit().parent(c1).add("b", "b\n")
+				.message("c2").create();
+
+		try (BatchMerger batch = new BatchMerger(repo)) {
+			batch.setCommitter(committer);
+			List<Result> results = batch.rebase(onto, Arrays.asList(c1, c2));
+			assertEquals(2, results.size());
+			ObjectId tip = results.get(1).getCommitId();
+			assertEquals(Status.MERGED, results.get(1).getStatus());
+
+			// Nothing is written before the batch is flushed.
+			assertFalse(repo.getObjectDatabase().has(tip));
+			batch.flush();
+			assertTrue(repo.getObjectDatabase().has(tip));
+
+			RevWalk rw = git.getRevWalk();
+			RevCommit n2 = rw.parseCommit(tip);
+			RevCommit n1 = rw.parseCommit(n2.getParent(0));
+			assertEquals(results.get(0).getCommitId(), n1);
+			assertEquals(onto, n1.getParent(0));
+			assertEquals("c1", n1.getFullMessage());
+			assertEquals(c1.getAuthorIdent(), n1.getAuthorIdent());
+			assertEquals(committer, n1.getCommitterIdent());
+			assertEquals("c2", n2.getFullMessage());
+			assertEquals("1o\n2\n3c1\n", read(n2, "a"));
+			assertEquals("b\n", read(n2, "b"));
+		}
+	}
+
+	@Test
+	public void testRebaseStopsAtConflict() throws Exception {
+		RevCommit base = git.commit().add("a", "1\n2\n3\n").create();
+		RevCommit onto = git.commit().parent(base).add("a", "1o\n2\n3\n")
+				.create();
+		RevCommit c1 = git.commit().parent(base).add("b", "b\n").create();
+		RevCommit c2 = git.commit().parent(c1).add("a", "1c\n2\n3\n")
+				.create();
+		RevCommit c3 = git.commit().parent(c2).add("c", "c\n").create();
+
+		try (BatchMerger batch = new BatchMerger(repo)) {
+			List<Result> results = batch.rebase(onto,
+					Arrays.asList(c1, c2, c3));
+			assertEquals(2, results.size());
+			assertEquals(Status.MERGED, results.get(0).getStatus());
+			assertEquals(Status.CONFLICTING, results.get(1).getStatus());
+			assertEquals(Collections.singletonList("a"),
+					results.get(1).getUnmergedPaths());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCherryPickMergeCommit() throws Exception {
+		RevCommit a = git.commit().add("a", "a\n").create();
+		RevCommit b = git.commit().add("b", "b\n").create();
+		RevCommit m = git.commit().parent(a).parent(b).create();
+		try (BatchMerger batch = new BatchMerger(repo)) {
+			batch.cherryPick(a, m);
+		}
+	}
+
+	private String read(RevCommit c, String path) throws Exception {
+		RevObject blob = git.get(c.getTree(), path);
+		return new String(git.getRevWalk().getObjectReader()
+				.open(blob).getCachedBytes(), CHARSET);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.merge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MergeBaseCacheTest {
+	private InMemoryRepository repo;
+
+	private TestRepository<InMemoryRepository> git;
+
+	@Before
+	public void setUp() throws Exception {
+		repo = new InMemoryRepository(new DfsRepositoryDescription("test"));
+		git = new TestRepository<>(repo);
+	}
+
+	@Test
+	public void testGetPut() throws Exception {
+		RevCommit a = git.commit().create();
+		RevCommit b = git.commit().create();
+		RevCommit c = git.commit().create();
+		MergeBaseCache cache = new MergeBaseCache(2);
+
+		assertNull(cache.get(a, b));
+		cache.put(a, b, Collections.singletonList(c));
+		assertEquals(Collections.singletonList(c), cache.get(b, a));
+		cache.put(a, c, Collections.<RevCommit> emptyList());
+		assertTrue(cache.get(c, a).isEmpty());
+
+		cache.get(a, b);
+		cache.put(b, c, Arrays.asList(a));
+		assertEquals(2, cache.size());
+		assertNull(cache.get(a, c));
+		assertEquals(Collections.singletonList(c), cache.get(a, b));
+	}
+
+	@Test
+	public void testMergersShareCache() throws Exception {
+		RevCommit base = git.commit().add("f", "1\n2\n3\n").create();
+		RevCommit ours = git.commit().parent(base).add("f", "1o\n2\n3\n")
+				.create();
+		RevCommit theirs = git.commit().parent(base).add("f", "1\n2\n3t\n")
+				.create();
+		MergeBaseCache cache = new MergeBaseCache(10);
+
+		for (MergeStrategy s : Arrays.asList(MergeStrategy.RESOLVE,
+				MergeStrategy.RECURSIVE)) {
+			try (ObjectInserter ins = repo.newObjectInserter()) {
+				ThreeWayMerger m = (ThreeWayMerger) s.newMerger(ins,
+						repo.getConfig());
+				m.setMergeBaseCache(cache);
+				assertTrue(m.merge(ours, theirs));
+				assertEquals(base, m.getBaseCommitId());
+			}
+		}
+		assertEquals(Collections.singletonList(base), cache.get(ours, theirs));
+
+		// A cached result is used without walking history again.
+		cache.put(ours, theirs, Collections.singletonList(ours));
+		try (ObjectInserter ins = repo.newObjectInserter()) {
+			ThreeWayMerger m = (ThreeWayMerger) MergeStrategy.RECURSIVE
+					.newMerger(ins, repo.getConfig());
+			m.setMergeBaseCache(cache);
+			assertTrue(m.merge(ours, theirs));
+			assertEquals(ours, m.getBaseCommitId());
+			assertEquals(theirs.getTree(), m.getResultTreeId());
+		}
+	}
+}
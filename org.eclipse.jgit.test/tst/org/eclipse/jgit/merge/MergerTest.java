@@ -56,6 +56,8 @@
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.MergeResult;
@@ -735,6 +737,63 @@ public void checkContentMergeNoConflict_noRepo(MergeStrategy strategy)
 	}
 
 
+	@Theory
+	public void checkInCoreMergeWithExecutor(MergeStrategy strategy)
+			throws Exception {
+		TestRepository<?> tr = new TestRepository<>(db);
+		RevCommit base = tr.commit()
+				.add("a/f", "1\n2\n3\n")
+				.add("b/f", "b\n")
+				.add("c/f", "1\n2\n3\n")
+				.add("d/f", "1\n2\n3\n")
+				.add("e/f", "e\n")
+				.create();
+		RevCommit ours = tr.commit().parent(base)
+				.add("a/f", "1\n2\n3a\n")
+				.add("c/f", "1\n2\n3o\n")
+				.add("d/f", "1\n2\n3o\n")
+				.create();
+		RevCommit clean = tr.commit().parent(base)
+				.add("b/f", "bt\n")
+				.add("b/g", "g\n")
+				.rm("e/f")
+				.add("c/f", "1t\n2\n3\n")
+				.add("d/f", "1t\n2\n3\n")
+				.create();
+		RevCommit conflicting = tr.commit().parent(clean)
+				.add("c/f", "1\n2\n3t\n")
+				.create();
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (RevCommit theirs : Arrays.asList(clean, conflicting)) {
+				ResolveMerger expect = (ResolveMerger) strategy.newMerger(db,
+						true);
+				boolean merged = expect.merge(ours, theirs);
+				assertEquals(Boolean.valueOf(theirs == clean),
+						Boolean.valueOf(merged));
+
+				ResolveMerger actual = (ResolveMerger) strategy.newMerger(db,
+						true);
+				actual.setExecutor(executor);
+				assertEquals(Boolean.valueOf(merged),
+						Boolean.valueOf(actual.merge(ours, theirs)));
+				assertEquals(expect.getResultTreeId(),
+						actual.getResultTreeId());
+				assertEquals(expect.getUnmergedPaths(),
+						actual.getUnmergedPaths());
+				assertEquals(expect.getModifiedFiles(),
+						actual.getModifiedFiles());
+				assertEquals(expect.getMergeResults().keySet(),
+						actual.getMergeResults().keySet());
+				assertEquals(expect.getToBeCheckedOut().keySet(),
+						actual.getToBeCheckedOut().keySet());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	/**
 	 * Merging a change involving large binary files should short-circuit reads.
 	 *
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchFetcherTest {
+	private TestProtocol<Object> testProtocol;
+
+	private ExecutorService pool;
+
+	@Before
+	public void setUp() {
+		testProtocol = new TestProtocol<>((req, db) -> new UploadPack(db), null);
+		Transport.register(testProtocol);
+		pool = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Transport.unregister(testProtocol);
+		pool.shutdown();
+		pool.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testFetchMany() throws Exception {
+		BatchFetcher fetcher = new BatchFetcher(pool);
+		List<InMemoryRepository> clients = new ArrayList<>();
+		List<RevCommit> tips = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			InMemoryRepository server = newRepo("server" + i);
+			TestRepository<InMemoryRepository> remote = new TestRepository<>(
+					server);
+			RevCommit tip = remote.commit().message("tip " + i).create();
+			remote.update("master", tip);
+			tips.add(tip);
+
+			InMemoryRepository client = newRepo("client" + i);
+			setOrigin(client, testProtocol.register(new Object(), server));
+			clients.add(client);
+			fetcher.add(client, "origin");
+		}
+
+		List<BatchFetcher.Result> results = fetcher.fetch();
+		assertEquals(5, results.size());
+		for (int i = 0; i < 5; i++) {
+			BatchFetcher.Result r = results.get(i);
+			assertSame(clients.get(i), r.getRepository());
+			assertNull(r.getException());
+			assertNotNull(r.getFetchResult());
+			assertEquals(tips.get(i), clients.get(i)
+					.exactRef("refs/remotes/origin/master").getObjectId());
+		}
+
+		Map<String, BatchFetcher.HostStatistics> stats = fetcher
+				.getStatistics();
+		BatchFetcher.HostStatistics s = stats.get("test");
+		assertEquals(5, s.getFetches());
+		assertEquals(0, s.getFailures());
+		assertTrue(s.getMaxTime(TimeUnit.NANOSECONDS) >= s
+				.getAverageTime(TimeUnit.NANOSECONDS));
+	}
+
+	@Test
+	public void testFailureDoesNotStopOthers() throws Exception {
+		InMemoryRepository server = newRepo("server");
+		TestRepository<InMemoryRepository> remote = new TestRepository<>(
+				server);
+		RevCommit tip = remote.commit().message("tip").create();
+		remote.update("master", tip);
+
+		InMemoryRepository good = newRepo("good");
+		setOrigin(good, testProtocol.register(new Object(), server));
+		InMemoryRepository bad = newRepo("bad");
+
+		// "bad" has no such remote, so its fetch fails.
+		List<BatchFetcher.Result> results = new BatchFetcher(pool)
+				.add(bad, "origin").add(good, "origin").fetch();
+		assertNotNull(results.get(0).getException());
+		assertNull(results.get(0).getFetchResult());
+		assertNull(results.get(1).getException());
+		assertEquals(tip, good.exactRef("refs/remotes/origin/master")
+				.getObjectId());
+	}
+
+	private static void setOrigin(InMemoryRepository db, URIish uri)
+			throws Exception {
+		StoredConfig cfg = db.getConfig();
+		RemoteConfig rc = new RemoteConfig(cfg, "origin");
+		rc.addURI(uri);
+		rc.addFetchRefSpec(
+				new RefSpec("+refs/heads/*:refs/remotes/origin/*"));
+		rc.update(cfg);
+	}
+
+	private static InMemoryRepository newRepo(String name) {
+		return new InMemoryRepository(new DfsRepositoryDescription(name));
+	}
+}
@@ -46,7 +46,9 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.net.Socket;
 
 import org.junit.Test;
 
@@ -93,4 +95,56 @@ public void testDaemonRestart() throws Exception {
 		Thread.sleep(1000);
 		d.stopAndWait();
 	}
+
+	@Test
+	public void testDaemonRejectsWhenAllWorkersBusy() throws Exception {
+		Daemon d = new Daemon();
+		d.setMaxConnections(1);
+		d.setMaxQueuedConnections(0);
+		d.start();
+		InetSocketAddress address = d.getAddress();
+		try (Socket busy = new Socket(address.getAddress(),
+				address.getPort())) {
+			// The first client never sends a command and occupies the
+			// only worker.
+			for (int i = 0; i < 100 && d.getActiveSessions() == 0; i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(1, d.getActiveSessions());
+
+			try (Socket rejected = new Socket(address.getAddress(),
+					address.getPort())) {
+				InputStream in = rejected.getInputStream();
+				assertEquals("Connection should be closed", -1, in.read());
+			}
+			assertEquals(1, d.getRejectedSessions());
+			assertEquals(0, d.getQueuedSessions());
+		} finally {
+			d.stopAndWait();
+		}
+	}
+
+	@Test
+	public void testDaemonLimitsConnectionsPerAddress() throws Exception {
+		Daemon d = new Daemon();
+		d.setMaxConnectionsPerAddress(1);
+		d.start();
+		InetSocketAddress address = d.getAddress();
+		try (Socket first = new Socket(address.getAddress(),
+				address.getPort())) {
+			for (int i = 0; i < 100 && d.getActiveSessions() == 0; i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(1, d.getActiveSessions());
+
+			try (Socket second = new Socket(address.getAddress(),
+					address.getPort())) {
+				InputStream in = second.getInputStream();
+				assertEquals("Connection should be closed", -1, in.read());
+			}
+			assertEquals(1, d.getRejectedSessions());
+		} finally {
+			d.stopAndWait();
+		}
+	}
 }
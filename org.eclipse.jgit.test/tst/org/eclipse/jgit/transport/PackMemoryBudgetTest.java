@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.revwalk.RevBlob;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.PackAdmissionController.Request;
+import org.junit.After;
+import org.junit.Test;
+
+public class PackMemoryBudgetTest {
+	private TestProtocol<Object> testProtocol;
+
+	@After
+	public void tearDown() {
+		if (testProtocol != null) {
+			Transport.unregister(testProtocol);
+		}
+	}
+
+	@Test
+	public void testAdmitWithinBudget() throws Exception {
+		PackMemoryBudget budget = new PackMemoryBudget(100, 0,
+				TimeUnit.MILLISECONDS);
+		Request a = request(60);
+		Request b = request(40);
+		budget.admit(null, a);
+		budget.admit(null, b);
+		assertEquals(100, budget.getUsed());
+		budget.release(null, a);
+		budget.release(null, b);
+		assertEquals(0, budget.getUsed());
+	}
+
+	@Test
+	public void testOversizeRequestUsesWholeBudget() throws Exception {
+		PackMemoryBudget budget = new PackMemoryBudget(100, 0,
+				TimeUnit.MILLISECONDS);
+		Request big = request(1000);
+		budget.admit(null, big);
+		assertEquals(100, budget.getUsed());
+		budget.release(null, big);
+		assertEquals(0, budget.getUsed());
+	}
+
+	@Test
+	public void testRejectAfterTimeout() throws Exception {
+		PackMemoryBudget budget = new PackMemoryBudget(100, 10,
+				TimeUnit.MILLISECONDS);
+		budget.admit(null, request(60));
+		try {
+			budget.admit(null, request(60));
+			fail("request should have been rejected");
+		} catch (ServiceMayNotContinueException e) {
+			assertEquals(HttpURLConnection.HTTP_UNAVAILABLE,
+					e.getStatusCode());
+		}
+		assertEquals(60, budget.getUsed());
+	}
+
+	@Test
+	public void testWaitForRelease() throws Exception {
+		PackMemoryBudget budget = new PackMemoryBudget(100, 1,
+				TimeUnit.MINUTES);
+		Request first = request(60);
+		budget.admit(null, first);
+
+		AtomicReference<Exception> err = new AtomicReference<>();
+		Thread t = new Thread(() -> {
+			try {
+				budget.admit(null, request(60));
+			} catch (Exception e) {
+				err.set(e);
+			}
+		});
+		t.start();
+		t.join(50);
+		assertTrue(t.isAlive());
+
+		budget.release(null, first);
+		t.join();
+		assertEquals(null, err.get());
+		assertEquals(60, budget.getUsed());
+	}
+
+	@Test
+	public void testFetchIsAdmittedAndReleased() throws Exception {
+		InMemoryRepository server = newRepo("server");
+		InMemoryRepository client = newRepo("client");
+		TestRepository<InMemoryRepository> remote = new TestRepository<>(
+				server);
+		RevBlob blob = remote.blob("foo");
+		RevCommit commit = remote.commit(remote.tree(remote.file("foo", blob)));
+		remote.update("master", commit);
+
+		PackMemoryBudget budget = new PackMemoryBudget(1 << 20, 0,
+				TimeUnit.MILLISECONDS);
+		AtomicReference<Request> admitted = new AtomicReference<>();
+		testProtocol = new TestProtocol<>((req, db) -> {
+			UploadPack up = new UploadPack(db);
+			up.setPackAdmissionController(new PackAdmissionController() {
+				@Override
+				public void admit(UploadPack p, Request r)
+						throws ServiceMayNotContinueException,
+						InterruptedIOException {
+					budget.admit(p, r);
+					admitted.set(r);
+				}
+
+				@Override
+				public void release(UploadPack p, Request r) {
+					budget.release(p, r);
+				}
+			});
+			return up;
+		}, null);
+		URIish uri = testProtocol.register(new Object(), server);
+
+		try (Transport tn = testProtocol.open(uri, client, "server")) {
+			tn.fetch(NullProgressMonitor.INSTANCE, Collections
+					.singletonList(new RefSpec("refs/heads/master")));
+		}
+		assertTrue(client.hasObject(blob));
+
+		Request r = admitted.get();
+		assertEquals(1, r.getWantCount());
+		assertEquals(3, r.getObjectCount());
+		assertTrue(0 < r.getEstimatedBytes());
+		assertEquals(0, budget.getUsed());
+	}
+
+	@Test
+	public void testFetchRejected() throws Exception {
+		InMemoryRepository server = newRepo("server");
+		InMemoryRepository client = newRepo("client");
+		TestRepository<InMemoryRepository> remote = new TestRepository<>(
+				server);
+		RevBlob blob = remote.blob("foo");
+		RevCommit commit = remote.commit(remote.tree(remote.file("foo", blob)));
+		remote.update("master", commit);
+
+		// Another request holds the entire budget.
+		PackMemoryBudget budget = new PackMemoryBudget(100, 0,
+				TimeUnit.MILLISECONDS);
+		budget.admit(null, request(100));
+		testProtocol = new TestProtocol<>((req, db) -> {
+			UploadPack up = new UploadPack(db);
+			up.setPackAdmissionController(budget);
+			return up;
+		}, null);
+		URIish uri = testProtocol.register(new Object(), server);
+
+		try (Transport tn = testProtocol.open(uri, client, "server")) {
+			tn.fetch(NullProgressMonitor.INSTANCE, Collections
+					.singletonList(new RefSpec("refs/heads/master")));
+			fail("fetch should have been rejected");
+		} catch (TransportException e) {
+			assertTrue(e.getMessage().contains(
+					JGitText.get().serverBusyTryAgainLater));
+		}
+		assertFalse(client.hasObject(blob));
+	}
+
+	private static Request request(long bytes) {
+		return new Request(1, 0, 0, -1, 1, bytes);
+	}
+
+	private static InMemoryRepository newRepo(String name) {
+		return new InMemoryRepository(new DfsRepositoryDescription(name));
+	}
+}
@@ -57,8 +57,12 @@
 import java.io.InputStream;
 import java.security.MessageDigest;
 import java.text.MessageFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.Deflater;
 
+import org.eclipse.jgit.errors.CorruptObjectException;
 import org.eclipse.jgit.errors.TooLargeObjectInPackException;
 import org.eclipse.jgit.internal.JGitText;
 import org.eclipse.jgit.internal.storage.file.ObjectDirectoryPackParser;
@@ -66,11 +70,15 @@
 import org.eclipse.jgit.junit.JGitTestUtil;
 import org.eclipse.jgit.junit.RepositoryTestCase;
 import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectChecker;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
 import org.eclipse.jgit.revwalk.RevBlob;
 import org.eclipse.jgit.util.NB;
 import org.eclipse.jgit.util.TemporaryBuffer;
@@ -445,6 +453,117 @@ public void testDataAfterPackFooterSplitHeaderRead() throws Exception {
 		assertEquals(0x7e, in.read());
 	}
 
+	@Test
+	public void testObjectCheckerExecutor() throws Exception {
+		TemporaryBuffer.Heap pack = new TemporaryBuffer.Heap(64 * 1024);
+		packHeader(pack, 40);
+		for (int i = 0; i < 40; i++) {
+			byte[] tree = tree("a" + i, "b" + i);
+			wholeObject(pack, Constants.OBJ_TREE, tree);
+		}
+		digest(pack);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			PackParser p = index(new ByteArrayInputStream(pack.toByteArray()));
+			p.setObjectChecker(new ObjectChecker());
+			p.setObjectCheckerExecutor(executor);
+			p.parse(NullProgressMonitor.INSTANCE);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testObjectCheckerExecutorReportsCorruptObject()
+			throws Exception {
+		TemporaryBuffer.Heap pack = new TemporaryBuffer.Heap(64 * 1024);
+		packHeader(pack, 40);
+		for (int i = 0; i < 40; i++) {
+			byte[] tree = i == 17 ? tree("a", "a") : tree("a" + i, "b" + i);
+			wholeObject(pack, Constants.OBJ_TREE, tree);
+		}
+		digest(pack);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			PackParser p = index(new ByteArrayInputStream(pack.toByteArray()));
+			p.setObjectChecker(new ObjectChecker());
+			p.setObjectCheckerExecutor(executor);
+			p.parse(NullProgressMonitor.INSTANCE);
+			fail("Pack with duplicate tree entries was accepted");
+		} catch (CorruptObjectException err) {
+			assertEquals(ObjectChecker.ErrorType.DUPLICATE_ENTRIES,
+					err.getErrorType());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testObjectCheckerExecutorJoinedOnFailure() throws Exception {
+		TemporaryBuffer.Heap pack = new TemporaryBuffer.Heap(64 * 1024);
+		packHeader(pack, 40);
+		for (int i = 0; i < 40; i++) {
+			byte[] tree = tree("a" + i, "b" + i);
+			wholeObject(pack, Constants.OBJ_TREE, tree);
+		}
+		// No trailing digest, parsing fails after all objects were read.
+
+		AtomicInteger running = new AtomicInteger();
+		ObjectChecker slow = new ObjectChecker() {
+			@Override
+			public void check(AnyObjectId id, int objType, byte[] raw)
+					throws CorruptObjectException {
+				running.incrementAndGet();
+				try {
+					Thread.sleep(5);
+					super.check(id, objType, raw);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					running.decrementAndGet();
+				}
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			PackParser p = index(new ByteArrayInputStream(pack.toByteArray()));
+			p.setObjectChecker(slow);
+			p.setObjectCheckerExecutor(executor);
+			p.parse(NullProgressMonitor.INSTANCE);
+			fail("Truncated pack was accepted");
+		} catch (IOException err) {
+			assertEquals(0, running.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static byte[] tree(String... names) {
+		TreeFormatter fmt = new TreeFormatter();
+		ObjectId id = ObjectId
+				.fromString("0123456789012345678901234567890123456789");
+		for (String name : names) {
+			fmt.append(name, FileMode.REGULAR_FILE, id);
+		}
+		return fmt.toByteArray();
+	}
+
+	private static void wholeObject(TemporaryBuffer.Heap tinyPack, int type,
+			byte[] data) throws IOException {
+		long sz = data.length;
+		int c = (type << 4) | (int) (sz & 15);
+		sz >>>= 4;
+		while (sz > 0) {
+			tinyPack.write(c | 0x80);
+			c = (int) (sz & 0x7f);
+			sz >>>= 7;
+		}
+		tinyPack.write(c);
+		deflate(tinyPack, data);
+	}
+
 	private static void packHeader(TemporaryBuffer.Heap tinyPack, int cnt)
 			throws IOException {
 		final byte[] hdr = new byte[8];
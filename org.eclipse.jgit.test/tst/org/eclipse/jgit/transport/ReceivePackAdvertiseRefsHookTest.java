@@ -52,9 +52,11 @@
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.MessageDigest;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -64,6 +66,8 @@
 
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.errors.UnpackException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
 import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
 import org.eclipse.jgit.internal.storage.pack.BinaryDelta;
 import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
@@ -79,6 +83,7 @@
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand.Result;
 import org.eclipse.jgit.util.NB;
 import org.eclipse.jgit.util.TemporaryBuffer;
 import org.junit.After;
@@ -515,6 +520,191 @@ public void testUsingUnknownTreeFails() throws Exception {
 		assertSame(PacketLineIn.END, r.readString());
 	}
 
+	@Test
+	public void testBitmapConnectivityCheck() throws Exception {
+		new GC((FileRepository) dst).gc();
+
+		TestRepository<Repository> s = new TestRepository<>(src);
+		RevBlob n = s.blob("n");
+		RevCommit N = s.commit().parent(B).add("q", n).create();
+
+		final TemporaryBuffer.Heap pack = new TemporaryBuffer.Heap(1024);
+		packHeader(pack, 3);
+		copy(pack, src.open(N));
+		copy(pack, src.open(s.parseBody(N).getTree()));
+		copy(pack, src.open(n));
+		digest(pack);
+
+		final TemporaryBuffer.Heap inBuf = new TemporaryBuffer.Heap(1024);
+		final PacketLineOut inPckLine = new PacketLineOut(inBuf);
+		inPckLine.writeString(ObjectId.zeroId().name() + ' ' + N.name() + ' '
+				+ "refs/heads/s" + '\0'
+				+ BasePackPushConnection.CAPABILITY_REPORT_STATUS);
+		inPckLine.end();
+		pack.writeTo(inBuf, PM);
+
+		final TemporaryBuffer.Heap outBuf = new TemporaryBuffer.Heap(1024);
+		final ReceivePack rp = new ReceivePack(dst);
+		rp.setCheckReceivedObjects(true);
+		rp.setCheckReferencedObjectsAreReachable(true);
+		rp.setConnectivityChecker(new BitmapConnectivityChecker());
+		rp.setAdvertiseRefsHook(new HidePrivateHook());
+		receive(rp, inBuf, outBuf);
+		assertTrue(rp.getReceivedPackStatistics()
+				.getTimeConnectivityCheck() >= 0);
+
+		final PacketLineIn r = asPacketLineIn(outBuf);
+		String master = r.readString();
+		int nul = master.indexOf('\0');
+		assertTrue("has capability list", nul > 0);
+		assertEquals(B.name() + ' ' + R_MASTER, master.substring(0, nul));
+		assertSame(PacketLineIn.END, r.readString());
+
+		assertEquals("unpack ok", r.readString());
+		assertEquals("ok refs/heads/s", r.readString());
+		assertSame(PacketLineIn.END, r.readString());
+		assertEquals(N, dst.resolve("refs/heads/s"));
+	}
+
+	@Test
+	public void testBitmapConnectivityCheckUnknownBlobFails()
+			throws Exception {
+		new GC((FileRepository) dst).gc();
+
+		TestRepository<Repository> s = new TestRepository<>(src);
+		RevBlob n = s.blob("n");
+		RevCommit N = s.commit().parent(B).add("q", n).create();
+
+		// Don't include the blob in the pack.
+		//
+		final TemporaryBuffer.Heap pack = new TemporaryBuffer.Heap(1024);
+		packHeader(pack, 2);
+		copy(pack, src.open(N));
+		copy(pack, src.open(s.parseBody(N).getTree()));
+		digest(pack);
+
+		final TemporaryBuffer.Heap inBuf = new TemporaryBuffer.Heap(1024);
+		final PacketLineOut inPckLine = new PacketLineOut(inBuf);
+		inPckLine.writeString(ObjectId.zeroId().name() + ' ' + N.name() + ' '
+				+ "refs/heads/s" + '\0'
+				+ BasePackPushConnection.CAPABILITY_REPORT_STATUS);
+		inPckLine.end();
+		pack.writeTo(inBuf, PM);
+
+		final TemporaryBuffer.Heap outBuf = new TemporaryBuffer.Heap(1024);
+		final ReceivePack rp = new ReceivePack(dst);
+		rp.setCheckReceivedObjects(true);
+		rp.setCheckReferencedObjectsAreReachable(true);
+		rp.setConnectivityChecker(new BitmapConnectivityChecker());
+		rp.setAdvertiseRefsHook(new HidePrivateHook());
+		try {
+			receive(rp, inBuf, outBuf);
+			fail("Expected UnpackException");
+		} catch (UnpackException failed) {
+			Throwable err = failed.getCause();
+			assertTrue(err instanceof MissingObjectException);
+			MissingObjectException moe = (MissingObjectException) err;
+			assertEquals(n, moe.getObjectId());
+		}
+	}
+
+	@Test
+	public void testQuarantineAccepted() throws Exception {
+		TestRepository<Repository> s = new TestRepository<>(src);
+		RevBlob n = s.blob("n");
+		RevCommit N = s.commit().parent(B).add("q", n).create();
+
+		final TemporaryBuffer.Heap inBuf = quarantinePush(s, N, n);
+		final TemporaryBuffer.Heap outBuf = new TemporaryBuffer.Heap(1024);
+		final ReceivePack rp = new ReceivePack(dst);
+		rp.setCheckReferencedObjectsAreReachable(true);
+		rp.setQuarantineObjects(true);
+		rp.setAdvertiseRefsHook(new HidePrivateHook());
+		rp.setPreReceiveHook(new PreReceiveHook() {
+			@Override
+			public void onPreReceive(ReceivePack r,
+					Collection<ReceiveCommand> commands) {
+				try {
+					assertFalse(dst.hasObject(n));
+					assertNotNull(r.getRevWalk().parseCommit(N));
+					assertTrue(r.getRevWalk().getObjectReader().has(n));
+				} catch (IOException e) {
+					throw new AssertionError(e);
+				}
+			}
+		});
+		receive(rp, inBuf, outBuf);
+
+		final PacketLineIn r = asPacketLineIn(outBuf);
+		r.readString();
+		assertSame(PacketLineIn.END, r.readString());
+		assertEquals("unpack ok", r.readString());
+		assertEquals("ok refs/heads/s", r.readString());
+		assertSame(PacketLineIn.END, r.readString());
+		assertEquals(N, dst.resolve("refs/heads/s"));
+		assertTrue(dst.hasObject(n));
+		assertNoIncomingDirectories();
+	}
+
+	@Test
+	public void testQuarantineRejected() throws Exception {
+		TestRepository<Repository> s = new TestRepository<>(src);
+		RevBlob n = s.blob("n");
+		RevCommit N = s.commit().parent(B).add("q", n).create();
+
+		final TemporaryBuffer.Heap inBuf = quarantinePush(s, N, n);
+		final TemporaryBuffer.Heap outBuf = new TemporaryBuffer.Heap(1024);
+		final ReceivePack rp = new ReceivePack(dst);
+		rp.setQuarantineObjects(true);
+		rp.setAdvertiseRefsHook(new HidePrivateHook());
+		rp.setPreReceiveHook(new PreReceiveHook() {
+			@Override
+			public void onPreReceive(ReceivePack r,
+					Collection<ReceiveCommand> commands) {
+				for (ReceiveCommand cmd : commands)
+					cmd.setResult(Result.REJECTED_OTHER_REASON, "nope");
+			}
+		});
+		receive(rp, inBuf, outBuf);
+
+		final PacketLineIn r = asPacketLineIn(outBuf);
+		r.readString();
+		assertSame(PacketLineIn.END, r.readString());
+		assertEquals("unpack ok", r.readString());
+		assertEquals("ng refs/heads/s nope", r.readString());
+		assertSame(PacketLineIn.END, r.readString());
+		assertNull(dst.resolve("refs/heads/s"));
+		assertFalse(dst.hasObject(N));
+		assertFalse(dst.hasObject(n));
+		assertNoIncomingDirectories();
+	}
+
+	private TemporaryBuffer.Heap quarantinePush(TestRepository<Repository> s,
+			RevCommit N, RevBlob n) throws Exception {
+		final TemporaryBuffer.Heap pack = new TemporaryBuffer.Heap(1024);
+		packHeader(pack, 3);
+		copy(pack, src.open(N));
+		copy(pack, src.open(s.parseBody(N).getTree()));
+		copy(pack, src.open(n));
+		digest(pack);
+
+		final TemporaryBuffer.Heap inBuf = new TemporaryBuffer.Heap(1024);
+		final PacketLineOut inPckLine = new PacketLineOut(inBuf);
+		inPckLine.writeString(ObjectId.zeroId().name() + ' ' + N.name() + ' '
+				+ "refs/heads/s" + '\0'
+				+ BasePackPushConnection.CAPABILITY_REPORT_STATUS);
+		inPckLine.end();
+		pack.writeTo(inBuf, PM);
+		return inBuf;
+	}
+
+	private void assertNoIncomingDirectories() {
+		File objects = ((ObjectDirectory) dst.getObjectDatabase())
+				.getDirectory();
+		for (String name : objects.list())
+			assertFalse(name, name.startsWith("incoming-"));
+	}
+
 	private static void packHeader(TemporaryBuffer.Heap tinyPack, int cnt)
 			throws IOException {
 		final byte[] hdr = new byte[8];
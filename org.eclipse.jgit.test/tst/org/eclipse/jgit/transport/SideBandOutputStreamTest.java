@@ -51,15 +51,23 @@
 import static org.eclipse.jgit.transport.SideBandOutputStream.MAX_BUF;
 import static org.eclipse.jgit.transport.SideBandOutputStream.SMALL_BUF;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.text.MessageFormat;
 
 import org.eclipse.jgit.internal.JGitText;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.util.io.FileRegionWriter;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -259,6 +267,66 @@ public void testConstructor_RejectsBadBufferSize() throws Exception {
 		}
 	}
 
+	@Test
+	public void testWriteRegion() throws IOException {
+		File tmp = File.createTempFile("region", ".bin");
+		try {
+			Files.write(tmp.toPath(), Constants.encode("xxabcdefghijkl"));
+			RegionOutputStream regions = new RegionOutputStream();
+			@SuppressWarnings("resource" /* java 7 */)
+			final SideBandOutputStream out = new SideBandOutputStream(CH_DATA,
+					HDR_SIZE + 5, regions);
+			out.write('z');
+			assertTrue(out.canWriteRegion());
+			out.writeRegion(FileChannel.open(tmp.toPath()), 2, 12);
+			out.write('z');
+			out.flush();
+			assertEquals(3, regions.count);
+			regions.close();
+			assertFalse(regions.channel.isOpen());
+			assertEquals("0006\001z000a\001abcde000a\001fghij0007\001kl0006\001z",
+					new String(regions.toByteArray(),
+							Constants.CHARACTER_ENCODING));
+		} finally {
+			Files.delete(tmp.toPath());
+		}
+		assertFalse(new SideBandOutputStream(CH_DATA, SMALL_BUF, rawOut)
+				.canWriteRegion());
+	}
+
+	private static class RegionOutputStream extends ByteArrayOutputStream
+			implements FileRegionWriter {
+		int count;
+
+		FileChannel channel;
+
+		@Override
+		public boolean canWriteRegion() {
+			return true;
+		}
+
+		@Override
+		public void writeRegion(FileChannel file, long position, long len)
+				throws IOException {
+			count++;
+			ByteBuffer buf = ByteBuffer.allocate((int) len);
+			while (buf.hasRemaining()) {
+				if (file.read(buf, position + buf.position()) < 0) {
+					throw new EOFException();
+				}
+			}
+			write(buf.array(), 0, buf.limit());
+			channel = file;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (channel != null) {
+				channel.close();
+			}
+		}
+	}
+
 	private void assertBuffer(String exp) throws IOException {
 		assertEquals(exp, new String(rawOut.toByteArray(),
 				Constants.CHARACTER_ENCODING));
@@ -632,6 +632,29 @@ public void testV2LsRefsRefPrefixNoSlash() throws Exception {
 		assertTrue(pckIn.readString() == PacketLineIn.END);
 	}
 
+	@Test
+	public void testV2LsRefsRefPrefixOverlapping() throws Exception {
+		RevCommit tip = remote.commit().message("message").create();
+		remote.update("master", tip);
+		remote.update("other", tip);
+		server.updateRef("HEAD").link("refs/heads/master");
+
+		ByteArrayInputStream recvStream = uploadPackV2(
+			"command=ls-refs\n",
+			PacketLineIn.DELIM,
+			"symrefs",
+			"ref-prefix refs/heads/other",
+			"ref-prefix refs/heads/",
+			"ref-prefix HEAD",
+			PacketLineIn.END);
+		PacketLineIn pckIn = new PacketLineIn(recvStream);
+
+		assertThat(pckIn.readString(), is(tip.toObjectId().getName() + " HEAD symref-target:refs/heads/master"));
+		assertThat(pckIn.readString(), is(tip.toObjectId().getName() + " refs/heads/master"));
+		assertThat(pckIn.readString(), is(tip.toObjectId().getName() + " refs/heads/other"));
+		assertTrue(pckIn.readString() == PacketLineIn.END);
+	}
+
 	@Test
 	public void testV2LsRefsUnrecognizedArgument() throws Exception {
 		thrown.expect(PackProtocolException.class);
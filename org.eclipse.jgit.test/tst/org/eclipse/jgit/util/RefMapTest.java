@@ -145,6 +145,23 @@ public void testNotEmpty_WithPrefix() {
 		assertSame(master, map.values().iterator().next());
 	}
 
+	@Test
+	public void testPartialNamePrefix() {
+		final Ref master = newRef("refs/heads/master", ID_ONE);
+		final Ref master2 = newRef("refs/heads/master2", ID_TWO);
+		final Ref other = newRef("refs/heads/other", ID_ONE);
+		packed = toList(master, other);
+		loose = toList(master2);
+
+		RefMap map = new RefMap("refs/heads/master", packed, loose, resolved);
+		assertEquals(2, map.size());
+		Iterator<Ref> itr = map.values().iterator();
+		assertSame(master, itr.next());
+		assertSame(master2, itr.next());
+		assertFalse(itr.hasNext());
+		assertSame(master2, map.get("2"));
+	}
+
 	@Test
 	public void testClear() {
 		final Ref master = newRef("refs/heads/master", ID_ONE);
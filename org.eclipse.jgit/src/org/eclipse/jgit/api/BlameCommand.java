@@ -53,6 +53,7 @@
 
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.blame.BlameCache;
 import org.eclipse.jgit.blame.BlameGenerator;
 import org.eclipse.jgit.blame.BlameResult;
 import org.eclipse.jgit.diff.DiffAlgorithm;
@@ -86,6 +87,8 @@ public class BlameCommand extends GitCommand<BlameResult> {
 
 	private Boolean followFileRenames;
 
+	private BlameCache blameCache;
+
 	/**
 	 * Constructor for BlameCommand
 	 *
@@ -161,6 +164,23 @@ public BlameCommand setFollowFileRenames(boolean follow) {
 		return this;
 	}
 
+	/**
+	 * Set the cache of previously computed blame results.
+	 * <p>
+	 * Results stored in the cache let the blame stop walking history at any
+	 * commit already blamed for the same path. The result of this command is
+	 * stored back into the cache.
+	 *
+	 * @param cache
+	 *            the cache; null to disable caching.
+	 * @return {@code this}
+	 * @since 5.1
+	 */
+	public BlameCommand setBlameCache(BlameCache cache) {
+		blameCache = cache;
+		return this;
+	}
+
 	/**
 	 * Configure the command to compute reverse blame (history of deletes).
 	 *
@@ -215,6 +235,8 @@ public BlameResult call() throws GitAPIException {
 				gen.setTextComparator(textComparator);
 			if (followFileRenames != null)
 				gen.setFollowFileRenames(followFileRenames.booleanValue());
+			if (blameCache != null)
+				gen.setBlameCache(blameCache);
 
 			if (reverseEndCommits != null)
 				gen.reverse(startCommit, reverseEndCommits);
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.blame;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.EditListCache;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Cache of complete blame results of a file at a commit.
+ * <p>
+ * A {@link org.eclipse.jgit.blame.BlameGenerator} given a cache stores the
+ * blame of the commit it started from, and stops walking history for any
+ * lines that reach a commit whose blame is cached, taking their sources from
+ * the cache instead. Blaming a file again after a few new commits therefore
+ * only processes those commits.
+ * <p>
+ * Results depend on the diff algorithm, text comparator and rename detection
+ * used, so these are part of the {@link Key} of each result. Implementations
+ * must be safe for use by multiple threads.
+ *
+ * @since 5.1
+ */
+public abstract class BlameCache {
+	/** Identifies the blame of a file at a commit. */
+	public static final class Key {
+		private final ObjectId commit;
+
+		private final String path;
+
+		private final String algorithm;
+
+		private final String comparator;
+
+		private final int renameScore;
+
+		/**
+		 * Create a key.
+		 *
+		 * @param commit
+		 *            commit the file was blamed at.
+		 * @param path
+		 *            path of the file in {@code commit}.
+		 * @param algorithm
+		 *            algorithm computing the differences.
+		 * @param comparator
+		 *            comparator deciding which lines are equal.
+		 * @param renameScore
+		 *            minimum score of renames followed; -1 if renames are not
+		 *            followed.
+		 */
+		public Key(AnyObjectId commit, String path, DiffAlgorithm algorithm,
+				RawTextComparator comparator, int renameScore) {
+			this.commit = commit.copy();
+			this.path = path;
+			this.algorithm = algorithm.getClass().getName();
+			this.comparator = EditListCache.Key.nameOf(comparator);
+			this.renameScore = renameScore;
+		}
+
+		/** @return commit the file was blamed at. */
+		public ObjectId getCommit() {
+			return commit;
+		}
+
+		/** @return path of the file in the commit. */
+		public String getPath() {
+			return path;
+		}
+
+		/** @return name of the algorithm computing the differences. */
+		public String getAlgorithm() {
+			return algorithm;
+		}
+
+		/** @return name of the comparator deciding which lines are equal. */
+		public String getComparator() {
+			return comparator;
+		}
+
+		/**
+		 * @return minimum score of renames followed; -1 if renames are not
+		 *         followed.
+		 */
+		public int getRenameScore() {
+			return renameScore;
+		}
+
+		/**
+		 * Get a digest of this key.
+		 *
+		 * @return SHA-1 of all fields of this key, suitable as a file name.
+		 */
+		public ObjectId digest() {
+			return ObjectId.fromRaw(Constants.newMessageDigest()
+					.digest(Constants.encode(toString())));
+		}
+
+		@Override
+		public int hashCode() {
+			return commit.hashCode() * 31 + path.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return commit.equals(k.commit) && path.equals(k.path)
+					&& algorithm.equals(k.algorithm)
+					&& comparator.equals(k.comparator)
+					&& renameScore == k.renameScore;
+		}
+
+		@Override
+		public String toString() {
+			return commit.name() + ' ' + algorithm + ' ' + comparator + ' '
+					+ renameScore + ' ' + path;
+		}
+	}
+
+	/** Source of a range of lines of a file. */
+	public static final class Entry {
+		private final int resultStart;
+
+		private final int length;
+
+		private final ObjectId sourceCommit;
+
+		private final String sourcePath;
+
+		private final int sourceStart;
+
+		/**
+		 * Create an entry.
+		 *
+		 * @param resultStart
+		 *            first line (0-based) of the range in the blamed file.
+		 * @param length
+		 *            number of lines in the range.
+		 * @param sourceCommit
+		 *            commit that introduced the lines.
+		 * @param sourcePath
+		 *            path of the file in {@code sourceCommit}.
+		 * @param sourceStart
+		 *            first line (0-based) of the range in the source file.
+		 */
+		public Entry(int resultStart, int length, AnyObjectId sourceCommit,
+				String sourcePath, int sourceStart) {
+			this.resultStart = resultStart;
+			this.length = length;
+			this.sourceCommit = sourceCommit.copy();
+			this.sourcePath = sourcePath;
+			this.sourceStart = sourceStart;
+		}
+
+		/** @return first line (0-based) of the range in the blamed file. */
+		public int getResultStart() {
+			return resultStart;
+		}
+
+		/** @return number of lines in the range. */
+		public int getLength() {
+			return length;
+		}
+
+		/** @return commit that introduced the lines. */
+		public ObjectId getSourceCommit() {
+			return sourceCommit;
+		}
+
+		/** @return path of the file in the source commit. */
+		public String getSourcePath() {
+			return sourcePath;
+		}
+
+		/** @return first line (0-based) of the range in the source file. */
+		public int getSourceStart() {
+			return sourceStart;
+		}
+
+		@Override
+		public String toString() {
+			return resultStart + "+" + length + " " + sourceCommit.name() //$NON-NLS-1$ //$NON-NLS-2$
+					+ ' ' + sourcePath + ':' + sourceStart;
+		}
+	}
+
+	/**
+	 * Look up the blame of a file.
+	 *
+	 * @param key
+	 *            the file, commit and the way it was blamed.
+	 * @return entries sorted by result line and covering every line of the
+	 *         file, or null if not cached.
+	 * @throws java.io.IOException
+	 *             the cache could not be read.
+	 */
+	@Nullable
+	public abstract List<Entry> get(Key key) throws IOException;
+
+	/**
+	 * Store the blame of a file.
+	 *
+	 * @param key
+	 *            the file, commit and the way it was blamed.
+	 * @param entries
+	 *            entries sorted by result line and covering every line of the
+	 *            file.
+	 * @throws java.io.IOException
+	 *             the cache could not be written.
+	 */
+	public abstract void put(Key key, List<Entry> entries)
+			throws IOException;
+}
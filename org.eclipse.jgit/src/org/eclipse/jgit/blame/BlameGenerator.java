@@ -48,8 +48,13 @@
 import static org.eclipse.jgit.lib.FileMode.TYPE_MASK;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.blame.Candidate.BlobCandidate;
@@ -63,6 +68,7 @@
 import org.eclipse.jgit.diff.RawText;
 import org.eclipse.jgit.diff.RawTextComparator;
 import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.internal.JGitText;
 import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.MutableObjectId;
@@ -149,6 +155,17 @@ public class BlameGenerator implements AutoCloseable {
 	private Candidate outCandidate;
 	private Region outRegion;
 
+	private BlameCache blameCache;
+
+	/** Commit whose blame is stored into {@link #blameCache} when done. */
+	private RevCommit cacheCommit;
+
+	/** Number of lines of the file in {@link #cacheCommit}. */
+	private int cacheLines;
+
+	/** Regions reported so far; null if the result will not be cached. */
+	private List<BlameCache.Entry> cacheLog;
+
 	/**
 	 * Create a blame generator for the repository and path (relative to
 	 * repository)
@@ -250,6 +267,30 @@ public BlameGenerator setFollowFileRenames(boolean follow) {
 		return this;
 	}
 
+	/**
+	 * Set the cache of blame results.
+	 * <p>
+	 * When blaming from a commit, the generator takes the source of any lines
+	 * reaching a commit with a cached result for the file from the cache,
+	 * instead of walking further back in history. Only results computed with
+	 * the same diff algorithm, text comparator and rename detection are
+	 * used. Once done, the complete
+	 * result is stored into the cache for the starting commit, unless
+	 * uncommitted content was also pushed. Regions taken from the cache have
+	 * no {@link #getSourceContents()}.
+	 * <p>
+	 * Must be set before the first {@code push}.
+	 *
+	 * @param cache
+	 *            the cache; null to always walk the full history.
+	 * @return {@code this}
+	 * @since 5.1
+	 */
+	public BlameGenerator setBlameCache(@Nullable BlameCache cache) {
+		blameCache = cache;
+		return this;
+	}
+
 	/**
 	 * Obtain the RenameDetector, allowing the application to configure its
 	 * settings for rename score and breaking behavior.
@@ -353,6 +394,11 @@ public BlameGenerator push(String description, AnyObjectId id)
 		c.loadText(reader);
 		c.regionList = new Region(0, 0, c.sourceText.size());
 		remaining = c.sourceText.size();
+		if (blameCache != null && queue == null) {
+			cacheCommit = commit;
+			cacheLines = c.sourceText.size();
+			cacheLog = new ArrayList<>();
+		}
 		push(c);
 		return this;
 	}
@@ -483,6 +529,24 @@ public BlameResult computeBlameResult() throws IOException {
 	 *             repository cannot be read.
 	 */
 	public boolean next() throws IOException {
+		if (!nextRegion()) {
+			storeInCache();
+			return false;
+		}
+		if (cacheLog != null) {
+			if (outCandidate.sourceCommit == null) {
+				cacheLog = null;
+			} else {
+				cacheLog.add(new BlameCache.Entry(outRegion.resultStart,
+						outRegion.length, outCandidate.sourceCommit,
+						outCandidate.sourcePath.getPath(),
+						outRegion.sourceStart));
+			}
+		}
+		return true;
+	}
+
+	private boolean nextRegion() throws IOException {
 		// If there is a source still pending, produce the next region.
 		if (outRegion != null) {
 			Region r = outRegion;
@@ -509,6 +573,9 @@ public boolean next() throws IOException {
 			if (n == null)
 				return done();
 
+			if (blameCache != null && resultFromCache(n))
+				return true;
+
 			int pCnt = n.getParentCount();
 			if (pCnt == 1) {
 				if (processOne(n))
@@ -535,6 +602,124 @@ private boolean done() {
 		return false;
 	}
 
+	private boolean resultFromCache(Candidate n) throws IOException {
+		if (n instanceof ReverseCandidate || n instanceof BlobCandidate
+				|| n.sourceText == null)
+			return false;
+
+		String path = n.sourcePath.getPath();
+		List<BlameCache.Entry> cached = blameCache
+				.get(cacheKey(n.sourceCommit, path));
+		if (cached == null || cached.isEmpty())
+			return false;
+		BlameCache.Entry last = cached.get(cached.size() - 1);
+		if (last.getResultStart() + last.getLength() != n.sourceText.size())
+			return false;
+
+		Map<String, RevCommit> commits = new HashMap<>();
+		try {
+			for (BlameCache.Entry e : cached) {
+				String name = e.getSourceCommit().name();
+				if (!commits.containsKey(name))
+					commits.put(name, revPool.parseCommit(e.getSourceCommit()));
+			}
+		} catch (MissingObjectException pruned) {
+			return false;
+		}
+
+		if (n.sourceCommit == cacheCommit && path.equals(resultPath.getPath()))
+			cacheLog = null; // Already cached; no need to store it again.
+
+		// Split each region of n over the cached entries, giving each
+		// source commit and path its own candidate.
+		Map<String, Candidate> sources = new LinkedHashMap<>();
+		Map<Candidate, Region> tails = new HashMap<>();
+		for (Region r = n.regionList; r != null; r = r.next) {
+			int pos = r.sourceStart;
+			int end = r.sourceStart + r.length;
+			int idx = find(cached, pos);
+			while (pos < end) {
+				BlameCache.Entry e = cached.get(idx++);
+				int len = Math.min(end, e.getResultStart() + e.getLength())
+						- pos;
+				String key = e.getSourceCommit().name() + ' '
+						+ e.getSourcePath();
+				Candidate c = sources.get(key);
+				if (c == null) {
+					c = new Candidate(getRepository(),
+							commits.get(e.getSourceCommit().name()),
+							PathFilter.create(e.getSourcePath()));
+					sources.put(key, c);
+				}
+				Region q = new Region(r.resultStart + (pos - r.sourceStart),
+						e.getSourceStart() + (pos - e.getResultStart()), len);
+				Region tail = tails.put(c, q);
+				if (tail != null)
+					tail.next = q;
+				else
+					c.regionList = q;
+				pos += len;
+			}
+		}
+
+		Candidate head = null;
+		Candidate tail = null;
+		for (Candidate c : sources.values()) {
+			if (tail != null)
+				tail.queueNext = c;
+			else
+				head = c;
+			tail = c;
+		}
+		return result(head);
+	}
+
+	/**
+	 * Find the cached entry holding a line.
+	 *
+	 * @param cached
+	 *            entries sorted by result line.
+	 * @param line
+	 *            line of the blamed file.
+	 * @return index of the entry holding {@code line}.
+	 */
+	private static int find(List<BlameCache.Entry> cached, int line) {
+		int low = 0;
+		int high = cached.size() - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (cached.get(mid).getResultStart() <= line)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	private void storeInCache() throws IOException {
+		if (cacheLog == null)
+			return;
+		List<BlameCache.Entry> log = cacheLog;
+		cacheLog = null;
+
+		int lines = 0;
+		for (BlameCache.Entry e : log)
+			lines += e.getLength();
+		if (lines != cacheLines)
+			return;
+		Collections.sort(log, (a, b) -> Integer.compare(a.getResultStart(),
+				b.getResultStart()));
+		blameCache.put(cacheKey(cacheCommit, resultPath.getPath()), log);
+	}
+
+	private BlameCache.Key cacheKey(AnyObjectId commit, String path) {
+		int renameScore = renameDetector != null
+				? renameDetector.getRenameScore()
+				: -1;
+		return new BlameCache.Key(commit, path, diffAlgorithm, textComparator,
+				renameScore);
+	}
+
 	private boolean result(Candidate n) throws IOException {
 		n.beginResult(revPool);
 		outCandidate = n;
@@ -562,6 +747,8 @@ private Candidate pop() {
 	}
 
 	private void push(BlobCandidate toInsert) {
+		// Blame of uncommitted content cannot be cached by commit.
+		cacheLog = null;
 		Candidate c = queue;
 		if (c != null) {
 			c.remove(SEEN); // will be pushed by toInsert
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.blame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jgit.internal.storage.file.FileSnapshot;
+import org.eclipse.jgit.internal.storage.file.LockFile;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * A {@link org.eclipse.jgit.blame.BlameCache} storing results as files in a
+ * directory.
+ * <p>
+ * Each result is stored in a file named by the digest of its key, fanned out
+ * into subdirectories like loose objects. The file repeats the key, so a
+ * digest collision is detected instead of returning the wrong blame. Files are
+ * written atomically, so several processes may share the directory. Nothing
+ * is ever evicted; callers may delete any file, or the whole directory, at any
+ * time.
+ * <p>
+ * A generator looks up every commit it visits, and most are not cached. To
+ * avoid opening a file for each of them, the names in each subdirectory are
+ * listed once and only listed again when the subdirectory is modified.
+ *
+ * @since 5.1
+ */
+public class FileBlameCache extends BlameCache {
+	private final File dir;
+
+	/** Names of the files in each subdirectory, by subdirectory name. */
+	private final Map<String, Listing> listings = new ConcurrentHashMap<>();
+
+	private static class Listing {
+		final FileSnapshot snapshot;
+
+		final Set<String> names;
+
+		Listing(FileSnapshot snapshot, Set<String> names) {
+			this.snapshot = snapshot;
+			this.names = names;
+		}
+	}
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param dir
+	 *            directory holding the cached results; created when the
+	 *            first result is stored.
+	 */
+	public FileBlameCache(File dir) {
+		this.dir = dir;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Entry> get(Key key) throws IOException {
+		File file = fileFor(key);
+		if (!mayExist(file)) {
+			return null;
+		}
+		try (InputStream in = new FileInputStream(file);
+				DataInputStream data = new DataInputStream(in)) {
+			if (!data.readUTF().equals(key.toString())) {
+				return null;
+			}
+			int n = data.readInt();
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			List<Entry> r = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				int resultStart = data.readInt();
+				int length = data.readInt();
+				data.readFully(raw);
+				String sourcePath = data.readUTF();
+				int sourceStart = data.readInt();
+				r.add(new Entry(resultStart, length, ObjectId.fromRaw(raw),
+						sourcePath, sourceStart));
+			}
+			return r;
+		} catch (FileNotFoundException notCached) {
+			return null;
+		} catch (EOFException truncated) {
+			// Damaged file; treat as not cached.
+			return null;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void put(Key key, List<Entry> entries) throws IOException {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		try (DataOutputStream data = new DataOutputStream(buf)) {
+			data.writeUTF(key.toString());
+			data.writeInt(entries.size());
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			for (Entry e : entries) {
+				data.writeInt(e.getResultStart());
+				data.writeInt(e.getLength());
+				e.getSourceCommit().copyRawTo(raw, 0);
+				data.write(raw);
+				data.writeUTF(e.getSourcePath());
+				data.writeInt(e.getSourceStart());
+			}
+		}
+
+		LockFile lck = new LockFile(fileFor(key));
+		if (!lck.lock()) {
+			// Another writer is storing the same result.
+			return;
+		}
+		try {
+			lck.write(buf.toByteArray());
+			lck.commit();
+		} finally {
+			lck.unlock();
+		}
+	}
+
+	private boolean mayExist(File file) {
+		File sub = file.getParentFile();
+		Listing l = listings.get(sub.getName());
+		if (l == null || l.snapshot.isModified(sub)) {
+			FileSnapshot snapshot = FileSnapshot.save(sub);
+			String[] names = sub.list();
+			l = new Listing(snapshot, names != null
+					? new HashSet<>(Arrays.asList(names))
+					: Collections.<String> emptySet());
+			listings.put(sub.getName(), l);
+		}
+		return l.names.contains(file.getName());
+	}
+
+	private File fileFor(Key key) {
+		String name = key.digest().name();
+		return new File(new File(dir, name.substring(0, 2)),
+				name.substring(2));
+	}
+}
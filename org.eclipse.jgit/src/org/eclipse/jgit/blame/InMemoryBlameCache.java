@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.blame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A {@link org.eclipse.jgit.blame.BlameCache} holding the most recently used
+ * results in memory.
+ * <p>
+ * The cache is bounded by the total number of entries held in all results.
+ * When full, the least recently used results are evicted.
+ *
+ * @since 5.1
+ */
+public class InMemoryBlameCache extends BlameCache {
+	/** Results in access order, least recently used first. */
+	private final LinkedHashMap<Key, List<Entry>> map = new LinkedHashMap<>(
+			16, 0.75f, true);
+
+	private final int maxEntries;
+
+	private int entries;
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param maxEntries
+	 *            maximum number of entries, summed over all cached results.
+	 */
+	public InMemoryBlameCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized List<Entry> get(Key key) {
+		return map.get(key);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void put(Key key, List<Entry> list) {
+		int weight = Math.max(list.size(), 1);
+		if (maxEntries < weight) {
+			return;
+		}
+		List<Entry> old = map.put(key,
+				Collections.unmodifiableList(new ArrayList<>(list)));
+		if (old != null) {
+			entries -= Math.max(old.size(), 1);
+		}
+		entries += weight;
+
+		Iterator<List<Entry>> i = map.values().iterator();
+		while (maxEntries < entries && i.hasNext()) {
+			entries -= Math.max(i.next().size(), 1);
+			i.remove();
+		}
+	}
+}
@@ -57,11 +57,20 @@
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.dircache.DirCacheIterator;
@@ -112,6 +121,8 @@ public class DiffFormatter implements AutoCloseable {
 	/** Magic return content indicating it is empty or no content present. */
 	private static final byte[] EMPTY = new byte[] {};
 
+	private static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64 * 1024 * 1024;
+
 	private final OutputStream out;
 
 	private ObjectReader reader;
@@ -142,8 +153,19 @@ public class DiffFormatter implements AutoCloseable {
 
 	private ContentSource.Pair source;
 
+	/** Whether both sides of {@link #source} read from {@link #reader}. */
+	private boolean sourceFromReader;
+
 	private Repository repository;
 
+	private Executor executor;
+
+	private long maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES;
+
+	private boolean streamLargeFiles;
+
+	private EditListCache editListCache;
+
 	/**
 	 * Create a new formatter with a default level of context.
 	 *
@@ -201,6 +223,7 @@ private void setReader(ObjectReader reader, Config cfg, boolean closeReader) {
 
 		ContentSource cs = ContentSource.create(reader);
 		source = new ContentSource.Pair(cs, cs);
+		sourceFromReader = true;
 
 		if (diffCfg.isNoPrefix()) {
 			setOldPrefix(""); //$NON-NLS-1$
@@ -284,6 +307,45 @@ public void setBinaryFileThreshold(int threshold) {
 		this.binaryFileThreshold = threshold;
 	}
 
+	/**
+	 * Set whether text files over the binary file threshold are compared.
+	 * <p>
+	 * Files larger than the threshold are normally reported as binary. When
+	 * enabled, such files that are text are instead read one line at a time
+	 * into a {@link org.eclipse.jgit.diff.StreamedText} holding only a hash of
+	 * each line, compared by the diff algorithm on those hashes, and read once
+	 * more to collect just the lines shown in the hunks. Memory use then
+	 * grows with the number of lines instead of the size of the files.
+	 * <p>
+	 * Lines are matched by a hash of their exact content, so this only
+	 * applies with {@link org.eclipse.jgit.diff.RawTextComparator#DEFAULT};
+	 * with other comparators large files are still reported as binary.
+	 *
+	 * @param on
+	 *            true to compare large text files; false to report them as
+	 *            binary.
+	 * @since 5.1
+	 */
+	public void setStreamLargeFiles(boolean on) {
+		streamLargeFiles = on;
+	}
+
+	/**
+	 * Set the cache of edit lists between blobs.
+	 * <p>
+	 * Before running the diff algorithm on two blobs, the formatter looks up
+	 * their edits in the cache, and stores newly computed edits into it. The
+	 * blobs are still read to format the hunks. Files read from a working
+	 * tree are cached by the id of their content.
+	 *
+	 * @param cache
+	 *            cache to use; null to always run the diff algorithm.
+	 * @since 5.1
+	 */
+	public void setEditListCache(@Nullable EditListCache cache) {
+		editListCache = cache;
+	}
+
 	/**
 	 * Set the prefix applied in front of old file paths.
 	 *
@@ -401,6 +463,43 @@ public TreeFilter getPathFilter() {
 		return pathFilter;
 	}
 
+	/**
+	 * Set the executor used by {@link #format(List)} to compare files.
+	 * <p>
+	 * With an executor, file contents are loaded and their edit lists
+	 * computed concurrently, each task using its own
+	 * {@link org.eclipse.jgit.lib.ObjectReader} created from the reader of
+	 * this formatter. Headers and hunks are still written by the calling
+	 * thread, in the order of the entries, so the output is identical to
+	 * formatting sequentially. Entries read from a working tree are always
+	 * formatted sequentially.
+	 *
+	 * @param executor
+	 *            executor to compare files on; null to compare them on the
+	 *            calling thread.
+	 * @since 5.1
+	 */
+	public void setExecutor(@Nullable Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the maximum size of file contents held by pending comparisons.
+	 * <p>
+	 * Only used when an executor is set. Once the estimated size of the files
+	 * loaded for entries not yet written would exceed this limit, the
+	 * formatter writes out the earliest pending entries before starting more
+	 * comparisons. At least one entry is always in flight, regardless of its
+	 * size.
+	 *
+	 * @param bytes
+	 *            maximum number of bytes; defaults to 64 MiB.
+	 * @since 5.1
+	 */
+	public void setMaxInFlightBytes(long bytes) {
+		maxInFlightBytes = bytes;
+	}
+
 	/**
 	 * Flush the underlying output stream of this formatter.
 	 *
@@ -527,6 +626,8 @@ public List<DiffEntry> scan(AbstractTreeIterator a, AbstractTreeIterator b)
 		}
 
 		source = new ContentSource.Pair(source(a), source(b));
+		sourceFromReader = !(a instanceof WorkingTreeIterator)
+				&& !(b instanceof WorkingTreeIterator);
 
 		List<DiffEntry> files = DiffEntry.scan(walk);
 		if (pathFilter instanceof FollowFilter && isAdd(files)) {
@@ -681,10 +782,115 @@ public void format(AbstractTreeIterator a, AbstractTreeIterator b)
 	 *             be written to.
 	 */
 	public void format(List<? extends DiffEntry> entries) throws IOException {
+		if (executor != null && sourceFromReader && 1 < entries.size()) {
+			formatConcurrently(entries);
+			return;
+		}
 		for (DiffEntry ent : entries)
 			format(ent);
 	}
 
+	private void formatConcurrently(List<? extends DiffEntry> entries)
+			throws IOException {
+		Deque<PendingFormat> pending = new ArrayDeque<>();
+		long inFlight = 0;
+		try {
+			for (DiffEntry ent : entries) {
+				PendingFormat p = new PendingFormat(ent);
+				formatHeader(p.header, ent);
+				if (ent.getOldId() != null && ent.getNewId() != null) {
+					p.size = estimateSize(ent);
+					while (!pending.isEmpty()
+							&& maxInFlightBytes < inFlight + p.size) {
+						inFlight -= write(pending.removeFirst());
+					}
+					p.content = new FutureTask<>(() -> {
+						try (ObjectReader r = reader.newReader()) {
+							ContentSource cs = ContentSource.create(r);
+							return loadContent(ent, r,
+									new ContentSource.Pair(cs, cs));
+						}
+					});
+					try {
+						executor.execute(p.content);
+					} catch (RejectedExecutionException e) {
+						p.content.run();
+					}
+					inFlight += p.size;
+				}
+				pending.addLast(p);
+			}
+			while (!pending.isEmpty()) {
+				write(pending.removeFirst());
+			}
+		} finally {
+			for (PendingFormat p : pending) {
+				if (p.content != null) {
+					p.content.cancel(false);
+				}
+			}
+		}
+	}
+
+	private long write(PendingFormat p) throws IOException {
+		Content c = null;
+		if (p.content != null) {
+			try {
+				c = p.content.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IOException(cause);
+			}
+		}
+		FormatResult res = createFormatResult(p.header, p.entry, c);
+		format(res.header, res.a, res.b);
+		return p.size;
+	}
+
+	private long estimateSize(DiffEntry ent) {
+		return estimateSize(OLD, ent) + estimateSize(NEW, ent);
+	}
+
+	private long estimateSize(DiffEntry.Side side, DiffEntry ent) {
+		AbbreviatedObjectId id = ent.getId(side);
+		if (ent.getMode(side).getObjectType() != Constants.OBJ_BLOB
+				|| !id.isComplete()) {
+			return 0;
+		}
+		try {
+			return Math.min(reader.getObjectSize(id.toObjectId(),
+					Constants.OBJ_BLOB), binaryFileThreshold);
+		} catch (IOException e) {
+			// The comparison will report the problem.
+			return 0;
+		}
+	}
+
+	/** An entry whose header is formatted but not yet written out. */
+	private static class PendingFormat {
+		final DiffEntry entry;
+
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+
+		FutureTask<Content> content;
+
+		long size;
+
+		PendingFormat(DiffEntry entry) {
+			this.entry = entry;
+		}
+	}
+
 	/**
 	 * Format a patch script for one file entry.
 	 *
@@ -963,16 +1169,132 @@ private static class FormatResult {
 		RawText b;
 	}
 
+	/** File contents of an entry and their differences. */
+	private static class Content {
+		RawText a;
+
+		RawText b;
+
+		/** Null if either side is binary. */
+		EditList edits;
+	}
+
 	private FormatResult createFormatResult(DiffEntry ent) throws IOException,
 			CorruptObjectException, MissingObjectException {
-		final FormatResult res = new FormatResult();
 		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		formatHeader(buf, ent);
+
+		Content c = null;
+		if (ent.getOldId() != null && ent.getNewId() != null) {
+			assertHaveReader();
+			c = loadContent(ent, reader, source);
+		}
+		return createFormatResult(buf, ent, c);
+	}
+
+	private Content loadContent(DiffEntry ent, ObjectReader r,
+			ContentSource.Pair src) throws IOException {
+		Content c = new Content();
+		if (ent.getOldMode() == GITLINK || ent.getNewMode() == GITLINK) {
+			c.a = new RawText(writeGitLinkText(ent.getOldId()));
+			c.b = new RawText(writeGitLinkText(ent.getNewId()));
+		} else {
+			try {
+				c.a = open(OLD, ent, r, src);
+				c.b = open(NEW, ent, r, src);
+			} catch (BinaryBlobException e) {
+				if (streamLargeFiles) {
+					loadStreamed(ent, r, src, c);
+				}
+				// Unless streamed, edits stay null and binary is reported.
+				return c;
+			}
+		}
+		EditListCache.Key key = cacheKey(ent);
+		c.edits = cached(key);
+		if (c.edits == null) {
+			c.edits = diff(c.a, c.b);
+			cache(key, c.edits);
+		}
+		return c;
+	}
+
+	private void loadStreamed(DiffEntry ent, ObjectReader r,
+			ContentSource.Pair src, Content c) throws IOException {
+		if (comparator != RawTextComparator.DEFAULT) {
+			return; // Line hashes cannot decide equality for other rules.
+		}
+		ObjectLoader aLdr = openLoader(OLD, ent, r, src);
+		ObjectLoader bLdr = openLoader(NEW, ent, r, src);
+		if (size(aLdr) <= binaryFileThreshold
+				&& size(bLdr) <= binaryFileThreshold) {
+			return; // Small enough for RawText, so truly binary.
+		}
+
+		StreamedText a;
+		StreamedText b;
+		try {
+			a = aLdr != null ? StreamedText.load(aLdr)
+					: StreamedText.EMPTY_TEXT;
+			b = bLdr != null ? StreamedText.load(bLdr)
+					: StreamedText.EMPTY_TEXT;
+		} catch (BinaryBlobException e) {
+			return;
+		}
+
+		EditListCache.Key key = cacheKey(ent);
+		EditList edits = cached(key);
+		if (edits == null) {
+			edits = diffAlgorithm.diff(StreamedText.COMPARATOR, a, b);
+			cache(key, edits);
+		}
+		BitSet aLines = new BitSet();
+		BitSet bLines = new BitSet();
+		for (Edit e : edits) {
+			aLines.set(Math.max(0, e.getBeginA() - context),
+					(int) Math.min(a.size(), (long) e.getEndA() + context));
+			bLines.set(Math.max(0, e.getBeginB() - context),
+					(int) Math.min(b.size(), (long) e.getEndB() + context));
+		}
+		c.a = a.toRawText(aLines);
+		c.b = b.toRawText(bLines);
+		c.edits = edits;
+	}
+
+	private EditListCache.Key cacheKey(DiffEntry ent) {
+		if (editListCache == null
+				|| ent.getOldMode().getObjectType() != Constants.OBJ_BLOB
+				|| ent.getNewMode().getObjectType() != Constants.OBJ_BLOB
+				|| !ent.getOldId().isComplete()
+				|| !ent.getNewId().isComplete()) {
+			return null;
+		}
+		return new EditListCache.Key(ent.getOldId().toObjectId(),
+				ent.getNewId().toObjectId(), diffAlgorithm, comparator);
+	}
+
+	private EditList cached(EditListCache.Key key) throws IOException {
+		return key != null ? editListCache.get(key) : null;
+	}
+
+	private void cache(EditListCache.Key key, EditList edits)
+			throws IOException {
+		if (key != null) {
+			editListCache.put(key, edits);
+		}
+	}
+
+	private static long size(ObjectLoader ldr) {
+		return ldr != null ? ldr.getSize() : 0;
+	}
+
+	private FormatResult createFormatResult(ByteArrayOutputStream buf,
+			DiffEntry ent, Content c) throws IOException {
+		final FormatResult res = new FormatResult();
 		final EditList editList;
 		final FileHeader.PatchType type;
 
-		formatHeader(buf, ent);
-
-		if (ent.getOldId() == null || ent.getNewId() == null) {
+		if (c == null) {
 			// Content not changed (e.g. only mode, pure rename)
 			editList = new EditList();
 			type = PatchType.UNIFIED;
@@ -980,31 +1302,18 @@ private FormatResult createFormatResult(DiffEntry ent) throws IOException,
 			return res;
 		}
 
-		assertHaveReader();
-
-		RawText aRaw = null;
-		RawText bRaw = null;
-		if (ent.getOldMode() == GITLINK || ent.getNewMode() == GITLINK) {
-			aRaw = new RawText(writeGitLinkText(ent.getOldId()));
-			bRaw = new RawText(writeGitLinkText(ent.getNewId()));
-		} else {
-			try {
-				aRaw = open(OLD, ent);
-				bRaw = open(NEW, ent);
-			} catch (BinaryBlobException e) {
-				// Do nothing; we check for null below.
-				formatOldNewPaths(buf, ent);
-				buf.write(encodeASCII("Binary files differ\n")); //$NON-NLS-1$
-				editList = new EditList();
-				type = PatchType.BINARY;
-				res.header = new FileHeader(buf.toByteArray(), editList, type);
-				return res;
-			}
+		if (c.edits == null) {
+			formatOldNewPaths(buf, ent);
+			buf.write(encodeASCII("Binary files differ\n")); //$NON-NLS-1$
+			editList = new EditList();
+			type = PatchType.BINARY;
+			res.header = new FileHeader(buf.toByteArray(), editList, type);
+			return res;
 		}
 
-		res.a = aRaw;
-		res.b = bRaw;
-		editList = diff(res.a, res.b);
+		res.a = c.a;
+		res.b = c.b;
+		editList = c.edits;
 		type = PatchType.UNIFIED;
 
 		switch (ent.getChangeType()) {
@@ -1034,17 +1343,25 @@ private void assertHaveReader() {
 		}
 	}
 
-	private RawText open(DiffEntry.Side side, DiffEntry entry)
-			throws IOException, BinaryBlobException {
-		if (entry.getMode(side) == FileMode.MISSING)
+	private RawText open(DiffEntry.Side side, DiffEntry entry, ObjectReader r,
+			ContentSource.Pair src) throws IOException, BinaryBlobException {
+		ObjectLoader ldr = openLoader(side, entry, r, src);
+		if (ldr == null)
 			return RawText.EMPTY_TEXT;
+		return RawText.load(ldr, binaryFileThreshold);
+	}
+
+	private ObjectLoader openLoader(DiffEntry.Side side, DiffEntry entry,
+			ObjectReader r, ContentSource.Pair src) throws IOException {
+		if (entry.getMode(side) == FileMode.MISSING)
+			return null;
 
 		if (entry.getMode(side).getObjectType() != Constants.OBJ_BLOB)
-			return RawText.EMPTY_TEXT;
+			return null;
 
 		AbbreviatedObjectId id = entry.getId(side);
 		if (!id.isComplete()) {
-			Collection<ObjectId> ids = reader.resolve(id);
+			Collection<ObjectId> ids = r.resolve(id);
 			if (ids.size() == 1) {
 				id = AbbreviatedObjectId.fromObjectId(ids.iterator().next());
 				switch (side) {
@@ -1061,9 +1378,8 @@ private RawText open(DiffEntry.Side side, DiffEntry entry)
 				throw new AmbiguousObjectException(id, ids);
 		}
 
-		ObjectLoader ldr = LfsFactory.getInstance().applySmudgeFilter(repository,
-				source.open(side, entry), entry.getDiffAttribute());
-		return RawText.load(ldr, binaryFileThreshold);
+		return LfsFactory.getInstance().applySmudgeFilter(repository,
+				src.open(side, entry), entry.getDiffAttribute());
 	}
 
 	/**
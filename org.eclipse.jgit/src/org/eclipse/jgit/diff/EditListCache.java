@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.diff;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Cache of {@link org.eclipse.jgit.diff.EditList}s computed between two blobs.
+ * <p>
+ * The differences between two blobs only depend on their contents, the
+ * {@link org.eclipse.jgit.diff.DiffAlgorithm} and the
+ * {@link org.eclipse.jgit.diff.RawTextComparator}, so a
+ * {@link org.eclipse.jgit.diff.DiffFormatter} given a cache can skip running
+ * the algorithm when the same pair of blobs is formatted again.
+ * <p>
+ * Implementations must be safe for use by multiple threads, and must not let
+ * callers modify a cached list.
+ *
+ * @since 5.1
+ */
+public abstract class EditListCache {
+	/** Identifies the differences between two blobs. */
+	public static final class Key {
+		private final ObjectId oldId;
+
+		private final ObjectId newId;
+
+		private final String algorithm;
+
+		private final String comparator;
+
+		/**
+		 * Create a key.
+		 *
+		 * @param oldId
+		 *            blob on the old side.
+		 * @param newId
+		 *            blob on the new side.
+		 * @param algorithm
+		 *            algorithm computing the differences.
+		 * @param comparator
+		 *            comparator deciding which lines are equal.
+		 */
+		public Key(AnyObjectId oldId, AnyObjectId newId,
+				DiffAlgorithm algorithm, RawTextComparator comparator) {
+			this.oldId = oldId.copy();
+			this.newId = newId.copy();
+			this.algorithm = algorithm.getClass().getName();
+			this.comparator = nameOf(comparator);
+		}
+
+		/**
+		 * Get a stable name of a comparator.
+		 *
+		 * @param cmp
+		 *            the comparator.
+		 * @return name of the comparator, suitable for persistent keys.
+		 */
+		public static String nameOf(RawTextComparator cmp) {
+			// The built in comparators are anonymous classes whose names
+			// may change between releases; persistent caches need stable
+			// names.
+			if (cmp == RawTextComparator.DEFAULT) {
+				return "default"; //$NON-NLS-1$
+			} else if (cmp == RawTextComparator.WS_IGNORE_ALL) {
+				return "ignore-all-space"; //$NON-NLS-1$
+			} else if (cmp == RawTextComparator.WS_IGNORE_LEADING) {
+				return "ignore-leading-space"; //$NON-NLS-1$
+			} else if (cmp == RawTextComparator.WS_IGNORE_TRAILING) {
+				return "ignore-trailing-space"; //$NON-NLS-1$
+			} else if (cmp == RawTextComparator.WS_IGNORE_CHANGE) {
+				return "ignore-space-change"; //$NON-NLS-1$
+			}
+			return cmp.getClass().getName();
+		}
+
+		/** @return blob on the old side. */
+		public ObjectId getOldId() {
+			return oldId;
+		}
+
+		/** @return blob on the new side. */
+		public ObjectId getNewId() {
+			return newId;
+		}
+
+		/** @return name of the algorithm computing the differences. */
+		public String getAlgorithm() {
+			return algorithm;
+		}
+
+		/** @return name of the comparator deciding which lines are equal. */
+		public String getComparator() {
+			return comparator;
+		}
+
+		/**
+		 * Get a digest of this key.
+		 *
+		 * @return SHA-1 of all fields of this key, suitable as a file name.
+		 */
+		public ObjectId digest() {
+			return ObjectId.fromRaw(Constants.newMessageDigest()
+					.digest(Constants.encode(toString())));
+		}
+
+		@Override
+		public int hashCode() {
+			return oldId.hashCode() * 31 + newId.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return oldId.equals(k.oldId) && newId.equals(k.newId)
+					&& algorithm.equals(k.algorithm)
+					&& comparator.equals(k.comparator);
+		}
+
+		@Override
+		public String toString() {
+			return oldId.name() + ' ' + newId.name() + ' ' + algorithm + ' '
+					+ comparator;
+		}
+	}
+
+	/**
+	 * Look up the differences between two blobs.
+	 *
+	 * @param key
+	 *            the blobs and the way they are compared.
+	 * @return the cached edits, or null if not cached.
+	 * @throws java.io.IOException
+	 *             the cache could not be read.
+	 */
+	@Nullable
+	public abstract EditList get(Key key) throws IOException;
+
+	/**
+	 * Store the differences between two blobs.
+	 *
+	 * @param key
+	 *            the blobs and the way they are compared.
+	 * @param edits
+	 *            the edits computed for the key. The caller may keep using
+	 *            the list, so implementations should store a copy.
+	 * @throws java.io.IOException
+	 *             the cache could not be written.
+	 */
+	public abstract void put(Key key, EditList edits) throws IOException;
+
+	/**
+	 * Copy an edit list so the copy can be modified independently.
+	 *
+	 * @param edits
+	 *            list to copy.
+	 * @return a deep copy of {@code edits}.
+	 */
+	protected static EditList copy(EditList edits) {
+		EditList r = new EditList(edits.size());
+		for (Edit e : edits) {
+			r.add(new Edit(e.getBeginA(), e.getEndA(), e.getBeginB(),
+					e.getEndB()));
+		}
+		return r;
+	}
+}
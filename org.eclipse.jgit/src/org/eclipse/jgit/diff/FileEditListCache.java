@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.diff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.jgit.internal.storage.file.LockFile;
+
+/**
+ * An {@link org.eclipse.jgit.diff.EditListCache} storing edit lists as files
+ * in a directory.
+ * <p>
+ * Each list is stored in a file named by the SHA-1 of its key, fanned out
+ * into subdirectories like loose objects. The file repeats the key, so a
+ * digest collision is detected instead of returning the wrong edits. Files
+ * are written atomically, so several processes may share the directory.
+ * Nothing is ever evicted; callers may delete any file, or the whole
+ * directory, at any time.
+ *
+ * @since 5.1
+ */
+public class FileEditListCache extends EditListCache {
+	private final File dir;
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param dir
+	 *            directory holding the cached lists; created when the first
+	 *            list is stored.
+	 */
+	public FileEditListCache(File dir) {
+		this.dir = dir;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public EditList get(Key key) throws IOException {
+		try (InputStream in = new FileInputStream(fileFor(key));
+				DataInputStream data = new DataInputStream(in)) {
+			if (!data.readUTF().equals(key.toString())) {
+				return null;
+			}
+			int n = data.readInt();
+			EditList r = new EditList(n);
+			for (int i = 0; i < n; i++) {
+				r.add(new Edit(data.readInt(), data.readInt(), data.readInt(),
+						data.readInt()));
+			}
+			return r;
+		} catch (FileNotFoundException notCached) {
+			return null;
+		} catch (EOFException truncated) {
+			// Damaged file; treat as not cached.
+			return null;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void put(Key key, EditList edits) throws IOException {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream(
+				64 + 16 * edits.size());
+		try (DataOutputStream data = new DataOutputStream(buf)) {
+			data.writeUTF(key.toString());
+			data.writeInt(edits.size());
+			for (Edit e : edits) {
+				data.writeInt(e.getBeginA());
+				data.writeInt(e.getEndA());
+				data.writeInt(e.getBeginB());
+				data.writeInt(e.getEndB());
+			}
+		}
+
+		LockFile lck = new LockFile(fileFor(key));
+		if (!lck.lock()) {
+			// Another writer is storing the same list.
+			return;
+		}
+		try {
+			lck.write(buf.toByteArray());
+			lck.commit();
+		} finally {
+			lck.unlock();
+		}
+	}
+
+	private File fileFor(Key key) {
+		String name = key.digest().name();
+		return new File(new File(dir, name.substring(0, 2)),
+				name.substring(2));
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.diff;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An {@link org.eclipse.jgit.diff.EditListCache} holding the most recently
+ * used edit lists in memory.
+ * <p>
+ * The cache is bounded by the total number of edits held in all lists, which
+ * tracks memory use better than the number of lists. When full, the least
+ * recently used lists are evicted.
+ *
+ * @since 5.1
+ */
+public class InMemoryEditListCache extends EditListCache {
+	/** Entries in access order, least recently used first. */
+	private final LinkedHashMap<Key, EditList> map = new LinkedHashMap<>(16,
+			0.75f, true);
+
+	private final int maxEdits;
+
+	private int edits;
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param maxEdits
+	 *            maximum number of edits, summed over all cached lists.
+	 */
+	public InMemoryEditListCache(int maxEdits) {
+		this.maxEdits = maxEdits;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized EditList get(Key key) {
+		EditList r = map.get(key);
+		return r != null ? copy(r) : null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void put(Key key, EditList list) {
+		// Empty lists still take a map entry.
+		int weight = Math.max(list.size(), 1);
+		if (maxEdits < weight) {
+			return;
+		}
+		EditList old = map.put(key, copy(list));
+		if (old != null) {
+			edits -= Math.max(old.size(), 1);
+		}
+		edits += weight;
+
+		Iterator<Map.Entry<Key, EditList>> i = map.entrySet().iterator();
+		while (maxEdits < edits && i.hasNext()) {
+			Map.Entry<Key, EditList> e = i.next();
+			edits -= Math.max(e.getValue().size(), 1);
+			i.remove();
+		}
+	}
+}
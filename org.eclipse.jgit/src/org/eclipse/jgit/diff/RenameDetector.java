@@ -54,7 +54,9 @@
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Executor;
 
+import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.diff.SimilarityIndex.TableFullException;
 import org.eclipse.jgit.internal.JGitText;
@@ -129,6 +131,12 @@ private int sortOf(ChangeType changeType) {
 	/** Limit in the number of files to consider for renames. */
 	private int renameLimit;
 
+	/** Number of file pairs above which candidates are found by MinHash. */
+	private int minHashLimit;
+
+	/** Executor scoring MinHash candidates; null to score on the caller. */
+	private Executor executor;
+
 	/** Set if the number of adds or deletes was over the limit. */
 	private boolean overRenameLimit;
 
@@ -240,6 +248,56 @@ public void setRenameLimit(int limit) {
 		renameLimit = limit;
 	}
 
+	/**
+	 * Get MinHash limit
+	 *
+	 * @return number of added and deleted file pairs above which only pairs
+	 *         selected by MinHash are compared; 0 if every pair is compared.
+	 * @since 5.1
+	 */
+	public int getMinHashLimit() {
+		return minHashLimit;
+	}
+
+	/**
+	 * Set the number of file pairs above which MinHash selects the pairs to
+	 * compare during inexact rename detection.
+	 * <p>
+	 * Without a limit every added file is compared against every deleted
+	 * file. Above the limit each file is hashed once, a MinHash signature is
+	 * derived from its {@link org.eclipse.jgit.diff.SimilarityIndex}, and only
+	 * pairs whose signatures share a band are scored. Pairs scoring at or
+	 * above the rename score are very likely, but not guaranteed, to be
+	 * found. The indexes of all files are held in memory during detection.
+	 * <p>
+	 * Large inputs usually also need {@link #setRenameLimit(int)} raised or
+	 * set to 0.
+	 *
+	 * @param limit
+	 *            number of pairs ({@code added * deleted}) above which MinHash
+	 *            is used; 0 to always compare every pair.
+	 * @since 5.1
+	 */
+	public void setMinHashLimit(int limit) {
+		minHashLimit = limit;
+	}
+
+	/**
+	 * Set the executor scoring candidate pairs selected by MinHash.
+	 * <p>
+	 * Only used when the MinHash limit is exceeded. File contents are still
+	 * read on the calling thread; only the similarity scoring is spread over
+	 * the executor.
+	 *
+	 * @param executor
+	 *            executor to score candidates on; null to score them on the
+	 *            calling thread.
+	 * @since 5.1
+	 */
+	public void setExecutor(@Nullable Executor executor) {
+		this.executor = executor;
+	}
+
 	/**
 	 * Check if the detector is over the rename limit.
 	 * <p>
@@ -505,6 +563,8 @@ private void findContentRenames(ContentSource.Pair reader,
 
 			d = new SimilarityRenameDetector(reader, deleted, added);
 			d.setRenameScore(getRenameScore());
+			d.setMinHashLimit(getMinHashLimit());
+			d.setExecutor(executor);
 			d.compute(pm);
 			overRenameLimit |= d.isTableOverflow();
 			deleted = d.getLeftOverSources();
@@ -308,6 +308,37 @@ private static long common(long[] srcHash, int srcIdx, //
 		return common;
 	}
 
+	/**
+	 * Compute a MinHash signature of the distinct regions in this index.
+	 * <p>
+	 * Each element of the signature is the minimum of a different hash
+	 * function over all region keys. Two indexes agree on any one element
+	 * with a probability equal to the Jaccard similarity of their key sets,
+	 * which makes the signature a cheap predictor of {@link #score}. The
+	 * index must already be sorted.
+	 *
+	 * @param size
+	 *            number of hash functions, and thus elements, in the
+	 *            signature.
+	 * @return the signature; empty indexes have every element set to
+	 *         {@link Integer#MAX_VALUE}.
+	 */
+	int[] minHash(int size) {
+		int[] sig = new int[size];
+		Arrays.fill(sig, Integer.MAX_VALUE);
+		for (int i = packedIndex(0); i < idHash.length; i++) {
+			int key = keyOf(idHash[i]);
+			for (int h = 0; h < size; h++) {
+				int v = (key ^ (h * 0x9e3779b9)) * 0x85ebca6b;
+				v = (v ^ (v >>> 13)) * 0xc2b2ae35;
+				v = (v ^ (v >>> 16)) >>> 1;
+				if (v < sig[h])
+					sig[h] = v;
+			}
+		}
+		return sig;
+	}
+
 	// Testing only
 	int size() {
 		return idSize;
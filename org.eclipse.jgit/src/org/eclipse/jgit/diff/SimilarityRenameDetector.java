@@ -47,10 +47,17 @@
 import static org.eclipse.jgit.diff.DiffEntry.Side.OLD;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.diff.SimilarityIndex.TableFullException;
@@ -74,6 +81,22 @@ class SimilarityRenameDetector {
 
 	private static final int SCORE_SHIFT = 2 * BITS_PER_INDEX;
 
+	/**
+	 * Number of rows in each MinHash band.
+	 * <p>
+	 * Two files become a candidate pair if all rows of any one band agree.
+	 * With {@link #MINHASH_BANDS} bands of 2 rows a pair whose region sets
+	 * have a Jaccard similarity of 0.4 is still found with a probability above
+	 * 99%, keeping the candidate stage well below the usual rename scores.
+	 */
+	private static final int MINHASH_ROWS = 2;
+
+	/** Number of bands the MinHash signature is split into. */
+	private static final int MINHASH_BANDS = 32;
+
+	/** Number of destinations scored by a single executor task. */
+	private static final int DSTS_PER_TASK = 64;
+
 	private ContentSource.Pair reader;
 
 	/**
@@ -112,6 +135,16 @@ class SimilarityRenameDetector {
 	/** Score a pair must exceed to be considered a rename. */
 	private int renameScore = 60;
 
+	/**
+	 * Number of file pairs above which candidates are selected by MinHash.
+	 * <p>
+	 * 0 compares every source against every destination.
+	 */
+	private int minHashLimit;
+
+	/** Runs candidate scoring in parallel; may be null. */
+	private Executor executor;
+
 	/** Set if any {@link SimilarityIndex.TableFullException} occurs. */
 	private boolean tableOverflow;
 
@@ -128,14 +161,31 @@ void setRenameScore(int score) {
 		renameScore = score;
 	}
 
+	void setMinHashLimit(int limit) {
+		minHashLimit = limit;
+	}
+
+	void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
 	void compute(ProgressMonitor pm) throws IOException {
 		if (pm == null)
 			pm = NullProgressMonitor.INSTANCE;
 
-		pm.beginTask(JGitText.get().renamesFindingByContent, //
-				2 * srcs.size() * dsts.size());
-
-		int mNext = buildMatrix(pm);
+		int mNext;
+		if (0 < minHashLimit
+				&& minHashLimit < (long) srcs.size() * dsts.size()) {
+			pm.beginTask(JGitText.get().renamesFindingByContent, //
+					srcs.size() + 2 * dsts.size());
+			mNext = buildCandidateMatrix(pm);
+			pm.endTask();
+			pm = NullProgressMonitor.INSTANCE;
+		} else {
+			pm.beginTask(JGitText.get().renamesFindingByContent, //
+					2 * srcs.size() * dsts.size());
+			mNext = buildMatrix(pm);
+		}
 		out = new ArrayList<>(Math.min(mNext, dsts.size()));
 
 		// Match rename pairs on a first come, first serve basis until
@@ -319,6 +369,189 @@ private int buildMatrix(ProgressMonitor pm) throws IOException {
 		return mNext;
 	}
 
+	/**
+	 * Score only the pairs that a MinHash of their content suggests may be
+	 * similar.
+	 * <p>
+	 * Every file is hashed exactly once and its index retained, signatures
+	 * are split into bands, and a destination is scored against the sources
+	 * sharing at least one band with it. Scoring only reads the retained
+	 * indexes, so it can be spread over {@link #executor}.
+	 *
+	 * @param pm
+	 *            reports progress, once per file hashed.
+	 * @return number of pairs added to the matrix.
+	 * @throws IOException
+	 *             a file could not be read.
+	 */
+	private int buildCandidateMatrix(ProgressMonitor pm) throws IOException {
+		SimilarityIndex[] srcIndex = new SimilarityIndex[srcs.size()];
+		long[] srcSizes = new long[srcs.size()];
+		List<Map<Long, int[]>> bands = new ArrayList<>(MINHASH_BANDS);
+		for (int b = 0; b < MINHASH_BANDS; b++)
+			bands.add(new HashMap<Long, int[]>());
+
+		for (int i = 0; i < srcs.size(); i++) {
+			DiffEntry srcEnt = srcs.get(i);
+			pm.update(1);
+			if (!isFile(srcEnt.oldMode))
+				continue;
+			try {
+				srcIndex[i] = hash(OLD, srcEnt);
+			} catch (TableFullException tableFull) {
+				tableOverflow = true;
+				continue;
+			}
+			srcSizes[i] = size(OLD, srcEnt) + 1;
+			int[] sig = srcIndex[i].minHash(MINHASH_ROWS * MINHASH_BANDS);
+			for (int b = 0; b < MINHASH_BANDS; b++) {
+				Map<Long, int[]> band = bands.get(b);
+				Long key = Long.valueOf(bandKey(sig, b));
+				int[] list = band.get(key);
+				if (list == null) {
+					list = new int[] { 0, -1 };
+				} else if (list[0] + 1 == list.length) {
+					list = Arrays.copyOf(list, 2 * list.length);
+				}
+				list[++list[0]] = i;
+				band.put(key, list);
+			}
+		}
+
+		SimilarityIndex[] dstIndex = new SimilarityIndex[dsts.size()];
+		long[] dstSizes = new long[dsts.size()];
+		int[][] candidates = new int[dsts.size()][];
+		int[] seen = new int[srcs.size()];
+		for (int i = 0; i < dsts.size(); i++) {
+			DiffEntry dstEnt = dsts.get(i);
+			pm.update(1);
+			if (!isFile(dstEnt.newMode))
+				continue;
+			try {
+				dstIndex[i] = hash(NEW, dstEnt);
+			} catch (TableFullException tableFull) {
+				tableOverflow = true;
+				continue;
+			}
+			dstSizes[i] = size(NEW, dstEnt) + 1;
+			int[] sig = dstIndex[i].minHash(MINHASH_ROWS * MINHASH_BANDS);
+			int[] cand = new int[4];
+			int n = 0;
+			for (int b = 0; b < MINHASH_BANDS; b++) {
+				int[] list = bands.get(b).get(Long.valueOf(bandKey(sig, b)));
+				if (list == null)
+					continue;
+				for (int k = 1; k <= list[0]; k++) {
+					int s = list[k];
+					if (seen[s] == i + 1)
+						continue;
+					seen[s] = i + 1;
+					if (n == cand.length)
+						cand = Arrays.copyOf(cand, 2 * n);
+					cand[n++] = s;
+				}
+			}
+			candidates[i] = Arrays.copyOf(cand, n);
+		}
+
+		long[][] scored = new long[dsts.size()][];
+		if (executor == null) {
+			for (int i = 0; i < dsts.size(); i++) {
+				scored[i] = scoreCandidates(i, candidates[i], srcIndex,
+						srcSizes, dstIndex[i], dstSizes[i]);
+				pm.update(1);
+			}
+		} else {
+			scoreInParallel(scored, candidates, srcIndex, srcSizes, dstIndex,
+					dstSizes);
+			pm.update(dsts.size());
+		}
+
+		int total = 0;
+		for (long[] s : scored)
+			total += s.length;
+		matrix = new long[total];
+		int mNext = 0;
+		for (long[] s : scored) {
+			System.arraycopy(s, 0, matrix, mNext, s.length);
+			mNext += s.length;
+		}
+		Arrays.sort(matrix, 0, mNext);
+		return mNext;
+	}
+
+	private void scoreInParallel(long[][] scored, int[][] candidates,
+			SimilarityIndex[] srcIndex, long[] srcSizes,
+			SimilarityIndex[] dstIndex, long[] dstSizes) throws IOException {
+		int tasks = (dsts.size() + DSTS_PER_TASK - 1) / DSTS_PER_TASK;
+		CountDownLatch done = new CountDownLatch(tasks);
+		AtomicReference<RuntimeException> err = new AtomicReference<>();
+		for (int t = 0; t < tasks; t++) {
+			int start = t * DSTS_PER_TASK;
+			int end = Math.min(start + DSTS_PER_TASK, dsts.size());
+			Runnable task = () -> {
+				try {
+					for (int i = start; i < end; i++)
+						scored[i] = scoreCandidates(i, candidates[i], srcIndex,
+								srcSizes, dstIndex[i], dstSizes[i]);
+				} catch (RuntimeException e) {
+					err.compareAndSet(null, e);
+				} finally {
+					done.countDown();
+				}
+			};
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.run();
+			}
+		}
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		if (err.get() != null)
+			throw err.get();
+	}
+
+	private long[] scoreCandidates(int dstIdx, int[] cand,
+			SimilarityIndex[] srcIndex, long[] srcSizes, SimilarityIndex d,
+			long dstSize) {
+		if (d == null)
+			return new long[0];
+		DiffEntry dstEnt = dsts.get(dstIdx);
+		long[] r = new long[cand.length];
+		int n = 0;
+		for (int s : cand) {
+			DiffEntry srcEnt = srcs.get(s);
+			if (!RenameDetector.sameType(srcEnt.oldMode, dstEnt.newMode))
+				continue;
+
+			long srcSize = srcSizes[s];
+			long max = Math.max(srcSize, dstSize);
+			long min = Math.min(srcSize, dstSize);
+			if (min * 100 / max < renameScore)
+				continue;
+
+			int contentScore = srcIndex[s].score(d, 10000);
+			int nameScore = nameScore(srcEnt.oldPath, dstEnt.newPath) * 100;
+			int score = (contentScore * 99 + nameScore * 1) / 10000;
+			if (score < renameScore)
+				continue;
+			r[n++] = encode(score, s, dstIdx);
+		}
+		return Arrays.copyOf(r, n);
+	}
+
+	private static long bandKey(int[] sig, int band) {
+		long key = 0;
+		for (int r = band * MINHASH_ROWS; r < (band + 1) * MINHASH_ROWS; r++)
+			key = (key << 32) ^ (key >>> 32) ^ (sig[r] & 0xffffffffL);
+		return key;
+	}
+
 	static int nameScore(String a, String b) {
 	    int aDirLen = a.lastIndexOf("/") + 1; //$NON-NLS-1$
 	    int bDirLen = b.lastIndexOf("/") + 1; //$NON-NLS-1$
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.diff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+
+import org.eclipse.jgit.errors.BinaryBlobException;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.util.IntList;
+import org.eclipse.jgit.util.LongList;
+
+/**
+ * A text file held only as a hash of each of its lines.
+ * <p>
+ * The text is read in a single pass over the stream of an
+ * {@link org.eclipse.jgit.lib.ObjectLoader}, so files too large for a
+ * {@link org.eclipse.jgit.diff.RawText} can still be compared by any
+ * {@link org.eclipse.jgit.diff.DiffAlgorithm} using {@link #COMPARATOR}. Memory
+ * use is 8 bytes per line, instead of the whole file. Lines are hashed as
+ * they are read, so even a very long line is never held in memory.
+ * <p>
+ * Lines are considered equal when their hashes are equal. Each line is hashed
+ * to 64 bits, making false matches extremely unlikely. Only the exact
+ * comparison of {@link org.eclipse.jgit.diff.RawTextComparator#DEFAULT} is
+ * supported, as other comparators only provide a 32 bit hash.
+ *
+ * @since 5.1
+ */
+public class StreamedText extends Sequence {
+	/** A StreamedText of length 0. */
+	public static final StreamedText EMPTY_TEXT = new StreamedText(null,
+			new LongList());
+
+	/** Compares lines of two streamed texts by their hashes. */
+	public static final SequenceComparator<StreamedText> COMPARATOR = new SequenceComparator<StreamedText>() {
+		@Override
+		public boolean equals(StreamedText a, int ai, StreamedText b, int bi) {
+			return a.hashes.get(ai) == b.hashes.get(bi);
+		}
+
+		@Override
+		public int hash(StreamedText seq, int ptr) {
+			long h = seq.hashes.get(ptr);
+			return (int) (h ^ (h >>> 32));
+		}
+	};
+
+	/**
+	 * Read a blob object into a StreamedText, or throw BinaryBlobException if
+	 * the blob is binary.
+	 *
+	 * @param ldr
+	 *            the ObjectLoader for the blob. It is opened again by
+	 *            {@link #toRawText(BitSet)}.
+	 * @return the hashed lines of the blob.
+	 * @throws org.eclipse.jgit.errors.BinaryBlobException
+	 *             if the blob contains binary data.
+	 * @throws java.io.IOException
+	 *             if the input could not be read.
+	 */
+	public static StreamedText load(ObjectLoader ldr)
+			throws IOException, BinaryBlobException {
+		LongList hashes = new LongList();
+		try (LineReader in = new LineReader(ldr.openStream())) {
+			// The same hash as RawTextComparator.DEFAULT in the upper half,
+			// and an FNV-1 hash in the lower half, both updated per chunk.
+			int djb = DJB_INIT;
+			int fnv = FNV_INIT;
+			boolean partial = false;
+			while (in.next()) {
+				for (int i = in.ptr; i < in.end; i++) {
+					int c = in.buf[i] & 0xff;
+					djb = ((djb << 5) + djb) + c;
+					fnv = (fnv ^ c) * FNV_PRIME;
+				}
+				partial = !in.eol;
+				if (in.eol) {
+					hashes.add(hash(djb, fnv));
+					djb = DJB_INIT;
+					fnv = FNV_INIT;
+				}
+			}
+			if (partial) {
+				hashes.add(hash(djb, fnv));
+			}
+		}
+		return new StreamedText(ldr, hashes);
+	}
+
+	private static final int DJB_INIT = 5381;
+
+	private static final int FNV_INIT = 0x811c9dc5;
+
+	private static final int FNV_PRIME = 0x01000193;
+
+	private static long hash(int djb, int fnv) {
+		return (((long) djb) << 32) | (fnv & 0xffffffffL);
+	}
+
+	private final ObjectLoader loader;
+
+	private final LongList hashes;
+
+	private StreamedText(ObjectLoader loader, LongList hashes) {
+		this.loader = loader;
+		this.hashes = hashes;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int size() {
+		return hashes.size();
+	}
+
+	/**
+	 * Read selected lines back into a RawText.
+	 * <p>
+	 * The returned text has the same number of lines as this sequence, but
+	 * only lines set in {@code lines} have content; all others are empty.
+	 * This is enough to format the hunks of a diff while holding only the
+	 * lines they show.
+	 *
+	 * @param lines
+	 *            0-based indexes of the lines to read.
+	 * @return text holding the selected lines.
+	 * @throws java.io.IOException
+	 *             if the input could not be read.
+	 */
+	public RawText toRawText(BitSet lines) throws IOException {
+		if (loader == null) {
+			return RawText.EMPTY_TEXT;
+		}
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		IntList map = new IntList(size() + 2);
+		map.add(Integer.MIN_VALUE);
+		try (LineReader in = new LineReader(loader.openStream())) {
+			boolean partial = false;
+			for (int i = 0; in.next();) {
+				if (!partial) {
+					map.add(buf.size());
+				}
+				if (lines.get(i)) {
+					buf.write(in.buf, in.ptr, in.end - in.ptr);
+				}
+				partial = !in.eol;
+				if (in.eol) {
+					i++;
+				}
+			}
+		} catch (BinaryBlobException e) {
+			// Already verified by load.
+			throw new IOException(e);
+		}
+		map.add(buf.size());
+		return new RawText(buf.toByteArray(), map);
+	}
+
+	/**
+	 * Splits a stream into chunks that never span two lines.
+	 * <p>
+	 * A line, including its trailing LF, may be returned as several chunks;
+	 * only the last one has {@link #eol} set.
+	 */
+	private static class LineReader implements AutoCloseable {
+		private final InputStream in;
+
+		final byte[] buf = new byte[8192];
+
+		/** Start of the current chunk in {@link #buf}. */
+		int ptr;
+
+		/** End of the current chunk in {@link #buf}. */
+		int end;
+
+		/** Whether the current chunk ends its line. */
+		boolean eol;
+
+		private int cnt;
+
+		private long offset;
+
+		LineReader(InputStream in) {
+			this.in = in;
+		}
+
+		/**
+		 * Read the next chunk into {@link #buf}.
+		 *
+		 * @return false at EOF.
+		 * @throws IOException
+		 *             the stream could not be read.
+		 * @throws BinaryBlobException
+		 *             the stream contains binary data.
+		 */
+		boolean next() throws IOException, BinaryBlobException {
+			ptr = end;
+			if (ptr == cnt) {
+				cnt = in.read(buf, 0, buf.length);
+				ptr = 0;
+				end = 0;
+				if (cnt <= 0) {
+					cnt = 0;
+					return false;
+				}
+			}
+
+			int e = ptr;
+			while (e < cnt && buf[e] != '\n') {
+				e++;
+			}
+			eol = e < cnt;
+			if (eol) {
+				e++;
+			}
+			if (offset < RawText.FIRST_FEW_BYTES) {
+				long check = Math.min(e - ptr,
+						RawText.FIRST_FEW_BYTES - offset);
+				for (int i = ptr; i < ptr + check; i++) {
+					if (buf[i] == '\0') {
+						throw new BinaryBlobException();
+					}
+				}
+			}
+			offset += e - ptr;
+			end = e;
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
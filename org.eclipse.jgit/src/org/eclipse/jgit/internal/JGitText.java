@@ -631,6 +631,7 @@ public static JGitText get() {
 	/***/ public String refAlreadyExists1;
 	/***/ public String reflogEntryNotFound;
 	/***/ public String refNotResolved;
+	/***/ public String reftableDirExists;
 	/***/ public String refUpdateReturnCodeWas;
 	/***/ public String remoteConfigHasNoURIAssociated;
 	/***/ public String remoteDoesNotHaveSpec;
@@ -673,6 +674,7 @@ public static JGitText get() {
 	/***/ public String secondsAgo;
 	/***/ public String selectingCommits;
 	/***/ public String sequenceTooLargeForDiffAlgorithm;
+	/***/ public String serverBusyTryAgainLater;
 	/***/ public String serviceNotEnabledNoName;
 	/***/ public String serviceNotPermitted;
 	/***/ public String sha1CollisionDetected1;
@@ -789,6 +791,7 @@ public static JGitText get() {
 	/***/ public String unknownObjectInIndex;
 	/***/ public String unknownObjectType;
 	/***/ public String unknownObjectType2;
+	/***/ public String unknownRefStorageFormat;
 	/***/ public String unknownRepositoryFormat;
 	/***/ public String unknownRepositoryFormat2;
 	/***/ public String unknownTransportCommand;
@@ -46,6 +46,7 @@
 import static org.eclipse.jgit.lib.Ref.Storage.NEW;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -152,6 +153,14 @@ public Map<String, Ref> getRefs(String prefix) throws IOException {
 		return new RefMap(prefix, packed, loose, sym.toRefList());
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public List<Ref> getRefsByPrefix(String prefix) throws IOException {
+		// The cached lists are sorted; the map only visits the matching slice.
+		return Collections.unmodifiableList(
+				new ArrayList<>(getRefs(prefix).values()));
+	}
+
 	private Ref resolve(Ref ref, int depth, RefList<Ref> loose)
 			throws IOException {
 		if (!ref.isSymbolic())
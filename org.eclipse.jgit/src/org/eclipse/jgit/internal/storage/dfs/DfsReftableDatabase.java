@@ -47,6 +47,7 @@
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
@@ -60,6 +61,7 @@
 import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefScanner;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.ReceiveCommand;
 import org.eclipse.jgit.util.RefList;
@@ -281,6 +283,12 @@ public List<Ref> getRefsByPrefix(String prefix) throws IOException {
 		return Collections.unmodifiableList(all);
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public RefScanner scanRefsByPrefix(String... prefixes) throws IOException {
+		return new ReftableScanner(normalizePrefixes(prefixes).iterator());
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public Ref peel(Ref ref) throws IOException {
@@ -291,6 +299,89 @@ public Ref peel(Ref ref) throws IOException {
 		return recreate(ref, doPeel(oldLeaf));
 	}
 
+	/**
+	 * Scanner seeking each prefix in the merged reftable.
+	 * <p>
+	 * The lock is only held while reading the next reference. If the stack
+	 * was reloaded in the meantime, the current prefix is sought again in the
+	 * new tables and references up to the last one returned are skipped.
+	 */
+	private class ReftableScanner extends RefScanner {
+		private final Iterator<String> prefixes;
+
+		private String prefix;
+
+		private Reftable table;
+
+		private RefCursor rc;
+
+		private String last;
+
+		private Ref ref;
+
+		ReftableScanner(Iterator<String> prefixes) {
+			this.prefixes = prefixes;
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			lock.lock();
+			try {
+				Reftable t = reader();
+				if (rc != null && t != table) {
+					rc.close();
+					rc = seek(t, prefix);
+					table = t;
+				}
+				for (;;) {
+					if (rc == null) {
+						if (!prefixes.hasNext()) {
+							ref = null;
+							return false;
+						}
+						prefix = prefixes.next();
+						rc = seek(t, prefix);
+						table = t;
+					}
+					if (!rc.next()) {
+						rc.close();
+						rc = null;
+						continue;
+					}
+					String name = rc.getRef().getName();
+					if (last != null && name.compareTo(last) <= 0) {
+						continue;
+					}
+					Ref r = t.resolve(rc.getRef());
+					if (r != null && r.getObjectId() != null) {
+						ref = r;
+						last = name;
+						return true;
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private RefCursor seek(Reftable t, String p) throws IOException {
+			return ALL.equals(p) ? t.allRefs() : t.seekRefsWithPrefix(p);
+		}
+
+		@Override
+		public Ref getRef() {
+			return ref;
+		}
+
+		@Override
+		public void close() {
+			if (rc != null) {
+				rc.close();
+				rc = null;
+			}
+		}
+	}
+
 	@Override
 	boolean exists() throws IOException {
 		DfsObjDatabase odb = getRepository().getObjectDatabase();
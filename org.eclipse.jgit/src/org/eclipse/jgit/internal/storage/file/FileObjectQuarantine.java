@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.internal.storage.file;
+
+import static org.eclipse.jgit.internal.storage.pack.PackExt.BITMAP_INDEX;
+import static org.eclipse.jgit.internal.storage.pack.PackExt.INDEX;
+import static org.eclipse.jgit.internal.storage.pack.PackExt.PACK;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.StandardCopyOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.errors.LockFailedException;
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.internal.storage.file.FileObjectDatabase.InsertLooseObjectResult;
+import org.eclipse.jgit.internal.storage.pack.PackExt;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectQuarantine;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.util.FileUtils;
+
+/**
+ * Quarantine of an {@link ObjectDirectory}.
+ * <p>
+ * Objects are written into a temporary object directory which uses the
+ * repository's object directory as its alternate. Committing renames the
+ * packs and loose objects into the repository; the pack index is moved last,
+ * so a pack never becomes visible before it is complete. Nothing is indexed
+ * a second time.
+ */
+class FileObjectQuarantine extends ObjectQuarantine {
+	private final ObjectDirectory db;
+
+	private final ObjectDirectory quarantine;
+
+	private final List<PackLock> locks = new ArrayList<>();
+
+	private boolean committed;
+
+	FileObjectQuarantine(ObjectDirectory db, ObjectDirectory quarantine) {
+		this.db = db;
+		this.quarantine = quarantine;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ObjectInserter newInserter() {
+		return quarantine.newInserter();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ObjectReader newReader() {
+		return quarantine.newReader();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void commit(@Nullable String lockMessage) throws IOException {
+		if (committed) {
+			throw new IllegalStateException();
+		}
+		committed = true;
+		quarantine.closePacks();
+
+		File[] packs = quarantine.getPackDirectory().listFiles(
+				(dir, name) -> name.endsWith(PACK.getExtension()));
+		if (packs != null) {
+			for (File pack : packs) {
+				movePack(pack, lockMessage);
+			}
+		}
+		moveLooseObjects();
+	}
+
+	private void movePack(File pack, @Nullable String lockMessage)
+			throws IOException {
+		String base = pack.getName().substring(0,
+				pack.getName().length() - PACK.getExtension().length());
+		File idx = new File(pack.getParentFile(), base + INDEX.getExtension());
+		if (!idx.exists()) {
+			// Not a complete pack, e.g. left by a failed parse.
+			return;
+		}
+
+		File dstPack = new File(db.getPackDirectory(), pack.getName());
+		if (dstPack.exists()) {
+			// The repository already has all of these objects.
+			return;
+		}
+		if (lockMessage != null) {
+			PackLock keep = new PackLock(dstPack, db.getFS());
+			if (!keep.lock(lockMessage)) {
+				throw new LockFailedException(dstPack, MessageFormat
+						.format(JGitText.get().cannotLockPackIn, dstPack));
+			}
+			locks.add(keep);
+		}
+
+		FileUtils.mkdir(db.getPackDirectory(), true);
+		for (PackExt ext : new PackExt[] { PACK, BITMAP_INDEX, INDEX }) {
+			File src = new File(pack.getParentFile(),
+					base + ext.getExtension());
+			if (src.exists()) {
+				File dst = new File(db.getPackDirectory(),
+						base + ext.getExtension());
+				try {
+					FileUtils.rename(src, dst,
+							StandardCopyOption.ATOMIC_MOVE);
+				} catch (IOException e) {
+					throw new IOException(MessageFormat.format(
+							ext == INDEX ? JGitText.get().cannotMoveIndexTo
+									: JGitText.get().cannotMovePackTo,
+							dst), e);
+				}
+			}
+		}
+		db.openPack(dstPack);
+	}
+
+	private void moveLooseObjects() throws IOException {
+		File[] fanout = quarantine.getDirectory().listFiles();
+		if (fanout == null) {
+			return;
+		}
+		for (File dir : fanout) {
+			String d = dir.getName();
+			if (d.length() != 2 || !dir.isDirectory()) {
+				continue;
+			}
+			File[] entries = dir.listFiles();
+			if (entries == null) {
+				continue;
+			}
+			for (File obj : entries) {
+				String f = obj.getName();
+				if (f.length() != Constants.OBJECT_ID_STRING_LENGTH - 2
+						|| !ObjectId.isId(d + f)) {
+					continue;
+				}
+				ObjectId id = ObjectId.fromString(d + f);
+				if (db.insertUnpackedObject(obj, id,
+						false) == InsertLooseObjectResult.FAILURE) {
+					throw new IOException(MessageFormat.format(
+							JGitText.get().unableToCreateNewObject, obj));
+				}
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() throws IOException {
+		quarantine.closePacks();
+		try {
+			FileUtils.delete(quarantine.getDirectory(), FileUtils.RECURSIVE
+					| FileUtils.RETRY | FileUtils.SKIP_MISSING);
+		} finally {
+			for (PackLock keep : locks) {
+				keep.unlock();
+			}
+			locks.clear();
+		}
+	}
+}
@@ -0,0 +1,796 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.internal.storage.file;
+
+import static org.eclipse.jgit.lib.Ref.Storage.NEW;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jgit.errors.LockFailedException;
+import org.eclipse.jgit.internal.storage.reftable.LogCursor;
+import org.eclipse.jgit.internal.storage.reftable.RefCursor;
+import org.eclipse.jgit.internal.storage.reftable.Reftable;
+import org.eclipse.jgit.internal.storage.reftable.ReftableConfig;
+import org.eclipse.jgit.internal.storage.reftable.ReftableWriter;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefRename;
+import org.eclipse.jgit.lib.RefScanner;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.ReflogEntry;
+import org.eclipse.jgit.lib.ReflogReader;
+import org.eclipse.jgit.lib.SymbolicRef;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.jgit.util.RefList;
+import org.eclipse.jgit.util.RefMap;
+
+/**
+ * Reference database of a {@link FileRepository} storing references and their
+ * logs in a stack of reftables under {@code $GIT_DIR/reftable}.
+ * <p>
+ * Every update, including a single {@link RefUpdate}, appends one table to
+ * the stack, so {@link BatchRefUpdate}s are always atomic. Small tables at
+ * the top of the stack are merged by auto-compaction, and
+ * {@link #compactFully()} collapses the stack into a single table.
+ * <p>
+ * To keep older tools from treating the repository as empty or broken, a
+ * repository using this database keeps an empty {@code refs/} directory and
+ * a {@code HEAD} file pointing to an invalid branch.
+ * <p>
+ * A {@code FileReftableDatabase} instance is thread-safe.
+ */
+public class FileReftableDatabase extends RefDatabase {
+	/** Name of the directory holding the reftable stack. */
+	public static final String REFTABLE = "reftable"; //$NON-NLS-1$
+
+	/** Content of the {@code HEAD} file kept for older tools. */
+	static final String INVALID_HEAD = "ref: refs/heads/.invalid\n"; //$NON-NLS-1$
+
+	private final ReentrantLock lock = new ReentrantLock(true);
+
+	private final FileRepository repo;
+
+	private final FileReftableStack reftableStack;
+
+	FileReftableDatabase(FileRepository repo) throws IOException {
+		this.repo = repo;
+		this.reftableStack = new FileReftableStack(
+				new File(repo.getDirectory(), REFTABLE), repo::getConfig);
+	}
+
+	FileRepository getRepository() {
+		return repo;
+	}
+
+	ReentrantLock getLock() {
+		return lock;
+	}
+
+	/**
+	 * Obtain the stack of reftables, reloaded if another writer changed it.
+	 *
+	 * @return the stack of reftables.
+	 * @throws IOException
+	 *             the tables cannot be opened.
+	 */
+	FileReftableStack stack() throws IOException {
+		lock.lock();
+		try {
+			if (!reftableStack.isUpToDate()) {
+				reftableStack.reload();
+			}
+			return reftableStack;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Obtain a handle to the merged reader.
+	 *
+	 * @return the merged view of the current stack.
+	 * @throws IOException
+	 *             the tables cannot be opened.
+	 */
+	Reftable reader() throws IOException {
+		return stack().getMergedReftable();
+	}
+
+	/**
+	 * Compact the whole stack into a single table.
+	 *
+	 * @throws java.io.IOException
+	 *             the tables cannot be read or written, or another writer
+	 *             modified the stack concurrently.
+	 */
+	public void compactFully() throws IOException {
+		lock.lock();
+		try {
+			FileReftableStack stack = stack();
+			if (!stack.compactFully()) {
+				throw new LockFailedException(
+						new File(stack.getDirectory(),
+								FileReftableStack.TABLES_LIST));
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void create() throws IOException {
+		FileUtils.mkdir(new File(repo.getDirectory(), REFTABLE), true);
+		FileUtils.mkdirs(new File(repo.getDirectory(), Constants.R_HEADS),
+				true);
+		File head = new File(repo.getDirectory(), Constants.HEAD);
+		if (!head.exists()) {
+			writeInvalidHead(repo.getDirectory());
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			reftableStack.close();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean performsAtomicTransactions() {
+		return true;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BatchRefUpdate newBatchUpdate() {
+		return new FileReftableBatchRefUpdate(this);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isNameConflicting(String refName) throws IOException {
+		lock.lock();
+		try {
+			Reftable table = reader();
+
+			// Cannot be nested within an existing reference.
+			int lastSlash = refName.lastIndexOf('/');
+			while (0 < lastSlash) {
+				if (table.hasRef(refName.substring(0, lastSlash))) {
+					return true;
+				}
+				lastSlash = refName.lastIndexOf('/', lastSlash - 1);
+			}
+
+			// Cannot be the container of an existing reference.
+			return table.hasRefsWithPrefix(refName + '/');
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Ref exactRef(String name) throws IOException {
+		lock.lock();
+		try {
+			Reftable table = reader();
+			Ref ref = table.exactRef(name);
+			if (ref != null && ref.isSymbolic()) {
+				return table.resolve(ref);
+			}
+			return ref;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Ref getRef(String needle) throws IOException {
+		for (String prefix : SEARCH_PATH) {
+			Ref ref = exactRef(prefix + needle);
+			if (ref != null) {
+				return ref;
+			}
+		}
+		return null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Map<String, Ref> getRefs(String prefix) throws IOException {
+		RefList.Builder<Ref> all = new RefList.Builder<>();
+		lock.lock();
+		try {
+			Reftable table = reader();
+			try (RefCursor rc = ALL.equals(prefix) ? table.allRefs()
+					: table.seekRefsWithPrefix(prefix)) {
+				while (rc.next()) {
+					Ref ref = table.resolve(rc.getRef());
+					if (ref != null && ref.getObjectId() != null) {
+						all.add(ref);
+					}
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		RefList<Ref> none = RefList.emptyList();
+		return new RefMap(prefix, all.toRefList(), none, none);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Ref> getRefsByPrefix(String prefix) throws IOException {
+		List<Ref> all = new ArrayList<>();
+		lock.lock();
+		try {
+			Reftable table = reader();
+			try (RefCursor rc = ALL.equals(prefix) ? table.allRefs()
+					: table.seekRefsWithPrefix(prefix)) {
+				while (rc.next()) {
+					Ref ref = table.resolve(rc.getRef());
+					if (ref != null && ref.getObjectId() != null) {
+						all.add(ref);
+					}
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		return Collections.unmodifiableList(all);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public RefScanner scanRefsByPrefix(String... prefixes) throws IOException {
+		return new ReftableScanner(normalizePrefixes(prefixes).iterator());
+	}
+
+	/**
+	 * Scanner seeking each prefix in the merged reftable of the stack.
+	 * <p>
+	 * The lock is only held while reading the next reference. If the stack
+	 * was reloaded in the meantime, the current prefix is sought again in the
+	 * new tables and references up to the last one returned are skipped.
+	 */
+	private class ReftableScanner extends RefScanner {
+		private final Iterator<String> prefixes;
+
+		private String prefix;
+
+		private Reftable table;
+
+		private RefCursor rc;
+
+		private String last;
+
+		private Ref ref;
+
+		ReftableScanner(Iterator<String> prefixes) {
+			this.prefixes = prefixes;
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			lock.lock();
+			try {
+				Reftable t = reader();
+				if (rc != null && t != table) {
+					rc.close();
+					rc = seek(t, prefix);
+					table = t;
+				}
+				for (;;) {
+					if (rc == null) {
+						if (!prefixes.hasNext()) {
+							ref = null;
+							return false;
+						}
+						prefix = prefixes.next();
+						rc = seek(t, prefix);
+						table = t;
+					}
+					if (!rc.next()) {
+						rc.close();
+						rc = null;
+						continue;
+					}
+					String name = rc.getRef().getName();
+					if (last != null && name.compareTo(last) <= 0) {
+						continue;
+					}
+					Ref r = t.resolve(rc.getRef());
+					if (r != null && r.getObjectId() != null) {
+						ref = r;
+						last = name;
+						return true;
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private RefCursor seek(Reftable t, String p) throws IOException {
+			return ALL.equals(p) ? t.allRefs() : t.seekRefsWithPrefix(p);
+		}
+
+		@Override
+		public Ref getRef() {
+			return ref;
+		}
+
+		@Override
+		public void close() {
+			lock.lock();
+			try {
+				if (rc != null) {
+					rc.close();
+					rc = null;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Ref> getAdditionalRefs() throws IOException {
+		return Collections.emptyList();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Ref peel(Ref ref) throws IOException {
+		Ref oldLeaf = ref.getLeaf();
+		if (oldLeaf.isPeeled() || oldLeaf.getObjectId() == null) {
+			return ref;
+		}
+		return recreate(ref, doPeel(oldLeaf));
+	}
+
+	private Ref doPeel(Ref leaf) throws IOException {
+		try (RevWalk rw = new RevWalk(repo)) {
+			RevObject obj = rw.parseAny(leaf.getObjectId());
+			if (obj instanceof RevTag) {
+				return new ObjectIdRef.PeeledTag(leaf.getStorage(),
+						leaf.getName(), leaf.getObjectId(),
+						rw.peel(obj).copy());
+			}
+			return new ObjectIdRef.PeeledNonTag(leaf.getStorage(),
+					leaf.getName(), leaf.getObjectId());
+		}
+	}
+
+	private static Ref recreate(Ref old, Ref leaf) {
+		if (old.isSymbolic()) {
+			Ref dst = recreate(old.getTarget(), leaf);
+			return new SymbolicRef(old.getName(), dst);
+		}
+		return leaf;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public RefUpdate newUpdate(String refName, boolean detach)
+			throws IOException {
+		boolean detachingSymbolicRef = false;
+		Ref ref = exactRef(refName);
+		if (ref == null) {
+			ref = new ObjectIdRef.Unpeeled(NEW, refName, null);
+		} else {
+			detachingSymbolicRef = detach && ref.isSymbolic();
+		}
+
+		RefUpdate update = new FileReftableRefUpdate(ref);
+		if (detachingSymbolicRef) {
+			update.setDetachingSymbolicRef();
+		}
+		return update;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public RefRename newRename(String fromName, String toName)
+			throws IOException {
+		RefUpdate src = newUpdate(fromName, true);
+		RefUpdate dst = newUpdate(toName, true);
+		return new FileReftableRefRename(src, dst);
+	}
+
+	/**
+	 * Get the reflog of a reference.
+	 *
+	 * @param refName
+	 *            name of the reference.
+	 * @return reader for the log entries of {@code refName}, newest first.
+	 */
+	public ReflogReader getReflogReader(String refName) {
+		return new FileReftableReflogReader(refName);
+	}
+
+	/**
+	 * Write a reftable holding all references and optionally the reflogs of
+	 * a repository still using loose and packed references.
+	 * <p>
+	 * The table is written as the only table of a new stack in
+	 * {@code $GIT_DIR/reftable}; the caller is responsible for switching the
+	 * repository configuration and removing the old references.
+	 *
+	 * @param repo
+	 *            the repository to convert.
+	 * @param writeLogs
+	 *            whether to copy the reflogs.
+	 * @throws java.io.IOException
+	 *             references cannot be read or the table cannot be written.
+	 */
+	static void convertFrom(FileRepository repo, boolean writeLogs)
+			throws IOException {
+		RefDatabase src = repo.getRefDatabase();
+		Map<String, Ref> refs = new TreeMap<>();
+		for (Ref r : src.getRefsByPrefix(ALL)) {
+			// Reftable stores the peeled value of every tag.
+			refs.put(r.getName(), r.isSymbolic() ? r : src.peel(r));
+		}
+		Ref head = src.exactRef(Constants.HEAD);
+		if (head != null) {
+			refs.put(head.getName(), head);
+		}
+
+		Map<String, List<ReflogEntry>> logs = new TreeMap<>();
+		int maxLog = 0;
+		if (writeLogs) {
+			for (String name : refs.keySet()) {
+				ReflogReader reader = src instanceof RefDirectory
+						? ((RefDirectory) src).getReflogReader(name)
+						: new ReflogReaderImpl(repo, name);
+				List<ReflogEntry> entries = reader.getReverseEntries();
+				if (!entries.isEmpty()) {
+					logs.put(name, entries);
+					maxLog = Math.max(maxLog, entries.size());
+				}
+			}
+		}
+
+		// Each log entry needs its own update index; the newest entry and
+		// the references themselves use the largest one.
+		long max = Math.max(maxLog, 1);
+		File dir = new File(repo.getDirectory(), REFTABLE);
+		FileUtils.mkdir(dir, true);
+		String name = FileReftableStack.filename(1, max);
+		try (FileOutputStream out = new FileOutputStream(
+				new File(dir, name))) {
+			ReftableWriter w = new ReftableWriter(
+					new ReftableConfig(repo.getConfig()))
+							.setMinUpdateIndex(1).setMaxUpdateIndex(max)
+							.begin(out);
+			w.sortAndWriteRefs(refs.values());
+			for (Map.Entry<String, List<ReflogEntry>> e : logs.entrySet()) {
+				long idx = max;
+				for (ReflogEntry entry : e.getValue()) {
+					w.writeLog(e.getKey(), idx--, entry.getWho(),
+							entry.getOldId(), entry.getNewId(),
+							entry.getComment());
+				}
+			}
+			w.finish();
+		}
+		FileReftableStack.writeNames(dir, Collections.singletonList(name));
+	}
+
+	static void writeInvalidHead(File gitDir) throws IOException {
+		File head = new File(gitDir, Constants.HEAD);
+		LockFile lock = new LockFile(head);
+		try {
+			if (!lock.lock()) {
+				throw new LockFailedException(head);
+			}
+			lock.write(Constants.encode(INVALID_HEAD));
+			if (!lock.commit()) {
+				throw new LockFailedException(head);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static ObjectId toId(Ref ref) {
+		if (ref != null) {
+			ObjectId id = ref.getObjectId();
+			if (id != null) {
+				return id;
+			}
+		}
+		return ObjectId.zeroId();
+	}
+
+	private RefUpdate.Result execute(FileReftableBatchRefUpdate batch) {
+		try (RevWalk rw = new RevWalk(repo)) {
+			batch.setAllowNonFastForwards(true).execute(rw,
+					NullProgressMonitor.INSTANCE);
+		} catch (IOException e) {
+			return RefUpdate.Result.IO_FAILURE;
+		}
+		for (ReceiveCommand cmd : batch.getCommands()) {
+			switch (cmd.getResult()) {
+			case OK:
+				continue;
+			case REJECTED_MISSING_OBJECT:
+				return RefUpdate.Result.REJECTED_MISSING_OBJECT;
+			default:
+				return RefUpdate.Result.LOCK_FAILURE;
+			}
+		}
+		return null;
+	}
+
+	private class FileReftableRefUpdate extends RefUpdate {
+		private Ref dstRef;
+
+		FileReftableRefUpdate(Ref ref) {
+			super(ref);
+		}
+
+		@Override
+		protected RefDatabase getRefDatabase() {
+			return FileReftableDatabase.this;
+		}
+
+		@Override
+		protected FileRepository getRepository() {
+			return repo;
+		}
+
+		@Override
+		protected boolean tryLock(boolean deref) throws IOException {
+			dstRef = getRef();
+			if (deref) {
+				dstRef = dstRef.getLeaf();
+			}
+
+			if (dstRef.isSymbolic()) {
+				setOldObjectId(null);
+			} else {
+				setOldObjectId(dstRef.getObjectId());
+			}
+			return true;
+		}
+
+		@Override
+		protected void unlock() {
+			// No state is held while "locked"; the batch update verifies the
+			// old value when appending its table.
+		}
+
+		@Override
+		protected Result doUpdate(Result desiredResult) throws IOException {
+			ReceiveCommand cmd;
+			if (dstRef.isSymbolic()) {
+				cmd = ReceiveCommand.unlink(dstRef.getTarget().getName(),
+						getNewObjectId(), dstRef.getName());
+			} else {
+				cmd = new ReceiveCommand(toId(dstRef), getNewObjectId(),
+						dstRef.getName());
+			}
+			FileReftableBatchRefUpdate batch = newBatch(
+					toResultString(desiredResult));
+			batch.addCommand(cmd);
+			if (getRef().isSymbolic() && dstRef != getRef()) {
+				batch.addLogAlias(dstRef.getName(), getRef().getName());
+			}
+			Result r = execute(batch);
+			return r != null ? r : desiredResult;
+		}
+
+		@Override
+		protected Result doDelete(Result desiredResult) throws IOException {
+			ReceiveCommand cmd;
+			if (dstRef.isSymbolic()) {
+				cmd = ReceiveCommand.unlink(dstRef.getTarget().getName(),
+						ObjectId.zeroId(), dstRef.getName());
+			} else {
+				cmd = new ReceiveCommand(toId(dstRef), ObjectId.zeroId(),
+						dstRef.getName());
+			}
+			FileReftableBatchRefUpdate batch = newBatch(null);
+			batch.addCommand(cmd);
+			Result r = execute(batch);
+			return r != null ? r : desiredResult;
+		}
+
+		@Override
+		protected Result doLink(String target) throws IOException {
+			ReceiveCommand cmd;
+			if (dstRef.isSymbolic()) {
+				cmd = ReceiveCommand.link(dstRef.getTarget().getName(),
+						target, dstRef.getName());
+			} else {
+				cmd = ReceiveCommand.link(toId(dstRef), target,
+						dstRef.getName());
+			}
+			FileReftableBatchRefUpdate batch = newBatch(null);
+			batch.addCommand(cmd);
+			Result r = execute(batch);
+			if (r != null) {
+				return r;
+			}
+			return dstRef.getStorage() == NEW ? Result.NEW : Result.FORCED;
+		}
+
+		private FileReftableBatchRefUpdate newBatch(String result) {
+			FileReftableBatchRefUpdate batch = new FileReftableBatchRefUpdate(
+					FileReftableDatabase.this);
+			batch.setRefLogIdent(getRefLogIdent());
+			String msg = getRefLogMessage();
+			if (msg == null) {
+				batch.disableRefLog();
+			} else {
+				if (isRefLogIncludingResult() && result != null) {
+					msg = msg.isEmpty() ? result : msg + ": " + result; //$NON-NLS-1$
+				}
+				batch.setRefLogMessage(msg, false);
+			}
+			return batch;
+		}
+
+		private String toResultString(Result status) {
+			switch (status) {
+			case FORCED:
+				return ReflogEntry.PREFIX_FORCED_UPDATE;
+			case FAST_FORWARD:
+				return ReflogEntry.PREFIX_FAST_FORWARD;
+			case NEW:
+				return ReflogEntry.PREFIX_CREATED;
+			default:
+				return null;
+			}
+		}
+	}
+
+	private class FileReftableRefRename extends RefRename {
+		FileReftableRefRename(RefUpdate src, RefUpdate dst) {
+			super(src, dst);
+		}
+
+		@Override
+		protected RefUpdate.Result doRename() throws IOException {
+			Ref src = source.getRef();
+			if (src.isSymbolic() || src.getObjectId() == null) {
+				return RefUpdate.Result.IO_FAILURE;
+			}
+
+			ObjectId id = src.getObjectId();
+			FileReftableBatchRefUpdate batch = new FileReftableBatchRefUpdate(
+					FileReftableDatabase.this);
+			batch.setRefLogIdent(getRefLogIdent());
+			if (getRefLogMessage() == null) {
+				batch.disableRefLog();
+			} else {
+				batch.setRefLogMessage(getRefLogMessage(), false);
+			}
+			batch.addCommand(
+					new ReceiveCommand(id, ObjectId.zeroId(), src.getName()),
+					new ReceiveCommand(ObjectId.zeroId(), id,
+							destination.getName()));
+			if (needToUpdateHEAD()) {
+				batch.addCommand(ReceiveCommand.link(src.getName(),
+						destination.getName(), Constants.HEAD));
+			}
+			RefUpdate.Result r = execute(batch);
+			return r != null ? r : RefUpdate.Result.RENAMED;
+		}
+	}
+
+	private class FileReftableReflogReader implements ReflogReader {
+		private final String refName;
+
+		FileReftableReflogReader(String refName) {
+			this.refName = refName;
+		}
+
+		@Override
+		public ReflogEntry getLastEntry() throws IOException {
+			return getReverseEntry(0);
+		}
+
+		@Override
+		public List<ReflogEntry> getReverseEntries() throws IOException {
+			return getReverseEntries(Integer.MAX_VALUE);
+		}
+
+		@Override
+		public ReflogEntry getReverseEntry(int number) throws IOException {
+			List<ReflogEntry> entries = getReverseEntries(number + 1);
+			return number < entries.size() ? entries.get(number) : null;
+		}
+
+		@Override
+		public List<ReflogEntry> getReverseEntries(int max)
+				throws IOException {
+			List<ReflogEntry> entries = new ArrayList<>();
+			lock.lock();
+			try (LogCursor lc = reader().seekLog(refName)) {
+				while (entries.size() < max && lc.next()) {
+					ReflogEntry e = lc.getReflogEntry();
+					if (e != null) {
+						entries.add(e);
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+			return entries;
+		}
+	}
+}
@@ -0,0 +1,530 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.internal.storage.file;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.eclipse.jgit.errors.LockFailedException;
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.internal.storage.io.BlockSource;
+import org.eclipse.jgit.internal.storage.reftable.MergedReftable;
+import org.eclipse.jgit.internal.storage.reftable.Reftable;
+import org.eclipse.jgit.internal.storage.reftable.ReftableCompactor;
+import org.eclipse.jgit.internal.storage.reftable.ReftableConfig;
+import org.eclipse.jgit.internal.storage.reftable.ReftableReader;
+import org.eclipse.jgit.internal.storage.reftable.ReftableWriter;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.jgit.util.IO;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * A stack of reftables stored in a directory on the local filesystem.
+ * <p>
+ * The file {@code tables.list} names the tables of the stack, oldest first.
+ * New tables are appended by writing the table under a unique name and then
+ * replacing {@code tables.list} through a {@link LockFile}, which makes each
+ * addition atomic with respect to other processes. After an addition the
+ * stack is compacted if the newer tables have grown to a size comparable to
+ * the older ones, keeping the depth logarithmic in the number of updates.
+ * <p>
+ * Instances are not thread-safe; the caller must serialize access.
+ */
+public class FileReftableStack implements AutoCloseable {
+	/** Name of the file listing the tables of the stack. */
+	public static final String TABLES_LIST = "tables.list"; //$NON-NLS-1$
+
+	private static final String SUFFIX = ".ref"; //$NON-NLS-1$
+
+	/**
+	 * Writes the content of a new table appended to the stack.
+	 */
+	@FunctionalInterface
+	public interface Writer {
+		/**
+		 * Write the refs and logs of the new table.
+		 *
+		 * @param w
+		 *            writer for the new table. Its update index range was
+		 *            already set to {@link #getNextUpdateIndex()} and
+		 *            {@link ReftableWriter#begin(java.io.OutputStream)} was
+		 *            called.
+		 * @throws IOException
+		 *             the table cannot be written.
+		 */
+		void call(ReftableWriter w) throws IOException;
+	}
+
+	private final File reftableDir;
+
+	private final File stackPath;
+
+	private final Supplier<Config> configSupplier;
+
+	private List<String> names = Collections.emptyList();
+
+	private List<ReftableReader> tables = Collections.emptyList();
+
+	private MergedReftable merged;
+
+	private FileSnapshot snapshot = FileSnapshot.DIRTY;
+
+	/**
+	 * Open the stack stored in a directory.
+	 *
+	 * @param reftableDir
+	 *            directory holding the tables and {@code tables.list}.
+	 * @param configSupplier
+	 *            supplies the configuration to write new tables with.
+	 * @throws java.io.IOException
+	 *             the tables cannot be opened.
+	 */
+	public FileReftableStack(File reftableDir,
+			Supplier<Config> configSupplier) throws IOException {
+		this.reftableDir = reftableDir;
+		this.stackPath = new File(reftableDir, TABLES_LIST);
+		this.configSupplier = configSupplier;
+		reload();
+	}
+
+	/**
+	 * Get the directory holding the tables.
+	 *
+	 * @return the directory holding the tables.
+	 */
+	public File getDirectory() {
+		return reftableDir;
+	}
+
+	/**
+	 * Get the merged view of all tables in the stack.
+	 *
+	 * @return the merged view of all tables in the stack.
+	 */
+	public MergedReftable getMergedReftable() {
+		return merged;
+	}
+
+	/**
+	 * Get the tables of the stack.
+	 *
+	 * @return unmodifiable list of the tables, oldest first.
+	 */
+	public List<ReftableReader> readers() {
+		return Collections.unmodifiableList(tables);
+	}
+
+	/**
+	 * Get the update index the next added table will use.
+	 *
+	 * @return the update index the next added table will use.
+	 * @throws java.io.IOException
+	 *             the newest table cannot be read.
+	 */
+	public long getNextUpdateIndex() throws IOException {
+		if (tables.isEmpty()) {
+			return 1;
+		}
+		return tables.get(tables.size() - 1).maxUpdateIndex() + 1;
+	}
+
+	/**
+	 * Check whether {@code tables.list} still names the loaded tables.
+	 *
+	 * @return {@code true} if no other writer changed the stack since it was
+	 *         last loaded.
+	 * @throws java.io.IOException
+	 *             {@code tables.list} cannot be read.
+	 */
+	public boolean isUpToDate() throws IOException {
+		if (!snapshot.isModified(stackPath)) {
+			return true;
+		}
+		return names.equals(readNames());
+	}
+
+	/**
+	 * Reload the stack from {@code tables.list}.
+	 * <p>
+	 * Tables still named by the list are reused, others are opened.
+	 *
+	 * @throws java.io.IOException
+	 *             the tables cannot be opened.
+	 */
+	public void reload() throws IOException {
+		for (int retries = 0;; retries++) {
+			FileSnapshot s = FileSnapshot.save(stackPath);
+			List<String> newNames = readNames();
+			try {
+				open(newNames);
+				snapshot = s;
+				return;
+			} catch (FileNotFoundException e) {
+				// A concurrent compaction removed a table after we read the
+				// list; the list must have changed too, so read it again.
+				if (retries >= 2) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private void open(List<String> newNames) throws IOException {
+		Map<String, ReftableReader> old = new HashMap<>();
+		for (int i = 0; i < names.size(); i++) {
+			old.put(names.get(i), tables.get(i));
+		}
+
+		List<ReftableReader> newTables = new ArrayList<>(newNames.size());
+		boolean ok = false;
+		try {
+			for (String name : newNames) {
+				ReftableReader t = old.get(name);
+				if (t == null) {
+					t = new ReftableReader(BlockSource.from(
+							new FileInputStream(new File(reftableDir, name))));
+				}
+				newTables.add(t);
+			}
+			ok = true;
+		} finally {
+			if (!ok) {
+				for (ReftableReader t : newTables) {
+					if (!old.containsValue(t)) {
+						close(t);
+					}
+				}
+			}
+		}
+
+		for (ReftableReader t : tables) {
+			if (!newTables.contains(t)) {
+				close(t);
+			}
+		}
+		names = newNames;
+		tables = newTables;
+		merged = new MergedReftable(new ArrayList<Reftable>(newTables));
+	}
+
+	private List<String> readNames() throws IOException {
+		byte[] buf;
+		try {
+			buf = IO.readFully(stackPath);
+		} catch (FileNotFoundException e) {
+			return Collections.emptyList();
+		}
+		List<String> r = new ArrayList<>();
+		for (int p = 0; p < buf.length;) {
+			int e = RawParseUtils.nextLF(buf, p);
+			int end = buf[e - 1] == '\n' ? e - 1 : e;
+			if (p < end) {
+				r.add(RawParseUtils.decode(UTF_8, buf, p, end));
+			}
+			p = e;
+		}
+		return r;
+	}
+
+	/**
+	 * Append a new table to the stack.
+	 * <p>
+	 * The addition fails if another writer changed the stack since it was
+	 * last loaded; the caller should {@link #reload()} and verify its
+	 * preconditions again. A successful addition may compact the stack.
+	 *
+	 * @param w
+	 *            writes the content of the new table.
+	 * @return {@code true} if the table was added; {@code false} if
+	 *         {@code tables.list} could not be locked or was modified.
+	 * @throws java.io.IOException
+	 *             the table cannot be written.
+	 */
+	public boolean addReftable(Writer w) throws IOException {
+		LockFile lock = new LockFile(stackPath);
+		try {
+			if (!lock.lock() || !isUpToDate()) {
+				return false;
+			}
+
+			long updateIndex = getNextUpdateIndex();
+			String name = filename(updateIndex, updateIndex);
+			File tmp = File.createTempFile(name + "_", SUFFIX, reftableDir); //$NON-NLS-1$
+			try {
+				try (FileOutputStream out = new FileOutputStream(tmp)) {
+					ReftableWriter writer = new ReftableWriter(
+							new ReftableConfig(configSupplier.get()))
+									.setMinUpdateIndex(updateIndex)
+									.setMaxUpdateIndex(updateIndex)
+									.begin(out);
+					w.call(writer);
+					writer.finish();
+					if (fsync()) {
+						out.getChannel().force(true);
+					}
+				}
+				install(tmp, name);
+			} finally {
+				FileUtils.delete(tmp, FileUtils.SKIP_MISSING);
+			}
+
+			List<String> newNames = new ArrayList<>(names);
+			newNames.add(name);
+			if (!commit(lock, newNames)) {
+				FileUtils.delete(new File(reftableDir, name),
+						FileUtils.SKIP_MISSING);
+				return false;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		reload();
+		autoCompact();
+		return true;
+	}
+
+	/**
+	 * Compact all tables of the stack into one.
+	 * <p>
+	 * Deletions are dropped from the result as no older table remains.
+	 *
+	 * @return {@code true} if the stack was compacted or already had at most
+	 *         one table; {@code false} if another writer held or modified
+	 *         {@code tables.list}.
+	 * @throws java.io.IOException
+	 *             the tables cannot be read or written.
+	 */
+	public boolean compactFully() throws IOException {
+		if (tables.size() <= 1) {
+			return true;
+		}
+		return compactRange(0, tables.size() - 1);
+	}
+
+	/**
+	 * Compact the newest tables if they are at least half as large as the
+	 * table below them.
+	 * <p>
+	 * This keeps table sizes roughly doubling towards the bottom of the stack,
+	 * so each ref is rewritten at most a logarithmic number of times.
+	 *
+	 * @throws java.io.IOException
+	 *             the tables cannot be read or written.
+	 */
+	void autoCompact() throws IOException {
+		int last = tables.size() - 1;
+		if (last < 1) {
+			return;
+		}
+		int first = last;
+		long bytes = tables.get(last).size();
+		while (first > 0 && tables.get(first - 1).size() <= 2 * bytes) {
+			first--;
+			bytes += tables.get(first).size();
+		}
+		if (first < last) {
+			compactRange(first, last);
+		}
+	}
+
+	private boolean compactRange(int first, int last) throws IOException {
+		LockFile lock = new LockFile(stackPath);
+		List<String> removed;
+		try {
+			if (!lock.lock() || !isUpToDate()) {
+				return false;
+			}
+
+			List<ReftableReader> range = tables.subList(first, last + 1);
+			String name = filename(range.get(0).minUpdateIndex(),
+					range.get(range.size() - 1).maxUpdateIndex());
+			File tmp = File.createTempFile(name + "_", SUFFIX, reftableDir); //$NON-NLS-1$
+			try {
+				try (FileOutputStream out = new FileOutputStream(tmp)) {
+					ReftableCompactor compactor = new ReftableCompactor();
+					compactor.setConfig(
+							new ReftableConfig(configSupplier.get()));
+					compactor.setIncludeDeletes(first > 0);
+					compactor.addAll(range);
+					compactor.compact(out);
+					if (fsync()) {
+						out.getChannel().force(true);
+					}
+				}
+				install(tmp, name);
+			} finally {
+				FileUtils.delete(tmp, FileUtils.SKIP_MISSING);
+			}
+
+			List<String> newNames = new ArrayList<>(names.subList(0, first));
+			newNames.add(name);
+			newNames.addAll(names.subList(last + 1, names.size()));
+			removed = new ArrayList<>(names.subList(first, last + 1));
+			if (!commit(lock, newNames)) {
+				FileUtils.delete(new File(reftableDir, name),
+						FileUtils.SKIP_MISSING);
+				return false;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		reload();
+		for (String n : removed) {
+			// Readers in other processes may still have the file open; on
+			// platforms refusing to delete open files it is left behind.
+			FileUtils.delete(new File(reftableDir, n),
+					FileUtils.SKIP_MISSING | FileUtils.IGNORE_ERRORS);
+		}
+		return true;
+	}
+
+	private void install(File tmp, String name) throws IOException {
+		File dst = new File(reftableDir, name);
+		try {
+			Files.move(tmp.toPath(), dst.toPath(),
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new IOException(MessageFormat.format(
+					JGitText.get().renameFileFailed, tmp, dst), e);
+		}
+	}
+
+	private boolean commit(LockFile lock, List<String> newNames)
+			throws IOException {
+		lock.setFSync(fsync());
+		lock.write(encode(newNames));
+		return lock.commit();
+	}
+
+	private static byte[] encode(List<String> newNames) {
+		StringBuilder sb = new StringBuilder();
+		for (String n : newNames) {
+			sb.append(n).append('\n');
+		}
+		return sb.toString().getBytes(UTF_8);
+	}
+
+	private boolean fsync() {
+		return configSupplier.get().get(WriteConfig.KEY).getFSyncRefFiles();
+	}
+
+	/**
+	 * Get the file name of a table covering a range of update indexes.
+	 *
+	 * @param min
+	 *            smallest update index stored in the table.
+	 * @param max
+	 *            largest update index stored in the table.
+	 * @return the file name of the table.
+	 */
+	static String filename(long min, long max) {
+		return String.format("%012x-%012x", Long.valueOf(min), //$NON-NLS-1$
+				Long.valueOf(max)) + SUFFIX;
+	}
+
+	/**
+	 * Write the list of tables of a new stack.
+	 *
+	 * @param reftableDir
+	 *            directory holding the tables.
+	 * @param newNames
+	 *            file names of the tables, oldest first.
+	 * @throws java.io.IOException
+	 *             {@code tables.list} cannot be locked or written.
+	 */
+	static void writeNames(File reftableDir, List<String> newNames)
+			throws IOException {
+		File path = new File(reftableDir, TABLES_LIST);
+		LockFile lock = new LockFile(path);
+		try {
+			if (!lock.lock()) {
+				throw new LockFailedException(path);
+			}
+			lock.write(encode(newNames));
+			if (!lock.commit()) {
+				throw new LockFailedException(path);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() {
+		for (ReftableReader t : tables) {
+			close(t);
+		}
+		tables = Collections.emptyList();
+		names = Collections.emptyList();
+		merged = new MergedReftable(Collections.<Reftable> emptyList());
+		snapshot = FileSnapshot.DIRTY;
+	}
+
+	private static void close(ReftableReader t) {
+		try {
+			t.close();
+		} catch (IOException e) {
+			// Ignore close failures.
+		}
+	}
+}
@@ -50,9 +50,13 @@
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
@@ -79,8 +83,10 @@
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.ReflogEntry;
 import org.eclipse.jgit.lib.ReflogReader;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileBasedConfig;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.storage.pack.PackConfig;
@@ -121,7 +127,7 @@ public class FileRepository extends Repository {
 	private final FileBasedConfig systemConfig;
 	private final FileBasedConfig userConfig;
 	private final FileBasedConfig repoConfig;
-	private final RefDatabase refs;
+	private volatile RefDatabase refs;
 	private final ObjectDirectory objectDatabase;
 
 	private final Object snapshotLock = new Object();
@@ -218,10 +224,14 @@ public void onConfigChanged(ConfigChangedEvent event) {
 				ConfigConstants.CONFIG_KEY_REPO_FORMAT_VERSION, 0);
 
 		String reftype = repoConfig.getString(
-				"extensions", null, "refStorage"); //$NON-NLS-1$ //$NON-NLS-2$
+				ConfigConstants.CONFIG_EXTENSIONS_SECTION, null,
+				ConfigConstants.CONFIG_KEY_REF_STORAGE);
 		if (repositoryFormatVersion >= 1 && reftype != null) {
 			if (StringUtils.equalsIgnoreCase(reftype, "reftree")) { //$NON-NLS-1$
 				refs = new RefTreeDatabase(this, new RefDirectory(this));
+			} else if (StringUtils.equalsIgnoreCase(reftype,
+					ConfigConstants.CONFIG_REF_STORAGE_REFTABLE)) {
+				refs = new FileReftableDatabase(this);
 			} else {
 				throw new IOException(JGitText.get().unknownRepositoryFormat);
 			}
@@ -577,9 +587,212 @@ public void notifyIndexChanged(boolean internal) {
 	@Override
 	public ReflogReader getReflogReader(String refName) throws IOException {
 		Ref ref = findRef(refName);
-		if (ref != null)
-			return new ReflogReaderImpl(this, ref.getName());
-		return null;
+		if (ref == null)
+			return null;
+		RefDatabase db = refs;
+		if (db instanceof FileReftableDatabase)
+			return ((FileReftableDatabase) db)
+					.getReflogReader(ref.getName());
+		if (db instanceof RefDirectory)
+			return ((RefDirectory) db).getReflogReader(ref.getName());
+		return new ReflogReaderImpl(this, ref.getName());
+	}
+
+	/**
+	 * Convert the repository between loose/packed references and reftable.
+	 *
+	 * @param format
+	 *            the format to convert to, either
+	 *            {@link ConfigConstants#CONFIG_REF_STORAGE_REFTABLE} or
+	 *            {@code "refdir"} for loose and packed references.
+	 * @param writeLogs
+	 *            whether to copy the reflogs.
+	 * @param backup
+	 *            whether to keep the old references, renamed with a
+	 *            {@code .old} suffix, instead of deleting them.
+	 * @throws java.io.IOException
+	 *             references cannot be read or written.
+	 * @throws java.lang.IllegalArgumentException
+	 *             {@code format} is not a known format.
+	 * @since 5.1
+	 */
+	public void convertRefStorage(String format, boolean writeLogs,
+			boolean backup) throws IOException {
+		if (ConfigConstants.CONFIG_REF_STORAGE_REFTABLE.equals(format)) {
+			if (refs instanceof RefDirectory) {
+				convertToReftable(writeLogs, backup);
+			}
+		} else if ("refdir".equals(format)) { //$NON-NLS-1$
+			if (refs instanceof FileReftableDatabase) {
+				convertToPackedRefs(writeLogs, backup);
+			}
+		} else {
+			throw new IllegalArgumentException(MessageFormat.format(
+					JGitText.get().unknownRefStorageFormat, format));
+		}
+	}
+
+	/**
+	 * Convert loose and packed references to a reftable stack.
+	 * <p>
+	 * The conversion is not safe against concurrent updates of references,
+	 * by this or other processes; it should only run while the repository is
+	 * not in use.
+	 *
+	 * @param writeLogs
+	 *            whether to copy the reflogs.
+	 * @param backup
+	 *            whether to keep the old references, renamed with a
+	 *            {@code .old} suffix, instead of deleting them.
+	 * @throws java.io.IOException
+	 *             references cannot be read or written.
+	 * @since 5.1
+	 */
+	public synchronized void convertToReftable(boolean writeLogs,
+			boolean backup) throws IOException {
+		File reftableDir = new File(getDirectory(),
+				FileReftableDatabase.REFTABLE);
+		String[] existing = reftableDir.list();
+		if (existing != null && existing.length > 0) {
+			throw new IOException(MessageFormat.format(
+					JGitText.get().reftableDirExists, reftableDir));
+		}
+
+		FileReftableDatabase.convertFrom(this, writeLogs);
+
+		File refsDir = new File(getDirectory(), "refs"); //$NON-NLS-1$
+		File packedRefs = new File(getDirectory(), Constants.PACKED_REFS);
+		File logsDir = new File(getDirectory(), Constants.LOGS);
+		File headFile = new File(getDirectory(), Constants.HEAD);
+
+		refs.close();
+		FileBasedConfig cfg = getConfig();
+		cfg.setInt(ConfigConstants.CONFIG_CORE_SECTION, null,
+				ConfigConstants.CONFIG_KEY_REPO_FORMAT_VERSION, 1);
+		cfg.setString(ConfigConstants.CONFIG_EXTENSIONS_SECTION, null,
+				ConfigConstants.CONFIG_KEY_REF_STORAGE,
+				ConfigConstants.CONFIG_REF_STORAGE_REFTABLE);
+		cfg.save();
+
+		if (backup) {
+			FileUtils.rename(refsDir, new File(getDirectory(), "refs.old")); //$NON-NLS-1$
+			if (packedRefs.exists()) {
+				FileUtils.rename(packedRefs, new File(getDirectory(),
+						Constants.PACKED_REFS + ".old")); //$NON-NLS-1$
+			}
+			if (logsDir.exists()) {
+				FileUtils.rename(logsDir,
+						new File(getDirectory(), Constants.LOGS + ".old")); //$NON-NLS-1$
+			}
+			Files.copy(headFile.toPath(),
+					new File(getDirectory(), Constants.HEAD + ".old").toPath(), //$NON-NLS-1$
+					StandardCopyOption.REPLACE_EXISTING);
+		} else {
+			FileUtils.delete(refsDir, FileUtils.RECURSIVE);
+			FileUtils.delete(packedRefs, FileUtils.SKIP_MISSING);
+			FileUtils.delete(logsDir,
+					FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+		}
+		// Replace HEAD atomically, the repository must never lack one.
+		FileReftableDatabase.writeInvalidHead(getDirectory());
+
+		refs = new FileReftableDatabase(this);
+		refs.create();
+	}
+
+	/**
+	 * Convert a reftable stack back to loose and packed references.
+	 * <p>
+	 * The conversion is not safe against concurrent updates of references,
+	 * by this or other processes; it should only run while the repository is
+	 * not in use.
+	 *
+	 * @param writeLogs
+	 *            whether to copy the reflogs.
+	 * @param backup
+	 *            whether to keep the reftable directory, renamed with a
+	 *            {@code .old} suffix, instead of deleting it.
+	 * @throws java.io.IOException
+	 *             references cannot be read or written.
+	 * @since 5.1
+	 */
+	public synchronized void convertToPackedRefs(boolean writeLogs,
+			boolean backup) throws IOException {
+		FileReftableDatabase old = (FileReftableDatabase) refs;
+		List<Ref> all = new ArrayList<>(old.getRefsByPrefix(RefDatabase.ALL));
+		Ref head = old.exactRef(Constants.HEAD);
+		if (head != null && head.getObjectId() == null) {
+			// Unborn branch, not listed by getRefsByPrefix.
+			all.add(head);
+		}
+
+		// The stub refs/ only exists for older tools; RefDirectory writes the
+		// real one below. The stub HEAD is replaced atomically when HEAD is
+		// linked, so the repository never lacks one.
+		FileUtils.delete(new File(getDirectory(), "refs"), //$NON-NLS-1$
+				FileUtils.RECURSIVE | FileUtils.EMPTY_DIRECTORIES_ONLY
+						| FileUtils.SKIP_MISSING);
+		RefDirectory refDir = new RefDirectory(this);
+		refDir.create();
+
+		List<String> packed = new ArrayList<>();
+		try (RevWalk rw = new RevWalk(this)) {
+			for (Ref r : all) {
+				RefUpdate u = refDir.newUpdate(r.getName(), false);
+				u.disableRefLog();
+				RefUpdate.Result result;
+				if (r.isSymbolic()) {
+					result = u.link(r.getTarget().getName());
+				} else {
+					u.setNewObjectId(r.getObjectId());
+					u.setForceUpdate(true);
+					result = u.update(rw);
+					packed.add(r.getName());
+				}
+				switch (result) {
+				case NEW:
+				case FORCED:
+				case NO_CHANGE:
+					break;
+				default:
+					ObjectId id = r.getObjectId();
+					throw new IOException(MessageFormat.format(
+							JGitText.get().updatingRefFailed, r.getName(),
+							r.isSymbolic() ? r.getTarget().getName()
+									: ObjectId.toString(id),
+							result));
+				}
+			}
+		}
+		packed.remove(Constants.HEAD);
+		refDir.pack(packed);
+
+		if (writeLogs) {
+			ReflogWriter w = new ReflogWriter(refDir, true);
+			for (Ref r : all) {
+				List<ReflogEntry> entries = old.getReflogReader(r.getName())
+						.getReverseEntries();
+				for (int i = entries.size() - 1; i >= 0; i--) {
+					w.log(r.getName(), entries.get(i));
+				}
+			}
+		}
+
+		FileBasedConfig cfg = getConfig();
+		cfg.unset(ConfigConstants.CONFIG_EXTENSIONS_SECTION, null,
+				ConfigConstants.CONFIG_KEY_REF_STORAGE);
+		cfg.save();
+
+		old.close();
+		File reftableDir = new File(getDirectory(),
+				FileReftableDatabase.REFTABLE);
+		if (backup) {
+			FileUtils.rename(reftableDir, new File(getDirectory(),
+					FileReftableDatabase.REFTABLE + ".old")); //$NON-NLS-1$
+		} else {
+			FileUtils.delete(reftableDir, FileUtils.RECURSIVE);
+		}
+		refs = refDir;
 	}
 
 	/** {@inheritDoc} */
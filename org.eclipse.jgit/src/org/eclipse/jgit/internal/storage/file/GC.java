@@ -311,6 +311,7 @@ private Collection<PackFile> doGc() throws IOException, ParseException {
 		}
 		pm.start(6 /* tasks */);
 		packRefs();
+		compactReflogs();
 		// TODO: implement reflog_expire(pm, repo);
 		Collection<PackFile> newPacks = repack();
 		prune(Collections.emptySet());
@@ -779,13 +780,45 @@ private static boolean equals(Ref r1, Ref r2) {
 				&& Objects.equals(r1.getObjectId(), r2.getObjectId());
 	}
 
+	/**
+	 * Rewrites the sealed segments of a segmented reflog into one, dropping
+	 * the logs of deleted refs.
+	 *
+	 * @throws java.io.IOException
+	 */
+	private void compactReflogs() throws IOException {
+		RefDatabase refdb = repo.getRefDatabase();
+		if (refdb instanceof RefDirectory) {
+			SegmentedReflog reflogs = ((RefDirectory) refdb)
+					.getSegmentedReflog();
+			if (reflogs != null) {
+				reflogs.compact();
+			}
+		}
+	}
+
 	/**
 	 * Packs all non-symbolic, loose refs into packed-refs.
+	 * <p>
+	 * If the repository stores its references in reftables, the stack of
+	 * tables is compacted into a single one instead.
 	 *
 	 * @throws java.io.IOException
 	 */
 	public void packRefs() throws IOException {
-		Collection<Ref> refs = repo.getRefDatabase()
+		RefDatabase refdb = repo.getRefDatabase();
+		if (refdb instanceof FileReftableDatabase) {
+			// Reftables are already packed; collapse the stack instead.
+			pm.beginTask(JGitText.get().packRefs, 1);
+			try {
+				((FileReftableDatabase) refdb).compactFully();
+			} finally {
+				pm.endTask();
+			}
+			return;
+		}
+
+		Collection<Ref> refs = refdb
 				.getRefsByPrefix(Constants.R_REFS);
 		List<String> refsToBePacked = new ArrayList<>(refs.size());
 		pm.beginTask(JGitText.get().packRefs, refs.size());
@@ -796,7 +829,7 @@ public void packRefs() throws IOException {
 					refsToBePacked.add(ref.getName());
 				pm.update(1);
 			}
-			((RefDirectory) repo.getRefDatabase()).pack(refsToBePacked);
+			((RefDirectory) refdb).pack(refsToBePacked);
 		} finally {
 			pm.endTask();
 		}
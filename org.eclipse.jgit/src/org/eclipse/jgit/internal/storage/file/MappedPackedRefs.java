@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.internal.storage.file;
+
+import static org.eclipse.jgit.lib.Constants.CHARSET;
+import static org.eclipse.jgit.lib.Constants.OBJECT_ID_STRING_LENGTH;
+import static org.eclipse.jgit.lib.Ref.Storage.PACKED;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.util.RefList;
+
+/**
+ * Memory mapped {@code packed-refs} file, parsed on demand.
+ * <p>
+ * References are located by binary search over the sorted file, and
+ * {@link org.eclipse.jgit.lib.Ref} objects are only created for the records
+ * a caller actually asks for. Instances are immutable and represent the file
+ * as it was when {@link #open(File)} was called.
+ */
+class MappedPackedRefs {
+	private static final int NAME_OFFSET = OBJECT_ID_STRING_LENGTH + 1;
+
+	/** Empty instance for a repository without a packed-refs file. */
+	static final MappedPackedRefs MISSING = new MappedPackedRefs(
+			FileSnapshot.MISSING_FILE, ObjectId.zeroId(),
+			ByteBuffer.allocate(0), 0, false);
+
+	/**
+	 * Map a packed-refs file.
+	 *
+	 * @param file
+	 *            the packed-refs file.
+	 * @return the mapped file; {@link #MISSING} if the file does not exist.
+	 *         If the file is not sorted or too large to be mapped, the
+	 *         returned instance holds no data and {@link #isUsable()} is
+	 *         false.
+	 * @throws IOException
+	 *             the file cannot be read.
+	 */
+	static MappedPackedRefs open(File file) throws IOException {
+		FileSnapshot snapshot = FileSnapshot.save(file);
+		ByteBuffer buf;
+		try (FileChannel ch = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			long size = ch.size();
+			if (size > Integer.MAX_VALUE) {
+				// A single buffer cannot map it, leave it to the parser.
+				return new MappedPackedRefs(snapshot, ObjectId.zeroId(), null,
+						0, false);
+			}
+			buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} catch (NoSuchFileException e) {
+			return MISSING;
+		}
+
+		MessageDigest digest = Constants.newMessageDigest();
+		digest.update(buf.duplicate());
+		ObjectId contentId = ObjectId.fromRaw(digest.digest());
+
+		int end = buf.limit();
+		int start = 0;
+		boolean peeled = false;
+		while (start < end && buf.get(start) == '#') {
+			int eol = nextLine(buf, start, end);
+			String line = decode(buf, start, eol);
+			if (line.startsWith(RefDirectory.PACKED_REFS_HEADER)) {
+				peeled = line.substring(
+						RefDirectory.PACKED_REFS_HEADER.length())
+						.contains(RefDirectory.PACKED_REFS_PEELED);
+			}
+			start = eol;
+		}
+
+		MappedPackedRefs refs = new MappedPackedRefs(snapshot, contentId, buf,
+				start, peeled);
+		if (!refs.isSorted()) {
+			// Remember the snapshot, but release the mapping.
+			return new MappedPackedRefs(snapshot, contentId, null, 0, false);
+		}
+		return refs;
+	}
+
+	final FileSnapshot snapshot;
+
+	final ObjectId id;
+
+	private final ByteBuffer buf;
+
+	private final int start;
+
+	private final int end;
+
+	private final boolean peeled;
+
+	private MappedPackedRefs(FileSnapshot snapshot, ObjectId id,
+			@Nullable ByteBuffer buf, int start, boolean peeled) {
+		this.snapshot = snapshot;
+		this.id = id;
+		this.buf = buf;
+		this.start = start;
+		this.end = buf != null ? buf.limit() : 0;
+		this.peeled = peeled;
+	}
+
+	/**
+	 * Whether references can be looked up in this file.
+	 *
+	 * @return {@code false} if the file is not sorted and has to be parsed
+	 *         completely instead.
+	 */
+	boolean isUsable() {
+		return buf != null;
+	}
+
+	/**
+	 * Find a reference by its exact name.
+	 *
+	 * @param name
+	 *            name of the reference.
+	 * @return the reference; null if it is not in the file.
+	 */
+	@Nullable
+	Ref get(String name) {
+		byte[] key = name.getBytes(CHARSET);
+		int rec = lowerBound(key);
+		if (rec < end && compareName(rec, key) == 0) {
+			return parse(rec);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the references whose names start with a prefix.
+	 *
+	 * @param prefix
+	 *            prefix of the reference names; may be empty.
+	 * @return sorted list of the matching references.
+	 */
+	RefList<Ref> getRefsByPrefix(String prefix) {
+		byte[] key = prefix.getBytes(CHARSET);
+		RefList.Builder<Ref> refs = new RefList.Builder<>();
+		for (int rec = lowerBound(key); rec < end
+				&& startsWith(rec, key); rec = nextRecord(rec)) {
+			refs.add(parse(rec));
+		}
+		return refs.toRefList();
+	}
+
+	private int lowerBound(byte[] key) {
+		// Offset of the first record whose name is not less than key.
+		int lo = start;
+		int hi = end;
+		while (lo < hi) {
+			int rec = recordStart((lo + hi) >>> 1, lo);
+			if (compareName(rec, key) < 0) {
+				lo = nextRecord(rec);
+			} else {
+				hi = rec;
+			}
+		}
+		return lo;
+	}
+
+	private int recordStart(int pos, int lo) {
+		while (lo < pos && buf.get(pos - 1) != '\n') {
+			pos--;
+		}
+		// A peeled line belongs to the reference on the line before it.
+		while (lo < pos && buf.get(pos) == '^') {
+			pos--;
+			while (lo < pos && buf.get(pos - 1) != '\n') {
+				pos--;
+			}
+		}
+		return pos;
+	}
+
+	private int nextRecord(int rec) {
+		int p = nextLine(buf, rec, end);
+		while (p < end && buf.get(p) == '^') {
+			p = nextLine(buf, p, end);
+		}
+		return p;
+	}
+
+	private int nameEnd(int rec) {
+		int p = rec + NAME_OFFSET;
+		while (p < end && buf.get(p) != '\n') {
+			p++;
+		}
+		if (p > rec + NAME_OFFSET && buf.get(p - 1) == '\r') {
+			p--;
+		}
+		return p;
+	}
+
+	private int compareName(int rec, byte[] key) {
+		int p = rec + NAME_OFFSET;
+		int e = nameEnd(rec);
+		for (int i = 0; i < key.length; i++, p++) {
+			if (p == e) {
+				return -1;
+			}
+			int cmp = (buf.get(p) & 0xff) - (key[i] & 0xff);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return p == e ? 0 : 1;
+	}
+
+	private boolean startsWith(int rec, byte[] key) {
+		int p = rec + NAME_OFFSET;
+		if (nameEnd(rec) - p < key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++, p++) {
+			if (buf.get(p) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isSorted() {
+		// Malformed files are also rejected, leaving error reporting to the
+		// full parser.
+		int prev = -1;
+		for (int p = start; p < end; p = nextLine(buf, p, end)) {
+			if (end - p < NAME_OFFSET) {
+				return false;
+			}
+			if (buf.get(p) == '^') {
+				if (prev < 0) {
+					return false;
+				}
+				continue;
+			}
+			if (buf.get(p + OBJECT_ID_STRING_LENGTH) != ' '
+					|| (prev >= 0 && compareRecords(prev, p) >= 0)) {
+				return false;
+			}
+			prev = p;
+		}
+		return true;
+	}
+
+	private int compareRecords(int a, int b) {
+		int pa = a + NAME_OFFSET;
+		int ea = nameEnd(a);
+		int pb = b + NAME_OFFSET;
+		int eb = nameEnd(b);
+		for (; pa < ea && pb < eb; pa++, pb++) {
+			int cmp = (buf.get(pa) & 0xff) - (buf.get(pb) & 0xff);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return (ea - pa) - (eb - pb);
+	}
+
+	private Ref parse(int rec) {
+		byte[] raw = new byte[nameEnd(rec) - rec];
+		for (int i = 0; i < raw.length; i++) {
+			raw[i] = buf.get(rec + i);
+		}
+		ObjectId objectId = ObjectId.fromString(raw, 0);
+		String name = new String(raw, NAME_OFFSET, raw.length - NAME_OFFSET,
+				CHARSET);
+
+		int next = nextLine(buf, rec, end);
+		if (next < end && buf.get(next) == '^') {
+			byte[] peel = new byte[OBJECT_ID_STRING_LENGTH];
+			for (int i = 0; i < peel.length; i++) {
+				peel[i] = buf.get(next + 1 + i);
+			}
+			return new ObjectIdRef.PeeledTag(PACKED, name, objectId,
+					ObjectId.fromString(peel, 0));
+		}
+		if (peeled) {
+			return new ObjectIdRef.PeeledNonTag(PACKED, name, objectId);
+		}
+		return new ObjectIdRef.Unpeeled(PACKED, name, objectId);
+	}
+
+	private static int nextLine(ByteBuffer b, int p, int end) {
+		while (p < end && b.get(p++) != '\n') {
+			// Skip to the start of the next line.
+		}
+		return p;
+	}
+
+	private static String decode(ByteBuffer b, int start, int end) {
+		byte[] raw = new byte[end - start];
+		for (int i = 0; i < raw.length; i++) {
+			raw[i] = b.get(start + i);
+		}
+		return new String(raw, CHARSET).trim();
+	}
+}
@@ -83,6 +83,7 @@
 import org.eclipse.jgit.lib.ObjectDatabase;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectQuarantine;
 import org.eclipse.jgit.lib.RepositoryCache;
 import org.eclipse.jgit.lib.RepositoryCache.FileKey;
 import org.eclipse.jgit.util.FS;
@@ -243,16 +244,35 @@ public PackInserter newPackInserter() {
 		return new PackInserter(this);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The quarantine is a temporary {@code incoming-*} directory next to the
+	 * loose objects of this directory, using this directory as its only
+	 * alternate.
+	 */
+	@Override
+	public ObjectQuarantine newQuarantine() throws IOException {
+		File dir = Files.createTempDirectory(objects.toPath(), "incoming-") //$NON-NLS-1$
+				.toFile();
+		ObjectDirectory quarantine = new ObjectDirectory(config, dir, null, fs,
+				null);
+		quarantine.alternates.set(new AlternateHandle[] {
+				new AlternateHandle(this) {
+					@Override
+					void close() {
+						// The repository owns this directory.
+					}
+				} });
+		FileUtils.mkdir(quarantine.infoDirectory);
+		FileUtils.mkdir(quarantine.packDirectory);
+		return new FileObjectQuarantine(this, quarantine);
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void close() {
-		unpackedObjectCache.clear();
-
-		final PackList packs = packList.get();
-		if (packs != NO_PACKS && packList.compareAndSet(packs, NO_PACKS)) {
-			for (PackFile p : packs.packs)
-				p.close();
-		}
+		closePacks();
 
 		// Fully close all loaded alternates and clear the alternate list.
 		AlternateHandle[] alt = alternates.get();
@@ -262,6 +282,22 @@ public void close() {
 		}
 	}
 
+	/**
+	 * Close all packs and forget the loose objects seen so far, but keep the
+	 * alternates open.
+	 * <p>
+	 * The packs are scanned again when next needed.
+	 */
+	void closePacks() {
+		unpackedObjectCache.clear();
+
+		final PackList packs = packList.get();
+		if (packs != NO_PACKS && packList.compareAndSet(packs, NO_PACKS)) {
+			for (PackFile p : packs.packs)
+				p.close();
+		}
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public Collection<PackFile> getPacks() {
@@ -55,10 +55,13 @@
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.Collections;
@@ -375,7 +378,93 @@ void copyPackAsIs(PackOutputStream out, WindowCursor curs)
 			throws IOException {
 		// Pin the first window, this ensures the length is accurate.
 		curs.pin(this, 0);
-		curs.copyPackAsIs(this, length, out);
+		if (curs.getStreamFileThreshold() < length) {
+			// Large packs bypass the WindowCache. Passing them
+			// through the WindowCache would evict every hot window to
+			// hold data that is read only once by this request.
+			streamPackAsIs(out);
+		} else {
+			curs.copyPackAsIs(this, length, out);
+		}
+	}
+
+	/**
+	 * Copy the pack's objects without going through the WindowCache.
+	 * <p>
+	 * If the output accepts file regions, the objects are handed over as a
+	 * region of a second channel on the pack file. They are then only read
+	 * here to update the pack checksum, and the output may send them later.
+	 * Otherwise they are copied with plain reads from the open pack file.
+	 *
+	 * @param out
+	 *            stream to copy the objects to.
+	 * @throws IOException
+	 *             the pack could not be read, or the stream failed.
+	 */
+	private void streamPackAsIs(PackOutputStream out) throws IOException {
+		long position = 12;
+		long remaining = length - (12 + 20);
+		if (out.canWriteRegion()) {
+			FileChannel region = openRegion();
+			if (region != null) {
+				out.writeRegion(region, position, remaining);
+				return;
+			}
+		}
+
+		beginStreamPack();
+		try {
+			final byte[] buf = out.getCopyBuffer();
+			while (0 < remaining) {
+				int n = (int) Math.min(buf.length, remaining);
+				synchronized (readLock) {
+					fd.seek(position);
+					fd.readFully(buf, 0, n);
+				}
+				out.write(buf, 0, n);
+				position += n;
+				remaining -= n;
+			}
+		} finally {
+			endCopyAsIs();
+		}
+	}
+
+	/**
+	 * Open another channel on the pack file.
+	 * <p>
+	 * The channel is independent of this pack's lifecycle, so it can outlive
+	 * the request writing the pack.
+	 *
+	 * @return the channel; null if the file on disk is no longer this pack.
+	 * @throws IOException
+	 *             the file could not be opened or read.
+	 */
+	private FileChannel openRegion() throws IOException {
+		FileChannel ch = FileChannel.open(packFile.toPath(),
+				StandardOpenOption.READ);
+		try {
+			if (ch.size() == length) {
+				byte[] trailer = new byte[20];
+				ByteBuffer bb = ByteBuffer.wrap(trailer);
+				long pos = length - 20;
+				while (bb.hasRemaining()) {
+					int n = ch.read(bb, pos);
+					if (n < 0) {
+						throw new EOFException();
+					}
+					pos += n;
+				}
+				if (Arrays.equals(trailer, packChecksum)) {
+					return ch;
+				}
+			}
+		} catch (IOException e) {
+			ch.close();
+			throw e;
+		}
+		ch.close();
+		return null;
 	}
 
 	final void copyAsIs(PackOutputStream out, LocalObjectToPack src,
@@ -614,6 +703,11 @@ private synchronized void beginCopyAsIs(ObjectToPack otp)
 		}
 	}
 
+	private synchronized void beginStreamPack() throws IOException {
+		if (++activeCopyRawData == 1 && activeWindows == 0)
+			doOpen();
+	}
+
 	private synchronized void endCopyAsIs() {
 		if (--activeCopyRawData == 0 && activeWindows == 0)
 			doClose();
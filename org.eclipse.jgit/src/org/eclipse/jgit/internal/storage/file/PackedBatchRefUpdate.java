@@ -43,6 +43,7 @@
 
 package org.eclipse.jgit.internal.storage.file;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.toList;
 import static org.eclipse.jgit.transport.ReceiveCommand.Result.LOCK_FAILURE;
 import static org.eclipse.jgit.transport.ReceiveCommand.Result.NOT_ATTEMPTED;
@@ -50,6 +51,7 @@
 import static org.eclipse.jgit.transport.ReceiveCommand.Result.REJECTED_OTHER_REASON;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -65,6 +67,8 @@
 import org.eclipse.jgit.internal.JGitText;
 import org.eclipse.jgit.internal.storage.file.RefDirectory.PackedRefList;
 import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectIdRef;
 import org.eclipse.jgit.lib.PersonIdent;
@@ -116,6 +120,14 @@
  * that prefer speed over atomicity should use {@code setAtomic(false)}. As an
  * optimization, an update containing a single ref update does not use the
  * packed-refs protocol.
+ * <p>
+ * If {@code core.groupCommitRefs} is enabled, concurrent batches of the same
+ * {@link RefDirectory} are committed together: one thread acts as leader and
+ * runs the steps above once for all batches waiting at that time, applying
+ * each batch to the in-memory packed refs in turn. A batch that fails to apply
+ * is rejected on its own without affecting the others in the group. Batches
+ * whose ref names conflict with another batch of the group are committed on
+ * their own, as are all batches of a group whose loose refs cannot be locked.
  */
 class PackedBatchRefUpdate extends BatchRefUpdate {
 	private RefDirectory refdb;
@@ -174,6 +186,30 @@ public void execute(RevWalk walk, ProgressMonitor monitor,
 			return;
 		}
 
+		Config cfg = refdb.getRepository().getConfig();
+		if (cfg.getBoolean(ConfigConstants.CONFIG_CORE_SECTION,
+				ConfigConstants.CONFIG_KEY_GROUP_COMMIT_REFS, false)) {
+			long window = cfg.getTimeUnit(ConfigConstants.CONFIG_CORE_SECTION,
+					null, ConfigConstants.CONFIG_KEY_GROUP_COMMIT_REFS_WINDOW, 0,
+					MILLISECONDS);
+			refdb.groupCommit.execute(this, walk, pending, window);
+			return;
+		}
+		commit(walk, pending);
+	}
+
+	/**
+	 * Commit checked commands of this batch on their own.
+	 *
+	 * @param walk
+	 *            walk to parse the new objects with.
+	 * @param pending
+	 *            commands to commit, all {@code NOT_ATTEMPTED}.
+	 * @throws IOException
+	 *             the commands could not be committed.
+	 */
+	private void commit(RevWalk walk, List<ReceiveCommand> pending)
+			throws IOException {
 		// Pack refs normally, so we can create lock files even in the case where
 		// refs/x is deleted and refs/x/y is created in this batch.
 		try {
@@ -189,7 +225,7 @@ public void execute(RevWalk walk, ProgressMonitor monitor,
 		try {
 			PackedRefList oldPackedList;
 			if (!refdb.isInClone()) {
-				locks = lockLooseRefs(pending);
+				locks = lockLooseRefs(pending, true);
 				if (locks == null) {
 					return;
 				}
@@ -317,18 +353,21 @@ private boolean checkNonFastForwards(RevWalk walk,
 	 *
 	 * @param commands
 	 *            commands that we intend to execute.
+	 * @param reject
+	 *            whether to reject the commands if a lock cannot be acquired.
 	 * @return map of ref name in the input commands to lock file. Always contains
 	 *         one entry for each ref in the input list. All locks are acquired
 	 *         before returning. If any lock was not able to be acquired: the
-	 *         return value is null; no locks are held; and all commands that were
-	 *         pending are set to fail with {@code LOCK_FAILURE}.
+	 *         return value is null; no locks are held; and if {@code reject}
+	 *         all commands that were pending are set to fail with
+	 *         {@code LOCK_FAILURE}.
 	 * @throws IOException
 	 *             an error occurred other than a failure to acquire; no locks are
 	 *             held if this exception is thrown.
 	 */
 	@Nullable
-	private Map<String, LockFile> lockLooseRefs(List<ReceiveCommand> commands)
-			throws IOException {
+	private Map<String, LockFile> lockLooseRefs(List<ReceiveCommand> commands,
+			boolean reject) throws IOException {
 		ReceiveCommand failed = null;
 		Map<String, LockFile> locks = new HashMap<>();
 		try {
@@ -358,7 +397,9 @@ private Map<String, LockFile> lockLooseRefs(List<ReceiveCommand> commands)
 		} finally {
 			unlockAll(locks);
 		}
-		lockFailure(failed != null ? failed : commands.get(0), commands);
+		if (reject) {
+			lockFailure(failed != null ? failed : commands.get(0), commands);
+		}
 		return null;
 	}
 
@@ -440,7 +481,7 @@ private void writeReflog(List<ReceiveCommand> commands) {
 
 			if (cmd.getType() == ReceiveCommand.Type.DELETE) {
 				try {
-					RefDirectory.delete(refdb.logFor(name), RefDirectory.levelsIn(name));
+					refdb.deleteLog(name, RefDirectory.levelsIn(name));
 				} catch (IOException e) {
 					// Ignore failures, see below.
 				}
@@ -550,4 +591,277 @@ private static void reject(ReceiveCommand cmd, ReceiveCommand.Result result,
 		}
 		ReceiveCommand.abort(commands);
 	}
+
+	/**
+	 * Commits concurrent batches of one {@link RefDirectory} together.
+	 * <p>
+	 * The first thread to arrive becomes the leader. It optionally waits for
+	 * the configured window so more batches can queue up, then commits all
+	 * queued batches with one {@code packed-refs} write. Batches arriving while
+	 * the leader commits wait for the next leader, which is elected among them
+	 * once the current one is done. Each thread returns only once its own batch
+	 * was committed or rejected.
+	 */
+	static class GroupCommit {
+		private enum State {
+			/** Waiting for a leader to commit the batch. */
+			WAITING,
+
+			/** Committed or rejected by the leader. */
+			DONE,
+
+			/** To be committed by the waiting thread on its own. */
+			ALONE
+		}
+
+		private static class Entry {
+			final PackedBatchRefUpdate update;
+
+			final RevWalk walk;
+
+			final List<ReceiveCommand> commands;
+
+			/** Guarded by {@link GroupCommit#queue}. */
+			State state = State.WAITING;
+
+			/**
+			 * Set by the leader once it committed or rejected the batch, and
+			 * published through {@link #state} after its reflog is written.
+			 */
+			boolean finished;
+
+			Exception error;
+
+			Entry(PackedBatchRefUpdate update, RevWalk walk,
+					List<ReceiveCommand> commands) {
+				this.update = update;
+				this.walk = walk;
+				this.commands = commands;
+			}
+		}
+
+		private final RefDirectory refdb;
+
+		/** Batches waiting for a leader, in arrival order. */
+		private final List<Entry> queue = new ArrayList<>();
+
+		/** Whether a thread is currently leading; guarded by {@link #queue}. */
+		private boolean leading;
+
+		GroupCommit(RefDirectory refdb) {
+			this.refdb = refdb;
+		}
+
+		/**
+		 * Commit the checked commands of a batch, possibly together with
+		 * concurrent batches.
+		 *
+		 * @param update
+		 *            the batch.
+		 * @param walk
+		 *            walk of the batch; may be used by another thread while
+		 *            this method waits.
+		 * @param pending
+		 *            commands of the batch, all {@code NOT_ATTEMPTED}.
+		 * @param windowMs
+		 *            how long a leader waits for more batches before
+		 *            committing.
+		 * @throws IOException
+		 *             the batch could not be committed.
+		 */
+		void execute(PackedBatchRefUpdate update, RevWalk walk,
+				List<ReceiveCommand> pending, long windowMs)
+				throws IOException {
+			Entry self = new Entry(update, walk, pending);
+			boolean interrupted = false;
+			synchronized (queue) {
+				queue.add(self);
+				while (self.state == State.WAITING && leading) {
+					try {
+						queue.wait();
+					} catch (InterruptedException e) {
+						if (queue.remove(self)) {
+							Thread.currentThread().interrupt();
+							throw new InterruptedIOException();
+						}
+						// A leader owns the batch, it will be done shortly.
+						interrupted = true;
+					}
+				}
+				if (self.state == State.WAITING) {
+					leading = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+
+			if (self.state == State.WAITING) {
+				lead(windowMs);
+			}
+
+			if (self.state == State.ALONE) {
+				if (update.checkConflictingNames(pending)) {
+					update.commit(walk, pending);
+				}
+			} else if (self.error instanceof IOException) {
+				throw (IOException) self.error;
+			} else if (self.error != null) {
+				throw (RuntimeException) self.error;
+			}
+		}
+
+		private void lead(long windowMs) {
+			List<Entry> group = new ArrayList<>();
+			List<Entry> alone = new ArrayList<>();
+			try {
+				if (windowMs > 0) {
+					try {
+						Thread.sleep(windowMs);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				synchronized (queue) {
+					takeGroup(group, alone);
+				}
+				commitGroup(group);
+			} catch (IOException | RuntimeException e) {
+				for (Entry ent : group) {
+					if (!ent.finished) {
+						ent.error = e;
+					}
+				}
+			} finally {
+				synchronized (queue) {
+					for (Entry ent : group) {
+						ent.state = ent.finished || ent.error != null
+								? State.DONE
+								: State.ALONE;
+					}
+					// Only now, so they see the refs committed by the group.
+					for (Entry ent : alone) {
+						ent.state = State.ALONE;
+					}
+					leading = false;
+					queue.notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Move the queued batches into a group, or into the batches to be
+		 * committed alone if they touch a name that another batch of the group
+		 * touches, or that is a directory of such a name or vice versa.
+		 *
+		 * @param group
+		 *            receives the batches to commit together.
+		 * @param alone
+		 *            receives the batches to commit on their own.
+		 */
+		private void takeGroup(List<Entry> group, List<Entry> alone) {
+			Set<String> names = new HashSet<>();
+			Set<String> prefixes = new HashSet<>();
+			for (Entry ent : queue) {
+				if (conflicts(ent, names, prefixes)) {
+					alone.add(ent);
+					continue;
+				}
+				for (ReceiveCommand cmd : ent.commands) {
+					names.add(cmd.getRefName());
+					addPrefixesTo(cmd.getRefName(), prefixes);
+				}
+				group.add(ent);
+			}
+			queue.clear();
+		}
+
+		private static boolean conflicts(Entry ent, Set<String> names,
+				Set<String> prefixes) {
+			for (ReceiveCommand cmd : ent.commands) {
+				String name = cmd.getRefName();
+				if (names.contains(name) || prefixes.contains(name)) {
+					return true;
+				}
+				for (String prefix : getPrefixes(name)) {
+					if (names.contains(prefix)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private void commitGroup(List<Entry> group) throws IOException {
+			List<ReceiveCommand> all = new ArrayList<>();
+			for (Entry ent : group) {
+				all.addAll(ent.commands);
+			}
+			try {
+				refdb.pack(all.stream().map(ReceiveCommand::getRefName)
+						.collect(toList()));
+			} catch (LockFailedException e) {
+				// Leave the batches to be retried alone.
+				return;
+			}
+
+			List<Entry> applied = new ArrayList<>(group.size());
+			Map<String, LockFile> locks = null;
+			refdb.inProcessPackedRefsLock.lock();
+			try {
+				PackedRefList oldPackedList;
+				if (!refdb.isInClone()) {
+					locks = group.get(0).update.lockLooseRefs(all, false);
+					if (locks == null) {
+						return;
+					}
+					oldPackedList = refdb.pack(locks);
+				} else {
+					oldPackedList = refdb.getPackedRefs();
+				}
+
+				RefList<Ref> refs = oldPackedList;
+				for (Entry ent : group) {
+					// Rejects the batch if it does not apply.
+					RefList<Ref> newRefs = applyUpdates(ent.walk, refs,
+							ent.commands);
+					if (newRefs != null) {
+						refs = newRefs;
+						applied.add(ent);
+					} else {
+						ent.finished = true;
+					}
+				}
+				if (applied.isEmpty()) {
+					return;
+				}
+
+				LockFile packedRefsLock = refdb.lockPackedRefs();
+				if (packedRefsLock == null) {
+					for (Entry ent : applied) {
+						lockFailure(ent.commands.get(0), ent.commands);
+						ent.finished = true;
+					}
+					return;
+				}
+				refdb.commitPackedRefs(packedRefsLock, refs, oldPackedList,
+						true);
+			} finally {
+				try {
+					unlockAll(locks);
+				} finally {
+					refdb.inProcessPackedRefsLock.unlock();
+				}
+			}
+
+			refdb.fireRefsChanged();
+			for (Entry ent : applied) {
+				ent.commands.forEach(
+						c -> c.setResult(ReceiveCommand.Result.OK));
+				ent.update.writeReflog(ent.commands);
+				// Waiters see this only once lead() publishes the states.
+				ent.finished = true;
+			}
+		}
+	}
 }
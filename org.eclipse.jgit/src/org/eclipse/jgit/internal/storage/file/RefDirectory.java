@@ -70,9 +70,13 @@
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -89,6 +93,7 @@
 import org.eclipse.jgit.errors.ObjectWritingException;
 import org.eclipse.jgit.events.RefsChangedEvent;
 import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
@@ -96,6 +101,8 @@
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefComparator;
 import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefScanner;
+import org.eclipse.jgit.lib.ReflogReader;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.RefWriter;
 import org.eclipse.jgit.lib.Repository;
@@ -174,6 +181,18 @@ public class RefDirectory extends RefDatabase {
 	/** Immutable sorted list of packed references. */
 	final AtomicReference<PackedRefList> packedRefs = new AtomicReference<>();
 
+	/**
+	 * Memory mapped packed references, if enabled by
+	 * {@code core.mmapPackedRefs}.
+	 * <p>
+	 * Used for lookups of single references or small prefixes, which then do
+	 * not need to parse the complete file.
+	 */
+	private final AtomicReference<MappedPackedRefs> mappedPackedRefs = new AtomicReference<>();
+
+	/** Reflogs, if stored in segments by {@code core.segmentedReflog}. */
+	private final SegmentedReflog segmentedReflog;
+
 	/**
 	 * Lock for coordinating operations within a single process that may contend
 	 * on the {@code packed-refs} file.
@@ -190,6 +209,13 @@ public class RefDirectory extends RefDatabase {
 	 */
 	final ReentrantLock inProcessPackedRefsLock = new ReentrantLock(true);
 
+	/**
+	 * Coordinates atomic batch updates committed together, if enabled by
+	 * {@code core.groupCommitRefs}.
+	 */
+	final PackedBatchRefUpdate.GroupCommit groupCommit = new PackedBatchRefUpdate.GroupCommit(
+			this);
+
 	/**
 	 * Number of modifications made to this database.
 	 * <p>
@@ -216,9 +242,12 @@ public class RefDirectory extends RefDatabase {
 		logsDir = fs.resolve(gitDir, LOGS);
 		logsRefsDir = fs.resolve(gitDir, LOGS + '/' + R_REFS);
 		packedRefsFile = fs.resolve(gitDir, PACKED_REFS);
+		segmentedReflog = new SegmentedReflog(this,
+				fs.resolve(gitDir, SegmentedReflog.SEGMENTS));
 
 		looseRefs.set(RefList.<LooseRef> emptyList());
 		packedRefs.set(NO_PACKED_REFS);
+		mappedPackedRefs.set(MappedPackedRefs.MISSING);
 	}
 
 	Repository getRepository() {
@@ -229,6 +258,56 @@ ReflogWriter newLogWriter(boolean force) {
 		return new ReflogWriter(this, force);
 	}
 
+	/**
+	 * Get the segmented reflog store.
+	 *
+	 * @return the store; null if reflogs are kept in one file per reference.
+	 */
+	@Nullable
+	SegmentedReflog getSegmentedReflog() {
+		if (!getRepository().getConfig().getBoolean(
+				ConfigConstants.CONFIG_CORE_SECTION,
+				ConfigConstants.CONFIG_KEY_SEGMENTED_REFLOG, false)) {
+			return null;
+		}
+		return segmentedReflog;
+	}
+
+	/**
+	 * Get a reader for the reflog of a reference.
+	 *
+	 * @param name
+	 *            name of the reference.
+	 * @return the reader.
+	 */
+	ReflogReader getReflogReader(String name) {
+		SegmentedReflog segments = getSegmentedReflog();
+		if (segments != null && SegmentedReflog.isStored(name)) {
+			return segments.getReflogReader(name);
+		}
+		return new ReflogReaderImpl(parent, name);
+	}
+
+	/**
+	 * Delete the reflog of a reference.
+	 *
+	 * @param name
+	 *            name of the reference.
+	 * @param depth
+	 *            number of empty parent directories of the log file to
+	 *            delete as well.
+	 * @throws IOException
+	 *             the log could not be deleted.
+	 */
+	void deleteLog(String name, int depth) throws IOException {
+		SegmentedReflog segments = getSegmentedReflog();
+		if (segments != null && SegmentedReflog.isStored(name)) {
+			segments.delete(name, getRepository().getConfig()
+					.get(WriteConfig.KEY).getFSyncRefFiles());
+		}
+		delete(logFor(name), depth);
+	}
+
 	/**
 	 * Locate the log file on disk for a single reference name.
 	 *
@@ -258,11 +337,13 @@ public void create() throws IOException {
 	@Override
 	public void close() {
 		clearReferences();
+		segmentedReflog.close();
 	}
 
 	private void clearReferences() {
 		looseRefs.set(RefList.<LooseRef> emptyList());
 		packedRefs.set(NO_PACKED_REFS);
+		mappedPackedRefs.set(MappedPackedRefs.MISSING);
 	}
 
 	/** {@inheritDoc} */
@@ -321,12 +402,12 @@ private RefList<LooseRef> getLooseRefs() {
 	/** {@inheritDoc} */
 	@Override
 	public Ref exactRef(String name) throws IOException {
-		RefList<Ref> packed = getPackedRefs();
+		PackedLookup packed = getPackedLookup();
 		Ref ref;
 		try {
 			ref = readRef(name, packed);
 			if (ref != null) {
-				ref = resolve(ref, 0, null, null, packed);
+				ref = resolve(ref, 0, packed);
 			}
 		} catch (IOException e) {
 			if (name.contains("/") //$NON-NLS-1$
@@ -346,13 +427,13 @@ public Ref exactRef(String name) throws IOException {
 	/** {@inheritDoc} */
 	@Override
 	public Ref getRef(String needle) throws IOException {
-		final RefList<Ref> packed = getPackedRefs();
+		final PackedLookup packed = getPackedLookup();
 		Ref ref = null;
 		for (String prefix : SEARCH_PATH) {
 			try {
 				ref = readRef(prefix + needle, packed);
 				if (ref != null) {
-					ref = resolve(ref, 0, null, null, packed);
+					ref = resolve(ref, 0, packed);
 				}
 				if (ref != null) {
 					break;
@@ -371,10 +452,49 @@ public Ref getRef(String needle) throws IOException {
 	/** {@inheritDoc} */
 	@Override
 	public Map<String, Ref> getRefs(String prefix) throws IOException {
+		return scanRefs(prefix, prefix, getPackedRefs(), null);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Ref> getRefsByPrefix(String prefix) throws IOException {
+		// Loose refs can only be scanned by directory, but packed refs are
+		// sorted and only the slice matching prefix needs to be visited.
+		int lastSlash = prefix.lastIndexOf('/');
+		String dir = lastSlash < 0 ? ALL : prefix.substring(0, lastSlash + 1);
+		MappedPackedRefs mapped = getMappedPackedRefs();
+		RefMap refs;
+		if (mapped != null) {
+			refs = scanRefs(dir, prefix, mapped.getRefsByPrefix(prefix),
+					mapped::get);
+		} else {
+			refs = scanRefs(dir, prefix, getPackedRefs(), null);
+		}
+		return Collections.unmodifiableList(new ArrayList<>(refs.values()));
+	}
+
+	/**
+	 * Scan loose references and merge them with packed references.
+	 *
+	 * @param dir
+	 *            directory prefix to scan for loose references.
+	 * @param prefix
+	 *            prefix of the returned references; starts with {@code dir}.
+	 * @param packed
+	 *            packed references, at least those starting with
+	 *            {@code prefix}.
+	 * @param lookup
+	 *            if not null, used to resolve symbolic references as
+	 *            {@code packed} may not contain their targets.
+	 * @return the references starting with {@code prefix}.
+	 * @throws IOException
+	 *             references cannot be read.
+	 */
+	private RefMap scanRefs(String dir, String prefix, RefList<Ref> packed,
+			@Nullable PackedLookup lookup) throws IOException {
 		final RefList<LooseRef> oldLoose = looseRefs.get();
 		LooseScanner scan = new LooseScanner(oldLoose);
-		scan.scan(prefix);
-		final RefList<Ref> packed = getPackedRefs();
+		scan.scan(dir);
 
 		RefList<LooseRef> loose;
 		if (scan.newLoose != null) {
@@ -389,7 +509,9 @@ public Map<String, Ref> getRefs(String prefix) throws IOException {
 		RefList.Builder<Ref> symbolic = scan.symbolic;
 		for (int idx = 0; idx < symbolic.size();) {
 			final Ref symbolicRef = symbolic.get(idx);
-			final Ref resolvedRef = resolve(symbolicRef, 0, prefix, loose, packed);
+			final Ref resolvedRef = lookup != null
+					? resolve(symbolicRef, 0, lookup)
+					: resolve(symbolicRef, 0, dir, loose, packed);
 			if (resolvedRef != null && resolvedRef.getObjectId() != null) {
 				symbolic.set(idx, resolvedRef);
 				idx++;
@@ -408,6 +530,19 @@ public Map<String, Ref> getRefs(String prefix) throws IOException {
 		return new RefMap(prefix, packed, upcast(loose), symbolic.toRefList());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Packed refs are merged with a scan of the loose refs directories. Only
+	 * the listings of the directories on the current path are held in memory,
+	 * and directories that cannot contain a matching ref are not listed.
+	 */
+	@Override
+	public RefScanner scanRefsByPrefix(String... prefixes) throws IOException {
+		return new PrefixScanner(normalizePrefixes(prefixes), getPackedRefs(),
+				looseRefs.get());
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public List<Ref> getAdditionalRefs() throws IOException {
@@ -543,6 +678,155 @@ private void scanOne(String name) {
 		}
 	}
 
+	private class PrefixScanner extends RefScanner {
+		private final Iterator<String> prefixes;
+
+		private final RefList<Ref> packed;
+
+		private final RefList<LooseRef> cachedLoose;
+
+		/** Listings of the loose directories being visited, innermost first. */
+		private final Deque<LooseDirectory> dirs = new ArrayDeque<>();
+
+		private String prefix;
+
+		private int packedIdx;
+
+		private String nextLoose;
+
+		private Ref ref;
+
+		PrefixScanner(List<String> prefixes, RefList<Ref> packed,
+				RefList<LooseRef> cachedLoose) {
+			this.prefixes = prefixes.iterator();
+			this.packed = packed;
+			this.cachedLoose = cachedLoose;
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			for (;;) {
+				if (prefix == null) {
+					if (!prefixes.hasNext()) {
+						ref = null;
+						return false;
+					}
+					start(prefixes.next());
+				}
+
+				Ref p = null;
+				if (packedIdx < packed.size()
+						&& packed.get(packedIdx).getName().startsWith(prefix))
+					p = packed.get(packedIdx);
+				if (nextLoose == null)
+					nextLoose = nextLooseName();
+				if (p == null && nextLoose == null) {
+					prefix = null;
+					continue;
+				}
+
+				int cmp;
+				if (p == null)
+					cmp = 1;
+				else if (nextLoose == null)
+					cmp = -1;
+				else
+					cmp = RefComparator.compareTo(p, nextLoose);
+
+				Ref r;
+				if (cmp < 0) {
+					r = p;
+					packedIdx++;
+				} else {
+					// A loose ref overrides its packed copy, unless the
+					// loose file is not a valid ref.
+					r = readLoose(nextLoose);
+					nextLoose = null;
+					if (cmp == 0) {
+						packedIdx++;
+						if (r == null)
+							r = p;
+					}
+				}
+
+				if (r != null && r.isSymbolic()) {
+					r = resolve(r, 0, null, null, packed);
+					if (r != null && r.getObjectId() == null)
+						r = null; // Drop broken symbolic references.
+				}
+				if (r != null) {
+					ref = r;
+					return true;
+				}
+			}
+		}
+
+		@Override
+		public Ref getRef() {
+			return ref;
+		}
+
+		private void start(String p) {
+			prefix = p;
+			int idx = packed.find(p);
+			packedIdx = idx < 0 ? -(idx + 1) : idx;
+			nextLoose = null;
+			dirs.clear();
+			dirs.push(new LooseDirectory("", new String[] { HEAD, R_REFS })); //$NON-NLS-1$
+		}
+
+		private String nextLooseName() {
+			while (!dirs.isEmpty()) {
+				LooseDirectory d = dirs.peek();
+				if (d.idx == d.entries.length) {
+					dirs.pop();
+					continue;
+				}
+				String name = d.path + d.entries[d.idx++];
+				if (name.charAt(name.length() - 1) == '/') {
+					if (name.startsWith(prefix) || prefix.startsWith(name))
+						list(name);
+				} else if (name.startsWith(prefix))
+					return name;
+			}
+			return null;
+		}
+
+		private void list(String path) {
+			File dir = new File(refsDir, path.substring(R_REFS.length()));
+			String[] entries = dir.list(LockFile.FILTER);
+			if (entries == null) // not a directory or an I/O error
+				return;
+			for (int i = 0; i < entries.length; ++i) {
+				if (new File(dir, entries[i]).isDirectory())
+					entries[i] += '/';
+			}
+			Arrays.sort(entries);
+			dirs.push(new LooseDirectory(path, entries));
+		}
+
+		private Ref readLoose(String name) {
+			try {
+				return scanRef(cachedLoose.get(name), name);
+			} catch (IOException notValid) {
+				return null;
+			}
+		}
+	}
+
+	private static class LooseDirectory {
+		final String path;
+
+		final String[] entries;
+
+		int idx;
+
+		LooseDirectory(String path, String[] entries) {
+			this.path = path;
+			this.entries = entries;
+		}
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public Ref peel(Ref ref) throws IOException {
@@ -600,10 +884,10 @@ void storedSymbolicRef(RefDirectoryUpdate u, FileSnapshot snapshot,
 	public RefDirectoryUpdate newUpdate(String name, boolean detach)
 			throws IOException {
 		boolean detachingSymbolicRef = false;
-		final RefList<Ref> packed = getPackedRefs();
+		final PackedLookup packed = getPackedLookup();
 		Ref ref = readRef(name, packed);
 		if (ref != null)
-			ref = resolve(ref, 0, null, null, packed);
+			ref = resolve(ref, 0, packed);
 		if (ref == null)
 			ref = new ObjectIdRef.Unpeeled(NEW, name, null);
 		else {
@@ -691,7 +975,7 @@ void delete(RefDirectoryUpdate update) throws IOException {
 		} while (!looseRefs.compareAndSet(curLoose, newLoose));
 
 		int levels = levelsIn(name) - 2;
-		delete(logFor(name), levels);
+		deleteLog(name, levels);
 		if (dst.getStorage().isLoose()) {
 			update.unlock();
 			delete(fileFor(name), levels);
@@ -741,7 +1025,7 @@ private PackedRefList pack(Collection<String> refs,
 				// Iterate over all refs to be packed
 				boolean dirty = false;
 				for (String refName : refs) {
-					Ref oldRef = readRef(refName, cur);
+					Ref oldRef = readRef(refName, cur::get);
 					if (oldRef == null) {
 						continue; // A non-existent ref is already correctly packed.
 					}
@@ -904,7 +1188,7 @@ else if (0 <= (idx = packed.find(dst.getName())))
 				else
 					return ref;
 			} else {
-				dst = readRef(dst.getName(), packed);
+				dst = readRef(dst.getName(), packed::get);
 				if (dst == null)
 					return ref;
 			}
@@ -917,6 +1201,65 @@ else if (0 <= (idx = packed.find(dst.getName())))
 		return ref;
 	}
 
+	private Ref resolve(final Ref ref, int depth, PackedLookup packed)
+			throws IOException {
+		if (ref.isSymbolic()) {
+			if (MAX_SYMBOLIC_REF_DEPTH <= depth)
+				return null; // claim it doesn't exist
+
+			Ref dst = readRef(ref.getTarget().getName(), packed);
+			if (dst == null)
+				return ref;
+
+			dst = resolve(dst, depth + 1, packed);
+			if (dst == null)
+				return null;
+			return new SymbolicRef(ref.getName(), dst);
+		}
+		return ref;
+	}
+
+	private PackedLookup getPackedLookup() throws IOException {
+		MappedPackedRefs mapped = getMappedPackedRefs();
+		if (mapped != null) {
+			return mapped::get;
+		}
+		return getPackedRefs()::get;
+	}
+
+	/**
+	 * Get the memory mapped packed references.
+	 *
+	 * @return the mapped packed-refs file; null if mapping is disabled or the
+	 *         file is not sorted, in which case {@link #getPackedRefs()} has
+	 *         to be used.
+	 * @throws IOException
+	 *             the packed-refs file cannot be read.
+	 */
+	@Nullable
+	MappedPackedRefs getMappedPackedRefs() throws IOException {
+		Config cfg = getRepository().getConfig();
+		if (!cfg.getBoolean(ConfigConstants.CONFIG_CORE_SECTION,
+				ConfigConstants.CONFIG_KEY_MMAP_PACKED_REFS, false)) {
+			return null;
+		}
+		boolean trustFolderStat = cfg.getBoolean(
+				ConfigConstants.CONFIG_CORE_SECTION,
+				ConfigConstants.CONFIG_KEY_TRUSTFOLDERSTAT, true);
+
+		MappedPackedRefs cur = mappedPackedRefs.get();
+		if (trustFolderStat && !cur.snapshot.isModified(packedRefsFile)) {
+			return cur.isUsable() ? cur : null;
+		}
+
+		MappedPackedRefs next = MappedPackedRefs.open(packedRefsFile);
+		if (mappedPackedRefs.compareAndSet(cur, next)
+				&& !cur.id.equals(next.id)) {
+			modCnt.incrementAndGet();
+		}
+		return next.isUsable() ? next : null;
+	}
+
 	PackedRefList getPackedRefs() throws IOException {
 		boolean trustFolderStat = getRepository().getConfig().getBoolean(
 				ConfigConstants.CONFIG_CORE_SECTION,
@@ -1083,7 +1426,14 @@ protected void writeFile(String name, byte[] content)
 		return result.get();
 	}
 
-	private Ref readRef(String name, RefList<Ref> packed) throws IOException {
+	/** Looks up a single packed reference by name. */
+	@FunctionalInterface
+	private interface PackedLookup {
+		@Nullable
+		Ref get(String name) throws IOException;
+	}
+
+	private Ref readRef(String name, PackedLookup packed) throws IOException {
 		final RefList<LooseRef> curList = looseRefs.get();
 		final int idx = curList.find(name);
 		if (0 <= idx) {
@@ -189,6 +189,15 @@ protected Result doRename() throws IOException {
 	}
 
 	private boolean renameLog(RefUpdate src, RefUpdate dst) {
+		SegmentedReflog segments = refdb.getSegmentedReflog();
+		if (segments != null) {
+			try {
+				segments.rename(src.getName(), dst.getName(), false);
+			} catch (IOException e) {
+				return false;
+			}
+		}
+
 		File srcLog = refdb.logFor(src.getName());
 		File dstLog = refdb.logFor(dst.getName());
 
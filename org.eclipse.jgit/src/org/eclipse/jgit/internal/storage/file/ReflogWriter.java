@@ -238,13 +238,22 @@ private FileOutputStream getFileOutputStream(File log) throws IOException {
 
 	private ReflogWriter log(String refName, byte[] rec) throws IOException {
 		File log = refdb.logFor(refName);
+		SegmentedReflog segments = refdb.getSegmentedReflog();
+		if (segments != null && !SegmentedReflog.isStored(refName)) {
+			segments = null;
+		}
 		boolean write = forceWrite
 				|| (isLogAllRefUpdates() && shouldAutoCreateLog(refName))
-				|| log.isFile();
+				|| log.isFile()
+				|| (segments != null && segments.exists(refName));
 		if (!write)
 			return this;
 
 		WriteConfig wc = refdb.getRepository().getConfig().get(WriteConfig.KEY);
+		if (segments != null) {
+			segments.append(refName, rec, wc.getFSyncRefFiles());
+			return this;
+		}
 		try (FileOutputStream out = getFileOutputStream(log)) {
 			if (wc.getFSyncRefFiles()) {
 				FileChannel fc = out.getChannel();
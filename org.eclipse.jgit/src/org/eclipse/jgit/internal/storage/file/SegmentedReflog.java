@@ -0,0 +1,884 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.internal.storage.file;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jgit.errors.LockFailedException;
+import org.eclipse.jgit.errors.ObjectWritingException;
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ReflogEntry;
+import org.eclipse.jgit.lib.ReflogReader;
+import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.jgit.util.IO;
+import org.eclipse.jgit.util.LongList;
+import org.eclipse.jgit.util.MutableInteger;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Reflogs of all references of a {@link RefDirectory}, appended to shared
+ * segment files.
+ * <p>
+ * Instead of one file per reference, every update is appended to the current
+ * segment {@code reflog-segments/<n>.log} as one line, the reference name
+ * followed by a tab and the traditional reflog line. A line holding only a
+ * reference name marks the deletion of the reference's log. Once a segment
+ * grows past the configured size a new one is started, and an index mapping
+ * each reference name to its lines is written next to the sealed segment as
+ * {@code <n>.idx}. Segments without a (current) index are scanned once and the
+ * result is cached.
+ * <p>
+ * Writers of all processes append while holding {@code reflog-segments.lock},
+ * and only to the newest segment; a writer lists the segments again whenever
+ * the directory changed since it opened its segment. If
+ * {@code core.fsyncRefFiles} is set, appending waits until the segment is
+ * synced. Concurrent writers waiting at the same time are covered by a single
+ * sync of the segment.
+ * <p>
+ * {@link #compact()} seals the newest segment and merges runs of sealed
+ * segments up to the configured segment size, dropping the entries of deleted
+ * logs. A sealed segment that is already large enough and holds no deleted
+ * entries is left alone.
+ * <p>
+ * Entries of a log file written before segments were enabled are returned
+ * after the entries found in segments. The stash is always kept in its own
+ * file, as dropping stash entries rewrites the log.
+ */
+class SegmentedReflog {
+	/** Directory holding the segments, relative to the git directory. */
+	static final String SEGMENTS = "reflog-segments"; //$NON-NLS-1$
+
+	private static final String LOG_SUFFIX = ".log"; //$NON-NLS-1$
+
+	private static final String IDX_SUFFIX = ".idx"; //$NON-NLS-1$
+
+	/** Returned by {@link #readRecord} for a deletion marker. */
+	private static final byte[] DELETED = {};
+
+	/**
+	 * Whether the log of a reference is stored in segments.
+	 *
+	 * @param refName
+	 *            name of the reference.
+	 * @return {@code false} for logs that must stay in their own file.
+	 */
+	static boolean isStored(String refName) {
+		return !Constants.R_STASH.equals(refName);
+	}
+
+	private final RefDirectory refdb;
+
+	private final File dir;
+
+	/** Segment currently appended to, 0 if none is open; guarded by this. */
+	private long seq;
+
+	/** Stream appending to {@link #seq}; guarded by this. */
+	private FileOutputStream out;
+
+	/** End of the last line appended to {@link #seq}; guarded by this. */
+	private long written;
+
+	/** State of {@link #dir} when {@link #seq} was chosen; guarded by this. */
+	private FileSnapshot listed = FileSnapshot.DIRTY;
+
+	private final Object syncLock = new Object();
+
+	/** Segment known to be synced up to {@link #syncedEnd}. */
+	private long syncedSeq;
+
+	private long syncedEnd;
+
+	private final Map<Long, SegmentIndex> indexes = new ConcurrentHashMap<>();
+
+	SegmentedReflog(RefDirectory refdb, File dir) {
+		this.refdb = refdb;
+		this.dir = dir;
+	}
+
+	/**
+	 * Append a reflog entry.
+	 *
+	 * @param refName
+	 *            name of the reference.
+	 * @param rec
+	 *            reflog line, terminated by LF.
+	 * @param fsync
+	 *            whether to wait until the entry is synced to disk.
+	 * @throws IOException
+	 *             the entry could not be written.
+	 */
+	void append(String refName, byte[] rec, boolean fsync) throws IOException {
+		byte[] name = Constants.encode(refName);
+		byte[] line = new byte[name.length + 1 + rec.length];
+		System.arraycopy(name, 0, line, 0, name.length);
+		line[name.length] = '\t';
+		System.arraycopy(rec, 0, line, name.length + 1, rec.length);
+		appendLine(line, fsync);
+	}
+
+	/**
+	 * Mark the log of a reference deleted, if it has entries.
+	 *
+	 * @param refName
+	 *            name of the reference.
+	 * @param fsync
+	 *            whether to wait until the marker is synced to disk.
+	 * @throws IOException
+	 *             the marker could not be written.
+	 */
+	void delete(String refName, boolean fsync) throws IOException {
+		if (!exists(refName)) {
+			return;
+		}
+		appendLine(Constants.encode(refName + '\n'), fsync);
+	}
+
+	/**
+	 * Copy the entries of one log to another and delete the source.
+	 *
+	 * @param src
+	 *            name of the source reference.
+	 * @param dst
+	 *            name of the destination reference.
+	 * @param fsync
+	 *            whether to wait until the entries are synced to disk.
+	 * @throws IOException
+	 *             the entries could not be copied.
+	 */
+	void rename(String src, String dst, boolean fsync) throws IOException {
+		List<byte[]> recs = read(src, Integer.MAX_VALUE, null);
+		for (int i = recs.size() - 1; i >= 0; i--) {
+			append(dst, recs.get(i), false);
+		}
+		delete(src, fsync);
+	}
+
+	/**
+	 * Whether the log of a reference has entries in a segment.
+	 *
+	 * @param refName
+	 *            name of the reference.
+	 * @return {@code true} if the newest entry found is not a deletion.
+	 * @throws IOException
+	 *             the segments could not be read.
+	 */
+	boolean exists(String refName) throws IOException {
+		return !read(refName, 1, null).isEmpty();
+	}
+
+	/**
+	 * Get a reader for the log of a reference.
+	 *
+	 * @param refName
+	 *            name of the reference.
+	 * @return reader of the entries in segments and in the reference's log
+	 *         file, if any.
+	 */
+	ReflogReader getReflogReader(String refName) {
+		return new Reader(refName);
+	}
+
+	private void appendLine(byte[] line, boolean fsync) throws IOException {
+		long s, end;
+		synchronized (this) {
+			LockFile lck = lockSegments();
+			try {
+				openSegment();
+				out.write(line);
+				written = out.getChannel().position();
+			} finally {
+				lck.unlock();
+			}
+			s = seq;
+			end = written;
+		}
+		if (fsync) {
+			sync(s, end);
+		}
+	}
+
+	/**
+	 * Lock the segments against writers and compaction of other processes.
+	 *
+	 * @return the held lock.
+	 * @throws IOException
+	 *             the lock could not be taken in time.
+	 */
+	private LockFile lockSegments() throws IOException {
+		LockFile lck = new LockFile(dir);
+		for (int ms : refdb.getRetrySleepMs()) {
+			RefDirectory.sleep(ms);
+			if (lck.lock()) {
+				return lck;
+			}
+		}
+		throw new LockFailedException(dir);
+	}
+
+	/**
+	 * Make {@link #out} append to the newest segment; the lock is held.
+	 *
+	 * @throws IOException
+	 *             the segment could not be opened or sealed.
+	 */
+	private void openSegment() throws IOException {
+		if (out == null || listed.isModified(dir)) {
+			FileUtils.mkdirs(dir, true);
+			FileSnapshot snapshot = FileSnapshot.save(dir);
+			long[] all = listSegments();
+			long newest = all.length > 0 ? all[all.length - 1] : 1;
+			if (out == null || newest != seq) {
+				// Another process started a segment, or compaction sealed ours.
+				close();
+				openSegment(newest);
+			}
+			listed = snapshot;
+		}
+		if (written >= getSegmentSize()) {
+			long next = seq + 1;
+			seal(seq);
+			openSegment(next);
+		}
+	}
+
+	private void openSegment(long s) throws IOException {
+		out = new FileOutputStream(segment(s), true);
+		seq = s;
+		written = out.getChannel().size();
+	}
+
+	/**
+	 * Seal the newest segment by starting the next one; the lock is held.
+	 *
+	 * @param s
+	 *            the newest segment.
+	 * @throws IOException
+	 *             the segment could not be synced or indexed.
+	 */
+	private void seal(long s) throws IOException {
+		close();
+		try (FileOutputStream os = new FileOutputStream(segment(s), true)) {
+			os.getChannel().force(true);
+		}
+		if (!segment(s + 1).createNewFile()) {
+			throw new ObjectWritingException(MessageFormat
+					.format(JGitText.get().unableToWrite, segment(s + 1)));
+		}
+		writeIndex(s, index(s));
+	}
+
+	private void sync(long s, long end) throws IOException {
+		synchronized (syncLock) {
+			if (s < syncedSeq || (s == syncedSeq && end <= syncedEnd)) {
+				return;
+			}
+			FileChannel fc;
+			long e;
+			synchronized (this) {
+				if (s != seq || out == null) {
+					// Sealed segments were synced before starting the next.
+					return;
+				}
+				fc = out.getChannel();
+				e = written;
+			}
+			try {
+				fc.force(false);
+			} catch (ClosedChannelException sealed) {
+				return;
+			}
+			syncedSeq = s;
+			syncedEnd = e;
+		}
+	}
+
+	private long getSegmentSize() {
+		return refdb.getRepository().getConfig().getLong(
+				ConfigConstants.CONFIG_CORE_SECTION,
+				ConfigConstants.CONFIG_KEY_REFLOG_SEGMENT_SIZE,
+				16 * 1024 * 1024);
+	}
+
+	/** Close the segment appended to. */
+	synchronized void close() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				// Nothing was buffered, all lines were written.
+			}
+			out = null;
+		}
+	}
+
+	/**
+	 * Read the raw entries of a log, newest first.
+	 *
+	 * @param refName
+	 *            name of the reference.
+	 * @param max
+	 *            maximum number of entries to return.
+	 * @param deleted
+	 *            if not null, set to whether the log was found deleted in the
+	 *            segments, hiding older entries.
+	 * @return the reflog lines, terminated by LF.
+	 * @throws IOException
+	 *             the segments could not be read.
+	 */
+	List<byte[]> read(String refName, int max, boolean[] deleted)
+			throws IOException {
+		List<byte[]> r = new ArrayList<>();
+		long[] all = listSegments();
+		for (int i = all.length - 1; i >= 0 && r.size() < max; i--) {
+			LongList offsets = index(all[i]).get(refName);
+			if (offsets == null) {
+				continue;
+			}
+			try (RandomAccessFile raf = new RandomAccessFile(segment(all[i]),
+					"r")) { //$NON-NLS-1$
+				for (int j = offsets.size() - 1; j >= 0; j--) {
+					byte[] rec = readRecord(raf, offsets.get(j));
+					if (rec == DELETED) {
+						if (deleted != null) {
+							deleted[0] = true;
+						}
+						return r;
+					}
+					r.add(rec);
+					if (r.size() == max) {
+						return r;
+					}
+				}
+			} catch (FileNotFoundException e) {
+				// Removed by a concurrent compaction.
+				indexes.remove(Long.valueOf(all[i]));
+			}
+		}
+		return r;
+	}
+
+	private static byte[] readRecord(RandomAccessFile raf, long off)
+			throws IOException {
+		byte[] buf = new byte[256];
+		int n = 0;
+		raf.seek(off);
+		for (;;) {
+			if (n == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length * 2);
+			}
+			int r = raf.read(buf, n, buf.length - n);
+			if (r < 0) {
+				throw new EOFException();
+			}
+			for (int lf = n; lf < n + r; lf++) {
+				if (buf[lf] == '\n') {
+					int tab = RawParseUtils.next(buf, 0, '\t');
+					if (tab > lf) {
+						return DELETED;
+					}
+					return Arrays.copyOfRange(buf, tab, lf + 1);
+				}
+			}
+			n += r;
+		}
+	}
+
+	/**
+	 * Merge sealed segments, dropping deleted logs.
+	 * <p>
+	 * The segment currently appended to is sealed first. Runs of sealed
+	 * segments are merged as long as the result does not exceed the segment
+	 * size; a segment holding entries of deleted logs is rewritten without
+	 * them. Other segments are not touched.
+	 *
+	 * @throws IOException
+	 *             the segments could not be compacted.
+	 */
+	void compact() throws IOException {
+		LockFile compacting = new LockFile(new File(dir, "compact")); //$NON-NLS-1$
+		if (!compacting.lock()) {
+			// Another process is compacting.
+			return;
+		}
+		try {
+			long[] sealed;
+			synchronized (this) {
+				LockFile lck = lockSegments();
+				try {
+					sealed = listSegments();
+					if (sealed.length == 0) {
+						return;
+					}
+					long active = sealed[sealed.length - 1];
+					if (segment(active).length() > 0) {
+						seal(active);
+					} else {
+						sealed = Arrays.copyOf(sealed, sealed.length - 1);
+					}
+				} finally {
+					lck.unlock();
+				}
+			}
+			compact(sealed);
+		} finally {
+			compacting.unlock();
+		}
+	}
+
+	private void compact(long[] sealed) throws IOException {
+		// Find the last deletion of each log; older entries are dropped.
+		Map<String, long[]> deletions = new HashMap<>();
+		for (long s : sealed) {
+			forEachLine(segment(s), 0, (name, off, isDelete, buf, ptr, end) -> {
+				if (isDelete) {
+					deletions.put(name, new long[] { s, off });
+				}
+			});
+		}
+
+		long limit = getSegmentSize();
+		int start = 0;
+		while (start < sealed.length) {
+			long size = segment(sealed[start]).length();
+			boolean rewrite = hasDeleted(sealed[start], deletions);
+			int end = start + 1;
+			for (; end < sealed.length; end++) {
+				long len = segment(sealed[end]).length();
+				if (size + len > limit) {
+					break;
+				}
+				size += len;
+				rewrite = true;
+			}
+			if (!rewrite) {
+				for (int i = start + 1; i < end; i++) {
+					rewrite |= hasDeleted(sealed[i], deletions);
+				}
+			}
+			if (rewrite) {
+				rewrite(Arrays.copyOfRange(sealed, start, end), deletions);
+			}
+			start = end;
+		}
+	}
+
+	private boolean hasDeleted(long s, Map<String, long[]> deletions)
+			throws IOException {
+		SegmentIndex idx = index(s);
+		for (Map.Entry<String, long[]> e : deletions.entrySet()) {
+			long[] d = e.getValue();
+			LongList offsets = idx.get(e.getKey());
+			if (offsets != null && (s < d[0] || (s == d[0]
+					&& offsets.get(0) <= d[1]))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replace a run of sealed segments by one, named like the newest.
+	 *
+	 * @param run
+	 *            the segments, oldest first.
+	 * @param deletions
+	 *            segment and offset of the last deletion of each log.
+	 * @throws IOException
+	 *             the segments could not be rewritten.
+	 */
+	private void rewrite(long[] run, Map<String, long[]> deletions)
+			throws IOException {
+		long target = run[run.length - 1];
+		File tmp = File.createTempFile("compact", LOG_SUFFIX, dir); //$NON-NLS-1$
+		try {
+			try (FileOutputStream fos = new FileOutputStream(tmp);
+					OutputStream os = new BufferedOutputStream(fos)) {
+				for (long s : run) {
+					forEachLine(segment(s), 0,
+							(name, off, isDelete, buf, ptr, end) -> {
+								long[] d = deletions.get(name);
+								if (d == null || s > d[0]
+										|| (s == d[0] && off > d[1])) {
+									os.write(buf, ptr, end - ptr);
+								}
+							});
+				}
+				os.flush();
+				fos.getChannel().force(true);
+			}
+			LockFile lck = lockSegments();
+			try {
+				// The index of the old segment must not be used for the new one.
+				FileUtils.delete(indexFile(target), FileUtils.SKIP_MISSING);
+				FileUtils.rename(tmp, segment(target),
+						StandardCopyOption.ATOMIC_MOVE);
+				for (int i = 0; i < run.length - 1; i++) {
+					FileUtils.delete(indexFile(run[i]),
+							FileUtils.SKIP_MISSING);
+					FileUtils.delete(segment(run[i]), FileUtils.SKIP_MISSING);
+				}
+			} finally {
+				lck.unlock();
+			}
+		} finally {
+			FileUtils.delete(tmp, FileUtils.SKIP_MISSING);
+		}
+		for (long s : run) {
+			indexes.remove(Long.valueOf(s));
+		}
+		writeIndex(target, index(target));
+	}
+
+	private long[] listSegments() {
+		String[] names = dir.list();
+		if (names == null) {
+			return new long[0];
+		}
+		LongList r = new LongList(names.length);
+		for (String n : names) {
+			if (n.endsWith(LOG_SUFFIX)) {
+				String num = n.substring(0, n.length() - LOG_SUFFIX.length());
+				try {
+					r.add(Long.parseLong(num, 16));
+				} catch (NumberFormatException e) {
+					// Not a segment, e.g. a compaction in progress.
+				}
+			}
+		}
+		r.sort();
+		long[] a = new long[r.size()];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = r.get(i);
+		}
+		return a;
+	}
+
+	private File segment(long s) {
+		return new File(dir, name(s) + LOG_SUFFIX);
+	}
+
+	private File indexFile(long s) {
+		return new File(dir, name(s) + IDX_SUFFIX);
+	}
+
+	private static String name(long s) {
+		return String.format("%016x", Long.valueOf(s)); //$NON-NLS-1$
+	}
+
+	private SegmentIndex index(long s) throws IOException {
+		Long key = Long.valueOf(s);
+		File f = segment(s);
+		Object fileKey = fileKey(f);
+		SegmentIndex idx = indexes.get(key);
+		if (idx == null || !Objects.equals(idx.fileKey, fileKey)
+				|| f.length() < idx.length) {
+			idx = SegmentIndex.read(indexFile(s),
+					fileKey, f.length());
+			indexes.put(key, idx);
+		}
+		idx.scan(f);
+		return idx;
+	}
+
+	private static Object fileKey(File f) {
+		try {
+			return Files.readAttributes(f.toPath(), BasicFileAttributes.class)
+					.fileKey();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private void writeIndex(long s, SegmentIndex idx) throws IOException {
+		File idxFile = indexFile(s);
+		LockFile lck = new LockFile(idxFile);
+		if (!lck.lock()) {
+			// Someone else is writing it.
+			return;
+		}
+		try (OutputStream os = new BufferedOutputStream(
+				lck.getOutputStream())) {
+			idx.write(os);
+		}
+		if (!lck.commit()) {
+			throw new ObjectWritingException(MessageFormat
+					.format(JGitText.get().unableToWrite, idxFile));
+		}
+	}
+
+	@FunctionalInterface
+	private interface LineConsumer {
+		void accept(String name, long off, boolean isDelete, byte[] buf,
+				int ptr, int end) throws IOException;
+	}
+
+	/**
+	 * Visit the complete lines of a segment.
+	 *
+	 * @param segment
+	 *            the segment file.
+	 * @param start
+	 *            offset of the first line to visit.
+	 * @param c
+	 *            receives each line, {@code buf[ptr, end)} including the LF.
+	 * @return offset just after the last complete line.
+	 * @throws IOException
+	 *             the segment could not be read, or {@code c} failed.
+	 */
+	private static long forEachLine(File segment, long start, LineConsumer c)
+			throws IOException {
+		try (FileInputStream in = new FileInputStream(segment)) {
+			in.getChannel().position(start);
+			byte[] buf = new byte[8192];
+			int n = 0;
+			long base = start;
+			for (;;) {
+				if (n == buf.length) {
+					// A line longer than the buffer.
+					buf = Arrays.copyOf(buf, buf.length * 2);
+				}
+				int r = in.read(buf, n, buf.length - n);
+				if (r < 0) {
+					return base;
+				}
+				n += r;
+				int done = forEachLine(buf, n, base, c);
+				System.arraycopy(buf, done, buf, 0, n - done);
+				n -= done;
+				base += done;
+			}
+		}
+	}
+
+	private static int forEachLine(byte[] buf, int end, long base,
+			LineConsumer c) throws IOException {
+		int ptr = 0;
+		while (ptr < end) {
+			int lf = RawParseUtils.nextLF(buf, ptr) - 1;
+			if (lf >= end || buf[lf] != '\n') {
+				// Incomplete line still being written.
+				break;
+			}
+			int tab = RawParseUtils.next(buf, ptr, '\t');
+			boolean isDelete = tab > lf;
+			String name = RawParseUtils.decode(UTF_8, buf, ptr,
+					isDelete ? lf : tab - 1);
+			c.accept(name, base + ptr, isDelete, buf, ptr, lf + 1);
+			ptr = lf + 1;
+		}
+		return ptr;
+	}
+
+	/** Offsets of the lines of each reference in one segment. */
+	private static class SegmentIndex {
+		final Object fileKey;
+
+		private final Map<String, LongList> lines = new HashMap<>();
+
+		/** Length of the segment covered by {@link #lines}. */
+		long length;
+
+		SegmentIndex(Object fileKey) {
+			this.fileKey = fileKey;
+		}
+
+		static SegmentIndex read(File idxFile, Object fileKey,
+				long segmentLength) {
+			SegmentIndex idx = new SegmentIndex(fileKey);
+			byte[] buf;
+			try {
+				buf = IO.readFully(idxFile);
+			} catch (IOException e) {
+				return idx;
+			}
+			int lf = RawParseUtils.nextLF(buf, 0);
+			long len = RawParseUtils.parseLongBase10(buf, 0, null);
+			if (len > segmentLength) {
+				// Index of a segment that has been replaced since.
+				return idx;
+			}
+			int ptr = lf;
+			while (ptr < buf.length) {
+				lf = RawParseUtils.nextLF(buf, ptr);
+				int sp = RawParseUtils.next(buf, ptr, ' ');
+				String name = RawParseUtils.decode(UTF_8, buf, ptr, sp - 1);
+				LongList offs = new LongList();
+				MutableInteger p = new MutableInteger();
+				p.value = sp;
+				while (p.value < lf - 1) {
+					int start = p.value;
+					offs.add(RawParseUtils.parseLongBase10(buf, start, p));
+					if (p.value == start) {
+						// Corrupt index, scan the segment instead.
+						return new SegmentIndex(fileKey);
+					}
+				}
+				idx.lines.put(name, offs);
+				ptr = lf;
+			}
+			idx.length = len;
+			return idx;
+		}
+
+		synchronized LongList get(String name) {
+			LongList offs = lines.get(name);
+			if (offs == null) {
+				return null;
+			}
+			LongList copy = new LongList(offs.size());
+			for (int i = 0; i < offs.size(); i++) {
+				copy.add(offs.get(i));
+			}
+			return copy;
+		}
+
+		/**
+		 * Index lines appended since the last scan.
+		 *
+		 * @param segment
+		 *            the segment file.
+		 * @throws IOException
+		 *             the segment could not be read.
+		 */
+		synchronized void scan(File segment) throws IOException {
+			if (segment.length() <= length) {
+				return;
+			}
+			try {
+				length = forEachLine(segment, length,
+						(name, off, isDelete, buf, ptr, end) -> lines
+								.computeIfAbsent(name, n -> new LongList())
+								.add(off));
+			} catch (FileNotFoundException e) {
+				// Removed by a concurrent compaction.
+			}
+		}
+
+		synchronized void write(OutputStream os) throws IOException {
+			StringBuilder b = new StringBuilder();
+			b.append(length).append('\n');
+			List<String> names = new ArrayList<>(lines.keySet());
+			Collections.sort(names);
+			for (String name : names) {
+				b.append(name);
+				LongList offs = lines.get(name);
+				for (int i = 0; i < offs.size(); i++) {
+					b.append(' ').append(offs.get(i));
+				}
+				b.append('\n');
+			}
+			os.write(b.toString().getBytes(UTF_8));
+		}
+	}
+
+	private class Reader implements ReflogReader {
+		private final String refName;
+
+		Reader(String refName) {
+			this.refName = refName;
+		}
+
+		@Override
+		public ReflogEntry getLastEntry() throws IOException {
+			return getReverseEntry(0);
+		}
+
+		@Override
+		public List<ReflogEntry> getReverseEntries() throws IOException {
+			return getReverseEntries(Integer.MAX_VALUE);
+		}
+
+		@Override
+		public ReflogEntry getReverseEntry(int number) throws IOException {
+			if (number < 0) {
+				throw new IllegalArgumentException();
+			}
+			List<ReflogEntry> entries = getReverseEntries(number + 1);
+			return entries.size() > number ? entries.get(number) : null;
+		}
+
+		@Override
+		public List<ReflogEntry> getReverseEntries(int max)
+				throws IOException {
+			boolean[] deleted = new boolean[1];
+			List<ReflogEntry> r = new ArrayList<>();
+			for (byte[] rec : read(refName, max, deleted)) {
+				r.add(new ReflogEntryImpl(rec, 0));
+			}
+			if (!deleted[0] && r.size() < max) {
+				r.addAll(new ReflogReaderImpl(refdb.getRepository(), refName)
+						.getReverseEntries(max - r.size()));
+			}
+			return r;
+		}
+	}
+}
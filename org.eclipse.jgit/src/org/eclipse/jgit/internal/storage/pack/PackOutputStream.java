@@ -48,14 +48,18 @@
 import static org.eclipse.jgit.lib.Constants.OBJ_REF_DELTA;
 import static org.eclipse.jgit.lib.Constants.PACK_SIGNATURE;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 
 import org.eclipse.jgit.internal.JGitText;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.util.NB;
+import org.eclipse.jgit.util.io.FileRegionWriter;
 
 /**
  * Custom output stream to support
@@ -143,6 +147,66 @@ public void flush() throws IOException {
 		out.flush();
 	}
 
+	/**
+	 * Check if the underlying stream accepts regions of a file.
+	 *
+	 * @return {@code true} if
+	 *         {@link #writeRegion(FileChannel, long, long)} may be used.
+	 * @since 5.1
+	 */
+	public boolean canWriteRegion() {
+		return out instanceof FileRegionWriter
+				&& ((FileRegionWriter) out).canWriteRegion();
+	}
+
+	/**
+	 * Write a region of a file holding pack data.
+	 * <p>
+	 * The region is read once to update the pack checksum, and then handed to
+	 * the underlying {@link FileRegionWriter}, which may send it later. May
+	 * only be used if {@link #canWriteRegion()} is {@code true}.
+	 *
+	 * @param file
+	 *            file to send the region from. The underlying stream takes
+	 *            ownership of the channel, even if this method throws.
+	 * @param position
+	 *            offset of the first byte of the region.
+	 * @param len
+	 *            number of bytes of the region.
+	 * @throws java.io.IOException
+	 *             the file could not be read, or the stream refused the
+	 *             region.
+	 * @since 5.1
+	 */
+	public void writeRegion(FileChannel file, long position, long len)
+			throws IOException {
+		try {
+			long pos = position;
+			long end = position + len;
+			while (pos < end) {
+				int n = (int) Math.min(copyBuffer.length, end - pos);
+				n = file.read(ByteBuffer.wrap(copyBuffer, 0, n), pos);
+				if (n <= 0) {
+					throw new EOFException();
+				}
+				count += n;
+				if (checkCancelAt <= count) {
+					if (writeMonitor.isCancelled()) {
+						throw new IOException(JGitText
+								.get().packingCancelledDuringObjectsWriting);
+					}
+					checkCancelAt = count + BYTES_TO_WRITE_BEFORE_CANCEL_CHECK;
+				}
+				md.update(copyBuffer, 0, n);
+				pos += n;
+			}
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+		((FileRegionWriter) out).writeRegion(file, position, len);
+	}
+
 	final void writeFileHeader(int version, long objectCount)
 			throws IOException {
 		System.arraycopy(PACK_SIGNATURE, 0, headerBuffer, 0, 4);
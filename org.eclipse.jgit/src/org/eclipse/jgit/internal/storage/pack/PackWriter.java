@@ -1210,6 +1210,20 @@ public State getState() {
 		return state.snapshot();
 	}
 
+	/**
+	 * Estimate the most memory this writer will use to write its pack.
+	 * <p>
+	 * Uses the same model as {@link State#estimateBytesUsed()}, assuming the
+	 * writer reaches the compressing phase. Only meaningful after the objects
+	 * to pack have been selected with {@code preparePack}.
+	 *
+	 * @return estimated peak number of bytes used by this writer.
+	 * @since 5.1
+	 */
+	public long estimatePeakBytesUsed() {
+		return state.peakBytes();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -2277,6 +2291,18 @@ private class MutableState {
 				totalDeltaSearchBytes = 0;
 		}
 
+		long peakBytes() {
+			long objCnt = 0;
+			BlockList<ObjectToPack>[] lists = objectsLists;
+			if (lists != null) {
+				objCnt += lists[OBJ_COMMIT].size();
+				objCnt += lists[OBJ_TREE].size();
+				objCnt += lists[OBJ_BLOB].size();
+				objCnt += lists[OBJ_TAG].size();
+			}
+			return OBJECT_TO_PACK_SIZE * objCnt + totalDeltaSearchBytes;
+		}
+
 		State snapshot() {
 			long objCnt = 0;
 			BlockList<ObjectToPack>[] lists = objectsLists;
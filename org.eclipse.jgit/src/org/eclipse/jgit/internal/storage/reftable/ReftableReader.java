@@ -255,6 +255,24 @@ private BlockReader seek(byte blockType, byte[] key, BlockReader idx,
 			block.seekKey(key);
 			return block;
 		}
+		if (blockType == LOG_BLOCK_TYPE) {
+			// Log blocks are compressed and irregularly sized, so without an
+			// index they cannot be bisected by block size. Scan instead.
+			BlockReader block = readBlock(startPos, endPos);
+			for (;;) {
+				if (block.type() != LOG_BLOCK_TYPE) {
+					return null;
+				}
+				if (block.seekKey(key) <= 0) {
+					return block;
+				}
+				long pos = block.endPosition();
+				if (pos >= endPos) {
+					return null;
+				}
+				block = readBlock(pos, endPos);
+			}
+		}
 		return binarySearch(blockType, key, startPos, endPos);
 	}
 
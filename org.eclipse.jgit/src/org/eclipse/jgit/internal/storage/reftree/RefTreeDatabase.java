@@ -259,12 +259,24 @@ public Map<String, Ref> getRefs(String prefix) throws IOException {
 		if (!prefix.isEmpty() && prefix.charAt(prefix.length() - 1) != '/') {
 			return new HashMap<>(0);
 		}
+		return scanRefs(prefix, prefix);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<Ref> getRefsByPrefix(String prefix) throws IOException {
+		int lastSlash = prefix.lastIndexOf('/');
+		String dir = lastSlash < 0 ? ALL : prefix.substring(0, lastSlash + 1);
+		RefMap refs = scanRefs(dir, prefix);
+		return Collections.unmodifiableList(new ArrayList<>(refs.values()));
+	}
 
+	private RefMap scanRefs(String dir, String prefix) throws IOException {
 		Ref src = bootstrap.exactRef(txnCommitted);
 		Scanner.Result c = refs;
 		if (c == null || !c.refTreeId.equals(idOf(src))) {
-			c = Scanner.scanRefTree(repo, src, prefix, true);
-			if (prefix.isEmpty()) {
+			c = Scanner.scanRefTree(repo, src, dir, true);
+			if (dir.isEmpty()) {
 				refs = c;
 			}
 		}
@@ -119,6 +119,12 @@ public class ConfigConstants {
 	 */
 	public static final String CONFIG_FILTER_SECTION = "filter";
 
+	/**
+	 * The "extensions" section
+	 * @since 5.1
+	 */
+	public static final String CONFIG_EXTENSIONS_SECTION = "extensions";
+
 	/** The "algorithm" key */
 	public static final String CONFIG_KEY_ALGORITHM = "algorithm";
 
@@ -346,6 +352,42 @@ public class ConfigConstants {
 	 */
 	public static final String CONFIG_KEY_TRUSTFOLDERSTAT = "trustfolderstat";
 
+	/**
+	 * The "mmapPackedRefs" key in the "core" section
+	 * @since 5.1
+	 */
+	public static final String CONFIG_KEY_MMAP_PACKED_REFS = "mmapPackedRefs";
+
+	/**
+	 * The "groupCommitRefs" key in the "core" section
+	 * @since 5.1
+	 */
+	public static final String CONFIG_KEY_GROUP_COMMIT_REFS = "groupCommitRefs";
+
+	/**
+	 * The "groupCommitRefsWindow" key in the "core" section
+	 * @since 5.1
+	 */
+	public static final String CONFIG_KEY_GROUP_COMMIT_REFS_WINDOW = "groupCommitRefsWindow";
+
+	/**
+	 * The "segmentedReflog" key in the "core" section
+	 * @since 5.1
+	 */
+	public static final String CONFIG_KEY_SEGMENTED_REFLOG = "segmentedReflog";
+
+	/**
+	 * The "reflogSegmentSize" key in the "core" section
+	 * @since 5.1
+	 */
+	public static final String CONFIG_KEY_REFLOG_SEGMENT_SIZE = "reflogSegmentSize";
+
+	/**
+	 * The "refStorage" key in the "extensions" section
+	 * @since 5.1
+	 */
+	public static final String CONFIG_KEY_REF_STORAGE = "refStorage";
+
 	/**
 	 * The "supportsAtomicFileCreation" key in the "core section"
 	 *
@@ -432,4 +474,16 @@ public class ConfigConstants {
 	 * @since 4.11
 	 */
 	public static final String CONFIG_SECTION_LFS = "lfs";
+
+	/**
+	 * The "concurrenttransfers" key in the "lfs" section
+	 * @since 5.1
+	 */
+	public static final String CONFIG_KEY_CONCURRENT_TRANSFERS = "concurrenttransfers";
+
+	/**
+	 * The "reftable" value of the "refStorage" key in the "extensions" section
+	 * @since 5.1
+	 */
+	public static final String CONFIG_REF_STORAGE_REFTABLE = "reftable";
 }
@@ -84,6 +84,7 @@
 
 import java.text.MessageFormat;
 import java.text.Normalizer;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Locale;
@@ -105,8 +106,10 @@
  * connectivity links between objects are also not verified. Its assumed that
  * the caller can provide both of these validations on its own.
  * <p>
- * Instances of this class are not thread safe, but they may be reused to
- * perform multiple object validations.
+ * Instances of this class may be reused to perform multiple object
+ * validations. Once configured, an instance may also be shared by several
+ * threads validating objects concurrently, as the checks themselves do not
+ * modify the instance.
  */
 public class ObjectChecker {
 	/** Header "tree " */
@@ -190,9 +193,6 @@ public String getMessageId() {
 		}
 	}
 
-	private final MutableObjectId tempId = new MutableObjectId();
-	private final MutableInteger bufPtr = new MutableInteger();
-
 	private EnumSet<ErrorType> errors = EnumSet.allOf(ErrorType.class);
 	private ObjectIdSet skipList;
 	private boolean allowInvalidPersonIdent;
@@ -374,10 +374,10 @@ public void check(@Nullable AnyObjectId id, int objType, byte[] raw)
 		}
 	}
 
-	private boolean checkId(byte[] raw) {
+	private static boolean checkId(byte[] raw, MutableInteger bufPtr) {
 		int p = bufPtr.value;
 		try {
-			tempId.fromString(raw, p);
+			ObjectId.fromString(raw, p);
 		} catch (IllegalArgumentException e) {
 			bufPtr.value = nextLF(raw, p);
 			return false;
@@ -392,8 +392,8 @@ private boolean checkId(byte[] raw) {
 		return false;
 	}
 
-	private void checkPersonIdent(byte[] raw, @Nullable AnyObjectId id)
-			throws CorruptObjectException {
+	private void checkPersonIdent(byte[] raw, MutableInteger bufPtr,
+			@Nullable AnyObjectId id) throws CorruptObjectException {
 		if (allowInvalidPersonIdent) {
 			bufPtr.value = nextLF(raw, bufPtr.value);
 			return;
@@ -469,29 +469,29 @@ public void checkCommit(byte[] raw) throws CorruptObjectException {
 	 */
 	public void checkCommit(@Nullable AnyObjectId id, byte[] raw)
 			throws CorruptObjectException {
-		bufPtr.value = 0;
+		MutableInteger bufPtr = new MutableInteger();
 
-		if (!match(raw, tree)) {
+		if (!match(raw, bufPtr, tree)) {
 			report(MISSING_TREE, id, JGitText.get().corruptObjectNotreeHeader);
-		} else if (!checkId(raw)) {
+		} else if (!checkId(raw, bufPtr)) {
 			report(BAD_TREE_SHA1, id, JGitText.get().corruptObjectInvalidTree);
 		}
 
-		while (match(raw, parent)) {
-			if (!checkId(raw)) {
+		while (match(raw, bufPtr, parent)) {
+			if (!checkId(raw, bufPtr)) {
 				report(BAD_PARENT_SHA1, id,
 						JGitText.get().corruptObjectInvalidParent);
 			}
 		}
 
-		if (match(raw, author)) {
-			checkPersonIdent(raw, id);
+		if (match(raw, bufPtr, author)) {
+			checkPersonIdent(raw, bufPtr, id);
 		} else {
 			report(MISSING_AUTHOR, id, JGitText.get().corruptObjectNoAuthor);
 		}
 
-		if (match(raw, committer)) {
-			checkPersonIdent(raw, id);
+		if (match(raw, bufPtr, committer)) {
+			checkPersonIdent(raw, bufPtr, id);
 		} else {
 			report(MISSING_COMMITTER, id,
 					JGitText.get().corruptObjectNoCommitter);
@@ -523,68 +523,114 @@ public void checkTag(byte[] raw) throws CorruptObjectException {
 	 */
 	public void checkTag(@Nullable AnyObjectId id, byte[] raw)
 			throws CorruptObjectException {
-		bufPtr.value = 0;
-		if (!match(raw, object)) {
+		MutableInteger bufPtr = new MutableInteger();
+		if (!match(raw, bufPtr, object)) {
 			report(MISSING_OBJECT, id,
 					JGitText.get().corruptObjectNoObjectHeader);
-		} else if (!checkId(raw)) {
+		} else if (!checkId(raw, bufPtr)) {
 			report(BAD_OBJECT_SHA1, id,
 					JGitText.get().corruptObjectInvalidObject);
 		}
 
-		if (!match(raw, type)) {
+		if (!match(raw, bufPtr, type)) {
 			report(MISSING_TYPE_ENTRY, id,
 					JGitText.get().corruptObjectNoTypeHeader);
 		}
 		bufPtr.value = nextLF(raw, bufPtr.value);
 
-		if (!match(raw, tag)) {
+		if (!match(raw, bufPtr, tag)) {
 			report(MISSING_TAG_ENTRY, id,
 					JGitText.get().corruptObjectNoTagHeader);
 		}
 		bufPtr.value = nextLF(raw, bufPtr.value);
 
-		if (match(raw, tagger)) {
-			checkPersonIdent(raw, id);
+		if (match(raw, bufPtr, tagger)) {
+			checkPersonIdent(raw, bufPtr, id);
 		}
 	}
 
-	private static boolean duplicateName(final byte[] raw,
-			final int thisNamePos, final int thisNameEnd) {
-		final int sz = raw.length;
-		int nextPtr = thisNameEnd + 1 + Constants.OBJECT_ID_LENGTH;
-		for (;;) {
-			int nextMode = 0;
-			for (;;) {
-				if (nextPtr >= sz)
-					return false;
-				final byte c = raw[nextPtr++];
-				if (' ' == c)
-					break;
-				nextMode <<= 3;
-				nextMode += c - '0';
-			}
-
-			final int nextNamePos = nextPtr;
-			for (;;) {
-				if (nextPtr == sz)
-					return false;
-				final byte c = raw[nextPtr++];
-				if (c == 0)
-					break;
-			}
-			if (nextNamePos + 1 == nextPtr)
+	private static boolean duplicateName(byte[] raw, TreeEntries entries,
+			int thisIdx, int thisNamePos, int thisNameEnd) {
+		for (int i = thisIdx + 1; i < entries.count; i++) {
+			int nextNamePos = entries.namePos(i);
+			int nextNameEnd = entries.nameEnd(i);
+			if (nextNamePos == nextNameEnd)
 				return false;
 
 			int cmp = compareSameName(
 					raw, thisNamePos, thisNameEnd,
-					raw, nextNamePos, nextPtr - 1, nextMode);
+					raw, nextNamePos, nextNameEnd, entries.mode(i));
 			if (cmp < 0)
 				return false;
 			else if (cmp == 0)
 				return true;
+		}
+		return false;
+	}
 
-			nextPtr += Constants.OBJECT_ID_LENGTH;
+	/**
+	 * Name positions and modes of the entries of a tree.
+	 * <p>
+	 * The entries are located once per tree, so that looking for a duplicate
+	 * of each name does not have to decode the entries following it again.
+	 * Like the duplicate check, the scan is lenient about malformed modes and
+	 * stops at the first truncated entry; the main loop of
+	 * {@link ObjectChecker#checkTree(AnyObjectId, byte[])} reports such
+	 * errors.
+	 */
+	private static final class TreeEntries {
+		private int[] entries = new int[3 * 16];
+
+		int count;
+
+		TreeEntries(byte[] raw) {
+			final int sz = raw.length;
+			int ptr = 0;
+			scan: for (;;) {
+				int mode = 0;
+				for (;;) {
+					if (ptr >= sz)
+						break scan;
+					final byte c = raw[ptr++];
+					if (' ' == c)
+						break;
+					mode <<= 3;
+					mode += c - '0';
+				}
+
+				final int namePos = ptr;
+				for (;;) {
+					if (ptr == sz)
+						break scan;
+					final byte c = raw[ptr++];
+					if (c == 0)
+						break;
+				}
+				add(namePos, ptr - 1, mode);
+				ptr += Constants.OBJECT_ID_LENGTH;
+			}
+		}
+
+		private void add(int namePos, int nameEnd, int mode) {
+			int i = 3 * count;
+			if (i == entries.length)
+				entries = Arrays.copyOf(entries, 2 * entries.length);
+			entries[i] = namePos;
+			entries[i + 1] = nameEnd;
+			entries[i + 2] = mode;
+			count++;
+		}
+
+		int namePos(int i) {
+			return entries[3 * i];
+		}
+
+		int nameEnd(int i) {
+			return entries[3 * i + 1];
+		}
+
+		int mode(int i) {
+			return entries[3 * i + 2];
 		}
 	}
 
@@ -619,6 +665,8 @@ public void checkTree(@Nullable AnyObjectId id, byte[] raw)
 		Set<String> normalized = windows || macosx
 				? new HashSet<>()
 				: null;
+		TreeEntries entries = normalized == null ? new TreeEntries(raw) : null;
+		int entryIdx = 0;
 
 		while (ptr < sz) {
 			int thisMode = 0;
@@ -660,7 +708,7 @@ public void checkTree(@Nullable AnyObjectId id, byte[] raw)
 					report(DUPLICATE_ENTRIES, id,
 							JGitText.get().corruptObjectDuplicateEntryNames);
 				}
-			} else if (duplicateName(raw, thisNameB, ptr)) {
+			} else if (duplicateName(raw, entries, entryIdx, thisNameB, ptr)) {
 				report(DUPLICATE_ENTRIES, id,
 						JGitText.get().corruptObjectDuplicateEntryNames);
 			}
@@ -678,6 +726,7 @@ public void checkTree(@Nullable AnyObjectId id, byte[] raw)
 			lastNameB = thisNameB;
 			lastNameE = ptr;
 			lastMode = thisMode;
+			entryIdx++;
 
 			ptr += 1 + OBJECT_ID_LENGTH;
 			if (ptr > sz) {
@@ -1063,7 +1112,8 @@ else if (raw[p] == ' ')
 		return false;
 	}
 
-	private boolean match(byte[] b, byte[] src) {
+	private static boolean match(byte[] b, MutableInteger bufPtr,
+			byte[] src) {
 		int r = RawParseUtils.match(b, bufPtr.value, src);
 		if (r < 0) {
 			return false;
@@ -1110,7 +1160,18 @@ public void checkBlob(byte[] raw) throws CorruptObjectException {
 	}
 
 	private String normalize(byte[] raw, int ptr, int end) {
-		String n = RawParseUtils.decode(raw, ptr, end).toLowerCase(Locale.US);
-		return macosx ? Normalizer.normalize(n, Normalizer.Form.NFC) : n;
+		// Most names are plain ASCII, which needs neither character set
+		// decoding nor Unicode normalization to be compared.
+		char[] ascii = new char[end - ptr];
+		for (int i = ptr; i < end; i++) {
+			if (raw[i] < 0) {
+				String n = RawParseUtils.decode(raw, ptr, end)
+						.toLowerCase(Locale.US);
+				return macosx ? Normalizer.normalize(n, Normalizer.Form.NFC)
+						: n;
+			}
+			ascii[i - ptr] = toLower(raw[i]);
+		}
+		return new String(ascii);
 	}
 }
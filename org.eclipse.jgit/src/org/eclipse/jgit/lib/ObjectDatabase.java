@@ -45,6 +45,7 @@
 
 import java.io.IOException;
 
+import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
 
@@ -104,6 +105,23 @@ public void create() throws IOException {
 	 */
 	public abstract ObjectReader newReader();
 
+	/**
+	 * Create a new quarantine for objects received from an untrusted source.
+	 * <p>
+	 * Objects inserted into the quarantine are not visible to readers of this
+	 * database until {@link ObjectQuarantine#commit(String)} is called.
+	 *
+	 * @return the new quarantine, or null if this database does not support
+	 *         quarantining objects.
+	 * @throws java.io.IOException
+	 *             the quarantine could not be created.
+	 * @since 5.1
+	 */
+	@Nullable
+	public ObjectQuarantine newQuarantine() throws IOException {
+		return null;
+	}
+
 	/**
 	 * Close any resources held by this database.
 	 */
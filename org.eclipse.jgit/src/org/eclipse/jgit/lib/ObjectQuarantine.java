@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.lib;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.annotations.Nullable;
+
+/**
+ * Objects held apart from an {@link ObjectDatabase} until they are accepted.
+ * <p>
+ * Objects received from an untrusted source, such as a pushed pack, can be
+ * inserted into a quarantine and inspected through {@link #newReader()}
+ * without becoming visible to other readers of the database. Once accepted,
+ * {@link #commit(String)} moves them into the database. Closing a quarantine
+ * which was not committed discards its objects.
+ *
+ * @since 5.1
+ */
+public abstract class ObjectQuarantine implements AutoCloseable {
+	/**
+	 * Create an inserter writing into this quarantine.
+	 *
+	 * @return inserter writing into this quarantine.
+	 */
+	public abstract ObjectInserter newInserter();
+
+	/**
+	 * Create a reader for objects of the quarantine and of the database.
+	 * <p>
+	 * The reader remains usable after the quarantine was committed or closed.
+	 * It then only reads objects of the database.
+	 *
+	 * @return reader for objects of the quarantine and of the database.
+	 */
+	public abstract ObjectReader newReader();
+
+	/**
+	 * Move the quarantined objects into the database.
+	 *
+	 * @param lockMessage
+	 *            if not null, the packs moved into the database are protected
+	 *            from garbage collection with this message until the
+	 *            quarantine is closed.
+	 * @throws java.io.IOException
+	 *             the objects could not be moved into the database. Objects
+	 *             already moved stay in the database.
+	 */
+	public abstract void commit(@Nullable String lockMessage)
+			throws IOException;
+
+	/**
+	 * Release the quarantine.
+	 * <p>
+	 * Discards the quarantined objects if the quarantine was not committed,
+	 * and unlocks packs locked by {@link #commit(String)}.
+	 *
+	 * @throws java.io.IOException
+	 *             the quarantine could not be removed.
+	 */
+	@Override
+	public abstract void close() throws IOException;
+}
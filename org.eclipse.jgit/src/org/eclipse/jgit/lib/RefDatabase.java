@@ -47,11 +47,14 @@
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 import org.eclipse.jgit.annotations.NonNull;
 import org.eclipse.jgit.annotations.Nullable;
@@ -414,6 +417,82 @@ public List<Ref> getRefsByPrefix(String prefix) throws IOException {
 		return Collections.unmodifiableList(result);
 	}
 
+	/**
+	 * Iterate over refs whose names start with one of the given prefixes.
+	 * <p>
+	 * Refs are returned sorted by name, and each ref is returned at most once
+	 * even if it matches several prefixes. Callers must close the returned
+	 * scanner.
+	 * <p>
+	 * The default implementation loads one prefix at a time using
+	 * {@link #getRefsByPrefix(String)}. Implementors of {@link RefDatabase}
+	 * should override this method if references can be read incrementally.
+	 *
+	 * @param prefixes
+	 *            strings that names of refs should start with. If no prefix
+	 *            is given, or one of them is {@link #ALL}, all refs are
+	 *            returned.
+	 * @return scanner over the matching refs.
+	 * @throws java.io.IOException
+	 *             the reference space cannot be accessed.
+	 * @since 5.1
+	 */
+	@NonNull
+	public RefScanner scanRefsByPrefix(String... prefixes) throws IOException {
+		Iterator<String> todo = normalizePrefixes(prefixes).iterator();
+		return new RefScanner() {
+			private Iterator<Ref> refs = Collections.emptyIterator();
+
+			private Ref ref;
+
+			@Override
+			public boolean next() throws IOException {
+				while (!refs.hasNext()) {
+					if (!todo.hasNext()) {
+						ref = null;
+						return false;
+					}
+					refs = getRefsByPrefix(todo.next()).iterator();
+				}
+				ref = refs.next();
+				return true;
+			}
+
+			@Override
+			public Ref getRef() {
+				return ref;
+			}
+		};
+	}
+
+	/**
+	 * Sort prefixes and remove those already covered by a shorter prefix.
+	 * <p>
+	 * Scanning the returned prefixes in order yields refs sorted by name, with
+	 * no ref matching more than one prefix.
+	 *
+	 * @param prefixes
+	 *            prefixes to normalize; may be empty to select all refs.
+	 * @return sorted list of disjoint prefixes. Contains only {@link #ALL}
+	 *         if all refs are selected.
+	 * @since 5.1
+	 */
+	@NonNull
+	protected static List<String> normalizePrefixes(String... prefixes) {
+		if (prefixes.length == 0) {
+			return Collections.singletonList(ALL);
+		}
+		List<String> result = new ArrayList<>(prefixes.length);
+		String last = null;
+		for (String p : new TreeSet<>(Arrays.asList(prefixes))) {
+			if (last == null || !p.startsWith(last)) {
+				result.add(p);
+				last = p;
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Check if any refs exist in the ref database.
 	 * <p>
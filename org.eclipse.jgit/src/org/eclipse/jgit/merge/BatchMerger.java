@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.merge;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.UserConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Runs a sequence of in-core merges, cherry-picks and rebases sharing one
+ * object inserter and reader.
+ * <p>
+ * Every operation of the batch reads objects through the same
+ * {@link org.eclipse.jgit.lib.ObjectReader}, created from the batch's inserter
+ * so that objects created by earlier operations are visible to later ones.
+ * Commits are parsed once by a shared {@link org.eclipse.jgit.revwalk.RevWalk}
+ * and merge bases are memoized in a
+ * {@link org.eclipse.jgit.merge.MergeBaseCache}, which may also be shared
+ * across batches.
+ * <p>
+ * Objects created by the batch are only written out by {@link #flush()}.
+ * Commits returned by an operation must not be referenced, e.g. by a ref
+ * update, before the batch was flushed.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @since 5.1
+ */
+public class BatchMerger implements AutoCloseable {
+	/** Number of commit pairs held by the default merge base cache. */
+	private static final int DEFAULT_MERGE_BASE_CACHE_SIZE = 1024;
+
+	/** Status of a single operation of the batch. */
+	public enum Status {
+		/** The trees were merged cleanly and a commit was created. */
+		MERGED,
+
+		/** The merge has conflicts; no commit was created. */
+		CONFLICTING
+	}
+
+	/** Result of a single operation of the batch. */
+	public static class Result {
+		private final Status status;
+
+		private final ObjectId treeId;
+
+		private final ObjectId commitId;
+
+		private final List<String> unmergedPaths;
+
+		private final Map<String, MergeResult<? extends Sequence>> mergeResults;
+
+		Result(ThreeWayMerger merger, @Nullable ObjectId commitId) {
+			this.status = commitId != null ? Status.MERGED : Status.CONFLICTING;
+			this.treeId = commitId != null ? merger.getResultTreeId() : null;
+			this.commitId = commitId;
+			if (merger instanceof ResolveMerger) {
+				ResolveMerger rm = (ResolveMerger) merger;
+				unmergedPaths = rm.getUnmergedPaths();
+				mergeResults = rm.getMergeResults();
+			} else {
+				unmergedPaths = Collections.emptyList();
+				mergeResults = Collections.emptyMap();
+			}
+		}
+
+		/**
+		 * Get the status of the operation.
+		 *
+		 * @return the status of the operation.
+		 */
+		public Status getStatus() {
+			return status;
+		}
+
+		/**
+		 * Get the merged tree.
+		 *
+		 * @return the merged tree; null if the merge has conflicts.
+		 */
+		@Nullable
+		public ObjectId getTreeId() {
+			return treeId;
+		}
+
+		/**
+		 * Get the created commit.
+		 *
+		 * @return the created commit; null if the merge has conflicts.
+		 */
+		@Nullable
+		public ObjectId getCommitId() {
+			return commitId;
+		}
+
+		/**
+		 * Get the paths which could not be merged.
+		 *
+		 * @return the paths which could not be merged; empty if the merge
+		 *         succeeded or the strategy does not report paths.
+		 */
+		public List<String> getUnmergedPaths() {
+			return unmergedPaths;
+		}
+
+		/**
+		 * Get the low-level results of content merges.
+		 *
+		 * @return the results of content merges of conflicting paths, by
+		 *         path.
+		 */
+		public Map<String, MergeResult<? extends Sequence>> getMergeResults() {
+			return mergeResults;
+		}
+
+		@SuppressWarnings("nls")
+		@Override
+		public String toString() {
+			return "Result[" + status + ", " + (commitId != null
+					? commitId.name() : unmergedPaths.toString()) + "]";
+		}
+	}
+
+	private final Config config;
+
+	private final ObjectInserter inserter;
+
+	private final ObjectReader reader;
+
+	private final RevWalk walk;
+
+	private MergeBaseCache mergeBaseCache = new MergeBaseCache(
+			DEFAULT_MERGE_BASE_CACHE_SIZE);
+
+	private ThreeWayMergeStrategy strategy = MergeStrategy.RECURSIVE;
+
+	private PersonIdent committer;
+
+	/**
+	 * Create a batch writing objects to a repository.
+	 *
+	 * @param repo
+	 *            the repository to read and write objects.
+	 */
+	public BatchMerger(Repository repo) {
+		this(repo.newObjectInserter(), repo.getConfig());
+	}
+
+	/**
+	 * Create a batch writing objects through an inserter.
+	 *
+	 * @param inserter
+	 *            the inserter to write objects to; closed by {@link #close()}.
+	 * @param config
+	 *            the repository configuration.
+	 */
+	public BatchMerger(ObjectInserter inserter, Config config) {
+		this.config = config;
+		this.inserter = inserter;
+		reader = inserter.newReader();
+		walk = new RevWalk(reader);
+	}
+
+	/**
+	 * Set the strategy used to merge trees.
+	 *
+	 * @param strategy
+	 *            the strategy; defaults to {@link MergeStrategy#RECURSIVE}.
+	 * @return {@code this}
+	 */
+	public BatchMerger setStrategy(ThreeWayMergeStrategy strategy) {
+		this.strategy = strategy;
+		return this;
+	}
+
+	/**
+	 * Set the cache of merge bases used by the merges of this batch.
+	 *
+	 * @param cache
+	 *            the cache, possibly shared with other batches or mergers of
+	 *            the same repository. Defaults to a cache private to this
+	 *            batch.
+	 * @return {@code this}
+	 */
+	public BatchMerger setMergeBaseCache(MergeBaseCache cache) {
+		mergeBaseCache = cache;
+		return this;
+	}
+
+	/**
+	 * Set the committer of the commits created by the batch.
+	 *
+	 * @param committer
+	 *            the committer; null to use the user from the configuration
+	 *            and the current time for each commit.
+	 * @return {@code this}
+	 */
+	public BatchMerger setCommitter(@Nullable PersonIdent committer) {
+		this.committer = committer;
+		return this;
+	}
+
+	/**
+	 * Merge two commits and create a merge commit.
+	 *
+	 * @param ours
+	 *            the first parent of the merge commit.
+	 * @param theirs
+	 *            the second parent of the merge commit.
+	 * @param message
+	 *            message of the merge commit.
+	 * @return the result of the merge.
+	 * @throws java.io.IOException
+	 *             objects could not be read or written.
+	 */
+	public Result merge(AnyObjectId ours, AnyObjectId theirs, String message)
+			throws IOException {
+		RevCommit o = walk.parseCommit(ours);
+		RevCommit t = walk.parseCommit(theirs);
+		ThreeWayMerger merger = newMerger();
+		if (!merger.merge(false, o, t)) {
+			return new Result(merger, null);
+		}
+		PersonIdent ident = committer();
+		return new Result(merger, commit(merger.getResultTreeId(), ident,
+				message, o, t));
+	}
+
+	/**
+	 * Apply the changes of a commit on top of another commit.
+	 *
+	 * @param onto
+	 *            the parent of the new commit.
+	 * @param commit
+	 *            the commit to pick; must have exactly one parent. Author and
+	 *            message are copied from it.
+	 * @return the result of the cherry-pick.
+	 * @throws java.io.IOException
+	 *             objects could not be read or written.
+	 */
+	public Result cherryPick(AnyObjectId onto, AnyObjectId commit)
+			throws IOException {
+		RevCommit o = walk.parseCommit(onto);
+		RevCommit c = walk.parseCommit(commit);
+		if (c.getParentCount() != 1) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					JGitText.get().canOnlyCherryPickCommitsWithOneParent,
+					c.name(), Integer.valueOf(c.getParentCount())));
+		}
+		RevCommit parent = walk.parseCommit(c.getParent(0));
+		ThreeWayMerger merger = newMerger();
+		merger.setBase(parent.getTree());
+		if (!merger.merge(false, o, c)) {
+			return new Result(merger, null);
+		}
+		return new Result(merger, commit(merger.getResultTreeId(),
+				c.getAuthorIdent(), c.getFullMessage(), o));
+	}
+
+	/**
+	 * Cherry-pick a sequence of commits, each on top of the previous result.
+	 * <p>
+	 * Stops at the first commit that cannot be picked cleanly.
+	 *
+	 * @param onto
+	 *            the commit to rebase onto.
+	 * @param commits
+	 *            the commits to pick, oldest first; each must have exactly
+	 *            one parent.
+	 * @return the results of the commits picked, in order. If the last one is
+	 *         {@link Status#CONFLICTING}, the remaining commits were not
+	 *         picked; otherwise the commit of the last result is the new tip.
+	 * @throws java.io.IOException
+	 *             objects could not be read or written.
+	 */
+	public List<Result> rebase(AnyObjectId onto,
+			List<? extends AnyObjectId> commits) throws IOException {
+		List<Result> results = new ArrayList<>(commits.size());
+		AnyObjectId tip = onto;
+		for (AnyObjectId c : commits) {
+			Result r = cherryPick(tip, c);
+			results.add(r);
+			if (r.getStatus() != Status.MERGED) {
+				break;
+			}
+			tip = r.getCommitId();
+		}
+		return results;
+	}
+
+	/**
+	 * Write all objects created by the batch so far.
+	 *
+	 * @throws java.io.IOException
+	 *             the objects could not be written.
+	 */
+	public void flush() throws IOException {
+		inserter.flush();
+	}
+
+	/**
+	 * Release the resources of the batch. Objects not flushed are discarded.
+	 */
+	@Override
+	public void close() {
+		walk.close();
+		reader.close();
+		inserter.close();
+	}
+
+	private ThreeWayMerger newMerger() {
+		ThreeWayMerger merger = (ThreeWayMerger) strategy
+				.newMerger(new SharedInserter(), config);
+		merger.setMergeBaseCache(mergeBaseCache);
+		return merger;
+	}
+
+	private ObjectId commit(ObjectId tree, PersonIdent author, String message,
+			AnyObjectId... parents) throws IOException {
+		CommitBuilder c = new CommitBuilder();
+		c.setTreeId(tree);
+		c.setParentIds(Arrays.asList(parents));
+		c.setAuthor(author);
+		c.setCommitter(committer());
+		c.setMessage(message);
+		return inserter.insert(c);
+	}
+
+	private PersonIdent committer() {
+		if (committer != null) {
+			return committer;
+		}
+		UserConfig uc = config.get(UserConfig.KEY);
+		return new PersonIdent(uc.getCommitterName(), uc.getCommitterEmail());
+	}
+
+	/**
+	 * Inserter handed to each merger. Objects go to the batch's inserter and
+	 * are read through the batch's reader; neither is flushed or closed by
+	 * the merger.
+	 */
+	private class SharedInserter extends ObjectInserter.Filter {
+		@Override
+		protected ObjectInserter delegate() {
+			return inserter;
+		}
+
+		@Override
+		public ObjectReader newReader() {
+			return new ObjectReader.Filter() {
+				@Override
+				protected ObjectReader delegate() {
+					return reader;
+				}
+
+				@Override
+				public ObjectInserter getCreatedFromInserter() {
+					return SharedInserter.this;
+				}
+
+				@Override
+				public void close() {
+					// The reader is closed with the batch.
+				}
+			};
+		}
+
+		@Override
+		public void flush() throws IOException {
+			// Flushed by the batch.
+		}
+
+		@Override
+		public void close() {
+			// Closed with the batch.
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.eclipse.jgit.merge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Memoizes the merge bases of pairs of commits.
+ * <p>
+ * Commits are immutable, so the merge bases of two commits never change and
+ * entries never need to be invalidated. A cache may be shared by any number of
+ * {@link org.eclipse.jgit.merge.Merger}s of the same repository, including
+ * mergers running concurrently, see
+ * {@link org.eclipse.jgit.merge.Merger#setMergeBaseCache(MergeBaseCache)}.
+ * When full, the least recently used pairs are evicted.
+ *
+ * @since 5.1
+ */
+public class MergeBaseCache {
+	/** Entries in access order, least recently used first. */
+	private final LinkedHashMap<Key, ObjectId[]> map = new LinkedHashMap<>(16,
+			0.75f, true);
+
+	private final int maxEntries;
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param maxEntries
+	 *            maximum number of commit pairs held by the cache.
+	 */
+	public MergeBaseCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Get the merge bases of two commits.
+	 *
+	 * @param a
+	 *            one commit.
+	 * @param b
+	 *            the other commit; the order of the two does not matter.
+	 * @return the merge bases; empty if the commits have none; null if the
+	 *         pair is not cached.
+	 */
+	@Nullable
+	public List<ObjectId> get(AnyObjectId a, AnyObjectId b) {
+		ObjectId[] bases;
+		synchronized (this) {
+			bases = map.get(new Key(a, b));
+		}
+		if (bases == null) {
+			return null;
+		}
+		return Collections.unmodifiableList(Arrays.asList(bases));
+	}
+
+	/**
+	 * Store the merge bases of two commits.
+	 *
+	 * @param a
+	 *            one commit.
+	 * @param b
+	 *            the other commit; the order of the two does not matter.
+	 * @param bases
+	 *            all merge bases of the two commits.
+	 */
+	public void put(AnyObjectId a, AnyObjectId b,
+			Collection<? extends AnyObjectId> bases) {
+		List<ObjectId> ids = new ArrayList<>(bases.size());
+		for (AnyObjectId id : bases) {
+			ids.add(id.copy());
+		}
+		Key key = new Key(a, b);
+		synchronized (this) {
+			map.put(key, ids.toArray(new ObjectId[0]));
+			while (maxEntries < map.size()) {
+				map.remove(map.keySet().iterator().next());
+			}
+		}
+	}
+
+	/**
+	 * Get the number of commit pairs in the cache.
+	 *
+	 * @return the number of commit pairs in the cache.
+	 */
+	public synchronized int size() {
+		return map.size();
+	}
+
+	private static final class Key {
+		private final ObjectId a;
+
+		private final ObjectId b;
+
+		Key(AnyObjectId x, AnyObjectId y) {
+			if (x.compareTo(y) <= 0) {
+				a = x.copy();
+				b = y.copy();
+			} else {
+				a = y.copy();
+				b = x.copy();
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return a.hashCode() * 31 + b.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return a.equals(k.a) && b.equals(k.b);
+		}
+	}
+}
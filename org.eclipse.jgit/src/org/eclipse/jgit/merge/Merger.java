@@ -46,6 +46,8 @@
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
@@ -107,6 +109,8 @@ public abstract class Merger {
 	 */
 	protected ProgressMonitor monitor = NullProgressMonitor.INSTANCE;
 
+	private MergeBaseCache mergeBaseCache;
+
 	/**
 	 * Create a new merge instance for a repository.
 	 *
@@ -299,22 +303,75 @@ public boolean merge(boolean flush, AnyObjectId... tips)
 	 */
 	protected RevCommit getBaseCommit(RevCommit a, RevCommit b)
 			throws IncorrectObjectTypeException, IOException {
-		walk.reset();
-		walk.setRevFilter(RevFilter.MERGE_BASE);
-		walk.markStart(a);
-		walk.markStart(b);
-		final RevCommit base = walk.next();
-		if (base == null)
+		List<RevCommit> bases = getMergeBases(a, b);
+		if (bases.isEmpty())
 			return null;
-		final RevCommit base2 = walk.next();
-		if (base2 != null) {
+		if (bases.size() > 1) {
 			throw new NoMergeBaseException(
 					MergeBaseFailureReason.MULTIPLE_MERGE_BASES_NOT_SUPPORTED,
 					MessageFormat.format(
 					JGitText.get().multipleMergeBasesFor, a.name(), b.name(),
-					base.name(), base2.name()));
+					bases.get(0).name(), bases.get(1).name()));
+		}
+		return bases.get(0);
+	}
+
+	/**
+	 * Get all merge bases of two commits.
+	 * <p>
+	 * If a {@link #setMergeBaseCache(MergeBaseCache) merge base cache} is set,
+	 * the bases are taken from the cache when present, and stored in it after
+	 * computing them otherwise.
+	 *
+	 * @param a
+	 *            the first commit.
+	 * @param b
+	 *            the second commit.
+	 * @return the merge bases, parsed by {@link #walk}; empty if the commits
+	 *         have no common ancestor.
+	 * @throws java.io.IOException
+	 *             objects are missing or cannot be read.
+	 * @since 5.1
+	 */
+	protected List<RevCommit> getMergeBases(RevCommit a, RevCommit b)
+			throws IOException {
+		MergeBaseCache cache = mergeBaseCache;
+		if (cache != null) {
+			List<ObjectId> ids = cache.get(a, b);
+			if (ids != null) {
+				List<RevCommit> bases = new ArrayList<>(ids.size());
+				for (ObjectId id : ids) {
+					bases.add(walk.parseCommit(id));
+				}
+				return bases;
+			}
 		}
-		return base;
+
+		List<RevCommit> bases = new ArrayList<>();
+		walk.reset();
+		walk.setRevFilter(RevFilter.MERGE_BASE);
+		walk.markStart(a);
+		walk.markStart(b);
+		RevCommit c;
+		while ((c = walk.next()) != null)
+			bases.add(c);
+		if (cache != null)
+			cache.put(a, b, bases);
+		return bases;
+	}
+
+	/**
+	 * Set the cache of merge bases used by {@link #getMergeBases}.
+	 * <p>
+	 * The cache may be shared by mergers of the same repository to avoid
+	 * walking history again for pairs of commits merged before.
+	 *
+	 * @param cache
+	 *            the cache; null to always compute merge bases.
+	 * @since 5.1
+	 */
+	public void setMergeBaseCache(@Nullable MergeBaseCache cache) {
+		mergeBaseCache = cache;
 	}
 
 	/**
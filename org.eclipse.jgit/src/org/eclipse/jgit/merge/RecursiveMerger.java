@@ -67,7 +67,6 @@
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.AbstractTreeIterator;
 import org.eclipse.jgit.treewalk.EmptyTreeIterator;
 import org.eclipse.jgit.treewalk.WorkingTreeIterator;
@@ -164,15 +163,7 @@ protected RevCommit getBaseCommit(RevCommit a, RevCommit b)
 	 */
 	protected RevCommit getBaseCommit(RevCommit a, RevCommit b, int callDepth)
 			throws IOException {
-		ArrayList<RevCommit> baseCommits = new ArrayList<>();
-		walk.reset();
-		walk.setRevFilter(RevFilter.MERGE_BASE);
-		walk.markStart(a);
-		walk.markStart(b);
-		RevCommit c;
-		while ((c = walk.next()) != null)
-			baseCommits.add(c);
-
+		List<RevCommit> baseCommits = getMergeBases(a, b);
 		if (baseCommits.isEmpty())
 			return null;
 		if (baseCommits.size() == 1)
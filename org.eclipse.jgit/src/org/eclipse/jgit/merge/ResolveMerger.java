@@ -58,16 +58,25 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.attributes.Attributes;
 import org.eclipse.jgit.diff.DiffAlgorithm;
 import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
@@ -297,6 +306,19 @@ public enum MergeFailureReason {
 	 */
 	private int inCoreLimit;
 
+	/**
+	 * Maximum size of the texts held by content merges running on the
+	 * {@link #executor} before the earliest one is waited for.
+	 */
+	private static final long MAX_PENDING_BYTES = 64 << 20;
+
+	private Executor executor;
+
+	/** Content merges of an in-core merge not yet added to the index. */
+	private final Deque<PendingMerge> pendingMerges = new ArrayDeque<>();
+
+	private long pendingBytes;
+
 	private static MergeAlgorithm getMergeAlgorithm(Config config) {
 		SupportedAlgorithm diffAlg = config.getEnum(
 				CONFIG_DIFF_SECTION, null, CONFIG_KEY_ALGORITHM,
@@ -360,6 +382,7 @@ protected ResolveMerger(Repository local) {
 	protected ResolveMerger(ObjectInserter inserter, Config config) {
 		super(inserter);
 		mergeAlgorithm = getMergeAlgorithm(config);
+		inCoreLimit = getInCoreLimit(config);
 		commitNames = defaultCommitNames();
 		inCore = true;
 		implicitDirCache = false;
@@ -448,13 +471,21 @@ protected void cleanUp() throws NoWorkTreeException,
 	 */
 	private DirCacheEntry add(byte[] path, CanonicalTreeParser p, int stage,
 			long lastMod, long len) {
+		DirCacheEntry e = newEntry(path, p, stage);
+		if (e != null) {
+			e.setLastModified(lastMod);
+			e.setLength(len);
+			builder.add(e);
+		}
+		return e;
+	}
+
+	private static DirCacheEntry newEntry(byte[] path, CanonicalTreeParser p,
+			int stage) {
 		if (p != null && !p.getEntryFileMode().equals(FileMode.TREE)) {
 			DirCacheEntry e = new DirCacheEntry(path, stage);
 			e.setFileMode(p.getEntryFileMode());
 			e.setObjectId(p.getEntryObjectId());
-			e.setLastModified(lastMod);
-			e.setLength(len);
-			builder.add(e);
 			return e;
 		}
 		return null;
@@ -720,6 +751,12 @@ protected boolean processEntry(CanonicalTreeParser base,
 				return false;
 			}
 
+			if (executor != null && inCore) {
+				startContentMerge(base, ours, theirs, attributes,
+						ignoreConflicts);
+				return true;
+			}
+
 			MergeResult<RawText> result = contentMerge(base, ours, theirs,
 					attributes);
 			if (ignoreConflicts) {
@@ -778,24 +815,253 @@ private MergeResult<RawText> contentMerge(CanonicalTreeParser base,
 			CanonicalTreeParser ours, CanonicalTreeParser theirs,
 			Attributes attributes)
 			throws IOException {
-		RawText baseText;
-		RawText ourText;
-		RawText theirsText;
+		return contentMerge(loadTexts(base, ours, theirs, attributes));
+	}
 
+	/**
+	 * Loads the three texts of a content merge.
+	 *
+	 * @param base
+	 * @param ours
+	 * @param theirs
+	 * @param attributes
+	 * @return base, ours and theirs text; null if any of them is binary
+	 * @throws IOException
+	 */
+	private RawText[] loadTexts(CanonicalTreeParser base,
+			CanonicalTreeParser ours, CanonicalTreeParser theirs,
+			Attributes attributes) throws IOException {
 		try {
-			baseText = base == null ? RawText.EMPTY_TEXT : getRawText(
-							base.getEntryObjectId(), attributes);
-			ourText = ours == null ? RawText.EMPTY_TEXT : getRawText(
-							ours.getEntryObjectId(), attributes);
-			theirsText = theirs == null ? RawText.EMPTY_TEXT : getRawText(
-							theirs.getEntryObjectId(), attributes);
+			return new RawText[] {
+					base == null ? RawText.EMPTY_TEXT : getRawText(
+							base.getEntryObjectId(), attributes),
+					ours == null ? RawText.EMPTY_TEXT : getRawText(
+							ours.getEntryObjectId(), attributes),
+					theirs == null ? RawText.EMPTY_TEXT : getRawText(
+							theirs.getEntryObjectId(), attributes) };
 		} catch (BinaryBlobException e) {
+			return null;
+		}
+	}
+
+	private MergeResult<RawText> contentMerge(RawText[] texts) {
+		if (texts == null) {
 			MergeResult<RawText> r = new MergeResult<>(Collections.<RawText>emptyList());
 			r.setContainsConflicts(true);
 			return r;
 		}
-		return (mergeAlgorithm.merge(RawTextComparator.DEFAULT, baseText,
-				ourText, theirsText));
+		return (mergeAlgorithm.merge(RawTextComparator.DEFAULT, texts[0],
+				texts[1], texts[2]));
+	}
+
+	/**
+	 * Starts the content merge of the current path on the {@link #executor}.
+	 * The texts are loaded by the calling thread; only the merge algorithm
+	 * runs on the executor. The result is added to the index by
+	 * {@link #finishContentMerge(PendingMerge)}, in the order the paths were
+	 * walked.
+	 *
+	 * @param base
+	 * @param ours
+	 * @param theirs
+	 * @param attributes
+	 * @param ignoreConflicts
+	 * @throws IOException
+	 */
+	private void startContentMerge(CanonicalTreeParser base,
+			CanonicalTreeParser ours, CanonicalTreeParser theirs,
+			Attributes attributes, boolean ignoreConflicts)
+			throws IOException {
+		PendingMerge p = new PendingMerge(base, ours, theirs, attributes,
+				ignoreConflicts);
+		RawText[] texts = loadTexts(base, ours, theirs, attributes);
+		if (texts != null) {
+			for (RawText t : texts) {
+				p.size += t.getRawContent().length;
+			}
+		}
+		while (!pendingMerges.isEmpty()
+				&& MAX_PENDING_BYTES < pendingBytes + p.size) {
+			finishContentMerge(pendingMerges.removeFirst());
+		}
+
+		p.result = new FutureTask<>(() -> contentMerge(texts));
+		if (texts == null) {
+			p.result.run();
+		} else {
+			try {
+				executor.execute(p.result);
+			} catch (RejectedExecutionException e) {
+				p.result.run();
+			}
+		}
+		pendingMerges.addLast(p);
+		pendingBytes += p.size;
+
+		if (!ignoreConflicts) {
+			// Reserve the position; removed again if the merge is clean.
+			p.unmergedIndex = unmergedPaths.size();
+			unmergedPaths.add(null);
+		}
+		modifiedFiles.add(p.path);
+	}
+
+	/**
+	 * Waits for the content merge and adds its result to the index, the same
+	 * way {@link #updateIndex} does for an in-core merge.
+	 *
+	 * @param p
+	 *            the content merge.
+	 * @throws IOException
+	 */
+	private void finishContentMerge(PendingMerge p) throws IOException {
+		pendingBytes -= p.size;
+		MergeResult<RawText> result;
+		try {
+			result = p.result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+		if (p.ignoreConflicts) {
+			result.setContainsConflicts(false);
+		}
+
+		if (result.containsConflicts()) {
+			for (DirCacheEntry e : p.stages) {
+				if (e != null) {
+					builder.add(e);
+				}
+			}
+			mergeResults.put(p.path, result);
+			unmergedPaths.set(p.unmergedIndex, p.path);
+			return;
+		}
+
+		TemporaryBuffer rawMerged = null;
+		try {
+			rawMerged = doMerge(result);
+			DirCacheEntry dce = new DirCacheEntry(p.path);
+			int newMode = mergeFileModes(p.modeB, p.modeO, p.modeT);
+			dce.setFileMode(newMode == FileMode.MISSING.getBits()
+					? FileMode.REGULAR_FILE : FileMode.fromBits(newMode));
+			dce.setObjectId(insertMergeResult(rawMerged, p.attributes));
+			builder.add(dce);
+		} finally {
+			if (rawMerged != null) {
+				rawMerged.destroy();
+			}
+		}
+	}
+
+	/**
+	 * Waits for all pending content merges and adds their results to the
+	 * index.
+	 *
+	 * @throws IOException
+	 */
+	private void finishContentMerges() throws IOException {
+		if (executor == null || !inCore) {
+			return;
+		}
+		while (!pendingMerges.isEmpty()) {
+			finishContentMerge(pendingMerges.removeFirst());
+		}
+		unmergedPaths.removeIf(Objects::isNull);
+	}
+
+	private void cancelContentMerges() {
+		for (PendingMerge p : pendingMerges) {
+			p.result.cancel(false);
+		}
+		pendingMerges.clear();
+		pendingBytes = 0;
+	}
+
+	/**
+	 * Merges the current subtree without walking into it if two of the three
+	 * trees are identical: their result is the third tree. Only done for
+	 * in-core merges without index entries below the subtree, where no entry
+	 * needs to be checked against the index or working tree.
+	 *
+	 * @param treeWalk
+	 *            walk positioned on a subtree.
+	 * @return whether the subtree was merged.
+	 * @throws IOException
+	 */
+	private boolean mergeTrivialSubtree(TreeWalk treeWalk) throws IOException {
+		if (!inCore || treeWalk.getTreeCount() > T_FILE
+				|| treeWalk.getRawMode(T_INDEX) != 0) {
+			return false;
+		}
+		int modeB = treeWalk.getRawMode(T_BASE);
+		int modeO = treeWalk.getRawMode(T_OURS);
+		int modeT = treeWalk.getRawMode(T_THEIRS);
+		if (!FileMode.TREE.equals(modeO) || !FileMode.TREE.equals(modeT)) {
+			return false;
+		}
+		boolean baseIsTree = FileMode.TREE.equals(modeB);
+		if (treeWalk.idEqual(T_OURS, T_THEIRS)
+				|| (baseIsTree && treeWalk.idEqual(T_BASE, T_THEIRS))) {
+			builder.addTree(treeWalk.getRawPath(), DirCacheEntry.STAGE_0,
+					reader, treeWalk.getObjectId(T_OURS));
+			return true;
+		}
+		if (baseIsTree && treeWalk.idEqual(T_BASE, T_OURS)) {
+			builder.addTree(treeWalk.getRawPath(), DirCacheEntry.STAGE_0,
+					reader, treeWalk.getObjectId(T_THEIRS));
+			addTheirChanges(treeWalk.getRawPath(),
+					treeWalk.getObjectId(T_OURS),
+					treeWalk.getObjectId(T_THEIRS));
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Records the paths of a subtree only changed by theirs in
+	 * {@link #toBeCheckedOut} and {@link #toBeDeleted}, as
+	 * {@link #processEntry} does when walking into such a subtree.
+	 *
+	 * @param path
+	 *            path of the subtree.
+	 * @param ours
+	 *            our tree, identical to the base tree.
+	 * @param theirs
+	 *            their tree.
+	 * @throws IOException
+	 */
+	private void addTheirChanges(byte[] path, ObjectId ours, ObjectId theirs)
+			throws IOException {
+		try (NameConflictTreeWalk w = new NameConflictTreeWalk(db, reader)) {
+			w.addTree(new CanonicalTreeParser(path, reader, ours));
+			w.addTree(new CanonicalTreeParser(path, reader, theirs));
+			w.setFilter(TreeFilter.ANY_DIFF);
+			while (w.next()) {
+				int modeO = w.getRawMode(0);
+				int modeT = w.getRawMode(1);
+				if (nonTree(modeT)) {
+					DirCacheEntry e = new DirCacheEntry(w.getRawPath(),
+							DirCacheEntry.STAGE_0);
+					e.setFileMode(w.getFileMode(1));
+					e.setObjectId(w.getObjectId(1));
+					toBeCheckedOut.put(w.getPathString(), e);
+				} else if (modeT == 0 || modeT != modeO) {
+					toBeDeleted.add(w.getPathString());
+				}
+				if (w.isSubtree()) {
+					w.enterSubtree();
+				}
+			}
+		}
 	}
 
 	private boolean isIndexDirty() {
@@ -1136,6 +1402,25 @@ public void setWorkingTreeIterator(WorkingTreeIterator workingTreeIterator) {
 		this.workingTreeIterator = workingTreeIterator;
 	}
 
+	/**
+	 * Set the executor used to run the content merges of an in-core merge.
+	 * <p>
+	 * With an executor, the merge algorithm runs concurrently for the files
+	 * needing a content merge while the trees are still being walked. The
+	 * merged contents are inserted and added to the index by the calling
+	 * thread, in the order of the paths, so the result is identical to
+	 * merging sequentially. Merges touching the index or working tree always
+	 * merge file contents sequentially.
+	 *
+	 * @param executor
+	 *            executor to run content merges on; null to run them on the
+	 *            calling thread.
+	 * @since 5.1
+	 */
+	public void setExecutor(@Nullable Executor executor) {
+		this.executor = executor;
+	}
+
 
 	/**
 	 * The resolve conflict way of three way merging
@@ -1225,6 +1510,10 @@ protected boolean mergeTrees(AbstractTreeIterator baseTree,
 
 	/**
 	 * Process the given TreeWalk's entries.
+	 * <p>
+	 * For in-core merges, a subtree whose result is one of the three trees
+	 * because the other two are identical is added to the index as a whole,
+	 * without calling {@link #processEntry} for the paths below it.
 	 *
 	 * @param treeWalk
 	 *            The walk to iterate over.
@@ -1240,22 +1529,70 @@ protected boolean mergeTreeWalk(TreeWalk treeWalk, boolean ignoreConflicts)
 		boolean hasWorkingTreeIterator = tw.getTreeCount() > T_FILE;
 		boolean hasAttributeNodeProvider = treeWalk
 				.getAttributesNodeProvider() != null;
-		while (treeWalk.next()) {
-			if (!processEntry(
-					treeWalk.getTree(T_BASE, CanonicalTreeParser.class),
-					treeWalk.getTree(T_OURS, CanonicalTreeParser.class),
-					treeWalk.getTree(T_THEIRS, CanonicalTreeParser.class),
-					treeWalk.getTree(T_INDEX, DirCacheBuildIterator.class),
-					hasWorkingTreeIterator ? treeWalk.getTree(T_FILE,
-							WorkingTreeIterator.class) : null,
-					ignoreConflicts, hasAttributeNodeProvider
-							? treeWalk.getAttributes() : new Attributes())) {
-				cleanUp();
-				return false;
+		try {
+			while (treeWalk.next()) {
+				if (treeWalk.isSubtree() && mergeTrivialSubtree(treeWalk))
+					continue;
+				if (!processEntry(
+						treeWalk.getTree(T_BASE, CanonicalTreeParser.class),
+						treeWalk.getTree(T_OURS, CanonicalTreeParser.class),
+						treeWalk.getTree(T_THEIRS, CanonicalTreeParser.class),
+						treeWalk.getTree(T_INDEX, DirCacheBuildIterator.class),
+						hasWorkingTreeIterator ? treeWalk.getTree(T_FILE,
+								WorkingTreeIterator.class) : null,
+						ignoreConflicts, hasAttributeNodeProvider
+								? treeWalk.getAttributes() : new Attributes())) {
+					finishContentMerges();
+					cleanUp();
+					return false;
+				}
+				if (treeWalk.isSubtree() && enterSubtree)
+					treeWalk.enterSubtree();
 			}
-			if (treeWalk.isSubtree() && enterSubtree)
-				treeWalk.enterSubtree();
+			finishContentMerges();
+			return true;
+		} finally {
+			cancelContentMerges();
+		}
+	}
+
+	/** Content merge of one path, possibly still running. */
+	private final class PendingMerge {
+		final String path;
+
+		final int modeB;
+
+		final int modeO;
+
+		final int modeT;
+
+		/** Base, ours and theirs entries to add if the merge conflicts. */
+		final DirCacheEntry[] stages;
+
+		final Attributes attributes;
+
+		final boolean ignoreConflicts;
+
+		FutureTask<MergeResult<RawText>> result;
+
+		long size;
+
+		int unmergedIndex;
+
+		PendingMerge(CanonicalTreeParser base, CanonicalTreeParser ours,
+				CanonicalTreeParser theirs, Attributes attributes,
+				boolean ignoreConflicts) {
+			path = tw.getPathString();
+			modeB = tw.getRawMode(T_BASE);
+			modeO = tw.getRawMode(T_OURS);
+			modeT = tw.getRawMode(T_THEIRS);
+			byte[] rawPath = tw.getRawPath();
+			stages = new DirCacheEntry[] {
+					newEntry(rawPath, base, DirCacheEntry.STAGE_1),
+					newEntry(rawPath, ours, DirCacheEntry.STAGE_2),
+					newEntry(rawPath, theirs, DirCacheEntry.STAGE_3) };
+			this.attributes = attributes;
+			this.ignoreConflicts = ignoreConflicts;
 		}
-		return true;
 	}
 }
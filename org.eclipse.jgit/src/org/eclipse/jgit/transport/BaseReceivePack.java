@@ -67,6 +67,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jgit.annotations.Nullable;
@@ -84,17 +85,14 @@
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectIdSubclassMap;
 import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectQuarantine;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.ObjectWalk;
-import org.eclipse.jgit.revwalk.RevBlob;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.jgit.revwalk.RevObject;
-import org.eclipse.jgit.revwalk.RevSort;
-import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.PacketLineIn.InputOverLimitIOException;
 import org.eclipse.jgit.transport.ReceiveCommand.Result;
@@ -148,8 +146,20 @@ public Set<String> getCapabilities() {
 	/** Database we write the stored objects into. */
 	private final Repository db;
 
-	/** Revision traversal support over {@link #db}. */
-	private final RevWalk walk;
+	/**
+	 * Revision traversal support over {@link #db}, or over {@link #quarantine}
+	 * once a pack was received into it.
+	 */
+	private RevWalk walk;
+
+	/** Should received objects be quarantined until accepted? */
+	private boolean quarantineObjects;
+
+	/** Holds the received objects, if {@link #quarantineObjects}. */
+	private ObjectQuarantine quarantine;
+
+	/** Reader of {@link #walk} while it reads {@link #quarantine}. */
+	private ObjectReader quarantineReader;
 
 	/**
 	 * Is the client connection a bi-directional socket or pipe?
@@ -170,6 +180,12 @@ public Set<String> getCapabilities() {
 	/** Should an incoming transfer validate objects? */
 	private ObjectChecker objectChecker;
 
+	/** Runs {@link #objectChecker} concurrently with parsing, if set. */
+	private Executor objectCheckerExecutor;
+
+	/** Proves the received objects are connected to the repository. */
+	private ConnectivityChecker connectivityChecker;
+
 	/** Should an incoming transfer permit create requests? */
 	private boolean allowCreates;
 
@@ -327,6 +343,10 @@ protected BaseReceivePack(Repository into) {
 		advertisedHaves = new HashSet<>();
 		clientShallowCommits = new HashSet<>();
 		signedPushConfig = rc.signedPush;
+		quarantineObjects = rc.quarantine;
+		connectivityChecker = rc.bitmapConnectivityCheck
+				? new BitmapConnectivityChecker()
+				: new FullConnectivityChecker();
 	}
 
 	/** Configuration for receive operations. */
@@ -339,6 +359,8 @@ protected static class ReceiveConfig {
 		final long maxCommandBytes;
 		final long maxDiscardBytes;
 		final SignedPushConfig signedPush;
+		final boolean bitmapConnectivityCheck;
+		final boolean quarantine;
 
 		ReceiveConfig(Config config) {
 			allowCreates = true;
@@ -356,6 +378,9 @@ protected static class ReceiveConfig {
 					"maxCommandDiscardBytes", //$NON-NLS-1$
 					-1);
 			signedPush = SignedPushConfig.KEY.parse(config);
+			bitmapConnectivityCheck = config.getBoolean("receive", //$NON-NLS-1$
+					"bitmapConnectivityCheck", false); //$NON-NLS-1$
+			quarantine = config.getBoolean("receive", "quarantine", false); //$NON-NLS-1$ //$NON-NLS-2$
 		}
 	}
 
@@ -423,8 +448,12 @@ public final Repository getRepository() {
 
 	/**
 	 * Get the RevWalk instance used by this connection.
+	 * <p>
+	 * If received objects are quarantined, objects of the received pack can
+	 * only be read through this walk until the commands are executed.
 	 *
 	 * @return the RevWalk instance used by this connection.
+	 * @see #setQuarantineObjects(boolean)
 	 */
 	public final RevWalk getRevWalk() {
 		return walk;
@@ -611,6 +640,78 @@ public void setObjectChecker(ObjectChecker impl) {
 		objectChecker = impl;
 	}
 
+	/**
+	 * Set the executor validating received objects.
+	 * <p>
+	 * If set, objects are checked by the configured
+	 * {@link org.eclipse.jgit.lib.ObjectChecker} on this executor while the
+	 * pack is still being parsed. All checks complete before the pack is
+	 * added to the repository.
+	 *
+	 * @param executor
+	 *            executor to run object checks on; null to check objects on
+	 *            the thread receiving the pack.
+	 * @see PackParser#setObjectCheckerExecutor(Executor)
+	 * @since 5.1
+	 */
+	public void setObjectCheckerExecutor(@Nullable Executor executor) {
+		objectCheckerExecutor = executor;
+	}
+
+	/**
+	 * Whether received objects are quarantined until accepted.
+	 *
+	 * @return {@code true} if received objects are quarantined until
+	 *         accepted.
+	 * @since 5.1
+	 */
+	public boolean isQuarantineObjects() {
+		return quarantineObjects;
+	}
+
+	/**
+	 * Whether to quarantine received objects until they are accepted.
+	 * <p>
+	 * If enabled and supported by the object database, the received pack is
+	 * kept out of the repository while commands are validated and the
+	 * connectivity check and {@link PreReceiveHook}s run. Its objects can be
+	 * read through {@link #getRevWalk()} only. The pack is moved into the
+	 * repository just before the references are updated, and discarded if
+	 * all commands are rejected. Defaults to {@code receive.quarantine}.
+	 *
+	 * @param quarantine
+	 *            {@code true} to quarantine received objects.
+	 * @since 5.1
+	 */
+	public void setQuarantineObjects(boolean quarantine) {
+		quarantineObjects = quarantine;
+	}
+
+	/**
+	 * Get the checker proving the connectivity of received objects.
+	 *
+	 * @return the checker proving the connectivity of received objects.
+	 * @since 5.1
+	 */
+	public ConnectivityChecker getConnectivityChecker() {
+		return connectivityChecker;
+	}
+
+	/**
+	 * Set the checker proving the connectivity of received objects.
+	 * <p>
+	 * Defaults to a {@link BitmapConnectivityChecker} if
+	 * {@code receive.bitmapConnectivityCheck} is set, otherwise to a
+	 * {@link FullConnectivityChecker}.
+	 *
+	 * @param checker
+	 *            the checker to use.
+	 * @since 5.1
+	 */
+	public void setConnectivityChecker(ConnectivityChecker checker) {
+		connectivityChecker = checker;
+	}
+
 	/**
 	 * Whether the client can request refs to be created.
 	 *
@@ -1201,6 +1302,11 @@ protected void unlockPack() throws IOException {
 			packLock.unlock();
 			packLock = null;
 		}
+		if (quarantine != null) {
+			// Discards the received objects, unless they were committed.
+			quarantine.close();
+			quarantine = null;
+		}
 	}
 
 	/**
@@ -1466,11 +1572,11 @@ private void receivePack() throws IOException {
 		if (sideBand && !quiet)
 			resolving = new SideBandProgressMonitor(msgOut);
 
-		try (ObjectInserter ins = db.newObjectInserter()) {
-			String lockMsg = "jgit receive-pack"; //$NON-NLS-1$
-			if (getRefLogIdent() != null)
-				lockMsg += " from " + getRefLogIdent().toExternalString(); //$NON-NLS-1$
+		if (quarantineObjects)
+			quarantine = db.getObjectDatabase().newQuarantine();
 
+		try (ObjectInserter ins = quarantine != null ? quarantine.newInserter()
+				: db.newObjectInserter()) {
 			parser = ins.newPackParser(packInputStream());
 			parser.setAllowThin(true);
 			parser.setNeedNewObjectIds(checkReferencedIsReachable);
@@ -1479,7 +1585,9 @@ private void receivePack() throws IOException {
 					&& !isExpectDataAfterPackFooter());
 			parser.setExpectDataAfterPackFooter(isExpectDataAfterPackFooter());
 			parser.setObjectChecker(objectChecker);
-			parser.setLockMessage(lockMsg);
+			parser.setObjectCheckerExecutor(objectCheckerExecutor);
+			if (quarantine == null)
+				parser.setLockMessage(lockMessage());
 			parser.setMaxObjectSizeLimit(maxObjectSizeLimit);
 			packLock = parser.parse(receiving, resolving);
 			packSize = Long.valueOf(parser.getPackSize());
@@ -1487,10 +1595,25 @@ private void receivePack() throws IOException {
 			ins.flush();
 		}
 
+		if (quarantine != null) {
+			// Commands, the connectivity check and the hooks have to see the
+			// quarantined objects.
+			walk.close();
+			quarantineReader = quarantine.newReader();
+			walk = new RevWalk(quarantineReader);
+		}
+
 		if (timeoutIn != null)
 			timeoutIn.setTimeout(timeout * 1000);
 	}
 
+	private String lockMessage() {
+		String lockMsg = "jgit receive-pack"; //$NON-NLS-1$
+		if (getRefLogIdent() != null)
+			lockMsg += " from " + getRefLogIdent().toExternalString(); //$NON-NLS-1$
+		return lockMsg;
+	}
+
 	private InputStream packInputStream() {
 		InputStream packIn = rawIn;
 		if (maxPackSizeLimit >= 0) {
@@ -1526,70 +1649,14 @@ private void checkConnectivity() throws IOException {
 		}
 		parser = null;
 
-		try (ObjectWalk ow = new ObjectWalk(db)) {
-			if (baseObjects != null) {
-				ow.sort(RevSort.TOPO);
-				if (!baseObjects.isEmpty())
-					ow.sort(RevSort.BOUNDARY, true);
-			}
-
-			for (ReceiveCommand cmd : commands) {
-				if (cmd.getResult() != Result.NOT_ATTEMPTED)
-					continue;
-				if (cmd.getType() == ReceiveCommand.Type.DELETE)
-					continue;
-				ow.markStart(ow.parseAny(cmd.getNewId()));
-			}
-			for (ObjectId have : advertisedHaves) {
-				RevObject o = ow.parseAny(have);
-				ow.markUninteresting(o);
-
-				if (baseObjects != null && !baseObjects.isEmpty()) {
-					o = ow.peel(o);
-					if (o instanceof RevCommit)
-						o = ((RevCommit) o).getTree();
-					if (o instanceof RevTree)
-						ow.markUninteresting(o);
-				}
-			}
-
-			checking.beginTask(JGitText.get().countingObjects,
-					ProgressMonitor.UNKNOWN);
-			RevCommit c;
-			while ((c = ow.next()) != null) {
-				checking.update(1);
-				if (providedObjects != null //
-						&& !c.has(RevFlag.UNINTERESTING) //
-						&& !providedObjects.contains(c))
-					throw new MissingObjectException(c, Constants.TYPE_COMMIT);
-			}
-
-			RevObject o;
-			while ((o = ow.nextObject()) != null) {
-				checking.update(1);
-				if (o.has(RevFlag.UNINTERESTING))
-					continue;
-
-				if (providedObjects != null) {
-					if (providedObjects.contains(o))
-						continue;
-					else
-						throw new MissingObjectException(o, o.getType());
-				}
-
-				if (o instanceof RevBlob && !db.hasObject(o))
-					throw new MissingObjectException(o, Constants.TYPE_BLOB);
-			}
-			checking.endTask();
-
-			if (baseObjects != null) {
-				for (ObjectId id : baseObjects) {
-					o = ow.parseAny(id);
-					if (!o.has(RevFlag.UNINTERESTING))
-						throw new MissingObjectException(o, o.getType());
-				}
-			}
-		}
+		long start = System.currentTimeMillis();
+		connectivityChecker.checkConnectivity(
+				new ConnectivityCheckInfo(db, walk.getObjectReader(), commands,
+						advertisedHaves, baseObjects, providedObjects),
+				checking);
+		if (stats != null)
+			stats.setTimeConnectivityCheck(
+					System.currentTimeMillis() - start);
 	}
 
 	/**
@@ -1773,6 +1840,16 @@ protected void executeCommands() {
 		if (toApply.isEmpty())
 			return;
 
+		if (quarantine != null) {
+			try {
+				quarantine.commit(lockMessage());
+			} catch (IOException err) {
+				for (ReceiveCommand cmd : toApply)
+					cmd.reject(err);
+				return;
+			}
+		}
+
 		ProgressMonitor updating = NullProgressMonitor.INSTANCE;
 		if (sideBand) {
 			SideBandProgressMonitor pm = new SideBandProgressMonitor(msgOut);
@@ -1931,6 +2008,10 @@ protected void close() throws IOException {
 	 */
 	protected void release() throws IOException {
 		walk.close();
+		if (quarantineReader != null) {
+			quarantineReader.close();
+			quarantineReader = null;
+		}
 		unlockPack();
 		timeoutIn = null;
 		rawIn = null;
@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.transport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Fetches from many remotes, in many repositories, concurrently.
+ * <p>
+ * Each fetch added with {@link #add(Repository, String)} runs a normal
+ * {@link org.eclipse.jgit.transport.Transport#fetch} of the remote's
+ * configured refspecs on the executor given to the constructor. The executor
+ * bounds how many fetches run at once. All fetches share one
+ * {@link org.eclipse.jgit.transport.CredentialsProvider}, and fetches over
+ * HTTP share the connection pool of the installed
+ * {@link org.eclipse.jgit.transport.http.HttpConnectionFactory}.
+ * <p>
+ * A failing fetch does not stop the others; its exception is reported in its
+ * {@link Result}. Timing of every fetch is also summarized per remote host,
+ * see {@link #getStatistics()}.
+ * <p>
+ * A repository should appear at most once in a batch, as concurrent fetches
+ * into the same repository may conflict updating its references.
+ *
+ * @since 5.1
+ */
+public class BatchFetcher {
+	/** Outcome of one fetch. */
+	public static class Result {
+		private final Repository repository;
+
+		private final String remote;
+
+		private final FetchResult fetchResult;
+
+		private final Exception exception;
+
+		private final long waitNanos;
+
+		private final long fetchNanos;
+
+		Result(Repository repository, String remote, FetchResult fetchResult,
+				Exception exception, long waitNanos, long fetchNanos) {
+			this.repository = repository;
+			this.remote = remote;
+			this.fetchResult = fetchResult;
+			this.exception = exception;
+			this.waitNanos = waitNanos;
+			this.fetchNanos = fetchNanos;
+		}
+
+		/** @return repository fetched into. */
+		public Repository getRepository() {
+			return repository;
+		}
+
+		/** @return name or URI of the remote fetched from. */
+		public String getRemote() {
+			return remote;
+		}
+
+		/** @return result of the fetch; null if it failed. */
+		@Nullable
+		public FetchResult getFetchResult() {
+			return fetchResult;
+		}
+
+		/** @return the reason the fetch failed; null if it succeeded. */
+		@Nullable
+		public Exception getException() {
+			return exception;
+		}
+
+		/**
+		 * Get time spent waiting for the executor to start the fetch.
+		 *
+		 * @param unit
+		 *            unit of the returned value.
+		 * @return time spent waiting for the executor.
+		 */
+		public long getWaitTime(TimeUnit unit) {
+			return unit.convert(waitNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Get time spent fetching, from opening the transport to closing it.
+		 *
+		 * @param unit
+		 *            unit of the returned value.
+		 * @return time spent fetching.
+		 */
+		public long getFetchTime(TimeUnit unit) {
+			return unit.convert(fetchNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/** Fetch timing summarized for one remote host. */
+	public static class HostStatistics {
+		long fetches;
+
+		long failures;
+
+		long totalNanos;
+
+		long maxNanos;
+
+		long firstStart;
+
+		long lastEnd;
+
+		HostStatistics() {
+			// Filled in by BatchFetcher.
+		}
+
+		HostStatistics(HostStatistics s) {
+			fetches = s.fetches;
+			failures = s.failures;
+			totalNanos = s.totalNanos;
+			maxNanos = s.maxNanos;
+			firstStart = s.firstStart;
+			lastEnd = s.lastEnd;
+		}
+
+		/** @return number of fetches from the host, including failures. */
+		public long getFetches() {
+			return fetches;
+		}
+
+		/** @return number of fetches from the host that failed. */
+		public long getFailures() {
+			return failures;
+		}
+
+		/**
+		 * Get average time of one fetch from the host.
+		 *
+		 * @param unit
+		 *            unit of the returned value.
+		 * @return average time of one fetch.
+		 */
+		public long getAverageTime(TimeUnit unit) {
+			return fetches > 0 ? unit.convert(totalNanos / fetches,
+					TimeUnit.NANOSECONDS) : 0;
+		}
+
+		/**
+		 * Get longest time of one fetch from the host.
+		 *
+		 * @param unit
+		 *            unit of the returned value.
+		 * @return longest time of one fetch.
+		 */
+		public long getMaxTime(TimeUnit unit) {
+			return unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Get fetches completed per second, from the start of the first fetch
+		 * to the end of the last one.
+		 *
+		 * @return fetches completed per second.
+		 */
+		public double getFetchesPerSecond() {
+			long span = lastEnd - firstStart;
+			return span > 0 ? fetches * 1e9 / span : 0;
+		}
+	}
+
+	private static class Job {
+		final Repository db;
+
+		final String remote;
+
+		Job(Repository db, String remote) {
+			this.db = db;
+			this.remote = remote;
+		}
+	}
+
+	private final Executor executor;
+
+	private final List<Job> jobs = new ArrayList<>();
+
+	private final Map<String, HostStatistics> statistics = new HashMap<>();
+
+	private CredentialsProvider credentialsProvider;
+
+	private int timeout;
+
+	/**
+	 * Create a batch fetcher.
+	 *
+	 * @param executor
+	 *            executor running the fetches. A task the executor rejects
+	 *            runs on the thread calling {@link #fetch()}.
+	 */
+	public BatchFetcher(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the credentials provider shared by all fetches.
+	 *
+	 * @param credentialsProvider
+	 *            the provider; if null the default provider is used.
+	 * @return {@code this}
+	 */
+	public BatchFetcher setCredentialsProvider(
+			@Nullable CredentialsProvider credentialsProvider) {
+		this.credentialsProvider = credentialsProvider;
+		return this;
+	}
+
+	/**
+	 * Set the timeout of each fetch.
+	 *
+	 * @param seconds
+	 *            timeout in seconds for network operations of each fetch, 0
+	 *            for the transport's default.
+	 * @return {@code this}
+	 */
+	public BatchFetcher setTimeout(int seconds) {
+		this.timeout = seconds;
+		return this;
+	}
+
+	/**
+	 * Add a fetch to the batch.
+	 *
+	 * @param db
+	 *            repository to fetch into.
+	 * @param remote
+	 *            name of a remote configured in {@code db}, or a URI. The
+	 *            remote's configured fetch refspecs are fetched.
+	 * @return {@code this}
+	 */
+	public BatchFetcher add(Repository db, String remote) {
+		jobs.add(new Job(db, remote));
+		return this;
+	}
+
+	/**
+	 * Run all fetches added since the last call and wait for them.
+	 *
+	 * @return one result for each added fetch, in the order added.
+	 * @throws java.lang.InterruptedException
+	 *             the thread was interrupted while waiting. Fetches already
+	 *             started keep running.
+	 */
+	public List<Result> fetch() throws InterruptedException {
+		List<FutureTask<Result>> tasks = new ArrayList<>(jobs.size());
+		for (Job j : jobs) {
+			long queued = System.nanoTime();
+			FutureTask<Result> task = new FutureTask<>(() -> run(j, queued));
+			tasks.add(task);
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.run();
+			}
+		}
+		jobs.clear();
+
+		List<Result> results = new ArrayList<>(tasks.size());
+		for (FutureTask<Result> task : tasks) {
+			try {
+				results.add(task.get());
+			} catch (ExecutionException e) {
+				// run() reports exceptions in its Result, only errors
+				// get here.
+				Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Get timing of all fetches run so far, by remote host.
+	 *
+	 * @return snapshot of the statistics, keyed by host name. Fetches from
+	 *         URIs without a host, such as local paths, are reported under
+	 *         the empty string.
+	 */
+	public synchronized Map<String, HostStatistics> getStatistics() {
+		Map<String, HostStatistics> r = new HashMap<>();
+		for (Map.Entry<String, HostStatistics> e : statistics.entrySet()) {
+			r.put(e.getKey(), new HostStatistics(e.getValue()));
+		}
+		return Collections.unmodifiableMap(r);
+	}
+
+	private Result run(Job j, long queued) {
+		long start = System.nanoTime();
+		String host = null;
+		FetchResult fetchResult = null;
+		Exception exception = null;
+		try (Transport tn = Transport.open(j.db, j.remote)) {
+			host = tn.getURI().getHost();
+			if (credentialsProvider != null) {
+				tn.setCredentialsProvider(credentialsProvider);
+			}
+			if (timeout > 0) {
+				tn.setTimeout(timeout);
+			}
+			fetchResult = tn.fetch(NullProgressMonitor.INSTANCE, null);
+		} catch (Exception e) {
+			exception = e;
+		}
+		long end = System.nanoTime();
+		record(host != null ? host : "", start, end, exception != null); //$NON-NLS-1$
+		return new Result(j.db, j.remote, fetchResult, exception,
+				start - queued, end - start);
+	}
+
+	private synchronized void record(String host, long start, long end,
+			boolean failed) {
+		HostStatistics s = statistics.get(host);
+		if (s == null) {
+			s = new HostStatistics();
+			s.firstStart = start;
+			s.lastEnd = end;
+			statistics.put(host, s);
+		}
+		long t = end - start;
+		s.fetches++;
+		if (failed) {
+			s.failures++;
+		}
+		s.totalNanos += t;
+		s.maxNanos = Math.max(s.maxNanos, t);
+		if (start - s.firstStart < 0) {
+			s.firstStart = start;
+		}
+		if (end - s.lastEnd > 0) {
+			s.lastEnd = end;
+		}
+	}
+}
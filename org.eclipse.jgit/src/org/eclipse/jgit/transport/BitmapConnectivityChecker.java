@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.transport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.internal.revwalk.AddUnseenToBitmapFilter;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.BitmapIndex;
+import org.eclipse.jgit.lib.BitmapIndex.Bitmap;
+import org.eclipse.jgit.lib.BitmapIndex.BitmapBuilder;
+import org.eclipse.jgit.lib.BitmapObject;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.revwalk.BitmapWalker;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.filter.ObjectFilter;
+import org.eclipse.jgit.transport.ReceiveCommand.Result;
+
+/**
+ * Checks connectivity using the reachability bitmaps of the repository.
+ * <p>
+ * The objects reachable from the advertised haves are computed from the pack
+ * bitmap index. The new reference values are then walked only until an
+ * object of that set is reached, so the walk is limited to the objects
+ * introduced by the push and never descends into unmodified trees. Every
+ * object of this residual must be contained in the received pack (if the
+ * pack's object list was recorded) or present in the repository.
+ * <p>
+ * If the repository has no bitmap index the check is delegated to a
+ * fallback checker, by default a {@link FullConnectivityChecker}.
+ *
+ * @since 5.1
+ */
+public class BitmapConnectivityChecker implements ConnectivityChecker {
+	private final ConnectivityChecker fallback;
+
+	private long countOfBitmapIndexMisses;
+
+	/** Create a checker falling back to a {@link FullConnectivityChecker}. */
+	public BitmapConnectivityChecker() {
+		this(new FullConnectivityChecker());
+	}
+
+	/**
+	 * Create a checker.
+	 *
+	 * @param fallback
+	 *            checker to use if the repository has no bitmap index.
+	 */
+	public BitmapConnectivityChecker(ConnectivityChecker fallback) {
+		this.fallback = fallback;
+	}
+
+	/**
+	 * Get the number of commits walked by the last check because they were
+	 * not covered by a bitmap.
+	 *
+	 * @return number of commits walked by the last check because they were
+	 *         not covered by a bitmap.
+	 */
+	public long getCountOfBitmapIndexMisses() {
+		return countOfBitmapIndexMisses;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void checkConnectivity(ConnectivityCheckInfo info,
+			ProgressMonitor pm) throws MissingObjectException, IOException {
+		countOfBitmapIndexMisses = 0;
+		List<ObjectId> tips = new ArrayList<>();
+		for (ReceiveCommand cmd : info.getCommands()) {
+			if (cmd.getResult() != Result.NOT_ATTEMPTED)
+				continue;
+			if (cmd.getType() == ReceiveCommand.Type.DELETE)
+				continue;
+			tips.add(cmd.getNewId());
+		}
+		if (tips.isEmpty())
+			return;
+
+		// Received objects are never covered by the bitmap index, so it is
+		// taken from the repository even if they are still quarantined.
+		BitmapIndex bitmapIndex;
+		try (ObjectReader r = info.getRepository().newObjectReader()) {
+			bitmapIndex = r.getBitmapIndex();
+		}
+		if (bitmapIndex == null) {
+			fallback.checkConnectivity(info, pm);
+			return;
+		}
+
+		ObjectReader reader = info.getObjectReader();
+		try (ObjectWalk ow = new ObjectWalk(reader)) {
+
+			pm.beginTask(JGitText.get().countingObjects,
+					ProgressMonitor.UNKNOWN);
+			BitmapBuilder haves = new BitmapWalker(ow, bitmapIndex, pm)
+					.findObjects(info.getHaves(), null, true);
+			BitmapBuilder residual = findResidual(ow, bitmapIndex, tips,
+					haves, pm);
+
+			ObjectIdSubclassMap<ObjectId> providedObjects = info
+					.getProvidedObjects();
+			for (BitmapObject o : residual) {
+				pm.update(1);
+				ObjectId id = o.getObjectId();
+				if (providedObjects != null) {
+					if (!providedObjects.contains(id))
+						throw new MissingObjectException(id.copy(),
+								o.getType());
+				} else if (o.getType() == Constants.OBJ_BLOB
+						&& !reader.has(id)) {
+					throw new MissingObjectException(id.copy(),
+							Constants.TYPE_BLOB);
+				}
+			}
+			pm.endTask();
+
+			ObjectIdSubclassMap<ObjectId> baseObjects = info.getBaseObjects();
+			if (baseObjects != null) {
+				for (ObjectId id : baseObjects) {
+					if (!haves.contains(id))
+						throw new MissingObjectException(id,
+								ow.parseAny(id).getType());
+				}
+			}
+		}
+	}
+
+	private BitmapBuilder findResidual(ObjectWalk ow, BitmapIndex bitmapIndex,
+			List<ObjectId> tips, BitmapBuilder haves, ProgressMonitor pm)
+			throws IOException {
+		ow.reset();
+		BitmapBuilder reached = bitmapIndex.newBitmapBuilder();
+		boolean marked = false;
+		for (ObjectId tip : tips) {
+			if (haves.contains(tip) || reached.contains(tip))
+				continue;
+			Bitmap bitmap = bitmapIndex.getBitmap(tip);
+			if (bitmap != null) {
+				reached.or(bitmap);
+			} else {
+				ow.markStart(ow.parseAny(tip));
+				marked = true;
+			}
+		}
+
+		if (marked) {
+			// Unlike BitmapWalker the object filter also stops at objects
+			// reachable from the haves, so trees the push did not modify
+			// are not descended into.
+			ow.setRevFilter(new AddUnseenToBitmapFilter(haves, reached));
+			ow.setObjectFilter(new ObjectFilter() {
+				@Override
+				public boolean include(ObjectWalk walker, AnyObjectId id) {
+					return !haves.contains(id) && !reached.contains(id);
+				}
+			});
+
+			while (ow.next() != null) {
+				pm.update(1);
+				countOfBitmapIndexMisses++;
+			}
+
+			RevObject o;
+			while ((o = ow.nextObject()) != null) {
+				reached.addObject(o, o.getType());
+				pm.update(1);
+			}
+		}
+		return reached.andNot(haves);
+	}
+}
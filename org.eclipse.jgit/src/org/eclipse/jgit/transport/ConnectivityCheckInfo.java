@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.transport;
+
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Input of a {@link ConnectivityChecker}.
+ *
+ * @since 5.1
+ */
+public class ConnectivityCheckInfo {
+	private final Repository repository;
+
+	private final ObjectReader reader;
+
+	private final List<ReceiveCommand> commands;
+
+	private final Set<ObjectId> haves;
+
+	private final ObjectIdSubclassMap<ObjectId> baseObjects;
+
+	private final ObjectIdSubclassMap<ObjectId> providedObjects;
+
+	/**
+	 * Create the input of a connectivity check.
+	 *
+	 * @param repository
+	 *            repository the pack was received into.
+	 * @param reader
+	 *            reader able to read the received objects, which may not yet
+	 *            be visible to other readers of {@code repository}.
+	 * @param commands
+	 *            commands sent by the client. Only commands which are not
+	 *            yet attempted and are not deletes are checked.
+	 * @param haves
+	 *            objects advertised to the client as already present.
+	 * @param baseObjects
+	 *            delta bases of the received pack which were not contained
+	 *            in it, or null if they were not recorded.
+	 * @param providedObjects
+	 *            objects contained in the received pack, or null if they
+	 *            were not recorded.
+	 */
+	public ConnectivityCheckInfo(Repository repository, ObjectReader reader,
+			List<ReceiveCommand> commands, Set<ObjectId> haves,
+			@Nullable ObjectIdSubclassMap<ObjectId> baseObjects,
+			@Nullable ObjectIdSubclassMap<ObjectId> providedObjects) {
+		this.repository = repository;
+		this.reader = reader;
+		this.commands = commands;
+		this.haves = haves;
+		this.baseObjects = baseObjects;
+		this.providedObjects = providedObjects;
+	}
+
+	/**
+	 * Get the repository the pack was received into.
+	 *
+	 * @return the repository the pack was received into.
+	 */
+	public Repository getRepository() {
+		return repository;
+	}
+
+	/**
+	 * Get the reader able to read the received objects.
+	 * <p>
+	 * The reader is owned by the caller of the checker and must not be
+	 * closed.
+	 *
+	 * @return the reader able to read the received objects.
+	 */
+	public ObjectReader getObjectReader() {
+		return reader;
+	}
+
+	/**
+	 * Get the commands sent by the client.
+	 *
+	 * @return the commands sent by the client.
+	 */
+	public List<ReceiveCommand> getCommands() {
+		return commands;
+	}
+
+	/**
+	 * Get the objects advertised to the client as already present.
+	 *
+	 * @return the objects advertised to the client as already present.
+	 */
+	public Set<ObjectId> getHaves() {
+		return haves;
+	}
+
+	/**
+	 * Get the delta bases of the pack which were not contained in it.
+	 * <p>
+	 * If not null, every base must be reachable from {@link #getHaves()}.
+	 *
+	 * @return the delta bases of the pack which were not contained in it, or
+	 *         null if they were not recorded.
+	 */
+	@Nullable
+	public ObjectIdSubclassMap<ObjectId> getBaseObjects() {
+		return baseObjects;
+	}
+
+	/**
+	 * Get the objects contained in the received pack.
+	 * <p>
+	 * If not null, every object reachable from a new reference value but not
+	 * from {@link #getHaves()} must be contained in this set.
+	 *
+	 * @return the objects contained in the received pack, or null if they
+	 *         were not recorded.
+	 */
+	@Nullable
+	public ObjectIdSubclassMap<ObjectId> getProvidedObjects() {
+		return providedObjects;
+	}
+}
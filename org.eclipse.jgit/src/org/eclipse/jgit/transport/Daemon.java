@@ -52,8 +52,18 @@
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketException;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
@@ -86,6 +96,24 @@ public class Daemon {
 
 	private int timeout;
 
+	private int maxConnections;
+
+	private int maxConnectionsPerAddress;
+
+	private int maxQueuedConnections = -1;
+
+	private int queueTimeout;
+
+	private ThreadPoolExecutor executor;
+
+	private final ConcurrentHashMap<InetAddress, Integer> sessionsPerAddress = new ConcurrentHashMap<>();
+
+	private final AtomicInteger activeSessions = new AtomicInteger();
+
+	private final AtomicInteger queuedSessions = new AtomicInteger();
+
+	private final AtomicLong rejectedSessions = new AtomicLong();
+
 	private PackConfig packConfig;
 
 	private volatile RepositoryResolver<DaemonClient> repositoryResolver;
@@ -237,6 +265,145 @@ public void setTimeout(int seconds) {
 		timeout = seconds;
 	}
 
+	/**
+	 * Get the maximum number of sessions served concurrently.
+	 *
+	 * @return maximum number of sessions served concurrently; 0 or less if
+	 *         every accepted connection is served by its own thread.
+	 * @since 5.1
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Set the maximum number of sessions served concurrently.
+	 * <p>
+	 * When positive, accepted connections are served by a bounded pool of
+	 * worker threads. Connections arriving while all workers are busy wait
+	 * in a queue, see {@link #setMaxQueuedConnections(int)}. The setting
+	 * takes effect on the next call to {@link #start()}.
+	 *
+	 * @param max
+	 *            maximum number of sessions served concurrently. 0 or less
+	 *            (the default) starts a new thread for every connection.
+	 * @since 5.1
+	 */
+	public void setMaxConnections(int max) {
+		maxConnections = max;
+	}
+
+	/**
+	 * Get the maximum number of sessions from a single remote address.
+	 *
+	 * @return maximum number of sessions (active or queued) from a single
+	 *         remote address; 0 or less if unlimited.
+	 * @since 5.1
+	 */
+	public int getMaxConnectionsPerAddress() {
+		return maxConnectionsPerAddress;
+	}
+
+	/**
+	 * Set the maximum number of sessions from a single remote address.
+	 * <p>
+	 * Connections exceeding the limit are closed immediately after they are
+	 * accepted.
+	 *
+	 * @param max
+	 *            maximum number of sessions (active or queued) from a single
+	 *            remote address. 0 or less (the default) is unlimited.
+	 * @since 5.1
+	 */
+	public void setMaxConnectionsPerAddress(int max) {
+		maxConnectionsPerAddress = max;
+	}
+
+	/**
+	 * Get the maximum number of connections waiting for a worker thread.
+	 *
+	 * @return maximum number of connections waiting for a worker thread;
+	 *         negative if unlimited.
+	 * @since 5.1
+	 */
+	public int getMaxQueuedConnections() {
+		return maxQueuedConnections;
+	}
+
+	/**
+	 * Set the maximum number of connections waiting for a worker thread.
+	 * <p>
+	 * Only used if {@link #setMaxConnections(int)} is positive. Connections
+	 * which do not fit into the queue are closed. The setting takes effect on
+	 * the next call to {@link #start()}.
+	 *
+	 * @param max
+	 *            maximum number of queued connections. 0 closes connections
+	 *            as soon as all workers are busy, negative (the default) is
+	 *            unlimited.
+	 * @since 5.1
+	 */
+	public void setMaxQueuedConnections(int max) {
+		maxQueuedConnections = max;
+	}
+
+	/**
+	 * Get timeout (in seconds) a connection may wait for a worker thread.
+	 *
+	 * @return timeout (in seconds) a connection may wait for a worker thread;
+	 *         0 or less if connections may wait forever.
+	 * @since 5.1
+	 */
+	public int getQueueTimeout() {
+		return queueTimeout;
+	}
+
+	/**
+	 * Set the timeout a connection may wait for a worker thread.
+	 *
+	 * @param seconds
+	 *            number of seconds a queued connection may wait before it is
+	 *            closed without being served. 0 or less (the default) waits
+	 *            forever.
+	 * @since 5.1
+	 */
+	public void setQueueTimeout(int seconds) {
+		queueTimeout = seconds;
+	}
+
+	/**
+	 * Get the number of sessions currently being served.
+	 *
+	 * @return number of sessions currently being served.
+	 * @since 5.1
+	 */
+	public int getActiveSessions() {
+		return activeSessions.get();
+	}
+
+	/**
+	 * Get the number of connections waiting for a worker thread.
+	 *
+	 * @return number of connections waiting for a worker thread.
+	 * @since 5.1
+	 */
+	public int getQueuedSessions() {
+		return queuedSessions.get();
+	}
+
+	/**
+	 * Get the number of connections closed without being served.
+	 * <p>
+	 * Counts connections rejected due to the per address limit, a full queue
+	 * or an expired queue timeout since this daemon was created.
+	 *
+	 * @return number of connections closed without being served.
+	 * @since 5.1
+	 */
+	public long getRejectedSessions() {
+		return rejectedSessions.get();
+	}
+
 	/**
 	 * Get configuration controlling packing, may be null.
 	 *
@@ -376,12 +543,38 @@ public synchronized void start() throws IOException {
 		}
 		myAddress = (InetSocketAddress) socket.getLocalSocketAddress();
 
+		if (0 < maxConnections) {
+			executor = newExecutor();
+		}
 		acceptThread = new Acceptor(processors, "Git-Daemon-Accept", socket); //$NON-NLS-1$
 		acceptThread.start();
 	}
 
+	private ThreadPoolExecutor newExecutor() {
+		BlockingQueue<Runnable> queue;
+		if (maxQueuedConnections < 0) {
+			queue = new LinkedBlockingQueue<>();
+		} else if (maxQueuedConnections == 0) {
+			queue = new SynchronousQueue<>();
+		} else {
+			queue = new ArrayBlockingQueue<>(maxQueuedConnections);
+		}
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConnections,
+				maxConnections, 60, TimeUnit.SECONDS, queue,
+				r -> new Thread(processors, r, "Git-Daemon-Worker-" //$NON-NLS-1$
+						+ threadCount.incrementAndGet()));
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
 	private synchronized void clearThread() {
 		acceptThread = null;
+		if (executor != null) {
+			// Sessions already accepted are still served.
+			executor.shutdown();
+			executor = null;
+		}
 	}
 
 	/**
@@ -424,34 +617,143 @@ void startClient(Socket s) {
 		final DaemonClient dc = new DaemonClient(this);
 
 		final SocketAddress peer = s.getRemoteSocketAddress();
-		if (peer instanceof InetSocketAddress)
-			dc.setRemoteAddress(((InetSocketAddress) peer).getAddress());
+		InetAddress addr = null;
+		if (peer instanceof InetSocketAddress) {
+			addr = ((InetSocketAddress) peer).getAddress();
+			dc.setRemoteAddress(addr);
+		}
 
-		new Thread(processors, "Git-Daemon-Client " + peer.toString()) { //$NON-NLS-1$
-			@Override
-			public void run() {
+		if (!acquireAddress(addr)) {
+			reject(s);
+			return;
+		}
+		Session session = new Session(dc, s, addr, peer);
+
+		ThreadPoolExecutor pool;
+		synchronized (this) {
+			pool = executor;
+		}
+		if (pool == null) {
+			new Thread(processors, session, session.threadName()).start();
+			return;
+		}
+
+		session.queued = true;
+		session.enqueued = System.nanoTime();
+		queuedSessions.incrementAndGet();
+		try {
+			pool.execute(session);
+		} catch (RejectedExecutionException e) {
+			queuedSessions.decrementAndGet();
+			releaseAddress(addr);
+			reject(s);
+		}
+	}
+
+	private boolean acquireAddress(InetAddress addr) {
+		int limit = maxConnectionsPerAddress;
+		if (addr == null || limit <= 0) {
+			return true;
+		}
+		boolean[] acquired = new boolean[1];
+		sessionsPerAddress.compute(addr, (a, n) -> {
+			int cnt = n != null ? n.intValue() : 0;
+			if (limit <= cnt) {
+				return n;
+			}
+			acquired[0] = true;
+			return Integer.valueOf(cnt + 1);
+		});
+		return acquired[0];
+	}
+
+	private void releaseAddress(InetAddress addr) {
+		if (addr != null) {
+			sessionsPerAddress.computeIfPresent(addr,
+					(a, n) -> n.intValue() <= 1 ? null
+							: Integer.valueOf(n.intValue() - 1));
+		}
+	}
+
+	private void reject(Socket s) {
+		rejectedSessions.incrementAndGet();
+		try {
+			s.close();
+		} catch (IOException e) {
+			// Ignore close exceptions
+		}
+	}
+
+	private class Session implements Runnable {
+		private final DaemonClient dc;
+
+		private final Socket s;
+
+		private final InetAddress addr;
+
+		private final SocketAddress peer;
+
+		boolean queued;
+
+		long enqueued;
+
+		Session(DaemonClient dc, Socket s, InetAddress addr,
+				SocketAddress peer) {
+			this.dc = dc;
+			this.s = s;
+			this.addr = addr;
+			this.peer = peer;
+		}
+
+		String threadName() {
+			return "Git-Daemon-Client " + peer.toString(); //$NON-NLS-1$
+		}
+
+		@Override
+		public void run() {
+			if (queued) {
+				queuedSessions.decrementAndGet();
+				int limit = queueTimeout;
+				if (0 < limit && TimeUnit.NANOSECONDS.toSeconds(
+						System.nanoTime() - enqueued) >= limit) {
+					releaseAddress(addr);
+					reject(s);
+					return;
+				}
+			}
+
+			Thread self = Thread.currentThread();
+			String oldName = self.getName();
+			if (queued) {
+				self.setName(threadName());
+			}
+			activeSessions.incrementAndGet();
+			try {
+				dc.execute(s);
+			} catch (ServiceNotEnabledException e) {
+				// Ignored. Client cannot use this repository.
+			} catch (ServiceNotAuthorizedException e) {
+				// Ignored. Client cannot use this repository.
+			} catch (IOException e) {
+				// Ignore unexpected IO exceptions from clients
+			} finally {
+				activeSessions.decrementAndGet();
+				releaseAddress(addr);
 				try {
-					dc.execute(s);
-				} catch (ServiceNotEnabledException e) {
-					// Ignored. Client cannot use this repository.
-				} catch (ServiceNotAuthorizedException e) {
-					// Ignored. Client cannot use this repository.
+					s.getInputStream().close();
 				} catch (IOException e) {
-					// Ignore unexpected IO exceptions from clients
-				} finally {
-					try {
-						s.getInputStream().close();
-					} catch (IOException e) {
-						// Ignore close exceptions
-					}
-					try {
-						s.getOutputStream().close();
-					} catch (IOException e) {
-						// Ignore close exceptions
-					}
+					// Ignore close exceptions
+				}
+				try {
+					s.getOutputStream().close();
+				} catch (IOException e) {
+					// Ignore close exceptions
+				}
+				if (queued) {
+					self.setName(oldName);
 				}
 			}
-		}.start();
+		}
 	}
 
 	synchronized DaemonService matchService(String cmd) {
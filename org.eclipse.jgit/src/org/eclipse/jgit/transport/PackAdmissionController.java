@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.transport;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Decides when an {@link org.eclipse.jgit.transport.UploadPack} may write its
+ * pack.
+ * <p>
+ * The controller is consulted once the objects to send have been selected,
+ * before delta compression and writing, which are the most expensive phases
+ * of serving a fetch. It may admit the request, block until resources become
+ * available, or reject it. A single controller is typically shared by all
+ * UploadPack instances of a server so it can enforce limits across them.
+ *
+ * @since 5.1
+ */
+public interface PackAdmissionController {
+	/** A controller admitting every request immediately. */
+	public static final PackAdmissionController NULL = new PackAdmissionController() {
+		@Override
+		public void admit(UploadPack up, Request req) {
+			// Always admitted.
+		}
+
+		@Override
+		public void release(UploadPack up, Request req) {
+			// Nothing to release.
+		}
+	};
+
+	/**
+	 * Admit a request, waiting if necessary.
+	 *
+	 * @param up
+	 *            the upload pack instance handling the connection.
+	 * @param req
+	 *            the estimated cost of the request.
+	 * @throws org.eclipse.jgit.transport.ServiceMayNotContinueException
+	 *             the request is rejected. The message is sent to the client.
+	 * @throws java.io.InterruptedIOException
+	 *             the thread was interrupted while waiting to be admitted.
+	 */
+	void admit(UploadPack up, Request req)
+			throws ServiceMayNotContinueException, InterruptedIOException;
+
+	/**
+	 * Release the resources of an admitted request.
+	 * <p>
+	 * Invoked once for every successful {@link #admit(UploadPack, Request)},
+	 * after the pack was written or writing it failed.
+	 *
+	 * @param up
+	 *            the upload pack instance handling the connection.
+	 * @param req
+	 *            the request passed to {@code admit}.
+	 */
+	void release(UploadPack up, Request req);
+
+	/** Estimated cost of sending a pack to a client. */
+	public static final class Request {
+		private final int wantCount;
+
+		private final int haveCount;
+
+		private final int depth;
+
+		private final long filterBlobLimit;
+
+		private final long objectCount;
+
+		private final long estimatedBytes;
+
+		/**
+		 * Create a request.
+		 *
+		 * @param wantCount
+		 *            number of objects the client wants.
+		 * @param haveCount
+		 *            number of objects the client has in common with the
+		 *            server.
+		 * @param depth
+		 *            depth of a shallow fetch, 0 if not shallow.
+		 * @param filterBlobLimit
+		 *            blob size limit of a partial fetch, -1 if none.
+		 * @param objectCount
+		 *            number of objects that will be sent.
+		 * @param estimatedBytes
+		 *            estimated peak memory needed to write the pack.
+		 */
+		public Request(int wantCount, int haveCount, int depth,
+				long filterBlobLimit, long objectCount, long estimatedBytes) {
+			this.wantCount = wantCount;
+			this.haveCount = haveCount;
+			this.depth = depth;
+			this.filterBlobLimit = filterBlobLimit;
+			this.objectCount = objectCount;
+			this.estimatedBytes = estimatedBytes;
+		}
+
+		/** @return number of objects the client wants. */
+		public int getWantCount() {
+			return wantCount;
+		}
+
+		/** @return number of objects the client has in common with us. */
+		public int getHaveCount() {
+			return haveCount;
+		}
+
+		/** @return depth of a shallow fetch, 0 if not shallow. */
+		public int getDepth() {
+			return depth;
+		}
+
+		/** @return blob size limit of a partial fetch, -1 if none. */
+		public long getFilterBlobLimit() {
+			return filterBlobLimit;
+		}
+
+		/** @return number of objects that will be sent. */
+		public long getObjectCount() {
+			return objectCount;
+		}
+
+		/**
+		 * Get the estimated peak memory needed to write the pack.
+		 *
+		 * @return estimated bytes, see
+		 *         {@link org.eclipse.jgit.internal.storage.pack.PackWriter#estimatePeakBytesUsed()}.
+		 */
+		public long getEstimatedBytes() {
+			return estimatedBytes;
+		}
+	}
+}
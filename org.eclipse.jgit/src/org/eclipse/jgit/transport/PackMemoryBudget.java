@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.transport;
+
+import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.internal.JGitText;
+
+/**
+ * A {@link org.eclipse.jgit.transport.PackAdmissionController} sharing a
+ * memory budget among all packs being written.
+ * <p>
+ * Each request is charged its estimated peak memory, capped to the budget so
+ * a request larger than the whole budget can still run once it has the budget
+ * to itself. A request that does not fit waits for others to finish. If it
+ * waits longer than the configured timeout it is rejected with a message
+ * asking the client to try again later.
+ *
+ * @since 5.1
+ */
+public class PackMemoryBudget implements PackAdmissionController {
+	private final long budget;
+
+	private final long maxWaitNanos;
+
+	private long used;
+
+	/**
+	 * Create a budget.
+	 *
+	 * @param budget
+	 *            total bytes shared by all admitted requests.
+	 * @param maxWait
+	 *            longest time a request may wait to be admitted before it is
+	 *            rejected.
+	 * @param unit
+	 *            unit of {@code maxWait}.
+	 */
+	public PackMemoryBudget(long budget, long maxWait, TimeUnit unit) {
+		this.budget = budget;
+		this.maxWaitNanos = unit.toNanos(maxWait);
+	}
+
+	/**
+	 * Get bytes currently charged to admitted requests.
+	 *
+	 * @return bytes currently charged to admitted requests.
+	 */
+	public synchronized long getUsed() {
+		return used;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void admit(UploadPack up, Request req)
+			throws ServiceMayNotContinueException, InterruptedIOException {
+		long cost = cost(req);
+		long deadline = System.nanoTime() + maxWaitNanos;
+		while (budget < used + cost) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				throw new ServiceMayNotContinueException(
+						JGitText.get().serverBusyTryAgainLater,
+						HTTP_UNAVAILABLE);
+			}
+			try {
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+		}
+		used += cost;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void release(UploadPack up, Request req) {
+		used -= cost(req);
+		notifyAll();
+	}
+
+	private long cost(Request req) {
+		return Math.min(Math.max(req.getEstimatedBytes(), 0), budget);
+	}
+}
@@ -48,16 +48,22 @@
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.security.MessageDigest;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
+import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.errors.CorruptObjectException;
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.errors.TooLargeObjectInPackException;
@@ -102,6 +108,9 @@ public abstract class PackParser {
 	/** Size of the internal stream buffer. */
 	private static final int BUFFER_SIZE = 8192;
 
+	/** Maximum KiB of object data waiting to be checked concurrently. */
+	private static final int MAX_PENDING_CHECK_KIB = 32 * 1024;
+
 	/** Location data is being obtained from. */
 	public static enum Source {
 		/** Data is read from the incoming stream. */
@@ -136,6 +145,19 @@ public static enum Source {
 
 	private ObjectChecker objCheck;
 
+	/** Runs {@link #verifySafeObject} concurrently with parsing, if set. */
+	private Executor objCheckExecutor;
+
+	/** Bounds the data (in KiB) held by checks not yet completed. */
+	private Semaphore objCheckSlots;
+
+	/** Set when parsing failed; checks not yet started are skipped. */
+	private volatile boolean objCheckCancelled;
+
+	/** First failure of a check run by {@link #objCheckExecutor}. */
+	private final AtomicReference<Exception> objCheckError =
+			new AtomicReference<>();
+
 	private boolean allowThin;
 
 	private boolean checkObjectCollisions;
@@ -383,6 +405,27 @@ public void setObjectChecker(ObjectChecker oc) {
 		objCheck = oc;
 	}
 
+	/**
+	 * Set the executor validating received objects.
+	 * <p>
+	 * By default objects are validated on the thread parsing the pack, as
+	 * soon as they are inflated. With an executor the configured
+	 * {@link org.eclipse.jgit.lib.ObjectChecker} runs concurrently with
+	 * parsing and delta resolution. All checks complete before
+	 * {@link #parse(ProgressMonitor, ProgressMonitor)} returns, and the first
+	 * failure is thrown from it. If parsing fails, checks not yet started are
+	 * skipped and running ones are waited for. {@link #verifySafeObject} may
+	 * then be called by several threads at once.
+	 *
+	 * @param executor
+	 *            executor to run object checks on; null to check objects on
+	 *            the parsing thread.
+	 * @since 5.1
+	 */
+	public void setObjectCheckerExecutor(@Nullable Executor executor) {
+		objCheckExecutor = executor;
+	}
+
 	/**
 	 * Configure the checker used to validate received objects.
 	 * <p>
@@ -560,6 +603,9 @@ public PackLock parse(ProgressMonitor receiving, ProgressMonitor resolving)
 			baseById = new ObjectIdOwnerMap<>();
 			baseByPos = new LongMap<>();
 			collisionCheckObjs = new BlockList<>();
+			if (objCheckExecutor != null && objCheck != null) {
+				objCheckSlots = new Semaphore(MAX_PENDING_CHECK_KIB);
+			}
 
 			receiving.beginTask(JGitText.get().receivingObjects,
 					(int) expectedObjectCount);
@@ -583,11 +629,13 @@ public PackLock parse(ProgressMonitor receiving, ProgressMonitor resolving)
 			if (deltaCount > 0) {
 				processDeltas(resolving);
 			}
+			awaitObjectChecks();
 
 			packDigest = null;
 			baseById = null;
 			baseByPos = null;
 		} finally {
+			cancelObjectChecks();
 			try {
 				if (readCurs != null)
 					readCurs.close();
@@ -710,7 +758,7 @@ private void resolveDeltas(DeltaVisit visit, final int type,
 			objectDigest.update(visit.data);
 			objectDigest.digest(tempObjectId);
 
-			verifySafeObject(tempObjectId, type, visit.data);
+			checkObject(tempObjectId, type, visit.data);
 			if (isCheckObjectCollisions() && readCurs.has(tempObjectId)) {
 				checkObjectCollision(tempObjectId, type, visit.data);
 			}
@@ -1101,7 +1149,7 @@ private void whole(long pos, int type, long sz)
 			data = inflateAndReturn(Source.INPUT, sz);
 			objectDigest.update(data);
 			objectDigest.digest(tempObjectId);
-			verifySafeObject(tempObjectId, type, data);
+			checkObject(tempObjectId, type, data);
 		}
 
 		PackedObjectInfo obj = newInfo(tempObjectId, null, null);
@@ -1117,8 +1165,83 @@ private void whole(long pos, int type, long sz)
 		}
 	}
 
+	private void checkObject(AnyObjectId id, int type, byte[] data)
+			throws IOException {
+		if (objCheckSlots == null) {
+			verifySafeObject(id, type, data);
+			return;
+		}
+
+		throwObjectCheckError();
+		int kib = Math.min(Math.max(data.length >> 10, 1),
+				MAX_PENDING_CHECK_KIB);
+		try {
+			objCheckSlots.acquire(kib);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+
+		ObjectId objId = id.copy();
+		Runnable check = () -> {
+			try {
+				if (!objCheckCancelled) {
+					verifySafeObject(objId, type, data);
+				}
+			} catch (CorruptObjectException | RuntimeException e) {
+				objCheckError.compareAndSet(null, e);
+			} finally {
+				objCheckSlots.release(kib);
+			}
+		};
+		try {
+			objCheckExecutor.execute(check);
+		} catch (RejectedExecutionException e) {
+			check.run();
+		}
+	}
+
+	private void awaitObjectChecks() throws IOException {
+		if (objCheckSlots == null) {
+			return;
+		}
+		try {
+			objCheckSlots.acquire(MAX_PENDING_CHECK_KIB);
+			objCheckSlots.release(MAX_PENDING_CHECK_KIB);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		throwObjectCheckError();
+	}
+
+	/** Skip queued checks and wait for running ones, parsing has ended. */
+	private void cancelObjectChecks() {
+		if (objCheckSlots == null) {
+			return;
+		}
+		objCheckCancelled = true;
+		objCheckSlots.acquireUninterruptibly(MAX_PENDING_CHECK_KIB);
+		objCheckSlots.release(MAX_PENDING_CHECK_KIB);
+	}
+
+	private void throwObjectCheckError() throws CorruptObjectException {
+		Exception err = objCheckError.get();
+		if (err instanceof CorruptObjectException) {
+			throw (CorruptObjectException) err;
+		} else if (err != null) {
+			throw (RuntimeException) err;
+		}
+	}
+
 	/**
 	 * Verify the integrity of the object.
+	 * <p>
+	 * If an executor was set by {@link #setObjectCheckerExecutor(Executor)},
+	 * this method runs on the executor's threads and may be called for several
+	 * objects at once, so overriding implementations must be thread-safe. All
+	 * calls have completed when {@link #parse(ProgressMonitor)} returns or
+	 * throws.
 	 *
 	 * @param id
 	 *            identity of the object to be checked.
@@ -69,6 +69,12 @@
  * that it has performed the command), by setting the result status to
  * {@link org.eclipse.jgit.transport.ReceiveCommand.Result#OK}.
  * <p>
+ * If received objects are quarantined (see
+ * {@link org.eclipse.jgit.transport.BaseReceivePack#setQuarantineObjects(boolean)}),
+ * they are not yet part of the repository when the hook runs. The hook must
+ * read them through
+ * {@link org.eclipse.jgit.transport.BaseReceivePack#getRevWalk()}.
+ * <p>
  * Hooks should run quickly, as they block the caller thread and the client
  * process from completing.
  * <p>
@@ -65,6 +65,8 @@ public class ReceivedPackStatistics {
 	private long numDeltaBlob;
 	private long numDeltaTag;
 
+	private long timeConnectivityCheck;
+
 	/**
 	 * Get number of bytes read from the input stream
 	 *
@@ -164,6 +166,22 @@ public long getNumDeltaTag() {
 		return numDeltaTag;
 	}
 
+	/**
+	 * Get time in milliseconds spent checking the connectivity of the
+	 * received objects
+	 *
+	 * @return time in milliseconds spent checking the connectivity of the
+	 *         received objects, 0 if no check was performed.
+	 * @since 5.1
+	 */
+	public long getTimeConnectivityCheck() {
+		return timeConnectivityCheck;
+	}
+
+	void setTimeConnectivityCheck(long timeConnectivityCheck) {
+		this.timeConnectivityCheck = timeConnectivityCheck;
+	}
+
 	/** A builder for {@link ReceivedPackStatistics}. */
 	public static class Builder {
 		private long numBytesRead;
@@ -65,6 +65,7 @@
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefComparator;
+import org.eclipse.jgit.lib.RefScanner;
 import org.eclipse.jgit.lib.Repository;
 
 /**
@@ -307,48 +308,86 @@ public Set<ObjectId> send(Map<String, Ref> refs) throws IOException {
 	 * @since 5.0
 	 */
 	public Set<ObjectId> send(Collection<Ref> refs) throws IOException {
-		for (Ref ref : RefComparator.sort(refs)) {
-			// TODO(jrn) revive the SortedMap optimization e.g. by introducing
-			// SortedList
-			ObjectId objectId = ref.getObjectId();
-			if (objectId == null) {
-				continue;
+		for (Ref ref : isSorted(refs) ? refs : RefComparator.sort(refs)) {
+			advertiseRef(ref);
+		}
+		return sent;
+	}
+
+	/**
+	 * Format an advertisement for refs read from a scanner.
+	 * <p>
+	 * Refs are written as they are read, so the advertisement can be sent
+	 * without holding all refs in memory.
+	 *
+	 * @param refs
+	 *            scanner returning refs sorted by name, such as one obtained
+	 *            from
+	 *            {@link org.eclipse.jgit.lib.RefDatabase#scanRefsByPrefix(String...)}.
+	 *            The caller remains responsible for closing it.
+	 * @return set of ObjectIds that were advertised to the client.
+	 * @throws java.io.IOException
+	 *             the underlying output stream failed to write out an
+	 *             advertisement record, or the refs could not be read.
+	 * @since 5.1
+	 */
+	public Set<ObjectId> send(RefScanner refs) throws IOException {
+		while (refs.next()) {
+			advertiseRef(refs.getRef());
+		}
+		return sent;
+	}
+
+	private static boolean isSorted(Collection<Ref> refs) {
+		String last = null;
+		for (Ref ref : refs) {
+			String name = ref.getName();
+			if (last != null && last.compareTo(name) > 0) {
+				return false;
 			}
+			last = name;
+		}
+		return true;
+	}
 
-			if (useProtocolV2) {
-				String symrefPart = symrefs.containsKey(ref.getName())
-						? (" symref-target:" + symrefs.get(ref.getName())) //$NON-NLS-1$
-						: ""; //$NON-NLS-1$
-				String peelPart = ""; //$NON-NLS-1$
-				if (derefTags) {
-					if (!ref.isPeeled() && repository != null) {
-						ref = repository.getRefDatabase().peel(ref);
-					}
-					ObjectId peeledObjectId = ref.getPeeledObjectId();
-					if (peeledObjectId != null) {
-						peelPart = " peeled:" + peeledObjectId.getName(); //$NON-NLS-1$
-					}
+	private void advertiseRef(Ref ref) throws IOException {
+		ObjectId objectId = ref.getObjectId();
+		if (objectId == null) {
+			return;
+		}
+
+		if (useProtocolV2) {
+			String symrefPart = symrefs.containsKey(ref.getName())
+					? (" symref-target:" + symrefs.get(ref.getName())) //$NON-NLS-1$
+					: ""; //$NON-NLS-1$
+			String peelPart = ""; //$NON-NLS-1$
+			if (derefTags) {
+				if (!ref.isPeeled() && repository != null) {
+					ref = repository.getRefDatabase().peel(ref);
+				}
+				ObjectId peeledObjectId = ref.getPeeledObjectId();
+				if (peeledObjectId != null) {
+					peelPart = " peeled:" + peeledObjectId.getName(); //$NON-NLS-1$
 				}
-				writeOne(objectId.getName() + " " + ref.getName() + symrefPart //$NON-NLS-1$
-						+ peelPart + "\n"); //$NON-NLS-1$
-				continue;
 			}
+			writeOne(objectId.getName() + " " + ref.getName() + symrefPart //$NON-NLS-1$
+					+ peelPart + "\n"); //$NON-NLS-1$
+			return;
+		}
 
-			advertiseAny(objectId, ref.getName());
+		advertiseAny(objectId, ref.getName());
 
-			if (!derefTags)
-				continue;
+		if (!derefTags)
+			return;
 
-			if (!ref.isPeeled()) {
-				if (repository == null)
-					continue;
-				ref = repository.getRefDatabase().peel(ref);
-			}
-
-			if (ref.getPeeledObjectId() != null)
-				advertiseAny(ref.getPeeledObjectId(), ref.getName() + "^{}"); //$NON-NLS-1$
+		if (!ref.isPeeled()) {
+			if (repository == null)
+				return;
+			ref = repository.getRefDatabase().peel(ref);
 		}
-		return sent;
+
+		if (ref.getPeeledObjectId() != null)
+			advertiseAny(ref.getPeeledObjectId(), ref.getName() + "^{}"); //$NON-NLS-1$
 	}
 
 	/**
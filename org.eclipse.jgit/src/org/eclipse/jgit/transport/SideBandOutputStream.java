@@ -45,9 +45,11 @@
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.text.MessageFormat;
 
 import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.util.io.FileRegionWriter;
 
 /**
  * Multiplexes data and progress messages.
@@ -57,7 +59,8 @@
  *
  * @since 2.0
  */
-public class SideBandOutputStream extends OutputStream {
+public class SideBandOutputStream extends OutputStream
+		implements FileRegionWriter {
 	/** Channel used for pack data. */
 	public static final int CH_DATA = SideBandInputStream.CH_DATA;
 
@@ -169,6 +172,54 @@ public void write(int b) throws IOException {
 		buffer[cnt++] = (byte) b;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @since 5.1
+	 */
+	@Override
+	public boolean canWriteRegion() {
+		return out instanceof FileRegionWriter
+				&& ((FileRegionWriter) out).canWriteRegion();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The region is split into packets. Only the packet headers are written
+	 * as bytes; the payload of each packet is passed on as a region of the
+	 * file.
+	 *
+	 * @since 5.1
+	 */
+	@Override
+	public void writeRegion(FileChannel file, long position, long count)
+			throws IOException {
+		FileRegionWriter w = (FileRegionWriter) out;
+		try {
+			flushBuffer();
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+		byte[] hdr = new byte[HDR_SIZE];
+		hdr[4] = buffer[4];
+		int max = buffer.length - HDR_SIZE;
+		while (0 < count) {
+			int n = (int) Math.min(max, count);
+			PacketLineOut.formatLength(hdr, HDR_SIZE + n);
+			try {
+				out.write(hdr, 0, HDR_SIZE);
+			} catch (IOException | RuntimeException e) {
+				file.close();
+				throw e;
+			}
+			w.writeRegion(file, position, n);
+			position += n;
+			count -= n;
+		}
+	}
+
 	private void writeBuffer() throws IOException {
 		PacketLineOut.formatLength(buffer, cnt);
 		out.write(buffer, 0, cnt);
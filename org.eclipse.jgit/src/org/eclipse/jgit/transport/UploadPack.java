@@ -68,11 +68,11 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -93,6 +93,7 @@
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefScanner;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.AsyncRevObjectQueue;
 import org.eclipse.jgit.revwalk.BitmapWalker;
@@ -110,6 +111,7 @@
 import org.eclipse.jgit.transport.GitProtocolConstants.MultiAck;
 import org.eclipse.jgit.transport.RefAdvertiser.PacketLineOutRefAdvertiser;
 import org.eclipse.jgit.transport.TransferConfig.ProtocolVersion;
+import org.eclipse.jgit.util.io.FileRegionWriter;
 import org.eclipse.jgit.util.io.InterruptTimer;
 import org.eclipse.jgit.util.io.NullOutputStream;
 import org.eclipse.jgit.util.io.TimeoutInputStream;
@@ -276,6 +278,9 @@ public Set<String> getOptions() {
 	/** Hook for taking post upload actions. */
 	private PostUploadHook postUploadHook = PostUploadHook.NULL;
 
+	/** Decides when the pack may be written. */
+	private PackAdmissionController admissionController = PackAdmissionController.NULL;
+
 	/** Capabilities requested by the client. */
 	private Set<String> options;
 	String userAgent;
@@ -631,6 +636,29 @@ public void setPostUploadHook(PostUploadHook hook) {
 		postUploadHook = hook != null ? hook : PostUploadHook.NULL;
 	}
 
+	/**
+	 * Get the configured pack admission controller.
+	 *
+	 * @return the configured pack admission controller.
+	 * @since 5.1
+	 */
+	public PackAdmissionController getPackAdmissionController() {
+		return admissionController;
+	}
+
+	/**
+	 * Set the controller deciding when the pack may be written.
+	 *
+	 * @param controller
+	 *            the controller; if null every pack is written immediately.
+	 * @since 5.1
+	 */
+	public void setPackAdmissionController(
+			@Nullable PackAdmissionController controller) {
+		admissionController = controller != null ? controller
+				: PackAdmissionController.NULL;
+	}
+
 	/**
 	 * Set the configuration used by the pack generator.
 	 *
@@ -907,26 +935,58 @@ private void lsRefsV2() throws IOException {
 		}
 		rawOut.stopBuffering();
 
-		Map<String, Ref> refsToSend;
-		if (refPrefixes.isEmpty()) {
-			refsToSend = getAdvertisedOrDefaultRefs();
-		} else {
-			refsToSend = new HashMap<>();
-			for (String refPrefix : refPrefixes) {
-				for (Ref ref : db.getRefDatabase().getRefsByPrefix(refPrefix)) {
-					refsToSend.put(ref.getName(), ref);
-				}
+		if (refPrefixes.isEmpty() && !canStreamAllRefs()) {
+			Map<String, Ref> refsToSend = getAdvertisedOrDefaultRefs();
+			if (needToFindSymrefs) {
+				findSymrefs(adv, refsToSend);
 			}
+			adv.send(refsToSend.values());
+			adv.end();
+			return;
 		}
 
-		if (needToFindSymrefs) {
-			findSymrefs(adv, refsToSend);
+		// Stream refs straight from the ref database, which applies the
+		// prefixes itself and does not hold all refs in memory.
+		String[] prefixes = refPrefixes.toArray(new String[0]);
+		if (needToFindSymrefs && matchesAnyPrefix(Constants.HEAD, prefixes)) {
+			Ref head = db.getRefDatabase().exactRef(Constants.HEAD);
+			if (head != null && head.isSymbolic()) {
+				adv.addSymref(Constants.HEAD, head.getLeaf().getName());
+			}
+		}
+		try (RefScanner scan = db.getRefDatabase()
+				.scanRefsByPrefix(prefixes)) {
+			adv.send(scan);
 		}
-
-		adv.send(refsToSend);
 		adv.end();
 	}
 
+	/**
+	 * Whether all refs can be advertised without being filtered first.
+	 * <p>
+	 * Ref filters operate on a complete map of refs, so they can only be
+	 * skipped if no filter is configured and the advertised refs were not
+	 * set explicitly.
+	 *
+	 * @return true if refs can be streamed from the ref database.
+	 */
+	private boolean canStreamAllRefs() {
+		return refs == null && refFilter == RefFilter.DEFAULT
+				&& transferConfig.getRefFilter() == RefFilter.DEFAULT;
+	}
+
+	private static boolean matchesAnyPrefix(String name, String[] prefixes) {
+		if (prefixes.length == 0) {
+			return true;
+		}
+		for (String p : prefixes) {
+			if (name.startsWith(p)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private void fetchV2() throws IOException {
 		options = new HashSet<>();
 
@@ -2009,15 +2069,7 @@ private void sendPack(final boolean sideband,
 			}
 			msgOut.flush();
 		} catch (ServiceMayNotContinueException noPack) {
-			if (sideband && noPack.getMessage() != null) {
-				noPack.setOutput();
-				@SuppressWarnings("resource" /* java 7 */)
-				SideBandOutputStream err = new SideBandOutputStream(
-						SideBandOutputStream.CH_ERROR,
-						SideBandOutputStream.SMALL_BUF, rawOut);
-				err.write(Constants.encode(noPack.getMessage()));
-				err.flush();
-			}
+			reportNoPack(sideband, noPack);
 			throw noPack;
 		}
 
@@ -2107,7 +2159,21 @@ else if (ref.getName().startsWith(Constants.R_HEADS))
 				}
 			}
 
-			pw.writePack(pm, NullProgressMonitor.INSTANCE, packOut);
+			PackAdmissionController.Request admission = new PackAdmissionController.Request(
+					wantAll.isEmpty() ? wantIds.size() : wantAll.size(),
+					commonBase.size(), depth, filterBlobLimit,
+					pw.getObjectCount(), pw.estimatePeakBytesUsed());
+			try {
+				admissionController.admit(this, admission);
+			} catch (ServiceMayNotContinueException noPack) {
+				reportNoPack(sideband, noPack);
+				throw noPack;
+			}
+			try {
+				pw.writePack(pm, NullProgressMonitor.INSTANCE, packOut);
+			} finally {
+				admissionController.release(this, admission);
+			}
 
 			if (msgOut != NullOutputStream.INSTANCE) {
 				String msg = pw.getStatistics().getMessage() + '\n';
@@ -2127,6 +2193,19 @@ else if (ref.getName().startsWith(Constants.R_HEADS))
 			pckOut.end();
 	}
 
+	private void reportNoPack(boolean sideband,
+			ServiceMayNotContinueException noPack) throws IOException {
+		if (sideband && noPack.getMessage() != null) {
+			noPack.setOutput();
+			@SuppressWarnings("resource" /* java 7 */)
+			SideBandOutputStream err = new SideBandOutputStream(
+					SideBandOutputStream.CH_ERROR,
+					SideBandOutputStream.SMALL_BUF, rawOut);
+			err.write(Constants.encode(noPack.getMessage()));
+			err.flush();
+		}
+	}
+
 	private static void findSymrefs(
 			final RefAdvertiser adv, final Map<String, Ref> refs) {
 		Ref head = refs.get(Constants.HEAD);
@@ -2135,7 +2214,8 @@ private static void findSymrefs(
 		}
 	}
 
-	private static class ResponseBufferedOutputStream extends OutputStream {
+	private static class ResponseBufferedOutputStream extends OutputStream
+			implements FileRegionWriter {
 		private final OutputStream rawOut;
 
 		private OutputStream out;
@@ -2170,6 +2250,18 @@ public void close() throws IOException {
 			out.close();
 		}
 
+		@Override
+		public boolean canWriteRegion() {
+			return out == rawOut && rawOut instanceof FileRegionWriter
+					&& ((FileRegionWriter) rawOut).canWriteRegion();
+		}
+
+		@Override
+		public void writeRegion(FileChannel file, long position, long count)
+				throws IOException {
+			((FileRegionWriter) rawOut).writeRegion(file, position, count);
+		}
+
 		void stopBuffering() throws IOException {
 			if (out != rawOut) {
 				((ByteArrayOutputStream) out).writeTo(rawOut);
@@ -77,8 +77,9 @@ public class RefMap extends AbstractMap<String, Ref> {
 	/**
 	 * Prefix denoting the reference subspace this map contains.
 	 * <p>
-	 * All reference names in this map must start with this prefix. If the
-	 * prefix is not the empty string, it must end with a '/'.
+	 * All reference names in this map must start with this prefix. The
+	 * prefix usually ends with a '/', but may also select references by a
+	 * partial name, in which case map keys are the remainder of the name.
 	 */
 	final String prefix;
 
@@ -309,12 +310,18 @@ private class SetIterator implements Iterator<Entry<String, Ref>> {
 
 		SetIterator() {
 			if (0 < prefix.length()) {
-				packedIdx = -(packed.find(prefix) + 1);
-				looseIdx = -(loose.find(prefix) + 1);
-				resolvedIdx = -(resolved.find(prefix) + 1);
+				packedIdx = start(packed);
+				looseIdx = start(loose);
+				resolvedIdx = start(resolved);
 			}
 		}
 
+		private int start(RefList<Ref> list) {
+			// A reference may be named exactly like a partial name prefix.
+			int idx = list.find(prefix);
+			return idx < 0 ? -(idx + 1) : idx;
+		}
+
 		@Override
 		public boolean hasNext() {
 			if (next == null)
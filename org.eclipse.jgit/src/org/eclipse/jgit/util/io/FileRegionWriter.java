@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2018, Google Inc.
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * This program and the accompanying materials are made available
+ * under the terms of the Eclipse Distribution License v1.0 which
+ * accompanies this distribution, is reproduced below, and is
+ * available at http://www.eclipse.org/org/documents/edl-v10.php
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above
+ *   copyright notice, this list of conditions and the following
+ *   disclaimer in the documentation and/or other materials provided
+ *   with the distribution.
+ *
+ * - Neither the name of the Eclipse Foundation, Inc. nor the
+ *   names of its contributors may be used to endorse or promote
+ *   products derived from this software without specific prior
+ *   written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND
+ * CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.eclipse.jgit.util.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * An output stream that can send regions of a file without the caller
+ * copying them through the stream.
+ * <p>
+ * Regions and bytes are sent in the order they were written. A stream may
+ * defer sending a region, for example until the peer is ready to receive
+ * it, so the thread writing the stream is not held up by a slow peer.
+ *
+ * @since 5.1
+ */
+public interface FileRegionWriter {
+	/**
+	 * Check if {@link #writeRegion(FileChannel, long, long)} may be called.
+	 *
+	 * @return {@code true} if regions can be handed to this stream.
+	 */
+	boolean canWriteRegion();
+
+	/**
+	 * Write a region of a file.
+	 * <p>
+	 * The stream takes ownership of {@code file}, even if this method throws,
+	 * and closes it once the stream is closed or fails. The same channel may
+	 * be passed to several calls. The content of the region must not change
+	 * until the channel is closed.
+	 *
+	 * @param file
+	 *            file to send the region from.
+	 * @param position
+	 *            offset of the first byte of the region.
+	 * @param count
+	 *            number of bytes of the region.
+	 * @throws java.io.IOException
+	 *             the stream cannot accept the region.
+	 */
+	void writeRegion(FileChannel file, long position, long count)
+			throws IOException;
+}